@@ -0,0 +1,60 @@
+package com.example.notification.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.UUID;
+
+/**
+ * Identity of this backend replica within the cluster.
+ * The node id is resolved exactly once so every component (presence, routing, listeners) agrees on it.
+ * It names this node's delivery topic and consumer groups, so it should be stable across restarts
+ * (the StatefulSet pod name in k8s).
+ */
+@Component
+@Slf4j
+public class ClusterNode {
+
+    private final String nodeId;
+    private final boolean enabled;
+    private final String deliveryTopicPrefix;
+
+    public ClusterNode(@Value("${notification.cluster.enabled:false}") boolean enabled,
+                       @Value("${notification.cluster.node-id:}") String nodeId,
+                       @Value("${notification.kafka.topics.sse-delivery-prefix:sse-delivery}") String deliveryTopicPrefix) {
+        this.enabled = enabled;
+        this.nodeId = sanitize(StringUtils.hasText(nodeId) ? nodeId : UUID.randomUUID().toString());
+        this.deliveryTopicPrefix = deliveryTopicPrefix;
+        if (enabled && !StringUtils.hasText(nodeId)) {
+            // Each restart would leave its delivery topic and consumer groups behind
+            log.warn("notification.cluster.node-id is not set; using random node id {}. Configure a stable id.", this.nodeId);
+        }
+        log.info("Cluster node initialised. nodeId={}, clusterEnabled={}", this.nodeId, enabled);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Topic on which this node receives SSE frames addressed to users connected to it.
+     */
+    public String getDeliveryTopic() {
+        return deliveryTopicFor(nodeId);
+    }
+
+    public String deliveryTopicFor(String targetNodeId) {
+        return deliveryTopicPrefix + "." + targetNodeId;
+    }
+
+    // Kafka topic names only allow [a-zA-Z0-9._-]
+    private static String sanitize(String value) {
+        return value.replaceAll("[^a-zA-Z0-9._-]", "-");
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.notification.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import javax.sql.DataSource;
+
+/**
+ * Two connection pools on the same database: the shared one configured under {@code spring.datasource.hikari},
+ * and {@code notification.lanes.critical.pool-size} connections only the critical lane uses.
+ * {@link LaneRoutingDataSource} picks between them, so JPA and JDBC see a single datasource.
+ */
+@Configuration
+@Slf4j
+public class DataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource standardDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public HikariDataSource criticalDataSource(HikariDataSource standardDataSource,
+                                               @Value("${notification.lanes.critical.pool-size:8}") int poolSize) {
+        HikariDataSource critical = new HikariDataSource();
+        standardDataSource.copyStateTo(critical);
+        critical.setPoolName("CriticalLanePool");
+        critical.setMaximumPoolSize(Math.max(2, poolSize));
+        critical.setMinimumIdle(Math.min(standardDataSource.getMinimumIdle(), critical.getMaximumPoolSize()));
+        log.info("Critical lane has its own pool of {} connections", critical.getMaximumPoolSize());
+        return critical;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource standardDataSource, HikariDataSource criticalDataSource) {
+        return new LaneRoutingDataSource(standardDataSource, criticalDataSource);
+    }
+}
@@ -1,19 +1,58 @@
 package com.example.notification.config;
 
 import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.config.TopicConfig;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.kafka.ConcurrentKafkaListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.core.KafkaOperations;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.listener.CommonErrorHandler;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.util.backoff.FixedBackOff;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
 
 @Configuration
 public class KafkaConfig {
 
+    /** Number of failed processing attempts so far, set on records in the retry and dead-letter topics. */
+    public static final String RETRY_ATTEMPTS_HEADER = "notification-retry-attempts";
+
     @Value("${notification.kafka.topics.notifications}")
     private String notificationsTopic;
     
     @Value("${notification.kafka.topics.critical-notifications}")
     private String criticalNotificationsTopic;
+
+    @Value("${notification.kafka.topics.sse-presence}")
+    private String ssePresenceTopic;
+
+    @Value("${notification.kafka.topics.sse-heartbeats}")
+    private String sseHeartbeatsTopic;
+
+    @Value("${notification.kafka.topics.preferences-changes}")
+    private String preferencesChangesTopic;
+
+    @Value("${notification.kafka.topics.type-changes}")
+    private String typeChangesTopic;
      
     // Create the standard notifications topic
     @Bean
@@ -32,5 +71,167 @@ public class KafkaConfig {
                 .replicas(1)
                 .build();
     }
- 
-}
\ No newline at end of file
+
+    // Compacted: only the latest presence per user is needed to rebuild the registry
+    @Bean
+    @ConditionalOnProperty(name = "notification.cluster.enabled", havingValue = "true")
+    public NewTopic ssePresenceTopic() {
+        return TopicBuilder.name(ssePresenceTopic)
+                .partitions(3)
+                .replicas(1)
+                .config(TopicConfig.CLEANUP_POLICY_CONFIG, TopicConfig.CLEANUP_POLICY_COMPACT)
+                .build();
+    }
+
+    // This node's inbox for SSE frames forwarded by other replicas. Frames are only useful for a short time.
+    @Bean
+    @ConditionalOnProperty(name = "notification.cluster.enabled", havingValue = "true")
+    public NewTopic sseDeliveryTopic(ClusterNode clusterNode) {
+        return TopicBuilder.name(clusterNode.getDeliveryTopic())
+                .partitions(1)
+                .replicas(1)
+                .config(TopicConfig.RETENTION_MS_CONFIG, "60000")
+                .build();
+    }
+
+    // Node liveness for presence expiry; consumers start at the end, so old heartbeats are never read
+    @Bean
+    @ConditionalOnProperty(name = "notification.cluster.enabled", havingValue = "true")
+    public NewTopic sseHeartbeatsTopic() {
+        return TopicBuilder.name(sseHeartbeatsTopic)
+                .partitions(1)
+                .replicas(1)
+                .config(TopicConfig.RETENTION_MS_CONFIG, "60000")
+                .build();
+    }
+
+    // Cache invalidations for user preferences; a node reading one long after it was sent has reloaded anyway
+    @Bean
+    @ConditionalOnProperty(name = "notification.cluster.enabled", havingValue = "true")
+    public NewTopic preferencesChangesTopic() {
+        return TopicBuilder.name(preferencesChangesTopic)
+                .partitions(3)
+                .replicas(1)
+                .config(TopicConfig.RETENTION_MS_CONFIG, "600000")
+                .build();
+    }
+
+    // Notification type changes; as with preferences, a node reading one late has reloaded on its own schedule
+    @Bean
+    @ConditionalOnProperty(name = "notification.cluster.enabled", havingValue = "true")
+    public NewTopic typeChangesTopic() {
+        return TopicBuilder.name(typeChangesTopic)
+                .partitions(1)
+                .replicas(1)
+                .config(TopicConfig.RETENTION_MS_CONFIG, "600000")
+                .build();
+    }
+
+    // Batch listeners for the notification topics: one List per poll, offsets committed once per batch
+    @Bean
+    @ConditionalOnProperty(name = "notification.kafka.batch.enabled", havingValue = "true")
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> batchKafkaListenerContainerFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+            ConsumerFactory<Object, Object> consumerFactory,
+            @Value("${notification.kafka.batch.max-poll-records:500}") int maxPollRecords) {
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        configurer.configure(factory, consumerFactory);
+        factory.setBatchListener(true);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.BATCH);
+        Properties overrides = new Properties();
+        overrides.setProperty(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, String.valueOf(maxPollRecords));
+        factory.getContainerProperties().setKafkaConsumerProperties(overrides);
+        return factory;
+    }
+
+    // Record listeners that hand work to the keyed executor and acknowledge when it completes
+    @Bean
+    @ConditionalOnProperty(name = "notification.kafka.batch.enabled", havingValue = "false", matchIfMissing = true)
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> keyedKafkaListenerContainerFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+            ConsumerFactory<Object, Object> consumerFactory) {
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        configurer.configure(factory, consumerFactory);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        // Out-of-order acks; the consumer pauses until the previous poll is fully acknowledged
+        factory.getContainerProperties().setAsyncAcks(true);
+        return factory;
+    }
+
+    // Retry tiers for both notification topics plus the shared dead-letter topic, which keeps records for a week
+    @Bean
+    public KafkaAdmin.NewTopics notificationRetryTopicsAdmin(NotificationRetryTopics retryTopics) {
+        NewTopic[] topics = new NewTopic[retryTopics.getRetryTopics().size() + 1];
+        int i = 0;
+        for (String retryTopic : retryTopics.getRetryTopics()) {
+            topics[i++] = TopicBuilder.name(retryTopic).partitions(3).replicas(1).build();
+        }
+        topics[i] = TopicBuilder.name(retryTopics.getDeadLetterTopic())
+                .partitions(3)
+                .replicas(1)
+                .config(TopicConfig.RETENTION_MS_CONFIG, String.valueOf(7L * 24 * 60 * 60 * 1000))
+                .build();
+        return new KafkaAdmin.NewTopics(topics);
+    }
+
+    /**
+     * Publishes a failed notification record to the next retry tier, or to the dead-letter topic once the
+     * tiers are used up. The record keeps its headers and gains the standard {@code kafka_dlt-*} failure metadata.
+     */
+    @Bean
+    public DeadLetterPublishingRecoverer notificationRetryRecoverer(KafkaTemplate<String, Object> kafkaTemplate,
+                                                                    NotificationRetryTopics retryTopics) {
+        return failureRecoverer(kafkaTemplate, retryTopics, true);
+    }
+
+    /**
+     * Publishes straight to the dead-letter topic: records that can never succeed, such as poison pills
+     * the {@code ErrorHandlingDeserializer} could not read. The original bytes are kept.
+     */
+    @Bean
+    public DeadLetterPublishingRecoverer notificationDeadLetterRecoverer(KafkaTemplate<String, Object> kafkaTemplate,
+                                                                         NotificationRetryTopics retryTopics) {
+        return failureRecoverer(kafkaTemplate, retryTopics, false);
+    }
+
+    // Applied by Boot to every listener container factory: no blocking retries on the consumer thread
+    @Bean
+    public CommonErrorHandler kafkaErrorHandler(DeadLetterPublishingRecoverer notificationDeadLetterRecoverer) {
+        return new DefaultErrorHandler(notificationDeadLetterRecoverer, new FixedBackOff(0L, 0L));
+    }
+
+    // Retry tiers: plain manual acks so a record that is not yet due can be nacked with a pause
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> retryKafkaListenerContainerFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+            ConsumerFactory<Object, Object> consumerFactory) {
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        configurer.configure(factory, consumerFactory);
+        factory.setConcurrency(1);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        return factory;
+    }
+
+    private static DeadLetterPublishingRecoverer failureRecoverer(KafkaTemplate<String, Object> kafkaTemplate,
+                                                                  NotificationRetryTopics retryTopics,
+                                                                  boolean retry) {
+        ProducerFactory<String, Object> producerFactory = kafkaTemplate.getProducerFactory();
+        Map<Class<?>, KafkaOperations<?, ?>> templates = new LinkedHashMap<>();
+        templates.put(byte[].class, new KafkaTemplate<>(producerFactory,
+                Map.of(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class)));
+        templates.put(Object.class, kafkaTemplate);
+        DeadLetterPublishingRecoverer recoverer = new DeadLetterPublishingRecoverer(templates, (record, exception) -> {
+            if (!retryTopics.isNotificationTopic(record.topic())) {
+                return null; // Presence, heartbeat and delivery topics: nothing to re-drive, the failure is only logged
+            }
+            String destination = retry ? retryTopics.nextTopic(record.topic()) : retryTopics.getDeadLetterTopic();
+            return new TopicPartition(destination, -1);
+        });
+        // Each hop replaces the previous hop's failure headers instead of stacking them
+        recoverer.setAppendOriginalHeaders(false);
+        recoverer.setStripPreviousExceptionHeaders(true);
+        recoverer.setHeadersFunction((record, exception) -> new RecordHeaders().add(RETRY_ATTEMPTS_HEADER,
+                String.valueOf(retryTopics.attemptsBefore(record.topic()) + 1).getBytes(StandardCharsets.UTF_8)));
+        return recoverer;
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.notification.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Hands out connections from the critical lane's own pool to work running on the critical lane, and from
+ * the shared pool to everything else. Standard processing, REST reads and the outbox relay can then use up
+ * every shared connection without delaying a critical event.
+ */
+public class LaneRoutingDataSource extends AbstractRoutingDataSource {
+
+    private static final ThreadLocal<Boolean> CRITICAL = new ThreadLocal<>();
+
+    LaneRoutingDataSource(Object standard, Object critical) {
+        setTargetDataSources(Map.of(Boolean.FALSE, standard, Boolean.TRUE, critical));
+        setDefaultTargetDataSource(standard);
+        setLenientFallback(false);
+    }
+
+    /**
+     * Run {@code work} on this thread with every connection it opens taken from the critical pool.
+     */
+    public static <T> T critical(Supplier<T> work) {
+        Boolean outer = CRITICAL.get();
+        CRITICAL.set(Boolean.TRUE);
+        try {
+            return work.get();
+        } finally {
+            if (outer == null) {
+                CRITICAL.remove();
+            } else {
+                CRITICAL.set(outer);
+            }
+        }
+    }
+
+    public static void critical(Runnable work) {
+        critical(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return CRITICAL.get() != null;
+    }
+}
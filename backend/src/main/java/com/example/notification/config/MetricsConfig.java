@@ -1,11 +1,14 @@
 package com.example.notification.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
+import java.time.Duration;
+
 @Configuration
 public class MetricsConfig {
     @Bean
@@ -17,4 +20,15 @@ public class MetricsConfig {
     NotificationMetrics notificationMetrics(MeterRegistry registry) {
         return new NotificationMetrics(registry);
     }
+
+    @Bean
+    SseMetrics sseMetrics(MeterRegistry registry, ClusterNode clusterNode) {
+        return new SseMetrics(registry, clusterNode.getNodeId());
+    }
+
+    @Bean
+    NotificationLatencyMetrics notificationLatencyMetrics(MeterRegistry registry, ClusterNode clusterNode,
+                                                          @Value("${notification.lanes.critical.slo-ms:500}") long criticalSloMs) {
+        return new NotificationLatencyMetrics(registry, clusterNode.getNodeId(), Duration.ofMillis(criticalSloMs));
+    }
 }
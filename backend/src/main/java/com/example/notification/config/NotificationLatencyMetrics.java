@@ -0,0 +1,80 @@
+package com.example.notification.config;
+
+import com.example.notification.model.NotificationPriority;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency histograms kept separately per {@link NotificationPriority}, so the critical tail is never
+ * averaged away by standard traffic. CRITICAL timers also count deliveries against the SLO bucket.
+ */
+public class NotificationLatencyMetrics {
+
+    public static final String CHANNEL_SSE = "sse";
+    public static final String CHANNEL_EMAIL = "email";
+
+    private final Map<NotificationPriority, Timer> endToEnd = new EnumMap<>(NotificationPriority.class);
+    private final Map<NotificationPriority, Timer> sseDispatch = new EnumMap<>(NotificationPriority.class);
+    private final Map<NotificationPriority, Timer> emailDispatch = new EnumMap<>(NotificationPriority.class);
+
+    public NotificationLatencyMetrics(MeterRegistry registry, String nodeId, Duration criticalSlo) {
+        for (NotificationPriority priority : NotificationPriority.values()) {
+            endToEnd.put(priority, timer("notification_end_to_end_latency",
+                    "Time from a notification record being produced to it being processed", priority, criticalSlo)
+                    .tag("node", nodeId)
+                    .register(registry));
+            sseDispatch.put(priority, timer("notification_dispatch_latency",
+                    "Time a notification waits in the dispatch queue plus delivery", priority, criticalSlo)
+                    .tag("node", nodeId)
+                    .tag("channel", CHANNEL_SSE)
+                    .register(registry));
+            emailDispatch.put(priority, timer("notification_dispatch_latency",
+                    "Time a notification waits in the dispatch queue plus delivery", priority, criticalSlo)
+                    .tag("node", nodeId)
+                    .tag("channel", CHANNEL_EMAIL)
+                    .register(registry));
+        }
+    }
+
+    /**
+     * @param recordTimestampMs the Kafka record's creation timestamp
+     */
+    public void recordEndToEnd(NotificationPriority priority, long recordTimestampMs) {
+        if (priority == null || recordTimestampMs < 0) {
+            return;
+        }
+        endToEnd.get(priority).record(Math.max(0, System.currentTimeMillis() - recordTimestampMs), TimeUnit.MILLISECONDS);
+    }
+
+    public void recordDispatch(String channel, NotificationPriority priority, long nanos) {
+        Map<NotificationPriority, Timer> timers = CHANNEL_EMAIL.equals(channel) ? emailDispatch : sseDispatch;
+        timers.get(priority).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public Timer endToEndTimer(NotificationPriority priority) {
+        return endToEnd.get(priority);
+    }
+
+    public Timer dispatchTimer(String channel, NotificationPriority priority) {
+        return (CHANNEL_EMAIL.equals(channel) ? emailDispatch : sseDispatch).get(priority);
+    }
+
+    private static Timer.Builder timer(String name, String description, NotificationPriority priority, Duration criticalSlo) {
+        Timer.Builder builder = Timer.builder(name)
+                .description(description)
+                .tag("priority", priority.name())
+                .publishPercentiles(0.5, 0.99)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofMinutes(1));
+        if (priority == NotificationPriority.CRITICAL) {
+            builder.serviceLevelObjectives(criticalSlo);
+        }
+        return builder;
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.notification.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Naming and backoff of the retry tiers behind the two notification topics. A failed record moves from
+ * {@code <topic>} to {@code <topic>-retry-0}, then {@code -retry-1} and so on, one tier per configured
+ * backoff, and finally to the shared dead-letter topic. Each tier has a single delay, so its records
+ * become due in the order they were written.
+ */
+@Component
+public class NotificationRetryTopics {
+
+    static final String RETRY_INFIX = "-retry-";
+
+    private final String notificationsTopic;
+    private final String criticalNotificationsTopic;
+    private final String deadLetterTopic;
+    private final List<Long> backoffMs;
+
+    public NotificationRetryTopics(@Value("${notification.kafka.topics.notifications}") String notificationsTopic,
+                                   @Value("${notification.kafka.topics.critical-notifications}") String criticalNotificationsTopic,
+                                   @Value("${notification.kafka.topics.dead-letter:notifications-dlq}") String deadLetterTopic,
+                                   @Value("${notification.kafka.retry.backoff-ms:1000,10000,60000}") List<Long> backoffMs) {
+        this.notificationsTopic = notificationsTopic;
+        this.criticalNotificationsTopic = criticalNotificationsTopic;
+        this.deadLetterTopic = deadLetterTopic;
+        this.backoffMs = List.copyOf(backoffMs);
+    }
+
+    public String getDeadLetterTopic() {
+        return deadLetterTopic;
+    }
+
+    public List<String> getMainTopics() {
+        return List.of(notificationsTopic, criticalNotificationsTopic);
+    }
+
+    public List<String> getRetryTopics() {
+        List<String> topics = new ArrayList<>();
+        for (String mainTopic : getMainTopics()) {
+            for (int tier = 0; tier < backoffMs.size(); tier++) {
+                topics.add(mainTopic + RETRY_INFIX + tier);
+            }
+        }
+        return Collections.unmodifiableList(topics);
+    }
+
+    /**
+     * Whether records of {@code topic} (a main topic or one of its retry tiers) can be retried or dead-lettered here.
+     */
+    public boolean isNotificationTopic(String topic) {
+        return topic != null && getMainTopics().contains(mainTopicOf(topic));
+    }
+
+    public boolean isCritical(String topic) {
+        return criticalNotificationsTopic.equals(mainTopicOf(topic));
+    }
+
+    /**
+     * Where a record that just failed on {@code topic} goes next: the following retry tier, or the dead-letter topic.
+     */
+    public String nextTopic(String topic) {
+        int next = tierOf(topic) + 1;
+        return next < backoffMs.size() ? mainTopicOf(topic) + RETRY_INFIX + next : deadLetterTopic;
+    }
+
+    /**
+     * How long a record must sit in {@code retryTopic} before it is retried.
+     */
+    public long backoffMs(String retryTopic) {
+        int tier = tierOf(retryTopic);
+        return tier < 0 ? 0 : backoffMs.get(tier);
+    }
+
+    /**
+     * Retries already made for a record read from {@code topic}: 0 on a main topic, {@code n + 1} on tier {@code n}.
+     */
+    public int attemptsBefore(String topic) {
+        return tierOf(topic) + 1;
+    }
+
+    public String mainTopicOf(String topic) {
+        int infix = topic.lastIndexOf(RETRY_INFIX);
+        return infix < 0 ? topic : topic.substring(0, infix);
+    }
+
+    // -1 for a main topic
+    private int tierOf(String topic) {
+        int infix = topic.lastIndexOf(RETRY_INFIX);
+        if (infix < 0) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(topic.substring(infix + RETRY_INFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.notification.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class SseMetrics {
+
+    private final LongAdder bufferedFrames = new LongAdder();
+    private final Counter framesDropped;
+    private final Counter framesCoalesced;
+    private final Counter overflowEvictions;
+    private final Counter slowConsumerEvictions;
+
+    public SseMetrics(MeterRegistry registry, String nodeId) {
+        Gauge.builder("sse_buffered_frames", bufferedFrames, LongAdder::sum)
+                .description("Frames queued in SSE connection buffers on this node")
+                .tag("node", nodeId)
+                .register(registry);
+
+        this.framesDropped = Counter.builder("sse_frames_dropped_total")
+                .description("SSE frames discarded because a connection buffer was full")
+                .tag("node", nodeId)
+                .register(registry);
+
+        this.framesCoalesced = Counter.builder("sse_frames_coalesced_total")
+                .description("SSE frames replaced by a newer frame of the same type")
+                .tag("node", nodeId)
+                .register(registry);
+
+        this.overflowEvictions = Counter.builder("sse_evictions_total")
+                .description("SSE connections evicted")
+                .tag("node", nodeId)
+                .tag("reason", "overflow")
+                .register(registry);
+
+        this.slowConsumerEvictions = Counter.builder("sse_evictions_total")
+                .description("SSE connections evicted")
+                .tag("node", nodeId)
+                .tag("reason", "slow-consumer")
+                .register(registry);
+    }
+
+    public void adjustBufferedFrames(long delta) {
+        bufferedFrames.add(delta);
+    }
+
+    public long getBufferedFrames() {
+        return bufferedFrames.sum();
+    }
+
+    public void incrementFramesDropped() {
+        framesDropped.increment();
+    }
+
+    public void incrementFramesCoalesced() {
+        framesCoalesced.increment();
+    }
+
+    public void incrementOverflowEvictions() {
+        overflowEvictions.increment();
+    }
+
+    public void incrementSlowConsumerEvictions() {
+        slowConsumerEvictions.increment();
+    }
+}
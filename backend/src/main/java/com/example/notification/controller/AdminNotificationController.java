@@ -2,9 +2,11 @@ package com.example.notification.controller;
 
 import org.springframework.web.bind.annotation.*;
 
+import com.example.notification.dto.DeadLetterRedriveResult;
 import com.example.notification.dto.NotificationEvent;
 import com.example.notification.dto.NotificationResponse;
 import com.example.notification.dto.NotificationStats;
+import com.example.notification.kafka.DeadLetterRedriver;
 import com.example.notification.service.NotificationService;
 
 import jakarta.validation.Valid;
@@ -23,6 +25,7 @@ import org.springframework.http.ResponseEntity;
 public class AdminNotificationController {
 
     private final NotificationService notificationService;
+    private final DeadLetterRedriver deadLetterRedriver;
 
     @GetMapping("/stats")
     public ResponseEntity<NotificationStats> getNotificationStats() {
@@ -35,17 +38,52 @@ public class AdminNotificationController {
         return ResponseEntity.ok(notificationService.getRecentNotifications(limit));
     }
 
+    /**
+     * Publish a notification; persistence and delivery happen asynchronously. With {@code waitFor=persisted},
+     * also waits until every recipient's row exists.
+     */
     @PostMapping("/send")
     public ResponseEntity<String> sendNotification(
-            @Valid @RequestBody NotificationEvent event) {
-        notificationService.sendNotification(event); // now void
+            @Valid @RequestBody NotificationEvent event,
+            @RequestParam(required = false) String waitFor) {
+        if (!NotificationController.isWaitForValid(waitFor)) {
+            return ResponseEntity.badRequest().body("waitFor must be 'accepted' or 'persisted'");
+        }
+        try {
+            notificationService.sendNotification(event, "persisted".equalsIgnoreCase(waitFor));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            log.error("AdminController: could not publish notification {}: {}", event.getEventId(), e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Notification could not be published. Please retry.");
+        }
         // Log the action
         log.info("AdminController: sendNotification request processed for event title: {} with priority: {}", event.getTitle(), event.getPriority());
-        return ResponseEntity.accepted().body("Notification request processed for " + event.getTargetUserIds().size() + " user(s). Priority: " + event.getPriority());
+        String audience = event.getSegment() != null && !event.getSegment().isBlank()
+                ? "segment '" + event.getSegment() + "'"
+                : event.getTargetUserIds().size() + " user(s)";
+        return ResponseEntity.accepted().body("Notification request processed for " + audience + ". Priority: " + event.getPriority());
     }
 
     @GetMapping("/types")
     public ResponseEntity<List<String>> getNotificationTypes() {
         return ResponseEntity.ok(notificationService.getNotificationTypes());
     }
-}
\ No newline at end of file
+
+    /**
+     * Republish dead-lettered notification events to the topic they failed on, paced at {@code ratePerSecond}.
+     */
+    @PostMapping("/dlq/redrive")
+    public ResponseEntity<DeadLetterRedriveResult> redriveDeadLetters(
+            @RequestParam(defaultValue = "500") int maxRecords,
+            @RequestParam(defaultValue = "50") int ratePerSecond) {
+        if (maxRecords < 1 || ratePerSecond < 1) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok(deadLetterRedriver.redrive(maxRecords, ratePerSecond));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.notification.controller;
+
+import org.springframework.web.bind.annotation.*;
+
+import com.example.notification.service.AudienceSegmentService;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Audience segments that notifications can target with {@code segment} instead of a user list.
+ */
+@RestController
+@RequestMapping("/api/admin/segments")
+@Slf4j
+@RequiredArgsConstructor
+public class AudienceSegmentController {
+
+    private final AudienceSegmentService segmentService;
+
+    @GetMapping
+    public ResponseEntity<Map<String, Integer>> getSegments() {
+        return ResponseEntity.ok(segmentService.describe());
+    }
+
+    /**
+     * How many users a segment expression such as {@code role:ADMIN & pref:email} currently reaches.
+     */
+    @GetMapping("/count")
+    public ResponseEntity<Integer> countSegment(@RequestParam String expression) {
+        try {
+            return ResponseEntity.ok(segmentService.count(expression));
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected segment expression: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Replace the members of custom list {@code name}, targeted as {@code list:<name>}.
+     */
+    @PutMapping("/lists/{name}")
+    public ResponseEntity<Integer> saveList(@PathVariable String name, @RequestBody List<String> userIds) {
+        try {
+            return ResponseEntity.ok(segmentService.saveList(name, userIds));
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected audience list {}: {}", name, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @DeleteMapping("/lists/{name}")
+    public ResponseEntity<Void> deleteList(@PathVariable String name) {
+        return segmentService.deleteList(name) ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+    }
+}
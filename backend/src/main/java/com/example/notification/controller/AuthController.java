@@ -1,6 +1,7 @@
 package com.example.notification.controller;
 
 import com.example.notification.security.JwtTokenProvider;
+import com.example.notification.security.VerifiedToken;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -12,6 +13,7 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
@@ -108,12 +110,10 @@ public class AuthController {
         if (bearerToken != null && bearerToken.startsWith("Bearer ")) {
             String token = bearerToken.substring(7);
             
-            if (jwtTokenProvider.validateToken(token)) {
-                String username = jwtTokenProvider.getUserIdFromJWT(token);
-                List<String> roles = jwtTokenProvider.getRolesFromJWT(token);
-                
+            Optional<VerifiedToken> verified = jwtTokenProvider.verify(token);
+            if (verified.isPresent()) {
                 return ResponseEntity.ok().body(
-                    new LoginResponse(token, username, roles)
+                    new LoginResponse(token, verified.get().getUserId(), verified.get().getRoles())
                 );
             }
         }
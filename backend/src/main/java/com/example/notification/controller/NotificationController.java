@@ -2,8 +2,8 @@ package com.example.notification.controller;
 
 import com.example.notification.dto.NotificationEvent;
 import com.example.notification.dto.NotificationResponse;
+import com.example.notification.service.NotificationIngestService;
 import com.example.notification.service.NotificationService;
-import com.example.notification.service.NotificationProcessingOrchestrator;
 
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
@@ -25,12 +25,12 @@ import org.springframework.web.bind.annotation.*;
 public class NotificationController {
 
     private final NotificationService notificationService;
-    private final NotificationProcessingOrchestrator notificationProcessingOrchestrator;
+    private final NotificationIngestService notificationIngestService;
 
     public NotificationController(NotificationService notificationService,
-    NotificationProcessingOrchestrator notificationProcessingOrchestrator) {
+    NotificationIngestService notificationIngestService) {
         this.notificationService = notificationService;
-        this.notificationProcessingOrchestrator = notificationProcessingOrchestrator;
+        this.notificationIngestService = notificationIngestService;
     }
 
     /**
@@ -115,24 +115,46 @@ public class NotificationController {
 
 
     /**
-     * Send a notification to specific users
+     * Send a notification to specific users. Returns once the event is published; persistence and delivery
+     * happen in the Kafka consumers. With {@code waitFor=persisted}, also waits until every recipient's row exists.
      */
     @PostMapping
-    public ResponseEntity<Void> sendNotification(@Valid @RequestBody NotificationEvent event) {
+    public ResponseEntity<?> sendNotification(@Valid @RequestBody NotificationEvent event,
+                                              @RequestParam(required = false) String waitFor) {
         log.info("REST request to send notification: {}", event);
-        notificationProcessingOrchestrator.processNotification(event, event.getPriority() == com.example.notification.model.NotificationPriority.CRITICAL);
-        return ResponseEntity.status(HttpStatus.ACCEPTED).build();
+        return ingest(event, waitFor);
     }
 
     /**
      * Send a critical notification to specific users
      */
     @PostMapping("/critical")
-    public ResponseEntity<Void> sendCriticalNotification(@Valid @RequestBody NotificationEvent event) {
+    public ResponseEntity<?> sendCriticalNotification(@Valid @RequestBody NotificationEvent event,
+                                                      @RequestParam(required = false) String waitFor) {
         log.info("REST request to send critical notification: {}", event);
         // Criticality is now determined by priority. Client should set priority to CRITICAL.
-        notificationProcessingOrchestrator.processNotification(event, event.getPriority() == com.example.notification.model.NotificationPriority.CRITICAL);
-        return ResponseEntity.status(HttpStatus.ACCEPTED).build();
+        return ingest(event, waitFor);
+    }
+
+    static boolean isWaitForValid(String waitFor) {
+        return waitFor == null || "accepted".equalsIgnoreCase(waitFor) || "persisted".equalsIgnoreCase(waitFor);
+    }
+
+    // A receipt once accepted, otherwise the reason as plain text
+    private ResponseEntity<?> ingest(NotificationEvent event, String waitFor) {
+        if (!isWaitForValid(waitFor)) {
+            return ResponseEntity.badRequest().body("waitFor must be 'accepted' or 'persisted'");
+        }
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(notificationIngestService.ingest(event, "persisted".equalsIgnoreCase(waitFor)));
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected notification: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            log.error("Could not accept notification: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Notification could not be published. Please retry.");
+        }
     }
 
     @GetMapping("/types")
@@ -1,9 +1,10 @@
 package com.example.notification.controller;
 
-import com.example.notification.model.UserPreferences;
-import com.example.notification.repository.UserPreferencesRepository;
 import com.example.notification.security.JwtTokenProvider;
+import com.example.notification.security.VerifiedToken;
+import com.example.notification.service.CachedUserPreferences;
 import com.example.notification.service.SseEmitterManager;
+import com.example.notification.service.UserPreferencesService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.web.bind.annotation.*;
@@ -20,34 +21,39 @@ public class SseController {
     private static final Logger logger = LoggerFactory.getLogger(SseController.class);
     private final SseEmitterManager sseEmitterManager;
     private final JwtTokenProvider jwtTokenProvider;
-    private final UserPreferencesRepository userPreferencesRepository;
+    private final UserPreferencesService userPreferencesService;
 
     // Constructor injection
     public SseController(
         SseEmitterManager sseEmitterManager,
         JwtTokenProvider jwtTokenProvider,
-        UserPreferencesRepository userPreferencesRepository) {
+        UserPreferencesService userPreferencesService) {
         this.sseEmitterManager = sseEmitterManager;
         this.jwtTokenProvider = jwtTokenProvider;
-        this.userPreferencesRepository = userPreferencesRepository;
+        this.userPreferencesService = userPreferencesService;
     }
 
     @GetMapping(value="/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public Flux<ServerSentEvent<String>> streamEvents(@RequestParam("token") String token) {
-        if (token == null || !jwtTokenProvider.validateToken(token)) {
+    public Flux<ServerSentEvent<String>> streamEvents(
+            @RequestParam("token") String token,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventIdHeader,
+            @RequestParam(value = "lastEventId", required = false) String lastEventIdParam) {
+        // Already verified by SseTokenAuthenticationFilter for this request; served from the token cache
+        Optional<VerifiedToken> verified = jwtTokenProvider.verify(token);
+        if (verified.isEmpty()) {
             logger.warn("SSE connection attempt with invalid or missing token.");
             return Flux.empty();
         }
 
-        String userId = jwtTokenProvider.getUserIdFromJWT(token);
+        String userId = verified.get().getUserId();
         if (userId == null) {
             logger.warn("Could not extract userId from token for SSE connection.");
             return Flux.empty();
         }
         
-        Optional<UserPreferences> userPreferencesOptional = userPreferencesRepository.findByUserId(userId);
+        Optional<CachedUserPreferences> userPreferencesOptional = userPreferencesService.find(userId);
         if (userPreferencesOptional.isPresent()) {
-            UserPreferences preferences = userPreferencesOptional.get();
+            CachedUserPreferences preferences = userPreferencesOptional.get();
             if (!preferences.isSseEnabled()) {
                 logger.warn("SSE connection denied for user: {}. SSE is disabled in user preferences.", userId);
                 return Flux.empty();
@@ -58,24 +64,18 @@ public class SseController {
         }
 
         final String userKey = userId;
+        // Browsers send the header on automatic reconnects; the query param covers manual reconnects
+        final String lastEventId = lastEventIdHeader != null ? lastEventIdHeader : lastEventIdParam;
 
-        sseEmitterManager.closeAndRemoveEmittersForUser(userKey);
-
-        return sseEmitterManager.addEmitter(userKey)
+        // Sink cleanup on cancel/error is handled by SseEmitterManager when the stream terminates
+        return sseEmitterManager.addEmitter(userKey, lastEventId)
             .doOnSubscribe(subscription -> {
                 logger.info("SSE connection subscribed for user: {}", userKey);
-                sseEmitterManager.sendToUser(userKey, "Connection established for user: " + userKey);
+                sseEmitterManager.sendTransientToUser(userKey, "notification", "Connection established for user: " + userKey);
                 logger.info("SSE connection established and initial events sent for user: {}", userKey);
             })
-            .doOnCancel(() -> {
-                logger.info("Client disconnected, removing emitter for user: {}", userKey);
-                sseEmitterManager.removeEmitter(userKey);
-            })
-            .doOnError(e -> {
-                logger.error("Error in SSE stream for user: {}", userKey, e);
-                sseEmitterManager.sendToUser(userKey, "Error in SSE stream: " + e.getMessage());
-                sseEmitterManager.removeEmitter(userKey);
-            })
+            .doOnCancel(() -> logger.info("Client disconnected for user: {}", userKey))
+            .doOnError(e -> logger.error("Error in SSE stream for user: {}", userKey, e))
             .doOnTerminate(() -> logger.info("SSE stream terminated for user: {}", userKey));
     }
 }
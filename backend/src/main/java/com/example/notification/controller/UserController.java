@@ -3,6 +3,8 @@ package com.example.notification.controller;
 import org.springframework.web.bind.annotation.*;
 
 import com.example.notification.dto.UserDTO;
+import com.example.notification.dto.UserPreferencesDTO;
+import com.example.notification.service.UserPreferencesService;
 import com.example.notification.service.UserService;
 
 import lombok.RequiredArgsConstructor;
@@ -19,9 +21,29 @@ import org.springframework.http.ResponseEntity;
 public class UserController {
 
     private final UserService userService;
+    private final UserPreferencesService userPreferencesService;
 
     @GetMapping
     public ResponseEntity<List<UserDTO>> getUsers() {
         return ResponseEntity.ok(userService.getAllUsers());
     }
-}
\ No newline at end of file
+
+    @GetMapping("/{userId}/preferences")
+    public ResponseEntity<UserPreferencesDTO> getPreferences(@PathVariable String userId) {
+        return ResponseEntity.ok(userPreferencesService.getPreferences(userId));
+    }
+
+    /**
+     * Replace the user's preferences. The change applies on every node without waiting for a cache to expire.
+     */
+    @PutMapping("/{userId}/preferences")
+    public ResponseEntity<UserPreferencesDTO> updatePreferences(@PathVariable String userId,
+                                                                @RequestBody UserPreferencesDTO preferences) {
+        try {
+            return ResponseEntity.ok(userPreferencesService.updatePreferences(userId, preferences));
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected preferences for user {}: {}", userId, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.notification.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Outcome of one dead-letter re-drive run.
+ */
+@Data
+@Builder
+public class DeadLetterRedriveResult {
+    private int redriven;      // Republished to their original topic
+    private int skipped;       // Unreadable records (poison pills), committed past without republishing
+    private long elapsedMs;
+}
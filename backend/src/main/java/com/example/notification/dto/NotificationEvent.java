@@ -13,7 +13,7 @@ import java.util.Map;
  * DTO representing a notification event published to Kafka by producer services
  */
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class NotificationEvent {
@@ -22,6 +22,9 @@ public class NotificationEvent {
     
     // Target user ID(s) - can be a single user or multiple users for broadcasts
     private List<String> targetUserIds;
+
+    // Audience segment expression, e.g. "role:ADMIN & pref:email"; its members are added to targetUserIds
+    private String segment;
     
     // Source service that generated this notification
     private String sourceService;
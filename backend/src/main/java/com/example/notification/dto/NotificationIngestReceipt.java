@@ -0,0 +1,22 @@
+package com.example.notification.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * What a send endpoint did with a notification before returning.
+ */
+@Data
+@Builder
+public class NotificationIngestReceipt {
+
+    public enum Status {
+        ACCEPTED,  // Handed to the Kafka producer; processed asynchronously
+        PERSISTED, // Every recipient's row exists
+        PENDING    // waitFor=persisted timed out; processing continues
+    }
+
+    private String eventId;
+    private int recipients;   // Distinct recipients, including a segment's members, or the user count for a broadcast
+    private Status status;
+}
@@ -0,0 +1,20 @@
+package com.example.notification.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Published when a node creates, updates or deletes a notification type, so the other nodes reload their
+ * type registry. Keyed by type code on the type changes topic.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class NotificationTypeChangedEvent {
+    private String typeCode;
+    private String nodeId;
+    private long timestamp;
+}
@@ -0,0 +1,22 @@
+package com.example.notification.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * An already-encoded SSE frame forwarded to the node that holds the target user's stream.
+ * The payload is serialized once on the originating node and emitted as-is on the receiving node.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SseDeliveryMessage {
+    private String userId;
+    private String eventName;
+    private String data;
+    private String originNodeId;
+    private boolean batchable;
+}
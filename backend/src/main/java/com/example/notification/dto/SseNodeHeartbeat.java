@@ -0,0 +1,20 @@
+package com.example.notification.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Published periodically by every node in cluster mode. A node whose heartbeats stop is treated as gone and
+ * its users' presence is dropped; a changed {@code startedAt} means the node restarted and lost its streams.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SseNodeHeartbeat {
+    private String nodeId;
+    private long startedAt;
+    private long timestamp;
+}
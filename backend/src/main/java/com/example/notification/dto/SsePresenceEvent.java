@@ -0,0 +1,21 @@
+package com.example.notification.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Presence change published whenever a user's SSE stream is opened or closed on a node.
+ * Keyed by userId on the presence topic so all changes for one user stay ordered.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SsePresenceEvent {
+    private String userId;
+    private String nodeId;
+    private boolean online;
+    private long timestamp;
+}
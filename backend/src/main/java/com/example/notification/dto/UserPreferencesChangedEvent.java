@@ -0,0 +1,20 @@
+package com.example.notification.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Published when a node saves a user's preferences, so the other nodes drop their cached copy.
+ * Keyed by userId on the preferences topic.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserPreferencesChangedEvent {
+    private String userId;
+    private String nodeId;
+    private long timestamp;
+}
@@ -1,11 +1,15 @@
 package com.example.notification.dto;
 
+import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.Builder;
+import lombok.NoArgsConstructor;
 import java.util.Set;
 
 @Data
 @Builder
+@NoArgsConstructor
+@AllArgsConstructor
 public class UserPreferencesDTO {
     private boolean emailEnabled;
     private boolean sseEnabled;
@@ -0,0 +1,56 @@
+package com.example.notification.gateway;
+
+import com.example.notification.service.SseEmitterManager;
+import org.springframework.http.codec.ServerSentEvent;
+
+/**
+ * Writes {@link ServerSentEvent}s in the text/event-stream wire format, field for field the same as
+ * Spring's servlet encoder so clients see identical frames on either endpoint.
+ */
+final class SseFrameEncoder {
+
+    // The keepalive is one shared instance, so its wire form is encoded once
+    private static final String KEEPALIVE_FRAME = doEncode(SseEmitterManager.KEEPALIVE);
+
+    private SseFrameEncoder() {
+    }
+
+    static String encode(ServerSentEvent<String> event) {
+        if (event == SseEmitterManager.KEEPALIVE) {
+            return KEEPALIVE_FRAME;
+        }
+        return doEncode(event);
+    }
+
+    private static String doEncode(ServerSentEvent<String> event) {
+        String data = event.data();
+        StringBuilder frame = new StringBuilder(64 + (data != null ? data.length() : 0));
+        if (event.id() != null) {
+            frame.append("id:").append(event.id()).append('\n');
+        }
+        if (event.event() != null) {
+            frame.append("event:").append(event.event()).append('\n');
+        }
+        if (event.retry() != null) {
+            frame.append("retry:").append(event.retry().toMillis()).append('\n');
+        }
+        if (event.comment() != null) {
+            appendLines(frame, ":", event.comment());
+        }
+        if (data != null) {
+            appendLines(frame, "data:", data);
+        }
+        return frame.append('\n').toString();
+    }
+
+    // A newline inside a field value would end the field, so each line gets its own prefix
+    private static void appendLines(StringBuilder frame, String prefix, String value) {
+        int start = 0;
+        int end;
+        while ((end = value.indexOf('\n', start)) >= 0) {
+            frame.append(prefix).append(value, start, end).append('\n');
+            start = end + 1;
+        }
+        frame.append(prefix).append(value, start, value.length()).append('\n');
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.notification.gateway;
+
+import com.example.notification.config.ClusterNode;
+import com.example.notification.security.JwtTokenProvider;
+import com.example.notification.security.VerifiedToken;
+import com.example.notification.service.SseEmitterManager;
+import com.example.notification.service.UserPreferencesService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.channel.ChannelOption;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves {@code /api/notifications/events} from a Reactor Netty server on its own port, so idle SSE
+ * connections cost a channel rather than a Tomcat connector slot. The REST API stays on MVC.
+ * Authentication mirrors {@code SseController}: a JWT in the {@code token} query parameter, then the
+ * user's SSE preference, which is looked up off the event loop.
+ */
+@Component
+@ConditionalOnProperty(name = "notification.sse.gateway.enabled", havingValue = "true")
+@Slf4j
+public class SseGatewayServer implements SmartLifecycle {
+
+    static final String EVENTS_PATH = "/api/notifications/events";
+
+    private final SseEmitterManager sseEmitterManager;
+    private final JwtTokenProvider jwtTokenProvider;
+    private final UserPreferencesService userPreferencesService;
+    private final int port;
+    private final int backlog;
+    private final Set<String> allowedOrigins;
+    private final AtomicInteger openStreams = new AtomicInteger();
+    private volatile DisposableServer server;
+
+    public SseGatewayServer(SseEmitterManager sseEmitterManager,
+                            JwtTokenProvider jwtTokenProvider,
+                            UserPreferencesService userPreferencesService,
+                            MeterRegistry meterRegistry,
+                            ClusterNode clusterNode,
+                            @Value("${notification.sse.gateway.port:8081}") int port,
+                            @Value("${notification.sse.gateway.backlog:4096}") int backlog,
+                            @Value("${notification.sse.gateway.allowed-origins:http://localhost:3000,http://localhost:3001}") String[] allowedOrigins) {
+        this.sseEmitterManager = sseEmitterManager;
+        this.jwtTokenProvider = jwtTokenProvider;
+        this.userPreferencesService = userPreferencesService;
+        this.port = port;
+        this.backlog = backlog;
+        this.allowedOrigins = Set.copyOf(Arrays.asList(allowedOrigins));
+        Gauge.builder("sse_gateway_open_streams", openStreams, AtomicInteger::get)
+                .description("SSE streams open on the Netty gateway")
+                .tag("node", clusterNode.getNodeId())
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void start() {
+        server = HttpServer.create()
+                .port(port)
+                .option(ChannelOption.SO_BACKLOG, backlog)
+                .childOption(ChannelOption.SO_KEEPALIVE, true)
+                .childOption(ChannelOption.TCP_NODELAY, true)
+                .route(routes -> routes
+                        .get(EVENTS_PATH, this::stream)
+                        .options(EVENTS_PATH, this::preflight))
+                .bindNow();
+        log.info("SSE gateway listening on port {}", server.port());
+    }
+
+    @Override
+    public void stop() {
+        DisposableServer current = server;
+        if (current != null) {
+            current.disposeNow(Duration.ofSeconds(5));
+            server = null;
+            log.info("SSE gateway stopped");
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return server != null;
+    }
+
+    public int getPort() {
+        DisposableServer current = server;
+        return current != null ? current.port() : port;
+    }
+
+    Publisher<Void> stream(HttpServerRequest request, HttpServerResponse response) {
+        applyCors(request, response);
+        QueryStringDecoder query = new QueryStringDecoder(request.uri());
+        String token = firstParameter(query, "token");
+        Optional<VerifiedToken> verified = jwtTokenProvider.verify(token);
+        if (verified.isEmpty()) {
+            log.warn("SSE gateway connection attempt with invalid or missing token.");
+            return response.status(HttpResponseStatus.UNAUTHORIZED).send();
+        }
+        String userId = verified.get().getUserId();
+        if (userId == null) {
+            log.warn("Could not extract userId from token for SSE gateway connection.");
+            return response.status(HttpResponseStatus.UNAUTHORIZED).send();
+        }
+        // Browsers send the header on automatic reconnects; the query param covers manual reconnects
+        String lastEventIdHeader = request.requestHeaders().get("Last-Event-ID");
+        String lastEventId = lastEventIdHeader != null ? lastEventIdHeader : firstParameter(query, "lastEventId");
+
+        // Usually a cache hit, but a miss queries the database; keep it off the event loop
+        return Mono.fromCallable(() -> isSseEnabled(userId))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(enabled -> enabled
+                        ? open(userId, lastEventId, response)
+                        : response.status(HttpResponseStatus.FORBIDDEN).send().then());
+    }
+
+    private Mono<Void> open(String userId, String lastEventId, HttpServerResponse response) {
+        response.status(HttpResponseStatus.OK)
+                .header(HttpHeaderNames.CONTENT_TYPE, "text/event-stream;charset=UTF-8")
+                .header(HttpHeaderNames.CACHE_CONTROL, "no-cache")
+                .header("X-Accel-Buffering", "no");
+        return response.sendString(sseEmitterManager.addEmitter(userId, lastEventId)
+                        .doOnSubscribe(subscription -> {
+                            openStreams.incrementAndGet();
+                            sseEmitterManager.sendTransientToUser(userId, "notification", "Connection established for user: " + userId);
+                            log.info("SSE gateway stream opened for user: {}", userId);
+                        })
+                        .doFinally(signal -> {
+                            openStreams.decrementAndGet();
+                            log.info("SSE gateway stream closed for user: {} ({})", userId, signal);
+                        })
+                        .map(SseFrameEncoder::encode), StandardCharsets.UTF_8)
+                .then();
+    }
+
+    private Publisher<Void> preflight(HttpServerRequest request, HttpServerResponse response) {
+        applyCors(request, response);
+        return response.status(HttpResponseStatus.NO_CONTENT)
+                .header(HttpHeaderNames.ACCESS_CONTROL_ALLOW_METHODS, "GET, OPTIONS")
+                .header(HttpHeaderNames.ACCESS_CONTROL_ALLOW_HEADERS, "Last-Event-ID, Cache-Control")
+                .header(HttpHeaderNames.ACCESS_CONTROL_MAX_AGE, "3600")
+                .send();
+    }
+
+    // Same origins as CorsConfig; EventSource with credentials needs the exact origin echoed back
+    private void applyCors(HttpServerRequest request, HttpServerResponse response) {
+        String origin = request.requestHeaders().get(HttpHeaderNames.ORIGIN);
+        if (origin != null && allowedOrigins.contains(origin)) {
+            response.header(HttpHeaderNames.ACCESS_CONTROL_ALLOW_ORIGIN, origin)
+                    .header(HttpHeaderNames.ACCESS_CONTROL_ALLOW_CREDENTIALS, "true")
+                    .header(HttpHeaderNames.VARY, HttpHeaderNames.ORIGIN);
+        }
+    }
+
+    private boolean isSseEnabled(String userId) {
+        if (!userPreferencesService.isSseEnabled(userId)) {
+            log.warn("SSE gateway connection denied for user: {}. SSE is disabled in user preferences.", userId);
+            return false;
+        }
+        return true;
+    }
+
+    private static String firstParameter(QueryStringDecoder query, String name) {
+        List<String> values = query.parameters().get(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+}
@@ -0,0 +1,396 @@
+package com.example.notification.kafka;
+
+import com.example.notification.dto.NotificationEvent;
+import com.example.notification.model.NotificationPriority;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.common.errors.SerializationException;
+import org.springframework.kafka.support.JacksonUtils;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact positional encoding of {@link NotificationEvent}. The schema is the field order below: a version
+ * byte, a bitmask of the fields that are set, then each set field in order with no names. Lengths and
+ * integers are varints. Metadata values carry a one-byte type tag, so their Java types (Integer vs Long,
+ * nested maps and lists) come back as the JSON path would produce them. New fields must be appended
+ * under a new version, and {@link NotificationPriority} constants appended, never reordered.
+ * Version 2 added the segment; events without one are still written as version 1, which older consumers read.
+ */
+public final class BinaryNotificationEventCodec implements NotificationEventCodec {
+
+    public static final String NAME = "binary";
+    public static final BinaryNotificationEventCodec INSTANCE = new BinaryNotificationEventCodec();
+
+    static final byte VERSION_1 = 1;
+    static final byte VERSION = 2;
+
+    private static final int EVENT_ID = 1;
+    private static final int TARGET_USER_IDS = 1 << 1;
+    private static final int SOURCE_SERVICE = 1 << 2;
+    private static final int NOTIFICATION_TYPE = 1 << 3;
+    private static final int PRIORITY = 1 << 4;
+    private static final int CONTENT = 1 << 5;
+    private static final int METADATA = 1 << 6;
+    private static final int TAGS = 1 << 7;
+    private static final int TITLE = 1 << 8;
+    private static final int SEGMENT = 1 << 9; // Version 2
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INT = 2;
+    private static final byte LONG = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte TRUE = 5;
+    private static final byte FALSE = 6;
+    private static final byte LIST = 7;
+    private static final byte MAP = 8;
+    private static final byte BIG_INTEGER = 9;
+    private static final byte BIG_DECIMAL = 10;
+    private static final byte JSON = 11; // Any other value, as its JSON text
+
+    private static final NotificationPriority[] PRIORITIES = NotificationPriority.values();
+
+    private final ObjectMapper objectMapper = JacksonUtils.enhancedObjectMapper();
+
+    private BinaryNotificationEventCodec() {
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encode(NotificationEvent event) {
+        int present = (event.getEventId() != null ? EVENT_ID : 0)
+                | (event.getTargetUserIds() != null ? TARGET_USER_IDS : 0)
+                | (event.getSourceService() != null ? SOURCE_SERVICE : 0)
+                | (event.getNotificationType() != null ? NOTIFICATION_TYPE : 0)
+                | (event.getPriority() != null ? PRIORITY : 0)
+                | (event.getContent() != null ? CONTENT : 0)
+                | (event.getMetadata() != null ? METADATA : 0)
+                | (event.getTags() != null ? TAGS : 0)
+                | (event.getTitle() != null ? TITLE : 0)
+                | (event.getSegment() != null ? SEGMENT : 0);
+        Writer out = new Writer(64 + (event.getContent() != null ? event.getContent().length() : 0));
+        out.writeByte((present & SEGMENT) != 0 ? VERSION : VERSION_1);
+        out.writeVarInt(present);
+        if ((present & EVENT_ID) != 0) {
+            out.writeString(event.getEventId());
+        }
+        if ((present & TARGET_USER_IDS) != 0) {
+            out.writeStrings(event.getTargetUserIds());
+        }
+        if ((present & SOURCE_SERVICE) != 0) {
+            out.writeString(event.getSourceService());
+        }
+        if ((present & NOTIFICATION_TYPE) != 0) {
+            out.writeString(event.getNotificationType());
+        }
+        if ((present & PRIORITY) != 0) {
+            out.writeByte(event.getPriority().ordinal());
+        }
+        if ((present & CONTENT) != 0) {
+            out.writeString(event.getContent());
+        }
+        if ((present & METADATA) != 0) {
+            writeValue(out, event.getMetadata());
+        }
+        if ((present & TAGS) != 0) {
+            out.writeStrings(event.getTags());
+        }
+        if ((present & TITLE) != 0) {
+            out.writeString(event.getTitle());
+        }
+        if ((present & SEGMENT) != 0) {
+            out.writeString(event.getSegment());
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public NotificationEvent decode(byte[] data) {
+        try {
+            Reader in = new Reader(data);
+            byte version = in.readByte();
+            if (version != VERSION && version != VERSION_1) {
+                throw new SerializationException("Unsupported binary notification version " + version);
+            }
+            int present = in.readVarInt();
+            NotificationEvent.NotificationEventBuilder event = NotificationEvent.builder();
+            if ((present & EVENT_ID) != 0) {
+                event.eventId(in.readString());
+            }
+            if ((present & TARGET_USER_IDS) != 0) {
+                event.targetUserIds(in.readStrings());
+            }
+            if ((present & SOURCE_SERVICE) != 0) {
+                event.sourceService(in.readString());
+            }
+            if ((present & NOTIFICATION_TYPE) != 0) {
+                event.notificationType(in.readString());
+            }
+            if ((present & PRIORITY) != 0) {
+                event.priority(PRIORITIES[in.readByte()]);
+            }
+            if ((present & CONTENT) != 0) {
+                event.content(in.readString());
+            }
+            if ((present & METADATA) != 0) {
+                event.metadata((Map<String, Object>) readValue(in));
+            }
+            if ((present & TAGS) != 0) {
+                event.tags(in.readStrings());
+            }
+            if ((present & TITLE) != 0) {
+                event.title(in.readString());
+            }
+            if ((present & SEGMENT) != 0) {
+                event.segment(in.readString());
+            }
+            return event.build();
+        } catch (IndexOutOfBoundsException | ClassCastException e) {
+            throw new SerializationException("Malformed binary notification event", e);
+        }
+    }
+
+    private void writeValue(Writer out, Object value) {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String s) {
+            out.writeByte(STRING);
+            out.writeString(s);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            out.writeByte(INT);
+            out.writeVarLong(zigZag(((Number) value).intValue()));
+        } else if (value instanceof Long l) {
+            out.writeByte(LONG);
+            out.writeVarLong(zigZag(l));
+        } else if (value instanceof Double || value instanceof Float) {
+            out.writeByte(DOUBLE);
+            out.writeLong(Double.doubleToLongBits(((Number) value).doubleValue()));
+        } else if (value instanceof Boolean b) {
+            out.writeByte(b ? TRUE : FALSE);
+        } else if (value instanceof List<?> list) {
+            out.writeByte(LIST);
+            out.writeVarInt(list.size());
+            for (Object element : list) {
+                writeValue(out, element);
+            }
+        } else if (value instanceof Map<?, ?> map) {
+            out.writeByte(MAP);
+            out.writeVarInt(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                out.writeString(String.valueOf(entry.getKey()));
+                writeValue(out, entry.getValue());
+            }
+        } else if (value instanceof BigInteger big) {
+            out.writeByte(BIG_INTEGER);
+            out.writeString(big.toString());
+        } else if (value instanceof BigDecimal big) {
+            out.writeByte(BIG_DECIMAL);
+            out.writeString(big.toString());
+        } else {
+            out.writeByte(JSON);
+            try {
+                out.writeString(objectMapper.writeValueAsString(value));
+            } catch (JsonProcessingException e) {
+                throw new SerializationException("Could not encode metadata value of type " + value.getClass().getName(), e);
+            }
+        }
+    }
+
+    private Object readValue(Reader in) {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                return in.readString();
+            case INT:
+                return (int) unZigZag(in.readVarLong());
+            case LONG:
+                return unZigZag(in.readVarLong());
+            case DOUBLE:
+                return Double.longBitsToDouble(in.readLong());
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case LIST: {
+                int size = in.readCount();
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in));
+                }
+                return list;
+            }
+            case MAP: {
+                int size = in.readCount();
+                Map<String, Object> map = new LinkedHashMap<>(Math.max(4, size * 4 / 3 + 1));
+                for (int i = 0; i < size; i++) {
+                    map.put(in.readString(), readValue(in));
+                }
+                return map;
+            }
+            case BIG_INTEGER:
+                return new BigInteger(in.readString());
+            case BIG_DECIMAL:
+                return new BigDecimal(in.readString());
+            case JSON:
+                try {
+                    return objectMapper.readValue(in.readString(), Object.class);
+                } catch (JsonProcessingException e) {
+                    throw new SerializationException("Malformed JSON metadata value", e);
+                }
+            default:
+                throw new SerializationException("Unknown metadata value tag " + tag);
+        }
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static final class Writer {
+        private byte[] buffer;
+        private int position;
+
+        Writer(int initialCapacity) {
+            this.buffer = new byte[initialCapacity];
+        }
+
+        void writeByte(int value) {
+            ensure(1);
+            buffer[position++] = (byte) value;
+        }
+
+        void writeVarInt(int value) {
+            writeVarLong(value & 0xFFFFFFFFL);
+        }
+
+        void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        void writeLong(long value) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[position++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        // Null elements are written as empty strings
+        void writeStrings(List<String> values) {
+            writeVarInt(values.size());
+            for (String value : values) {
+                writeString(value != null ? value : "");
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+
+        private void ensure(int bytes) {
+            if (position + bytes > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + bytes));
+            }
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] buffer;
+        private int position;
+
+        Reader(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        byte readByte() {
+            return buffer[position++];
+        }
+
+        int readVarInt() {
+            long value = readVarLong();
+            if (value < 0 || value > Integer.MAX_VALUE) {
+                throw new SerializationException("Length out of range: " + value);
+            }
+            return (int) value;
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = buffer[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new SerializationException("Malformed varint");
+        }
+
+        long readLong() {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (buffer[position++] & 0xFF);
+            }
+            return value;
+        }
+
+        String readString() {
+            int length = readVarInt();
+            if (length > buffer.length - position) {
+                throw new SerializationException("String length " + length + " exceeds remaining bytes");
+            }
+            String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        // Every element takes at least one byte, which bounds what a corrupt count can allocate
+        int readCount() {
+            int count = readVarInt();
+            if (count > buffer.length - position) {
+                throw new SerializationException("Element count " + count + " exceeds remaining bytes");
+            }
+            return count;
+        }
+
+        List<String> readStrings() {
+            int size = readCount();
+            List<String> values = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                values.add(readString());
+            }
+            return values;
+        }
+    }
+}
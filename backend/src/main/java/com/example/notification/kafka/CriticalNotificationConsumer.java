@@ -1,33 +1,54 @@
 package com.example.notification.kafka;
 
+import com.example.notification.config.NotificationLatencyMetrics;
 import com.example.notification.dto.NotificationEvent;
 import com.example.notification.service.NotificationProcessingOrchestrator; // Updated
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.stereotype.Component;
 
 @Component
 @Slf4j
+@ConditionalOnProperty(name = "notification.kafka.batch.enabled", havingValue = "false", matchIfMissing = true)
 public class CriticalNotificationConsumer {
 
     private final NotificationProcessingOrchestrator orchestrator; // Updated
+    private final NotificationFailureRouter failureRouter;
+    private final NotificationLatencyMetrics latencyMetrics;
 
     @Value("${notification.kafka.topics.critical-notifications}")
     private String criticalNotificationsTopic;
 
-    public CriticalNotificationConsumer(NotificationProcessingOrchestrator orchestrator) { // Updated
+    public CriticalNotificationConsumer(NotificationProcessingOrchestrator orchestrator, NotificationFailureRouter failureRouter,
+                                        NotificationLatencyMetrics latencyMetrics) { // Updated
         this.orchestrator = orchestrator;
+        this.failureRouter = failureRouter;
+        this.latencyMetrics = latencyMetrics;
     }
 
-    @KafkaListener(topics = "${notification.kafka.topics.critical-notifications}", groupId = "${spring.kafka.consumer.group-id}")
-    public void consume(NotificationEvent event) {
+    // Own consumer group and threads, so standard lag or rebalances never stall critical partitions.
+    // Acks may complete out of order; the container only commits the contiguous completed prefix
+    @KafkaListener(topics = "${notification.kafka.topics.critical-notifications}", groupId = "${notification.lanes.critical.group-id}",
+            concurrency = "${notification.lanes.critical.consumer-concurrency:3}",
+            containerFactory = "keyedKafkaListenerContainerFactory")
+    public void consume(ConsumerRecord<String, NotificationEvent> record, Acknowledgment acknowledgment) {
+        NotificationEvent event = record.value();
         log.info("Received critical notification event from topic {}: {}", criticalNotificationsTopic, event);
         try {
-            orchestrator.processNotification(event, true); // Updated
+            orchestrator.processNotificationKeyed(event, true)
+                    .whenComplete((ignored, error) -> {
+                        if (error == null) {
+                            latencyMetrics.recordEndToEnd(event.getPriority(), record.timestamp());
+                        }
+                        failureRouter.settle(record, error, acknowledgment);
+                    });
         } catch (Exception e) {
             log.error("Error processing critical notification event: {}", e.getMessage(), e);
-            // DLQ logic
+            failureRouter.settle(record, e, acknowledgment);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,123 @@
+package com.example.notification.kafka;
+
+import com.example.notification.config.NotificationRetryTopics;
+import com.example.notification.dto.DeadLetterRedriveResult;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Moves records from the dead-letter topic back onto the topic they originally failed on, at a fixed
+ * rate so a re-drive cannot swamp a downstream that has only just recovered. Progress is committed
+ * under its own consumer group after every record, so an interrupted run resumes where it stopped.
+ */
+@Component
+@Slf4j
+public class DeadLetterRedriver {
+
+    private static final Duration POLL_TIMEOUT = Duration.ofSeconds(2);
+
+    private final ConsumerFactory<Object, Object> consumerFactory;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final NotificationRetryTopics retryTopics;
+    private final String groupId;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public DeadLetterRedriver(ConsumerFactory<Object, Object> consumerFactory,
+                              KafkaTemplate<String, Object> kafkaTemplate,
+                              NotificationRetryTopics retryTopics,
+                              @Value("${notification.kafka.retry.redrive-group-id:notification-dlq-redrive}") String groupId) {
+        this.consumerFactory = consumerFactory;
+        this.kafkaTemplate = kafkaTemplate;
+        this.retryTopics = retryTopics;
+        this.groupId = groupId;
+    }
+
+    /**
+     * Re-drive up to {@code maxRecords} dead letters at no more than {@code ratePerSecond}.
+     * @throws IllegalStateException if another re-drive is already running
+     */
+    public DeadLetterRedriveResult redrive(int maxRecords, int ratePerSecond) {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("A dead-letter re-drive is already running");
+        }
+        long started = System.nanoTime();
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, ratePerSecond);
+        int redriven = 0;
+        int skipped = 0;
+        Properties overrides = new Properties();
+        overrides.setProperty(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        overrides.setProperty(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, String.valueOf(Math.max(1, Math.min(maxRecords, 100))));
+        try (Consumer<Object, Object> consumer = consumerFactory.createConsumer(groupId, "dlq-redrive", null, overrides)) {
+            consumer.subscribe(List.of(retryTopics.getDeadLetterTopic()));
+            long nextSendAt = System.nanoTime();
+            polling:
+            while (redriven + skipped < maxRecords) {
+                ConsumerRecords<Object, Object> records = consumer.poll(POLL_TIMEOUT);
+                if (records.isEmpty()) {
+                    break;
+                }
+                for (ConsumerRecord<Object, Object> record : records) {
+                    if (redriven + skipped >= maxRecords) {
+                        // The rest of this poll is uncommitted and will be read by the next run
+                        break polling;
+                    }
+                    String originalTopic = originalTopicOf(record);
+                    if (record.value() == null || originalTopic == null) {
+                        skipped++;
+                    } else {
+                        LockSupport.parkNanos(nextSendAt - System.nanoTime());
+                        nextSendAt = Math.max(nextSendAt, System.nanoTime()) + intervalNanos;
+                        kafkaTemplate.send(originalTopic, (String) record.key(), record.value()).get(30, TimeUnit.SECONDS);
+                        redriven++;
+                    }
+                    consumer.commitSync(Map.of(new TopicPartition(record.topic(), record.partition()),
+                            new OffsetAndMetadata(record.offset() + 1)));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Dead-letter re-drive interrupted after {} records", redriven);
+        } catch (Exception e) {
+            log.error("Dead-letter re-drive stopped after {} records: {}", redriven, e.getMessage(), e);
+        } finally {
+            running.set(false);
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        log.info("Dead-letter re-drive finished: {} republished, {} skipped in {} ms", redriven, skipped, elapsedMs);
+        return DeadLetterRedriveResult.builder()
+                .redriven(redriven)
+                .skipped(skipped)
+                .elapsedMs(elapsedMs)
+                .build();
+    }
+
+    // The failing hop may have been a retry tier; re-drive to its main topic so the record gets a full set of retries
+    private String originalTopicOf(ConsumerRecord<?, ?> record) {
+        Header header = record.headers().lastHeader(KafkaHeaders.DLT_ORIGINAL_TOPIC);
+        if (header == null) {
+            return null;
+        }
+        String topic = retryTopics.mainTopicOf(new String(header.value(), StandardCharsets.UTF_8));
+        return retryTopics.isNotificationTopic(topic) ? topic : null;
+    }
+}
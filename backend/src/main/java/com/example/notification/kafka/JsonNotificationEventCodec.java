@@ -0,0 +1,46 @@
+package com.example.notification.kafka;
+
+import com.example.notification.dto.NotificationEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.common.errors.SerializationException;
+import org.springframework.kafka.support.JacksonUtils;
+
+import java.io.IOException;
+
+/**
+ * Plain JSON, the same bytes Spring's {@code JsonSerializer} writes. Lets producers that can't set Spring's
+ * type headers publish JSON by naming this codec in the {@link NotificationEventCodec#HEADER} header.
+ */
+public final class JsonNotificationEventCodec implements NotificationEventCodec {
+
+    public static final String NAME = "json";
+    public static final JsonNotificationEventCodec INSTANCE = new JsonNotificationEventCodec();
+
+    private final ObjectMapper objectMapper = JacksonUtils.enhancedObjectMapper();
+
+    private JsonNotificationEventCodec() {
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encode(NotificationEvent event) {
+        try {
+            return objectMapper.writeValueAsBytes(event);
+        } catch (IOException e) {
+            throw new SerializationException("Could not encode notification event as JSON", e);
+        }
+    }
+
+    @Override
+    public NotificationEvent decode(byte[] data) {
+        try {
+            return objectMapper.readValue(data, NotificationEvent.class);
+        } catch (IOException e) {
+            throw new SerializationException("Could not decode JSON notification event", e);
+        }
+    }
+}
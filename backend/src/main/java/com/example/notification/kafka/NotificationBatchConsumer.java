@@ -0,0 +1,89 @@
+package com.example.notification.kafka;
+
+import com.example.notification.config.NotificationLatencyMetrics;
+import com.example.notification.dto.NotificationEvent;
+import com.example.notification.service.NotificationProcessingOrchestrator;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.log.LogAccessor;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.serializer.DeserializationException;
+import org.springframework.kafka.support.serializer.SerializationUtils;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Batch counterpart of {@link NotificationConsumer} and {@link CriticalNotificationConsumer}: each poll is
+ * persisted in one transaction and its offsets are committed once the listener returns.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "notification.kafka.batch.enabled", havingValue = "true")
+public class NotificationBatchConsumer {
+
+    private static final LogAccessor HEADER_LOG = new LogAccessor(NotificationBatchConsumer.class);
+
+    private final NotificationProcessingOrchestrator orchestrator;
+    private final NotificationFailureRouter failureRouter;
+    private final NotificationLatencyMetrics latencyMetrics;
+
+    public NotificationBatchConsumer(NotificationProcessingOrchestrator orchestrator, NotificationFailureRouter failureRouter,
+                                     NotificationLatencyMetrics latencyMetrics) {
+        this.orchestrator = orchestrator;
+        this.failureRouter = failureRouter;
+        this.latencyMetrics = latencyMetrics;
+    }
+
+    @KafkaListener(topics = "${notification.kafka.topics.notifications}", groupId = "${spring.kafka.consumer.group-id}",
+            containerFactory = "batchKafkaListenerContainerFactory")
+    public void consume(List<ConsumerRecord<String, NotificationEvent>> records) {
+        log.info("Received batch of {} notification events", records.size());
+        process(records, false);
+    }
+
+    // Own consumer group and threads, so standard lag or rebalances never stall critical partitions
+    @KafkaListener(topics = "${notification.kafka.topics.critical-notifications}", groupId = "${notification.lanes.critical.group-id}",
+            concurrency = "${notification.lanes.critical.consumer-concurrency:3}",
+            containerFactory = "batchKafkaListenerContainerFactory")
+    public void consumeCritical(List<ConsumerRecord<String, NotificationEvent>> records) {
+        log.info("Received batch of {} critical notification events", records.size());
+        process(records, true);
+    }
+
+    void process(List<ConsumerRecord<String, NotificationEvent>> records, boolean isCritical) {
+        List<ConsumerRecord<String, NotificationEvent>> readable = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, NotificationEvent> record : records) {
+            if (record.value() == null) {
+                // Batch listeners receive poison pills as null values; the cause is in the headers
+                DeserializationException cause = SerializationUtils.getExceptionFromHeader(record,
+                        SerializationUtils.VALUE_DESERIALIZER_EXCEPTION_HEADER, HEADER_LOG);
+                failureRouter.deadLetter(record, cause != null ? cause : new IllegalArgumentException("Empty notification record"));
+            } else {
+                readable.add(record);
+            }
+        }
+        try {
+            orchestrator.processBatch(readable.stream().map(ConsumerRecord::value).toList(), isCritical);
+            readable.forEach(record -> latencyMetrics.recordEndToEnd(record.value().getPriority(), record.timestamp()));
+        } catch (Exception e) {
+            // The batch transaction rolled back; fall back to one record at a time so one bad event doesn't sink the rest
+            log.error("Batch of {} events failed, retrying record by record: {}", readable.size(), e.getMessage(), e);
+            for (ConsumerRecord<String, NotificationEvent> record : readable) {
+                try {
+                    orchestrator.processNotificationKeyed(record.value(), isCritical).join();
+                    latencyMetrics.recordEndToEnd(record.value().getPriority(), record.timestamp());
+                } catch (Exception recordError) {
+                    log.error("Error processing notification event: {}", recordError.getMessage(), recordError);
+                    if (NotificationFailureRouter.unwrap(recordError) instanceof IllegalArgumentException) {
+                        failureRouter.deadLetter(record, recordError);
+                    } else {
+                        failureRouter.retry(record, recordError);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -1,33 +1,52 @@
 package com.example.notification.kafka;
 
+import com.example.notification.config.NotificationLatencyMetrics;
 import com.example.notification.dto.NotificationEvent;
 import com.example.notification.service.NotificationProcessingOrchestrator; // Updated
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.stereotype.Component;
 
 @Component
 @Slf4j
+@ConditionalOnProperty(name = "notification.kafka.batch.enabled", havingValue = "false", matchIfMissing = true)
 public class NotificationConsumer {
 
     private final NotificationProcessingOrchestrator orchestrator; // Updated
+    private final NotificationFailureRouter failureRouter;
+    private final NotificationLatencyMetrics latencyMetrics;
 
     @Value("${notification.kafka.topics.notifications}")
     private String notificationsTopic;
 
-    public NotificationConsumer(NotificationProcessingOrchestrator orchestrator) { // Updated
+    public NotificationConsumer(NotificationProcessingOrchestrator orchestrator, NotificationFailureRouter failureRouter,
+                                     NotificationLatencyMetrics latencyMetrics) { // Updated
         this.orchestrator = orchestrator;
+        this.failureRouter = failureRouter;
+        this.latencyMetrics = latencyMetrics;
     }
 
-    @KafkaListener(topics = "${notification.kafka.topics.notifications}", groupId = "${spring.kafka.consumer.group-id}")
-    public void consume(NotificationEvent event) {
+    // Acks may complete out of order; the container only commits the contiguous completed prefix
+    @KafkaListener(topics = "${notification.kafka.topics.notifications}", groupId = "${spring.kafka.consumer.group-id}",
+            containerFactory = "keyedKafkaListenerContainerFactory")
+    public void consume(ConsumerRecord<String, NotificationEvent> record, Acknowledgment acknowledgment) {
+        NotificationEvent event = record.value();
         log.info("Received notification event from topic {}: {}", notificationsTopic, event);
         try {
-            orchestrator.processNotification(event, false); // Updated
+            orchestrator.processNotificationKeyed(event, false)
+                    .whenComplete((ignored, error) -> {
+                        if (error == null) {
+                            latencyMetrics.recordEndToEnd(event.getPriority(), record.timestamp());
+                        }
+                        failureRouter.settle(record, error, acknowledgment);
+                    });
         } catch (Exception e) {
             log.error("Error processing notification event: {}", e.getMessage(), e);
-            // DLQ logic
+            failureRouter.settle(record, e, acknowledgment);
         }
     }
-}
\ No newline at end of file
+}
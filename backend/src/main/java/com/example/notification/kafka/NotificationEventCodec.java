@@ -0,0 +1,34 @@
+package com.example.notification.kafka;
+
+import com.example.notification.dto.NotificationEvent;
+import org.apache.kafka.common.errors.SerializationException;
+
+/**
+ * Wire format for {@link NotificationEvent} values on the notification topics. The codec a record was
+ * written with travels in the {@link #HEADER} record header, so producers on different codecs can share
+ * a topic and consumers decode each record accordingly.
+ */
+public interface NotificationEventCodec {
+
+    /** Name of the codec a notification record was encoded with. Records without it are Spring JSON. */
+    String HEADER = "notification-codec";
+
+    String name();
+
+    byte[] encode(NotificationEvent event);
+
+    NotificationEvent decode(byte[] data);
+
+    /**
+     * @throws SerializationException for an unknown codec name
+     */
+    static NotificationEventCodec forName(String name) {
+        if (JsonNotificationEventCodec.NAME.equalsIgnoreCase(name)) {
+            return JsonNotificationEventCodec.INSTANCE;
+        }
+        if (BinaryNotificationEventCodec.NAME.equalsIgnoreCase(name)) {
+            return BinaryNotificationEventCodec.INSTANCE;
+        }
+        throw new SerializationException("Unknown notification codec: " + name);
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.notification.kafka;
+
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Consumer value deserializer, used as the {@code ErrorHandlingDeserializer} delegate. Records carrying the
+ * {@link NotificationEventCodec#HEADER} header are decoded with that codec; anything else goes to Spring's
+ * {@link JsonDeserializer}, which is configured as before (trusted packages, type headers).
+ */
+public class NotificationEventDeserializer implements Deserializer<Object> {
+
+    private final JsonDeserializer<Object> json = new JsonDeserializer<>();
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        json.configure(configs, isKey);
+    }
+
+    @Override
+    public Object deserialize(String topic, byte[] data) {
+        return json.deserialize(topic, data);
+    }
+
+    @Override
+    public Object deserialize(String topic, Headers headers, byte[] data) {
+        Header codec = headers.lastHeader(NotificationEventCodec.HEADER);
+        if (codec == null || data == null) {
+            return json.deserialize(topic, headers, data);
+        }
+        return NotificationEventCodec.forName(new String(codec.value(), StandardCharsets.UTF_8)).decode(data);
+    }
+
+    @Override
+    public void close() {
+        json.close();
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.notification.kafka;
+
+import com.example.notification.dto.NotificationEvent;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Producer value serializer. {@link NotificationEvent} values are written with the codec named by the
+ * {@value #CODEC_CONFIG} producer property and tagged with the {@link NotificationEventCodec#HEADER} header.
+ * With the default {@code json} codec, and for every other value type, this is Spring's {@link JsonSerializer}
+ * unchanged, so consumers that predate the codec header can still read what is produced.
+ */
+public class NotificationEventSerializer implements Serializer<Object> {
+
+    public static final String CODEC_CONFIG = "notification.codec";
+
+    private final JsonSerializer<Object> json = new JsonSerializer<>();
+    private NotificationEventCodec codec = JsonNotificationEventCodec.INSTANCE;
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        json.configure(configs, isKey);
+        Object name = configs.get(CODEC_CONFIG);
+        if (name != null && !name.toString().isBlank()) {
+            codec = NotificationEventCodec.forName(name.toString().trim());
+        }
+    }
+
+    @Override
+    public byte[] serialize(String topic, Object data) {
+        return json.serialize(topic, data);
+    }
+
+    @Override
+    public byte[] serialize(String topic, Headers headers, Object data) {
+        // A re-published record (retry tier, dead letter) arrives with the header of its previous encoding
+        headers.remove(NotificationEventCodec.HEADER);
+        if (data instanceof NotificationEvent event && codec != JsonNotificationEventCodec.INSTANCE) {
+            headers.add(NotificationEventCodec.HEADER, codec.name().getBytes(StandardCharsets.UTF_8));
+            return codec.encode(event);
+        }
+        return json.serialize(topic, headers, data);
+    }
+
+    @Override
+    public void close() {
+        json.close();
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.notification.kafka;
+
+import com.example.notification.config.ClusterNode;
+import com.example.notification.config.NotificationRetryTopics;
+import com.example.notification.dto.NotificationEvent;
+import com.example.notification.service.RecipientsFailedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.record.TimestampType;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Hands failed notification records on without blocking the partition they came from: to the next retry
+ * tier, or to the dead-letter topic once the tiers are exhausted or the record can never succeed.
+ */
+@Component
+@Slf4j
+public class NotificationFailureRouter {
+
+    private final DeadLetterPublishingRecoverer retryRecoverer;
+    private final DeadLetterPublishingRecoverer deadLetterRecoverer;
+    private final NotificationRetryTopics retryTopics;
+    private final Counter retried;
+    private final Counter deadLettered;
+
+    public NotificationFailureRouter(@Qualifier("notificationRetryRecoverer") DeadLetterPublishingRecoverer retryRecoverer,
+                                     @Qualifier("notificationDeadLetterRecoverer") DeadLetterPublishingRecoverer deadLetterRecoverer,
+                                     NotificationRetryTopics retryTopics,
+                                     MeterRegistry meterRegistry,
+                                     ClusterNode clusterNode) {
+        this.retryRecoverer = retryRecoverer;
+        this.deadLetterRecoverer = deadLetterRecoverer;
+        this.retryTopics = retryTopics;
+        this.retried = Counter.builder("notification_retries_total")
+                .description("Notification records sent to a retry tier")
+                .tag("node", clusterNode.getNodeId())
+                .register(meterRegistry);
+        this.deadLettered = Counter.builder("notification_dead_letters_total")
+                .description("Notification records sent to the dead-letter topic")
+                .tag("node", clusterNode.getNodeId())
+                .register(meterRegistry);
+    }
+
+    /**
+     * Finish with a record from a notification topic: dead-letter it if it is invalid, retry it if processing
+     * failed, then acknowledge it either way so the partition keeps moving.
+     * @param failure the processing failure, or null on success
+     */
+    public void settle(ConsumerRecord<String, NotificationEvent> record, Throwable failure, Acknowledgment acknowledgment) {
+        try {
+            if (unwrap(failure) instanceof IllegalArgumentException) {
+                deadLetter(record, failure);
+            } else if (failure != null) {
+                retry(record, failure);
+            }
+        } catch (RuntimeException e) {
+            log.error("Could not hand failed record {}-{}@{} on; it is dropped: {}",
+                    record.topic(), record.partition(), record.offset(), e.getMessage(), e);
+        } finally {
+            acknowledgment.acknowledge();
+        }
+    }
+
+    /**
+     * Schedule another attempt. When only some recipients failed, the retried event targets just those.
+     */
+    public void retry(ConsumerRecord<String, NotificationEvent> record, Throwable failure) {
+        Throwable cause = unwrap(failure);
+        NotificationEvent event = record.value();
+        if (cause instanceof RecipientsFailedException recipientsFailed) {
+            event = event.toBuilder().targetUserIds(recipientsFailed.getFailedUserIds()).build();
+        }
+        String destination = retryTopics.nextTopic(record.topic());
+        log.warn("Notification event {} failed on {}; sending to {}: {}",
+                event.getEventId(), record.topic(), destination, cause.getMessage());
+        publish(retryRecoverer, withValue(record, event), cause);
+        if (destination.equals(retryTopics.getDeadLetterTopic())) {
+            deadLettered.increment();
+        } else {
+            retried.increment();
+        }
+    }
+
+    /**
+     * Skip the retry tiers: the record is invalid and no later attempt would succeed.
+     */
+    public void deadLetter(ConsumerRecord<String, ?> record, Throwable failure) {
+        Throwable cause = unwrap(failure);
+        log.error("Dead-lettering record {}-{}@{}: {}", record.topic(), record.partition(), record.offset(), cause.getMessage());
+        publish(deadLetterRecoverer, record, cause);
+        deadLettered.increment();
+    }
+
+    private static void publish(DeadLetterPublishingRecoverer recoverer, ConsumerRecord<?, ?> record, Throwable cause) {
+        Exception exception = cause instanceof Exception e ? e : new IllegalStateException(cause);
+        recoverer.accept(record, exception);
+    }
+
+    // Same coordinates and headers as the failed record, so the recoverer records where it came from
+    private static ConsumerRecord<String, NotificationEvent> withValue(ConsumerRecord<String, NotificationEvent> record,
+                                                                      NotificationEvent value) {
+        if (value == record.value()) {
+            return record;
+        }
+        return new ConsumerRecord<>(record.topic(), record.partition(), record.offset(), record.timestamp(),
+                TimestampType.CREATE_TIME, record.serializedKeySize(), record.serializedValueSize(),
+                record.key(), value, record.headers(), Optional.empty());
+    }
+
+    static Throwable unwrap(Throwable failure) {
+        Throwable cause = failure;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.notification.kafka;
+
+import com.example.notification.config.ClusterNode;
+import com.example.notification.dto.NotificationEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.MicrometerProducerListener;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Producer for events accepted over REST, separate from the shared template so its batching settings don't
+ * add latency to presence and SSE delivery traffic. Records linger briefly and are compressed per batch;
+ * idempotence keeps retried sends from duplicating or reordering records within a partition.
+ * Deliberately not a {@code KafkaTemplate} bean, which would make Boot back off its own.
+ */
+@Component
+@Slf4j
+public class NotificationIngestProducer {
+
+    private final DefaultKafkaProducerFactory<String, Object> producerFactory;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Timer sendLatency;
+    private final Counter sendFailures;
+
+    public NotificationIngestProducer(KafkaProperties kafkaProperties,
+                                      MeterRegistry meterRegistry,
+                                      ClusterNode clusterNode,
+                                      @Value("${notification.ingest.producer.linger-ms:10}") int lingerMs,
+                                      @Value("${notification.ingest.producer.batch-size:65536}") int batchSize,
+                                      @Value("${notification.ingest.producer.compression-type:lz4}") String compressionType,
+                                      @Value("${notification.ingest.producer.max-block-ms:2000}") long maxBlockMs) {
+        Map<String, Object> configs = kafkaProperties.buildProducerProperties(null);
+        configs.put(ProducerConfig.LINGER_MS_CONFIG, lingerMs);
+        configs.put(ProducerConfig.BATCH_SIZE_CONFIG, batchSize);
+        configs.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType);
+        configs.put(ProducerConfig.ACKS_CONFIG, "all");
+        configs.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        // A full buffer or an unreachable broker fails the request quickly instead of holding it
+        configs.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, maxBlockMs);
+        configs.put(ProducerConfig.CLIENT_ID_CONFIG, "notification-ingest-" + clusterNode.getNodeId());
+        this.producerFactory = new DefaultKafkaProducerFactory<>(configs);
+        // Kafka's own producer metrics: record-queue-time, buffer-available-bytes, batch-size-avg, ...
+        producerFactory.addListener(new MicrometerProducerListener<>(meterRegistry,
+                List.of(Tag.of("node", clusterNode.getNodeId()), Tag.of("producer", "ingest"))));
+        this.kafkaTemplate = new KafkaTemplate<>(producerFactory);
+
+        this.sendLatency = Timer.builder("notification_ingest_send_latency")
+                .description("Time from handing an ingested event to the producer until the broker acknowledges it")
+                .tag("node", clusterNode.getNodeId())
+                .publishPercentiles(0.5, 0.99)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("notification_ingest_in_flight", inFlight, AtomicInteger::get)
+                .description("Ingested events sent but not yet acknowledged by the broker")
+                .tag("node", clusterNode.getNodeId())
+                .register(meterRegistry);
+        this.sendFailures = Counter.builder("notification_ingest_failures_total")
+                .description("Ingested events the producer could not deliver")
+                .tag("node", clusterNode.getNodeId())
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queue one record. Returns as soon as the record is in the producer's buffer.
+     * @throws org.springframework.kafka.KafkaException if the buffer stays full or metadata is unavailable
+     *         for longer than {@code max-block-ms}
+     */
+    public CompletableFuture<SendResult<String, Object>> send(String topic, String key, NotificationEvent event) {
+        long started = System.nanoTime();
+        inFlight.incrementAndGet();
+        CompletableFuture<SendResult<String, Object>> sent;
+        try {
+            sent = kafkaTemplate.send(topic, key, event);
+        } catch (RuntimeException e) {
+            inFlight.decrementAndGet();
+            sendFailures.increment();
+            throw e;
+        }
+        return sent.whenComplete((result, error) -> {
+            inFlight.decrementAndGet();
+            if (error != null) {
+                sendFailures.increment();
+                log.error("Could not publish event {} for {} to {}: {}", event.getEventId(), key, topic, error.getMessage());
+            } else {
+                sendLatency.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Sends still lingering in the buffer are flushed on close
+        producerFactory.destroy();
+    }
+}
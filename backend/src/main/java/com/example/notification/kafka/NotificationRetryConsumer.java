@@ -0,0 +1,85 @@
+package com.example.notification.kafka;
+
+import com.example.notification.config.NotificationRetryTopics;
+import com.example.notification.dto.NotificationEvent;
+import com.example.notification.service.NotificationProcessingOrchestrator;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.listener.AcknowledgingMessageListener;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Consumes the retry tiers. Each tier gets its own container: a record that is not yet due is nacked,
+ * which pauses only that tier's consumer until the record's backoff has elapsed. The main topics never wait.
+ */
+@Component
+@Slf4j
+public class NotificationRetryConsumer implements SmartLifecycle {
+
+    private final NotificationProcessingOrchestrator orchestrator;
+    private final NotificationFailureRouter failureRouter;
+    private final NotificationRetryTopics retryTopics;
+    private final ConcurrentKafkaListenerContainerFactory<Object, Object> containerFactory;
+    private final List<ConcurrentMessageListenerContainer<Object, Object>> containers = new ArrayList<>();
+
+    public NotificationRetryConsumer(NotificationProcessingOrchestrator orchestrator,
+                                     NotificationFailureRouter failureRouter,
+                                     NotificationRetryTopics retryTopics,
+                                     @Qualifier("retryKafkaListenerContainerFactory") ConcurrentKafkaListenerContainerFactory<Object, Object> containerFactory) {
+        this.orchestrator = orchestrator;
+        this.failureRouter = failureRouter;
+        this.retryTopics = retryTopics;
+        this.containerFactory = containerFactory;
+    }
+
+    @Override
+    public synchronized void start() {
+        for (String retryTopic : retryTopics.getRetryTopics()) {
+            ConcurrentMessageListenerContainer<Object, Object> container = containerFactory.createContainer(retryTopic);
+            container.setBeanName("notificationRetry-" + retryTopic);
+            container.setupMessageListener((AcknowledgingMessageListener<String, NotificationEvent>) this::consume);
+            container.start();
+            containers.add(container);
+        }
+        log.info("Consuming {} notification retry tiers", containers.size());
+    }
+
+    @Override
+    public synchronized void stop() {
+        containers.forEach(ConcurrentMessageListenerContainer::stop);
+        containers.clear();
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return !containers.isEmpty();
+    }
+
+    void consume(ConsumerRecord<String, NotificationEvent> record, Acknowledgment acknowledgment) {
+        long waitMs = record.timestamp() + retryTopics.backoffMs(record.topic()) - System.currentTimeMillis();
+        if (waitMs > 0) {
+            // Everything behind this record in the tier was written later, so nothing else is due yet either
+            acknowledgment.nack(Duration.ofMillis(waitMs));
+            return;
+        }
+        NotificationEvent event = record.value();
+        log.info("Retrying notification event {} from {} (attempt {})",
+                event.getEventId(), record.topic(), retryTopics.attemptsBefore(record.topic()) + 1);
+        Throwable failure = null;
+        try {
+            orchestrator.processNotificationKeyed(event, retryTopics.isCritical(record.topic())).join();
+        } catch (Exception e) {
+            failure = e;
+        }
+        failureRouter.settle(record, failure, acknowledgment);
+    }
+}
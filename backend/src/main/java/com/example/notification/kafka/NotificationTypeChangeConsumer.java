@@ -0,0 +1,27 @@
+package com.example.notification.kafka;
+
+import com.example.notification.dto.NotificationTypeChangedEvent;
+import com.example.notification.service.NotificationTypeService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reloads this node's notification types when another node changes one.
+ * Every node uses its own consumer group, so each one sees every change.
+ */
+@Component
+@ConditionalOnProperty(name = "notification.cluster.enabled", havingValue = "true")
+public class NotificationTypeChangeConsumer {
+
+    private final NotificationTypeService notificationTypeService;
+
+    public NotificationTypeChangeConsumer(NotificationTypeService notificationTypeService) {
+        this.notificationTypeService = notificationTypeService;
+    }
+
+    @KafkaListener(topics = "${notification.kafka.topics.type-changes}", groupId = "notification-types-#{@clusterNode.nodeId}")
+    public void consume(NotificationTypeChangedEvent event) {
+        notificationTypeService.applyRemoteChange(event);
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.notification.kafka;
+
+import com.example.notification.dto.SseDeliveryMessage;
+import com.example.notification.service.SseClusterRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Receives SSE frames that other nodes addressed to users connected to this node.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "notification.cluster.enabled", havingValue = "true")
+public class SseDeliveryConsumer {
+
+    private final SseClusterRouter sseClusterRouter;
+
+    public SseDeliveryConsumer(SseClusterRouter sseClusterRouter) {
+        this.sseClusterRouter = sseClusterRouter;
+    }
+
+    @KafkaListener(topics = "#{@clusterNode.deliveryTopic}", groupId = "sse-delivery-#{@clusterNode.nodeId}")
+    public void consume(SseDeliveryMessage message) {
+        log.debug("Received forwarded {} event for user {} from node {}", message.getEventName(), message.getUserId(), message.getOriginNodeId());
+        sseClusterRouter.deliverForwarded(message);
+    }
+}
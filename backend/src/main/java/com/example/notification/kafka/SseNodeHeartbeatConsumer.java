@@ -0,0 +1,39 @@
+package com.example.notification.kafka;
+
+import com.example.notification.dto.SseNodeHeartbeat;
+import com.example.notification.service.SsePresenceRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Tracks which nodes are alive. Only heartbeats sent from now on say anything about that, so every
+ * assignment starts at the end of the topic.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "notification.cluster.enabled", havingValue = "true")
+public class SseNodeHeartbeatConsumer implements ConsumerSeekAware {
+
+    private final SsePresenceRegistry presenceRegistry;
+
+    public SseNodeHeartbeatConsumer(SsePresenceRegistry presenceRegistry) {
+        this.presenceRegistry = presenceRegistry;
+    }
+
+    @KafkaListener(topics = "${notification.kafka.topics.sse-heartbeats}", groupId = "sse-heartbeat-#{@clusterNode.nodeId}")
+    public void consume(SseNodeHeartbeat heartbeat) {
+        presenceRegistry.applyHeartbeat(heartbeat);
+    }
+
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        log.debug("Following node heartbeats from the end of {}", assignments.keySet());
+        callback.seekToEnd(assignments.keySet());
+    }
+}
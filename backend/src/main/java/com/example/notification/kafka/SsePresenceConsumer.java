@@ -0,0 +1,49 @@
+package com.example.notification.kafka;
+
+import com.example.notification.dto.SsePresenceEvent;
+import com.example.notification.service.SsePresenceRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Builds this node's view of remote SSE presence.
+ * Every node uses its own consumer group and replays the compacted presence topic from the
+ * beginning on assignment, so a restarted node immediately knows where everyone is connected.
+ * A record without a value is a disconnect tombstone.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "notification.cluster.enabled", havingValue = "true")
+public class SsePresenceConsumer implements ConsumerSeekAware {
+
+    private final SsePresenceRegistry presenceRegistry;
+
+    public SsePresenceConsumer(SsePresenceRegistry presenceRegistry) {
+        this.presenceRegistry = presenceRegistry;
+    }
+
+    @KafkaListener(topics = "${notification.kafka.topics.sse-presence}", groupId = "sse-presence-#{@clusterNode.nodeId}")
+    public void consume(ConsumerRecord<String, SsePresenceEvent> record) {
+        if (record.value() != null) {
+            presenceRegistry.apply(record.value());
+            return;
+        }
+        Header node = record.headers().lastHeader(SsePresenceRegistry.NODE_HEADER);
+        presenceRegistry.applyDeparture(record.key(), node != null ? new String(node.value(), StandardCharsets.UTF_8) : null);
+    }
+
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        log.info("Rebuilding SSE presence from the beginning of {}", assignments.keySet());
+        callback.seekToBeginning(assignments.keySet());
+    }
+}
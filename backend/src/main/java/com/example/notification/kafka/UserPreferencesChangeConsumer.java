@@ -0,0 +1,27 @@
+package com.example.notification.kafka;
+
+import com.example.notification.dto.UserPreferencesChangedEvent;
+import com.example.notification.service.UserPreferencesService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Drops this node's cached preferences of users whose preferences were saved on another node.
+ * Every node uses its own consumer group, so each one sees every change.
+ */
+@Component
+@ConditionalOnProperty(name = "notification.cluster.enabled", havingValue = "true")
+public class UserPreferencesChangeConsumer {
+
+    private final UserPreferencesService userPreferencesService;
+
+    public UserPreferencesChangeConsumer(UserPreferencesService userPreferencesService) {
+        this.userPreferencesService = userPreferencesService;
+    }
+
+    @KafkaListener(topics = "${notification.kafka.topics.preferences-changes}", groupId = "preferences-#{@clusterNode.nodeId}")
+    public void consume(UserPreferencesChangedEvent event) {
+        userPreferencesService.applyRemoteChange(event);
+    }
+}
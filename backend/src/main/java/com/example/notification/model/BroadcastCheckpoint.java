@@ -0,0 +1,45 @@
+package com.example.notification.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * How far an "ALL" broadcast has got. Recipients are processed in username order, so a broadcast that stopped
+ * part way resumes after {@link #lastUserId}.
+ */
+@Data
+@Entity
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "broadcast_checkpoints")
+public class BroadcastCheckpoint {
+
+    @Id
+    @Column(name = "event_id")
+    private String eventId;
+
+    @Column(name = "last_user_id")
+    private String lastUserId;
+
+    @Column(name = "persisted_count")
+    private long persistedCount;
+
+    // Creation time of every notification of the broadcast, also across a resume
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+
+    // Two consumers working on one broadcast cannot both advance it
+    @Version
+    private Long version;
+}
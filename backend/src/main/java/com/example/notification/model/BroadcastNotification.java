@@ -0,0 +1,55 @@
+package com.example.notification.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import lombok.NoArgsConstructor;
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * An "ALL" notification stored once for every user that exists when it is created. Whether a user has read it
+ * is derived from {@code broadcast_receipts}, so nothing is written per user until they read it.
+ */
+@Data
+@Entity
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "broadcast_notifications")
+public class BroadcastNotification {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "event_id")
+    private String eventId;
+
+    // Never loaded on reads; responses look the code up by the reference's id
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "notification_type_id")
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private NotificationType notificationType;
+
+    @Column(name = "source_service")
+    private String sourceService;
+
+    private String title;
+    private String content;
+
+    @Enumerated(EnumType.STRING)
+    private NotificationPriority priority;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Column(columnDefinition = "TEXT")
+    private String metadata;
+
+    @Column(columnDefinition = "TEXT")
+    private String tags;
+}
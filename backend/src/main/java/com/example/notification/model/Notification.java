@@ -2,6 +2,8 @@ package com.example.notification.model;
 
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 import lombok.AllArgsConstructor;
 import lombok.NoArgsConstructor;
 import jakarta.persistence.*;
@@ -15,7 +17,7 @@ import java.time.LocalDateTime;
 @Table(name = "notifications", uniqueConstraints = @UniqueConstraint(columnNames = {"eventId", "userId"}))
 public class Notification {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @PooledSequence("notifications_seq")
     private Long id;
 
     @Column(name = "user_id")
@@ -26,8 +28,11 @@ public class Notification {
     @Column(name = "source_service")
     private String sourceService;
     
-    @ManyToOne
+    // Lazy: read paths take the code from NotificationTypeService by id, which the reference holds unloaded
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "notification_type_id")
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private NotificationType notificationType;
     
     private String title;
@@ -54,7 +59,10 @@ public class Notification {
 
     @PrePersist
     protected void onCreate() {
-        createdAt = LocalDateTime.now();
+        // Broadcast rows share one creation time set by the caller
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
         if (readStatus == null) {
             readStatus = NotificationStatus.UNREAD;
         }
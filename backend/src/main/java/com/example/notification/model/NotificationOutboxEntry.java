@@ -0,0 +1,51 @@
+package com.example.notification.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * One pending delivery of a notification over one channel. Written in the transaction that inserts the
+ * notification and deleted once the relay has delivered it.
+ */
+@Data
+@Entity
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "notification_outbox")
+public class NotificationOutboxEntry {
+
+    public enum Channel { SSE, EMAIL }
+
+    @Id
+    @PooledSequence("notification_outbox_seq")
+    private Long id;
+
+    @Column(name = "notification_id")
+    private Long notificationId;
+
+    @Column(name = "user_id")
+    private String userId;
+
+    @Enumerated(EnumType.STRING)
+    private Channel channel;
+
+    @Column(name = "priority_rank")
+    private int priorityRank;
+
+    private int attempts;
+
+    // While claimed this is the lease expiry, after which another relay may take the entry
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "claimed_by")
+    private String claimedBy;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+}
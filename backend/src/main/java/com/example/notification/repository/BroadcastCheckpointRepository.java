@@ -0,0 +1,7 @@
+package com.example.notification.repository;
+
+import com.example.notification.model.BroadcastCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface BroadcastCheckpointRepository extends JpaRepository<BroadcastCheckpoint, String> {
+}
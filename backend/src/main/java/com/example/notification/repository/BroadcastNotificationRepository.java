@@ -0,0 +1,64 @@
+package com.example.notification.repository;
+
+import com.example.notification.model.BroadcastNotification;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface BroadcastNotificationRepository extends JpaRepository<BroadcastNotification, Long> {
+
+    // Broadcast b reaches :userId unless the user was created after it; a user without a row sees every broadcast
+    String VISIBLE_TO_USER = "NOT EXISTS (SELECT 1 FROM users u WHERE u.username = :userId AND u.created_at > b.created_at)";
+
+    // Broadcast b is unread by :userId if the user has no receipt for it
+    String UNREAD_BY_USER = "NOT EXISTS (SELECT 1 FROM broadcast_receipts r WHERE r.broadcast_id = b.id AND r.user_id = :userId)";
+
+    Optional<BroadcastNotification> findByEventId(String eventId);
+
+    @Query(value = "SELECT b.* FROM broadcast_notifications b WHERE " + VISIBLE_TO_USER + " ORDER BY b.created_at DESC, b.id DESC",
+           countQuery = "SELECT COUNT(*) FROM broadcast_notifications b WHERE " + VISIBLE_TO_USER,
+           nativeQuery = true)
+    Page<BroadcastNotification> findVisibleToUser(@Param("userId") String userId, Pageable pageable);
+
+    @Query(value = "SELECT b.* FROM broadcast_notifications b WHERE b.notification_type_id = :typeId AND " + VISIBLE_TO_USER
+            + " ORDER BY b.created_at DESC, b.id DESC",
+           countQuery = "SELECT COUNT(*) FROM broadcast_notifications b WHERE b.notification_type_id = :typeId AND " + VISIBLE_TO_USER,
+           nativeQuery = true)
+    Page<BroadcastNotification> findByTypeIdVisibleToUser(@Param("typeId") Long typeId, @Param("userId") String userId, Pageable pageable);
+
+    @Query(value = "SELECT b.* FROM broadcast_notifications b WHERE " + VISIBLE_TO_USER + " AND " + UNREAD_BY_USER
+            + " ORDER BY b.created_at DESC, b.id DESC",
+           countQuery = "SELECT COUNT(*) FROM broadcast_notifications b WHERE " + VISIBLE_TO_USER + " AND " + UNREAD_BY_USER,
+           nativeQuery = true)
+    Page<BroadcastNotification> findUnreadByUserId(@Param("userId") String userId, Pageable pageable);
+
+    @Query(value = "SELECT COUNT(*) FROM broadcast_notifications b WHERE " + VISIBLE_TO_USER + " AND " + UNREAD_BY_USER, nativeQuery = true)
+    long countUnreadByUserId(@Param("userId") String userId);
+
+    // Of the given broadcasts, those the user has read
+    @Query(value = "SELECT r.broadcast_id FROM broadcast_receipts r WHERE r.user_id = :userId AND r.broadcast_id IN :ids", nativeQuery = true)
+    List<Long> findReadIds(@Param("userId") String userId, @Param("ids") Collection<Long> ids);
+
+    // Inserts nothing if the broadcast does not exist, does not reach the user or is already read
+    @Modifying
+    @Query(value = "INSERT INTO broadcast_receipts (broadcast_id, user_id, read_at) "
+            + "SELECT b.id, :userId, :readAt FROM broadcast_notifications b WHERE b.id = :broadcastId AND "
+            + VISIBLE_TO_USER + " AND " + UNREAD_BY_USER,
+           nativeQuery = true)
+    int insertReceipt(@Param("broadcastId") long broadcastId, @Param("userId") String userId, @Param("readAt") LocalDateTime readAt);
+
+    // A receipt for every broadcast the user has unread as of this statement; one committing later stays unread
+    @Modifying
+    @Query(value = "INSERT INTO broadcast_receipts (broadcast_id, user_id, read_at) "
+            + "SELECT b.id, :userId, :readAt FROM broadcast_notifications b WHERE " + VISIBLE_TO_USER + " AND " + UNREAD_BY_USER,
+           nativeQuery = true)
+    int insertReceiptsForUnread(@Param("userId") String userId, @Param("readAt") LocalDateTime readAt);
+}
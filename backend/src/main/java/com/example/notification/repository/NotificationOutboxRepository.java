@@ -0,0 +1,45 @@
+package com.example.notification.repository;
+
+import com.example.notification.model.NotificationOutboxEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface NotificationOutboxRepository extends JpaRepository<NotificationOutboxEntry, Long> {
+
+    @Query("SELECT e.id FROM NotificationOutboxEntry e WHERE e.channel = :channel AND e.nextAttemptAt <= :now " +
+           "ORDER BY e.priorityRank DESC, e.id")
+    List<Long> findDueIds(@Param("channel") NotificationOutboxEntry.Channel channel,
+                          @Param("now") LocalDateTime now,
+                          Pageable pageable);
+
+    // The due-time condition makes concurrent claims of the same entry exclusive: only the first update matches
+    @Modifying
+    @Query("UPDATE NotificationOutboxEntry e SET e.claimedBy = :node, e.nextAttemptAt = :leaseUntil " +
+           "WHERE e.id IN :ids AND e.nextAttemptAt <= :now")
+    int claim(@Param("ids") Collection<Long> ids,
+              @Param("node") String node,
+              @Param("now") LocalDateTime now,
+              @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    @Query("SELECT e FROM NotificationOutboxEntry e WHERE e.id IN :ids AND e.claimedBy = :node AND e.nextAttemptAt = :leaseUntil " +
+           "ORDER BY e.priorityRank DESC, e.id")
+    List<NotificationOutboxEntry> findClaimed(@Param("ids") Collection<Long> ids,
+                                              @Param("node") String node,
+                                              @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    @Modifying
+    @Query("DELETE FROM NotificationOutboxEntry e WHERE e.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("UPDATE NotificationOutboxEntry e SET e.attempts = e.attempts + 1, e.nextAttemptAt = :nextAttemptAt, e.claimedBy = NULL " +
+           "WHERE e.id IN :ids")
+    int reschedule(@Param("ids") Collection<Long> ids, @Param("nextAttemptAt") LocalDateTime nextAttemptAt);
+}
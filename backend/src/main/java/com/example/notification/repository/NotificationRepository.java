@@ -10,6 +10,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional; // Added for clarity, though often not strictly needed for Optional return types in Spring Data
 
@@ -19,19 +20,22 @@ public interface NotificationRepository extends JpaRepository<Notification, Long
     @Query("SELECT n FROM Notification n JOIN n.notificationType nt WHERE n.userId = :userId AND nt.typeCode = :typeCode")
     Page<Notification> findByUserIdAndNotificationType(@Param("userId") String userId, @Param("typeCode") String typeCode, Pageable pageable);
     
-    @Query("SELECT n FROM Notification n JOIN n.notificationType nt WHERE n.userId = :userId AND nt.typeCode = :typeCode ORDER BY n.createdAt DESC")
-    Page<Notification> findByUserIdAndNotificationTypeOrderByCreatedAtDesc(@Param("userId") String userId, @Param("typeCode") String typeCode, Pageable pageable);
+    // By type id, resolved from the code by NotificationTypeService, so notification_types is not joined
+    @Query("SELECT n FROM Notification n WHERE n.userId = :userId AND n.notificationType.id = :typeId ORDER BY n.createdAt DESC")
+    Page<Notification> findByUserIdAndNotificationTypeIdOrderByCreatedAtDesc(@Param("userId") String userId, @Param("typeId") Long typeId, Pageable pageable);
     long countByUserIdAndReadStatus(String userId, NotificationStatus status);
     long countByReadStatus(NotificationStatus status);
     long countByPriority(NotificationPriority priority);
     long countByCreatedAtAfter(LocalDateTime dateTime);
+    long countByEventId(String eventId);
     // Use Pageable for limiting results instead of TopN with parameter
     Page<Notification> findAllByOrderByCreatedAtDesc(Pageable pageable);
 
     @Query("SELECT nt.typeCode FROM NotificationType nt WHERE nt.active = true")
     List<String> findDistinctNotificationTypes();
 
-    @Query("SELECT nt.typeCode, COUNT(n) FROM Notification n JOIN n.notificationType nt GROUP BY nt.typeCode")
+    // Type ids with their counts; the caller maps ids to codes
+    @Query("SELECT n.notificationType.id, COUNT(n) FROM Notification n GROUP BY n.notificationType.id")
     List<Object[]> countGroupByNotificationType();
 
     @Query("SELECT n.priority, COUNT(n) FROM Notification n GROUP BY n.priority")
@@ -49,4 +53,11 @@ public interface NotificationRepository extends JpaRepository<Notification, Long
                                            Pageable pageable);
 
     Optional<Notification> findByEventIdAndUserId(String eventId, String userId); // New method
+
+    // Idempotency check for a whole batch: the (eventId, userId) pairs that already have a row
+    @Query("SELECT n.eventId, n.userId FROM Notification n WHERE n.eventId IN :eventIds")
+    List<Object[]> findRecipientKeysByEventIdIn(@Param("eventIds") Collection<String> eventIds);
+
+    @Query("SELECT n.userId FROM Notification n WHERE n.eventId = :eventId AND n.userId IN :userIds")
+    List<String> findUserIdsByEventIdAndUserIdIn(@Param("eventId") String eventId, @Param("userIds") Collection<String> userIds);
 }
@@ -1,7 +1,19 @@
 package com.example.notification.repository;
 
 import com.example.notification.model.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
 
 public interface UserRepository extends JpaRepository<User, String> {
-}
\ No newline at end of file
+
+    // Keyset paging over the primary key: each page costs the same however far into the table it is
+    @Query("SELECT u.username FROM User u ORDER BY u.username")
+    List<String> findUsernames(Pageable pageable);
+
+    @Query("SELECT u.username FROM User u WHERE u.username > :after ORDER BY u.username")
+    List<String> findUsernamesAfter(@Param("after") String after, Pageable pageable);
+}
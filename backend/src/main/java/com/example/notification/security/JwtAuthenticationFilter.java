@@ -16,6 +16,7 @@ import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Component
@@ -31,9 +32,10 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         try {
             String jwt = getJwtFromRequest(request); // Only gets from "Authorization" header now
 
-            if (StringUtils.hasText(jwt) && jwtTokenProvider.validateToken(jwt)) {
-                String userId = jwtTokenProvider.getUserIdFromJWT(jwt);
-                List<String> roles = jwtTokenProvider.getRolesFromJWT(jwt);
+            Optional<VerifiedToken> verified = jwtTokenProvider.verify(jwt);
+            if (verified.isPresent()) {
+                String userId = verified.get().getUserId();
+                List<String> roles = verified.get().getRoles();
                 
                 List<SimpleGrantedAuthority> authorities = roles.stream()
                         .map(role -> new SimpleGrantedAuthority(role.startsWith("ROLE_") ? role : "ROLE_" + role))
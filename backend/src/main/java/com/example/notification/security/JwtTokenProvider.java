@@ -2,14 +2,20 @@ package com.example.notification.security;
 
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.security.Key;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Component
+@Slf4j
 public class JwtTokenProvider {
 
     @Value("${notification.security.jwt.secret}")
@@ -18,6 +24,24 @@ public class JwtTokenProvider {
     @Value("${notification.security.jwt.expiration}")
     private long jwtExpirationInMs;
 
+    @Value("${notification.security.jwt.cache.max-entries:10000}")
+    private int cacheMaxEntries;
+
+    // Derived once from the secret; both are immutable and thread-safe
+    private Key signingKey;
+    private JwtParser jwtParser;
+
+    // Tokens that passed verification, kept until they expire so repeat requests skip the HMAC check
+    private final ConcurrentHashMap<String, VerifiedToken> verifiedTokens = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        this.signingKey = Keys.hmacShaKeyFor(jwtSecret.getBytes());
+        this.jwtParser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
+    }
+
     // Generate JWT token with username and roles
     public String generateToken(String username, List<String> roles) {
         Date now = new Date();
@@ -28,49 +52,86 @@ public class JwtTokenProvider {
                 .claim("roles", roles)
                 .setIssuedAt(now)
                 .setExpiration(expiryDate)
-                .signWith(getSigningKey())
+                .signWith(signingKey)
                 .compact();
     }
 
-    // Generate a secure key from our secret
-    private Key getSigningKey() {
-        byte[] keyBytes = jwtSecret.getBytes();
-        return Keys.hmacShaKeyFor(keyBytes);
+    /**
+     * Verify the token's signature and expiry and return its claims. The token is parsed at most once
+     * while it stays in the cache, so the filters and controllers handling one request share the work.
+     * @return the verified claims, or empty if the token is missing, malformed, forged or expired
+     */
+    public Optional<VerifiedToken> verify(String token) {
+        if (token == null || token.isBlank()) {
+            return Optional.empty();
+        }
+        long now = System.currentTimeMillis();
+        VerifiedToken cached = verifiedTokens.get(token);
+        if (cached != null) {
+            if (!cached.isExpired(now)) {
+                return Optional.of(cached);
+            }
+            verifiedTokens.remove(token, cached);
+            return Optional.empty();
+        }
+        VerifiedToken verified;
+        try {
+            verified = toVerifiedToken(jwtParser.parseClaimsJws(token).getBody());
+        } catch (JwtException | IllegalArgumentException e) {
+            log.debug("JWT verification failed: {}", e.getMessage());
+            return Optional.empty();
+        }
+        if (verified.getExpiresAtMillis() != Long.MAX_VALUE) {
+            // Tokens without an expiry are not cached; there is no point at which the entry would end
+            cache(token, verified, now);
+        }
+        return Optional.of(verified);
     }
 
     // Validate the JWT token
     public boolean validateToken(String token) {
-        try {
-            Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token);
-            return true;
-        } catch (SecurityException | MalformedJwtException | ExpiredJwtException | UnsupportedJwtException | IllegalArgumentException e) {
-            return false;
-        }
+        return verify(token).isPresent();
     }
 
     // Extract user ID from JWT token
     public String getUserIdFromJWT(String token) {
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-
-        return claims.getSubject();
+        return verifyOrThrow(token).getUserId();
     }
 
     // Extract roles from JWT token
-    @SuppressWarnings("unchecked")
     public List<String> getRolesFromJWT(String token) {
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        return verifyOrThrow(token).getRoles();
+    }
+
+    private VerifiedToken verifyOrThrow(String token) {
+        return verify(token).orElseThrow(() -> new MalformedJwtException("Invalid or expired JWT"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static VerifiedToken toVerifiedToken(Claims claims) {
+        List<String> roles = (List<String>) claims.get("roles");
+        Date expiration = claims.getExpiration();
+        return new VerifiedToken(
+                claims.getSubject(),
+                roles != null ? List.copyOf(roles) : List.of(),
+                expiration != null ? expiration.getTime() : Long.MAX_VALUE);
+    }
+
+    private void cache(String token, VerifiedToken verified, long now) {
+        if (verifiedTokens.size() >= cacheMaxEntries) {
+            evict(now);
+        }
+        verifiedTokens.put(token, verified);
+    }
 
-        return (List<String>) claims.get("roles");
+    // Drop expired entries; if the cache is still full, drop arbitrary ones until it is back under 90%
+    private void evict(long now) {
+        verifiedTokens.values().removeIf(entry -> entry.isExpired(now));
+        int target = cacheMaxEntries * 9 / 10;
+        Iterator<String> keys = verifiedTokens.keySet().iterator();
+        while (verifiedTokens.size() > target && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
     }
 }
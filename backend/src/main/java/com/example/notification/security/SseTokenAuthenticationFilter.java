@@ -16,6 +16,7 @@ import org.springframework.util.StringUtils;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Component
@@ -37,12 +38,12 @@ public class SseTokenAuthenticationFilter implements Filter {
 
             if (StringUtils.hasText(jwt)) {
                 log.debug("SSE_AUTH_FILTER: Token found in query param for {}. Validating token: {}", requestPath, jwt);
-                boolean isValidToken = jwtTokenProvider.validateToken(jwt);
-                log.debug("SSE_AUTH_FILTER: Token validation result for {}: {}", requestPath, isValidToken);
+                Optional<VerifiedToken> verified = jwtTokenProvider.verify(jwt);
+                log.debug("SSE_AUTH_FILTER: Token validation result for {}: {}", requestPath, verified.isPresent());
 
-                if (isValidToken) {
-                    String userId = jwtTokenProvider.getUserIdFromJWT(jwt);
-                    List<String> roles = jwtTokenProvider.getRolesFromJWT(jwt);
+                if (verified.isPresent()) {
+                    String userId = verified.get().getUserId();
+                    List<String> roles = verified.get().getRoles();
 
                     List<SimpleGrantedAuthority> authorities = roles.stream()
                             .map(role -> new SimpleGrantedAuthority(role.startsWith("ROLE_") ? role : "ROLE_" + role))
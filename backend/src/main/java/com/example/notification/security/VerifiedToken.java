@@ -0,0 +1,19 @@
+package com.example.notification.security;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Claims of a JWT whose signature and expiry have been checked.
+ */
+@Value
+public class VerifiedToken {
+    String userId;
+    List<String> roles;
+    long expiresAtMillis;
+
+    public boolean isExpired(long nowMillis) {
+        return nowMillis >= expiresAtMillis;
+    }
+}
@@ -0,0 +1,324 @@
+package com.example.notification.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Named audiences that a {@link com.example.notification.dto.NotificationEvent} can target with its
+ * {@code segment} instead of listing every user. Each segment is a {@link UserBitmap} over interned user ids:
+ * <ul>
+ *     <li>{@code all}: every user</li>
+ *     <li>{@code role:<AUTHORITY>}: users holding the authority, with or without its {@code ROLE_} prefix</li>
+ *     <li>{@code pref:sse}, {@code pref:email}: users who have not turned that channel off</li>
+ *     <li>{@code list:<name>}: a custom list saved through {@link #saveList}</li>
+ * </ul>
+ * A segment expression combines them with {@code |} (union), {@code -} (difference) and {@code &}
+ * (intersection, binding tighter), and parentheses, e.g. {@code (role:ADMIN | list:oncall) & pref:email}.
+ * Resolving one is a few bitmap operations, with no query. The bitmaps are rebuilt from the database every
+ * {@code notification.segments.refresh-ms}, which is also how users, roles, preferences and lists changed on
+ * other nodes reach this one; lists saved on this node apply as soon as they commit.
+ */
+@Service
+@Slf4j
+public class AudienceSegmentService {
+
+    public static final String ALL = "all";
+    public static final String ROLE_PREFIX = "role:";
+    public static final String LIST_PREFIX = "list:";
+    public static final String SSE_ENABLED = "pref:sse";
+    public static final String EMAIL_ENABLED = "pref:email";
+
+    private static final Pattern LIST_NAME = Pattern.compile("[A-Za-z0-9_.]{1,100}");
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final UserIdInterner interner = new UserIdInterner();
+    private final Object refreshLock = new Object(); // Held for a whole reload, so lists saved meanwhile land after it
+    private volatile Map<String, UserBitmap> segments; // Replaced, never modified; null until first loaded
+
+    public AudienceSegmentService(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * @return the members of the segment expression, in a stable order
+     * @throws IllegalArgumentException if the expression is malformed or names an unknown segment
+     */
+    public List<String> resolve(String expression) {
+        UserBitmap members = evaluate(expression);
+        List<String> userIds = new ArrayList<>(members.cardinality());
+        members.forEach(id -> userIds.add(interner.userIdOf(id)));
+        return userIds;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the expression is malformed or names an unknown segment
+     */
+    public int count(String expression) {
+        return evaluate(expression).cardinality();
+    }
+
+    /**
+     * @return every segment's name and size
+     */
+    public Map<String, Integer> describe() {
+        Map<String, Integer> sizes = new TreeMap<>();
+        current().forEach((name, members) -> sizes.put(name, members.cardinality()));
+        return sizes;
+    }
+
+    /**
+     * Replace the members of custom list {@code name}, creating it if needed. Unknown user ids are ignored.
+     * @return the number of members saved
+     * @throws IllegalArgumentException if the name is not 1-100 letters, digits, '_' or '.'
+     */
+    @Transactional
+    public int saveList(String name, Collection<String> userIds) {
+        if (name == null || !LIST_NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("List names are 1-100 letters, digits, '_' or '.'");
+        }
+        jdbcTemplate.update("DELETE FROM audience_segment_members WHERE segment_name = :name",
+                new MapSqlParameterSource("name", name));
+        SqlParameterSource[] rows = new LinkedHashSet<>(userIds).stream()
+                .filter(userId -> userId != null && !userId.isBlank())
+                .map(userId -> new MapSqlParameterSource().addValue("name", name).addValue("userId", userId))
+                .toArray(SqlParameterSource[]::new);
+        int saved = 0;
+        if (rows.length > 0) {
+            for (int count : jdbcTemplate.batchUpdate("INSERT INTO audience_segment_members (segment_name, user_id) "
+                    + "SELECT :name, u.username FROM users u WHERE u.username = :userId", rows)) {
+                saved += Math.max(count, 0);
+            }
+        }
+        afterCommit(() -> reloadList(name));
+        log.info("Saved audience list {} with {} members", name, saved);
+        return saved;
+    }
+
+    /**
+     * @return true if the list existed
+     */
+    @Transactional
+    public boolean deleteList(String name) {
+        int deleted = jdbcTemplate.update("DELETE FROM audience_segment_members WHERE segment_name = :name",
+                new MapSqlParameterSource("name", name));
+        afterCommit(() -> reloadList(name));
+        return deleted > 0;
+    }
+
+    @Scheduled(fixedDelayString = "${notification.segments.refresh-ms:60000}")
+    public void refresh() {
+        synchronized (refreshLock) {
+            Map<String, UserBitmap> loaded = new HashMap<>();
+            UserBitmap all = new UserBitmap();
+            jdbcTemplate.query("SELECT username FROM users", rs -> {
+                all.add(interner.intern(rs.getString(1)));
+            });
+            loaded.put(ALL, all);
+
+            jdbcTemplate.query("SELECT username, authority FROM authorities", rs -> {
+                loaded.computeIfAbsent(ROLE_PREFIX + roleName(rs.getString(2)), key -> new UserBitmap())
+                        .add(interner.intern(rs.getString(1)));
+            });
+
+            // Users without a preferences row get the defaults, which enable both channels
+            UserBitmap sseDisabled = new UserBitmap();
+            UserBitmap emailDisabled = new UserBitmap();
+            jdbcTemplate.query("SELECT user_id, sse_enabled, email_enabled FROM user_preferences "
+                    + "WHERE sse_enabled = FALSE OR email_enabled = FALSE", rs -> {
+                int id = interner.intern(rs.getString(1));
+                if (!rs.getBoolean(2)) {
+                    sseDisabled.add(id);
+                }
+                if (!rs.getBoolean(3)) {
+                    emailDisabled.add(id);
+                }
+            });
+            loaded.put(SSE_ENABLED, all.andNot(sseDisabled));
+            loaded.put(EMAIL_ENABLED, all.andNot(emailDisabled));
+
+            jdbcTemplate.query("SELECT segment_name, user_id FROM audience_segment_members", rs -> {
+                loaded.computeIfAbsent(LIST_PREFIX + rs.getString(1), key -> new UserBitmap())
+                        .add(interner.intern(rs.getString(2)));
+            });
+
+            segments = Map.copyOf(loaded);
+            log.debug("Loaded {} audience segments over {} users", loaded.size(), all.cardinality());
+        }
+    }
+
+    private void reloadList(String name) {
+        synchronized (refreshLock) {
+            if (segments == null) {
+                refresh();
+                return;
+            }
+            UserBitmap members = new UserBitmap();
+            jdbcTemplate.query("SELECT user_id FROM audience_segment_members WHERE segment_name = :name",
+                    new MapSqlParameterSource("name", name),
+                    rs -> {
+                        members.add(interner.intern(rs.getString(1)));
+                    });
+            Map<String, UserBitmap> updated = new HashMap<>(segments);
+            if (members.isEmpty()) {
+                updated.remove(LIST_PREFIX + name);
+            } else {
+                updated.put(LIST_PREFIX + name, members);
+            }
+            segments = Map.copyOf(updated);
+        }
+    }
+
+    private Map<String, UserBitmap> current() {
+        Map<String, UserBitmap> loaded = segments;
+        if (loaded == null) {
+            refresh();
+            loaded = segments;
+        }
+        return loaded;
+    }
+
+    private UserBitmap evaluate(String expression) {
+        if (expression == null || expression.isBlank()) {
+            throw new IllegalArgumentException("Segment expression cannot be empty");
+        }
+        return new Parser(expression, current()).parse();
+    }
+
+    private static String roleName(String authority) {
+        String role = authority.startsWith("ROLE_") ? authority.substring("ROLE_".length()) : authority;
+        return role.toUpperCase(Locale.ROOT);
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Recursive descent over: union := intersection (('|' | '-') intersection)*,
+     * intersection := term ('&' term)*, term := '(' union ')' | name.
+     */
+    private static final class Parser {
+        private final String expression;
+        private final Map<String, UserBitmap> segments;
+        private int position;
+
+        Parser(String expression, Map<String, UserBitmap> segments) {
+            this.expression = expression;
+            this.segments = segments;
+        }
+
+        UserBitmap parse() {
+            UserBitmap result = union();
+            skipSpaces();
+            if (position < expression.length()) {
+                throw error("Unexpected '" + expression.charAt(position) + "'");
+            }
+            return result;
+        }
+
+        private UserBitmap union() {
+            UserBitmap result = intersection();
+            while (true) {
+                skipSpaces();
+                if (accept('|')) {
+                    result = result.or(intersection());
+                } else if (accept('-')) {
+                    result = result.andNot(intersection());
+                } else {
+                    return result;
+                }
+            }
+        }
+
+        private UserBitmap intersection() {
+            UserBitmap result = term();
+            while (true) {
+                skipSpaces();
+                if (!accept('&')) {
+                    return result;
+                }
+                result = result.and(term());
+            }
+        }
+
+        private UserBitmap term() {
+            skipSpaces();
+            if (accept('(')) {
+                UserBitmap inner = union();
+                skipSpaces();
+                if (!accept(')')) {
+                    throw error("Missing ')'");
+                }
+                return inner;
+            }
+            int start = position;
+            while (position < expression.length() && isNameChar(expression.charAt(position))) {
+                position++;
+            }
+            if (start == position) {
+                throw error("Expected a segment name");
+            }
+            String name = expression.substring(start, position);
+            String key = name.regionMatches(true, 0, ROLE_PREFIX, 0, ROLE_PREFIX.length())
+                    ? ROLE_PREFIX + roleName(name.substring(ROLE_PREFIX.length()))
+                    : name.startsWith(LIST_PREFIX) ? name : name.toLowerCase(Locale.ROOT);
+            UserBitmap members = segments.get(key);
+            if (members != null) {
+                return members;
+            }
+            // Roles nobody holds and unsaved lists are empty rather than errors; anything else is a typo
+            if (key.startsWith(ROLE_PREFIX) || key.startsWith(LIST_PREFIX)) {
+                return new UserBitmap();
+            }
+            throw new IllegalArgumentException("Unknown audience segment '" + name + "'");
+        }
+
+        private boolean accept(char c) {
+            if (position < expression.length() && expression.charAt(position) == c) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private void skipSpaces() {
+            while (position < expression.length() && Character.isWhitespace(expression.charAt(position))) {
+                position++;
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + position + " of segment '" + expression + "'");
+        }
+
+        private static boolean isNameChar(char c) {
+            return Character.isLetterOrDigit(c) || c == '_' || c == ':' || c == '.';
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.notification.service;
+
+import com.example.notification.dto.NotificationEvent;
+import com.example.notification.model.BroadcastCheckpoint;
+import com.example.notification.model.BroadcastNotification;
+import com.example.notification.model.NotificationStatus;
+import com.example.notification.repository.BroadcastCheckpointRepository;
+import com.example.notification.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Persists "ALL" broadcasts. By default a broadcast is streamed through the user table: each chunk of
+ * usernames is read by keyset, persisted with its outbox entries in its own transaction, and delivered by
+ * {@link NotificationOutboxRelay} while the next chunk is written. Memory use and transaction length depend on
+ * the chunk size, not the number of users. A {@link BroadcastCheckpoint} commits with every chunk, so a
+ * broadcast interrupted by a crash or an error resumes where it stopped when its record is delivered again.
+ * With {@code notification.broadcast.storage=shared}, a broadcast is instead stored once and merged into each
+ * user's notifications on read. CRITICAL broadcasts still get a row per user to track their emails against.
+ */
+@Service
+@Slf4j
+public class BroadcastFanoutService {
+
+    private final UserRepository userRepository;
+    private final NotificationPersistenceService persistenceService;
+    private final BroadcastCheckpointRepository checkpointRepository;
+    private final BroadcastInboxService broadcastInboxService;
+    private final NotificationDispatchService dispatchService;
+    private final UnreadCounterService unreadCounterService;
+    private final int chunkSize;
+    private final boolean sharedStorage;
+
+    public BroadcastFanoutService(UserRepository userRepository,
+                                  NotificationPersistenceService persistenceService,
+                                  BroadcastCheckpointRepository checkpointRepository,
+                                  BroadcastInboxService broadcastInboxService,
+                                  NotificationDispatchService dispatchService,
+                                  UnreadCounterService unreadCounterService,
+                                  @Value("${notification.broadcast.chunk-size:500}") int chunkSize,
+                                  @Value("${notification.broadcast.storage:per-user}") String storage) {
+        this.userRepository = userRepository;
+        this.persistenceService = persistenceService;
+        this.checkpointRepository = checkpointRepository;
+        this.broadcastInboxService = broadcastInboxService;
+        this.dispatchService = dispatchService;
+        this.unreadCounterService = unreadCounterService;
+        // Recipients of a chunk end up in an IN list; stay below Oracle's 1000-element limit
+        this.chunkSize = Math.max(1, Math.min(chunkSize, 1000));
+        this.sharedStorage = "shared".equalsIgnoreCase(storage);
+    }
+
+    /**
+     * @return whether a broadcast of this criticality is stored once in {@code broadcast_notifications}
+     *         rather than as a row per user
+     */
+    public boolean storesShared(boolean isCritical) {
+        return sharedStorage && !isCritical;
+    }
+
+    /**
+     * Persist {@code event} for every user, resuming after the last completed chunk if it was started before.
+     * @param event a validated event with an eventId
+     * @param isCritical whether the notifications are also delivered by email
+     * @return the number of rows inserted by this call
+     */
+    public long broadcast(NotificationEvent event, boolean isCritical) {
+        if (storesShared(isCritical)) {
+            return storeShared(event);
+        }
+        BroadcastCheckpoint checkpoint = startOrResume(event.getEventId());
+        if (checkpoint.getCompletedAt() != null) {
+            log.info("Broadcast {} already completed at {} for {} users. Skipping.",
+                    event.getEventId(), checkpoint.getCompletedAt(), checkpoint.getPersistedCount());
+            return 0;
+        }
+        long startCount = checkpoint.getPersistedCount();
+        if (checkpoint.getLastUserId() != null) {
+            log.info("Resuming broadcast {} after user {} ({} notifications already persisted)",
+                    event.getEventId(), checkpoint.getLastUserId(), startCount);
+        }
+
+        try {
+            while (true) {
+                List<String> chunk = checkpoint.getLastUserId() == null
+                        ? userRepository.findUsernames(PageRequest.of(0, chunkSize))
+                        : userRepository.findUsernamesAfter(checkpoint.getLastUserId(), PageRequest.of(0, chunkSize));
+                if (!chunk.isEmpty()) {
+                    checkpoint = persistChunk(event, checkpoint, chunk, isCritical);
+                }
+                if (chunk.size() < chunkSize) {
+                    break;
+                }
+            }
+            checkpoint.setCompletedAt(LocalDateTime.now());
+            checkpoint = checkpointRepository.save(checkpoint);
+        } catch (ObjectOptimisticLockingFailureException e) {
+            // A redelivered copy of the record is working on the same broadcast; leave it to that consumer
+            log.warn("Broadcast {} was advanced by another consumer; stopping this one after {} notifications",
+                    event.getEventId(), checkpoint.getPersistedCount() - startCount);
+            return checkpoint.getPersistedCount() - startCount;
+        }
+        log.info("Broadcast {} completed: {} notifications persisted ({} by this run)",
+                event.getEventId(), checkpoint.getPersistedCount(), checkpoint.getPersistedCount() - startCount);
+        return checkpoint.getPersistedCount() - startCount;
+    }
+
+    private long storeShared(NotificationEvent event) {
+        BroadcastNotification stored;
+        try {
+            stored = persistenceService.persistSharedBroadcast(event);
+        } catch (DataIntegrityViolationException e) {
+            if (!NotificationPersistenceService.isDuplicateBroadcast(e)) {
+                throw e;
+            }
+            stored = null;
+        }
+        if (stored == null) {
+            return 0;
+        }
+        // Committed: offline users see it on their next read, reachable ones get it now
+        unreadCounterService.recordBroadcast();
+        dispatchService.dispatchSharedBroadcast(broadcastInboxService.toResponse(stored, null, NotificationStatus.UNREAD));
+        log.info("Broadcast {} stored once as shared broadcast {}", event.getEventId(), stored.getId());
+        return 1;
+    }
+
+    private BroadcastCheckpoint persistChunk(NotificationEvent event, BroadcastCheckpoint checkpoint, List<String> chunk, boolean isCritical) {
+        try {
+            return persistenceService.persistBroadcastChunk(event, checkpoint, chunk, isCritical);
+        } catch (DataIntegrityViolationException e) {
+            if (!NotificationPersistenceService.isDuplicateRecipient(e)) {
+                throw e;
+            }
+            // The failed attempt left the chunk's pairs in the idempotency filter, so the retry looks them up
+            log.info("Broadcast {} chunk after {} has recipients persisted elsewhere; retrying with lookups",
+                    event.getEventId(), checkpoint.getLastUserId());
+            return persistenceService.persistBroadcastChunk(event, checkpoint, chunk, isCritical);
+        }
+    }
+
+    private BroadcastCheckpoint startOrResume(String eventId) {
+        return checkpointRepository.findById(eventId).orElseGet(() -> {
+            BroadcastCheckpoint started = BroadcastCheckpoint.builder()
+                    .eventId(eventId)
+                    .createdAt(LocalDateTime.now())
+                    .updatedAt(LocalDateTime.now())
+                    .build();
+            try {
+                return checkpointRepository.save(started);
+            } catch (DataIntegrityViolationException e) {
+                // Started by another consumer at the same moment
+                return checkpointRepository.findById(eventId).orElseThrow(() -> e);
+            }
+        });
+    }
+}
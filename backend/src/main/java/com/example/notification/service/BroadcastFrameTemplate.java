@@ -0,0 +1,93 @@
+package com.example.notification.service;
+
+import com.example.notification.dto.NotificationResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * A broadcast notification encoded to JSON once, with the per-recipient {@code id} and {@code userId}
+ * left as splice points. Rendering a recipient's frame is a few string appends instead of a full
+ * Jackson serialization of the response.
+ */
+public final class BroadcastFrameTemplate {
+
+    private static final long ID_PLACEHOLDER = Long.MIN_VALUE;
+    private static final String USER_ID_PLACEHOLDER = "__broadcast_user_id_placeholder__";
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(1024));
+
+    private final String prefix;
+    private final String middle;
+    private final String suffix;
+    private final boolean idFirst;
+
+    private BroadcastFrameTemplate(String prefix, String middle, String suffix, boolean idFirst) {
+        this.prefix = prefix;
+        this.middle = middle;
+        this.suffix = suffix;
+        this.idFirst = idFirst;
+    }
+
+    /**
+     * Encode the shared part of a broadcast once.
+     * @param prototype any recipient's response; its id and userId are ignored
+     * @throws IllegalStateException if the placeholders cannot be located unambiguously
+     */
+    public static BroadcastFrameTemplate encode(ObjectMapper objectMapper, NotificationResponse prototype) throws JsonProcessingException {
+        Long originalId = prototype.getId();
+        String originalUserId = prototype.getUserId();
+        String json;
+        try {
+            prototype.setId(ID_PLACEHOLDER);
+            prototype.setUserId(USER_ID_PLACEHOLDER);
+            json = objectMapper.writeValueAsString(prototype);
+        } finally {
+            prototype.setId(originalId);
+            prototype.setUserId(originalUserId);
+        }
+
+        String idToken = String.valueOf(ID_PLACEHOLDER);
+        String userIdToken = "\"" + USER_ID_PLACEHOLDER + "\"";
+        int idAt = uniqueIndexOf(json, idToken);
+        int userIdAt = uniqueIndexOf(json, userIdToken);
+
+        boolean idFirst = idAt < userIdAt;
+        int firstAt = idFirst ? idAt : userIdAt;
+        int firstEnd = firstAt + (idFirst ? idToken : userIdToken).length();
+        int secondAt = idFirst ? userIdAt : idAt;
+        int secondEnd = secondAt + (idFirst ? userIdToken : idToken).length();
+        return new BroadcastFrameTemplate(json.substring(0, firstAt), json.substring(firstEnd, secondAt), json.substring(secondEnd), idFirst);
+    }
+
+    /**
+     * @return the recipient's JSON payload, identical to serializing their own response
+     */
+    public String render(long id, String userId) {
+        StringBuilder out = BUFFER.get();
+        out.setLength(0);
+        out.append(prefix);
+        if (idFirst) {
+            out.append(id).append(middle);
+            appendQuoted(out, userId);
+        } else {
+            appendQuoted(out, userId);
+            out.append(middle).append(id);
+        }
+        out.append(suffix);
+        return out.toString();
+    }
+
+    private static void appendQuoted(StringBuilder out, String value) {
+        out.append('"');
+        JsonStringEncoder.getInstance().quoteAsString(value, out);
+        out.append('"');
+    }
+
+    private static int uniqueIndexOf(String json, String token) {
+        int at = json.indexOf(token);
+        if (at < 0 || json.indexOf(token, at + 1) >= 0) {
+            throw new IllegalStateException("Broadcast placeholder " + token + " not found exactly once");
+        }
+        return at;
+    }
+}
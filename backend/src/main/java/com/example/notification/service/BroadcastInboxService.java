@@ -0,0 +1,123 @@
+package com.example.notification.service;
+
+import com.example.notification.dto.NotificationResponse;
+import com.example.notification.model.BroadcastNotification;
+import com.example.notification.model.NotificationStatus;
+import com.example.notification.repository.BroadcastNotificationRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Each user's view of the shared broadcasts: which reach them, which they have read, and marking them read.
+ * A broadcast reaches every user that existed when it was created, and is read once the user has a receipt
+ * for it; "mark all as read" writes one for each broadcast still unread. Broadcasts appear in responses with their id negated, so they never collide with
+ * {@code notifications} ids and the existing endpoints can tell them apart.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class BroadcastInboxService {
+
+    private final BroadcastNotificationRepository broadcastRepository;
+    private final ObjectMapper objectMapper;
+    private final NotificationTypeService notificationTypeService;
+
+    public static boolean isBroadcastId(Long responseId) {
+        return responseId != null && responseId < 0;
+    }
+
+    public Page<NotificationResponse> getBroadcasts(String userId, Pageable pageable) {
+        return withReadStatus(userId, broadcastRepository.findVisibleToUser(userId, pageable));
+    }
+
+    public Page<NotificationResponse> getBroadcastsByType(String userId, String typeCode, Pageable pageable) {
+        Long typeId = notificationTypeService.findTypeId(typeCode);
+        if (typeId == null) {
+            return Page.empty(pageable);
+        }
+        return withReadStatus(userId, broadcastRepository.findByTypeIdVisibleToUser(typeId, userId, pageable));
+    }
+
+    public Page<NotificationResponse> getUnreadBroadcasts(String userId, Pageable pageable) {
+        return broadcastRepository.findUnreadByUserId(userId, pageable)
+                .map(broadcast -> toResponse(broadcast, userId, NotificationStatus.UNREAD));
+    }
+
+    public Optional<NotificationResponse> getBroadcast(long responseId) {
+        return broadcastRepository.findById(-responseId).map(broadcast -> toResponse(broadcast, null, null));
+    }
+
+    /**
+     * @return true if the broadcast was unread by the user until now
+     */
+    @Transactional
+    public boolean markAsRead(long responseId, String userId) {
+        try {
+            return broadcastRepository.insertReceipt(-responseId, userId, LocalDateTime.now()) > 0;
+        } catch (DataIntegrityViolationException e) {
+            // A concurrent request read it first
+            return false;
+        }
+    }
+
+    /**
+     * Mark every broadcast that reaches the user read. Receipts are written for the ids actually found unread,
+     * so a broadcast whose transaction commits afterwards stays unread even if it was given a smaller id.
+     * @return the number of broadcasts that were unread
+     */
+    @Transactional
+    public long markAllAsRead(String userId) {
+        return broadcastRepository.insertReceiptsForUnread(userId, LocalDateTime.now());
+    }
+
+    /**
+     * @param userId the user the response is for, or null for a response shared by every recipient
+     */
+    public NotificationResponse toResponse(BroadcastNotification broadcast, String userId, NotificationStatus readStatus) {
+        return NotificationResponse.builder()
+                .id(-broadcast.getId())
+                .userId(userId)
+                .sourceService(broadcast.getSourceService())
+                .notificationType(notificationTypeService.typeCodeOf(broadcast.getNotificationType()))
+                .priority(broadcast.getPriority())
+                .content(broadcast.getContent())
+                .metadata(deserializeFromJson(broadcast.getMetadata()))
+                .tags(deserializeFromJson(broadcast.getTags()))
+                .createdAt(broadcast.getCreatedAt())
+                .readStatus(readStatus)
+                .title(broadcast.getTitle())
+                .build();
+    }
+
+    private Page<NotificationResponse> withReadStatus(String userId, Page<BroadcastNotification> broadcasts) {
+        List<Long> ids = broadcasts.getContent().stream().map(BroadcastNotification::getId).toList();
+        Set<Long> read = ids.isEmpty() ? Set.of() : new HashSet<>(broadcastRepository.findReadIds(userId, ids));
+        return broadcasts.map(broadcast -> toResponse(broadcast, userId,
+                read.contains(broadcast.getId()) ? NotificationStatus.READ : NotificationStatus.UNREAD));
+    }
+
+    private Object deserializeFromJson(String json) {
+        if (json == null || json.isEmpty()) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(json, Object.class);
+        } catch (JsonProcessingException e) {
+            log.error("Error deserializing JSON to object: {}", e.getMessage(), e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.notification.service;
+
+import java.util.Collection;
+import java.util.function.LongConsumer;
+
+/**
+ * A user's preferences as held by {@link UserPreferencesService}. Immutable. Muted notification types are a
+ * bitset over type ids: type ids are small and dense, so a user muting a few types costs one or two words,
+ * and checking a type is a shift and a mask.
+ */
+public final class CachedUserPreferences {
+
+    private static final long[] NONE = new long[0];
+
+    private final String userId;
+    private final boolean emailEnabled;
+    private final boolean sseEnabled;
+    private final String minimumEmailPriority;
+    private final long[] mutedTypes; // Bit (id % 64) of word (id / 64) is set if type id is muted
+
+    public CachedUserPreferences(String userId, boolean emailEnabled, boolean sseEnabled, String minimumEmailPriority,
+                                 Collection<Long> mutedTypeIds) {
+        this.userId = userId;
+        this.emailEnabled = emailEnabled;
+        this.sseEnabled = sseEnabled;
+        this.minimumEmailPriority = minimumEmailPriority;
+        this.mutedTypes = bitsOf(mutedTypeIds);
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public boolean isEmailEnabled() {
+        return emailEnabled;
+    }
+
+    public boolean isSseEnabled() {
+        return sseEnabled;
+    }
+
+    public String getMinimumEmailPriority() {
+        return minimumEmailPriority;
+    }
+
+    public boolean isMuted(long typeId) {
+        int word = (int) (typeId >>> 6);
+        return typeId >= 0 && word < mutedTypes.length && (mutedTypes[word] & (1L << typeId)) != 0;
+    }
+
+    /**
+     * Calls {@code action} with each muted type id in ascending order.
+     */
+    public void forEachMutedType(LongConsumer action) {
+        for (int word = 0; word < mutedTypes.length; word++) {
+            long bits = mutedTypes[word];
+            while (bits != 0) {
+                action.accept(((long) word << 6) + Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+            }
+        }
+    }
+
+    private static long[] bitsOf(Collection<Long> typeIds) {
+        long max = -1;
+        for (long id : typeIds) {
+            if (id < 0 || id >= (long) Integer.MAX_VALUE << 6) {
+                throw new IllegalArgumentException("Type id out of range: " + id);
+            }
+            max = Math.max(max, id);
+        }
+        if (max < 0) {
+            return NONE;
+        }
+        long[] bits = new long[(int) (max >>> 6) + 1];
+        for (long id : typeIds) {
+            bits[(int) (id >>> 6)] |= 1L << id;
+        }
+        return bits;
+    }
+}
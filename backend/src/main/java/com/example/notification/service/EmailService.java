@@ -1,8 +1,6 @@
 package com.example.notification.service;
 
 import com.example.notification.dto.NotificationResponse;
-import com.example.notification.model.UserPreferences;
-import com.example.notification.repository.UserPreferencesRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
@@ -20,12 +18,12 @@ public class EmailService {
 
     private final JavaMailSender mailSender;
     private final UserService userService;
-    private final UserPreferencesRepository userPreferencesRepository;
+    private final UserPreferencesService userPreferencesService;
 
-    public EmailService(JavaMailSender mailSender, UserService userService, UserPreferencesRepository userPreferencesRepository) {
+    public EmailService(JavaMailSender mailSender, UserService userService, UserPreferencesService userPreferencesService) {
         this.mailSender = mailSender;
         this.userService = userService;
-        this.userPreferencesRepository = userPreferencesRepository;
+        this.userPreferencesService = userPreferencesService;
     }
 
     /**
@@ -36,7 +34,7 @@ public class EmailService {
     public void sendNotificationEmail(String userId, NotificationResponse notification) {
         try {
             // Check user preferences
-            UserPreferences preferences = userPreferencesRepository.findByUserId(userId).orElse(null);
+            CachedUserPreferences preferences = userPreferencesService.find(userId).orElse(null);
             if (preferences == null) {
                 log.warn("Cannot send email notification: User preferences not found for user {}", userId);
                 return;
@@ -47,7 +45,7 @@ public class EmailService {
                 return;
             }
 
-            if (preferences.getMutedNotificationTypes() != null && preferences.getMutedNotificationTypes().contains(notification.getNotificationType())) {
+            if (userPreferencesService.isMuted(preferences, notification.getNotificationType())) {
                 log.info("Notification type {} is muted for user {}", notification.getNotificationType(), userId);
                 return;
             }
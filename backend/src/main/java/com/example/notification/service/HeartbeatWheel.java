@@ -0,0 +1,50 @@
+package com.example.notification.service;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hashed timing wheel for keepalives. Each user hashes to one slot and every tick visits the next
+ * slot, so a full revolution touches every user exactly once and the work per tick is roughly
+ * {@code users / slots} instead of one sweep over all users.
+ */
+class HeartbeatWheel {
+
+    private final Set<String>[] slots;
+    private int cursor;
+
+    @SuppressWarnings("unchecked")
+    HeartbeatWheel(int slotCount) {
+        this.slots = new Set[Math.max(1, slotCount)];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = ConcurrentHashMap.newKeySet();
+        }
+    }
+
+    void add(String userId) {
+        slots[slotOf(userId)].add(userId);
+    }
+
+    void remove(String userId) {
+        slots[slotOf(userId)].remove(userId);
+    }
+
+    int slotCount() {
+        return slots.length;
+    }
+
+    /**
+     * Move to the next slot and return its users. Only called from the single scheduler thread.
+     */
+    Set<String> advance() {
+        cursor = (cursor + 1) % slots.length;
+        return Collections.unmodifiableSet(slots[cursor]);
+    }
+
+    private int slotOf(String userId) {
+        int h = userId.hashCode();
+        h ^= (h >>> 16);
+        return Math.floorMod(h * 0x9E3779B9, slots.length);
+    }
+}
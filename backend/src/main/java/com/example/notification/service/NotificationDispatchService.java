@@ -1,36 +1,166 @@
 package com.example.notification.service;
 
+import com.example.notification.config.NotificationLatencyMetrics;
 import com.example.notification.dto.NotificationResponse;
 import com.example.notification.model.Notification;
+import com.example.notification.model.NotificationPriority;
 import com.example.notification.repository.NotificationRepository;
-import lombok.RequiredArgsConstructor;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
+/**
+ * SSE and email dispatch run on their own priority-ordered queues, so callers return as soon as the work is
+ * queued and a CRITICAL notification overtakes any lower-priority dispatch still waiting. SSE has a single
+ * worker, which keeps each user's frames in order within a priority; email sends block on SMTP and get a pool.
+ * Callers are expected to hand over committed rows; {@link NotificationOutboxRelay} does so and uses the returned
+ * futures to tell delivered work from work to retry.
+ */
 @Service
 @Slf4j
-@RequiredArgsConstructor
 public class NotificationDispatchService {
 
-    private final SseEmitterManager sseEmitterManager;
+    private final SseClusterRouter sseClusterRouter;
     private final EmailService emailService;
+    private final UserPreferencesService userPreferencesService;
     private final NotificationRepository notificationRepository; // Added
+    private final ObjectMapper objectMapper;
+    private final PriorityDispatchQueue sseQueue;
+    private final PriorityDispatchQueue emailQueue;
 
-    public void dispatchNotification(String userId, NotificationResponse response) {
-        // SseEmitterManager handles whether user is connected or has an emitter
-        sseEmitterManager.sendToUser(userId, response);
-        log.debug("Attempted to send notification ID {} to user {} via SSE", response.getId(), userId);
-        // No need to check if user is connected here, SseEmitterManager handles it.
+    public NotificationDispatchService(SseClusterRouter sseClusterRouter,
+                                       EmailService emailService,
+                                       UserPreferencesService userPreferencesService,
+                                       NotificationRepository notificationRepository,
+                                       ObjectMapper objectMapper,
+                                       NotificationLatencyMetrics latencyMetrics,
+                                       @Value("${notification.dispatch.queue-capacity:10000}") int queueCapacity,
+                                       @Value("${notification.dispatch.email-workers:4}") int emailWorkers) {
+        this.sseClusterRouter = sseClusterRouter;
+        this.emailService = emailService;
+        this.userPreferencesService = userPreferencesService;
+        this.notificationRepository = notificationRepository;
+        this.objectMapper = objectMapper;
+        this.sseQueue = new PriorityDispatchQueue("sse-dispatch", 1, queueCapacity,
+                (priority, nanos) -> latencyMetrics.recordDispatch(NotificationLatencyMetrics.CHANNEL_SSE, priority, nanos));
+        this.emailQueue = new PriorityDispatchQueue("email-dispatch", emailWorkers, queueCapacity,
+                (priority, nanos) -> latencyMetrics.recordDispatch(NotificationLatencyMetrics.CHANNEL_EMAIL, priority, nanos));
     }
 
-    @Transactional
-    public void dispatchToEmail(String userId, NotificationResponse response) {
+    /**
+     * Whether the user has an SSE stream anywhere in the cluster. When false, building and encoding the
+     * SSE payload can be skipped entirely.
+     */
+    public boolean isSseReachable(String userId) {
+        return sseClusterRouter.isReachable(userId);
+    }
+
+    public CompletableFuture<Void> dispatchNotification(String userId, NotificationResponse response) {
+        return sseQueue.submit(response.getPriority(), () -> deliverNotification(userId, response));
+    }
+
+    private void deliverNotification(String userId, NotificationResponse response) {
+        // The router delivers locally or forwards to the node holding the user's stream
+        try {
+            sseClusterRouter.deliver(userId, "notification", objectMapper.writeValueAsString(response), isBatchable(response));
+            log.debug("Attempted to send notification ID {} to user {} via SSE", response.getId(), userId);
+        } catch (JsonProcessingException e) {
+            log.error("Error serializing notification ID {} for user {}: {}", response.getId(), userId, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Deliver one broadcast to many recipients over SSE. The payload is encoded once and only the
+     * per-recipient id and userId are spliced into each frame.
+     * @param prototype response for any one of the recipients
+     * @param notifications the persisted per-user rows sharing the prototype's content
+     */
+    public CompletableFuture<Void> dispatchBroadcast(NotificationResponse prototype, List<Notification> notifications) {
+        return sseQueue.submit(prototype.getPriority(), () -> deliverBroadcast(prototype, notifications));
+    }
+
+    private void deliverBroadcast(NotificationResponse prototype, List<Notification> notifications) {
+        BroadcastFrameTemplate template;
+        try {
+            template = BroadcastFrameTemplate.encode(objectMapper, prototype);
+        } catch (JsonProcessingException | IllegalStateException e) {
+            log.error("Could not pre-encode broadcast frame, encoding per recipient instead: {}", e.getMessage(), e);
+            for (Notification notification : notifications) {
+                prototype.setId(notification.getId());
+                prototype.setUserId(notification.getUserId());
+                deliverNotification(notification.getUserId(), prototype);
+            }
+            return;
+        }
+        boolean batchable = isBatchable(prototype);
+        int delivered = 0;
+        for (Notification notification : notifications) {
+            if (sseClusterRouter.deliver(notification.getUserId(), "notification", template.render(notification.getId(), notification.getUserId()), batchable)) {
+                delivered++;
+            }
+        }
+        log.debug("Broadcast frame delivered to {} of {} recipients via SSE", delivered, notifications.size());
+    }
+
+    /**
+     * Deliver a shared broadcast to every user reachable over SSE. The frame is encoded once; each recipient's
+     * copy differs only in its userId.
+     * @param prototype the broadcast's response; its id is the same for every recipient
+     */
+    public CompletableFuture<Void> dispatchSharedBroadcast(NotificationResponse prototype) {
+        return sseQueue.submit(prototype.getPriority(), () -> deliverSharedBroadcast(prototype));
+    }
+
+    private void deliverSharedBroadcast(NotificationResponse prototype) {
+        Set<String> recipients = sseClusterRouter.reachableUserIds();
+        BroadcastFrameTemplate template;
+        try {
+            template = BroadcastFrameTemplate.encode(objectMapper, prototype);
+        } catch (JsonProcessingException | IllegalStateException e) {
+            log.error("Could not pre-encode broadcast frame, encoding per recipient instead: {}", e.getMessage(), e);
+            for (String userId : recipients) {
+                prototype.setUserId(userId);
+                deliverNotification(userId, prototype);
+            }
+            return;
+        }
+        boolean batchable = isBatchable(prototype);
+        int delivered = 0;
+        for (String userId : recipients) {
+            if (sseClusterRouter.deliver(userId, "notification", template.render(prototype.getId(), userId), batchable)) {
+                delivered++;
+            }
+        }
+        log.debug("Shared broadcast {} delivered to {} of {} reachable users via SSE", prototype.getId(), delivered, recipients.size());
+    }
+
+    /**
+     * @return completes once the email is sent, or was already sent earlier; exceptionally if sending failed
+     */
+    public CompletableFuture<Void> dispatchToEmail(String userId, NotificationResponse response) {
         if (response == null || response.getId() == null) {
             log.warn("Cannot dispatch email for null response or response with no ID for user {}.", userId);
-            return;
+            return CompletableFuture.completedFuture(null);
+        }
+        // Decided from cached preferences, before the email takes a queue slot or reads its row
+        if (!userPreferencesService.acceptsEmail(userId, response.getNotificationType())) {
+            log.debug("Email for notification ID {} not sent to user {}: email is off or the type is muted.", response.getId(), userId);
+            return CompletableFuture.completedFuture(null);
         }
+        return emailQueue.submit(response.getPriority(), () -> sendEmail(userId, response));
+    }
+
+    // Runs on an email worker; the repository calls carry their own transactions. emailDispatchedAt keeps
+    // a redelivered outbox entry from sending twice once the first send has been recorded.
+    private void sendEmail(String userId, NotificationResponse response) {
 
         Notification notification = notificationRepository.findById(response.getId()).orElse(null);
 
@@ -47,12 +177,23 @@ public class NotificationDispatchService {
                 log.info("Successfully dispatched email for notification ID {} to user {}.", response.getId(), userId);
             } catch (Exception e) {
                 log.error("Error during email dispatch or updating notification ID {}: {}", response.getId(), e.getMessage(), e);
-                // Depending on requirements, we might not set emailDispatchedAt if email sending fails,
-                // to allow for retries. For now, we assume if sendNotificationEmail throws, we don't mark as dispatched.
+                // Not marked as dispatched; the failure is passed on so the outbox entry is retried
+                throw new IllegalStateException("Email for notification " + response.getId() + " failed: " + e.getMessage(), e);
             }
         } else {
             log.info("Email for notification ID {} to user {} already dispatched at {}. Skipping.",
                     response.getId(), userId, notification.getEmailDispatchedAt());
         }
     }
-}
\ No newline at end of file
+
+    // Critical notifications bypass the micro-batch window
+    private static boolean isBatchable(NotificationResponse response) {
+        return response.getPriority() != NotificationPriority.CRITICAL;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        sseQueue.shutdown(Duration.ofSeconds(5));
+        emailQueue.shutdown(Duration.ofSeconds(10));
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.notification.service;
+
+import com.example.notification.dto.NotificationEvent;
+import com.example.notification.dto.NotificationIngestReceipt;
+import com.example.notification.kafka.NotificationIngestProducer;
+import com.example.notification.model.NotificationPriority;
+import com.example.notification.repository.BroadcastNotificationRepository;
+import com.example.notification.repository.NotificationRepository;
+import com.example.notification.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Accepts notifications from the REST endpoints by publishing them to the notification topics, where the
+ * consumers persist and dispatch them as they do for any other producer. Each recipient becomes its own
+ * record keyed by user id, so a large target list spreads over all partitions and per-user order holds.
+ * A broadcast ("ALL") stays one record so the consumer can take the broadcast path, and so does an event
+ * targeting a segment, which the consumer resolves to its members.
+ */
+@Service
+@Slf4j
+public class NotificationIngestService {
+
+    private final NotificationIngestProducer producer;
+    private final NotificationProcessingOrchestrator orchestrator;
+    private final NotificationRepository notificationRepository;
+    private final BroadcastNotificationRepository broadcastRepository;
+    private final BroadcastFanoutService broadcastFanoutService;
+    private final UserRepository userRepository;
+    private final AudienceSegmentService segmentService;
+    private final String notificationsTopic;
+    private final String criticalNotificationsTopic;
+    private final long waitTimeoutMs;
+
+    public NotificationIngestService(NotificationIngestProducer producer,
+                                     NotificationProcessingOrchestrator orchestrator,
+                                     NotificationRepository notificationRepository,
+                                     BroadcastNotificationRepository broadcastRepository,
+                                     BroadcastFanoutService broadcastFanoutService,
+                                     UserRepository userRepository,
+                                     AudienceSegmentService segmentService,
+                                     @Value("${notification.kafka.topics.notifications}") String notificationsTopic,
+                                     @Value("${notification.kafka.topics.critical-notifications}") String criticalNotificationsTopic,
+                                     @Value("${notification.ingest.wait-timeout-ms:4000}") long waitTimeoutMs) {
+        this.producer = producer;
+        this.orchestrator = orchestrator;
+        this.notificationRepository = notificationRepository;
+        this.broadcastRepository = broadcastRepository;
+        this.broadcastFanoutService = broadcastFanoutService;
+        this.userRepository = userRepository;
+        this.segmentService = segmentService;
+        this.notificationsTopic = notificationsTopic;
+        this.criticalNotificationsTopic = criticalNotificationsTopic;
+        this.waitTimeoutMs = waitTimeoutMs;
+    }
+
+    /**
+     * Publish {@code event}. An event without an eventId is given one, so redelivered records stay idempotent.
+     * @param waitForPersisted also wait, up to {@code notification.ingest.wait-timeout-ms}, until every
+     *        recipient's row exists, or for a broadcast stored shared, until its one row exists. Blocking is cheap here: requests run on virtual threads.
+     * @throws IllegalArgumentException if the event is invalid
+     * @throws IllegalStateException if the records could not be handed to Kafka
+     */
+    public NotificationIngestReceipt ingest(NotificationEvent event, boolean waitForPersisted) {
+        orchestrator.validateNotificationEvent(event);
+        List<String> targetUserIds = event.getTargetUserIds() != null ? event.getTargetUserIds() : List.of();
+        boolean segmented = event.getSegment() != null && !event.getSegment().isBlank();
+        if (targetUserIds.isEmpty() && !segmented) {
+            throw new IllegalArgumentException("Please select at least one user to send the notification");
+        }
+        NotificationEvent accepted = event.getEventId() == null || event.getEventId().isBlank()
+                ? event.toBuilder().eventId(UUID.randomUUID().toString()).build()
+                : event;
+        String topic = accepted.getPriority() == NotificationPriority.CRITICAL ? criticalNotificationsTopic : notificationsTopic;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitTimeoutMs);
+
+        boolean broadcast = targetUserIds.size() == 1 && "ALL".equalsIgnoreCase(targetUserIds.get(0));
+        Set<String> distinct = new LinkedHashSet<>();
+        if (!broadcast) {
+            for (String userId : targetUserIds) {
+                if (userId != null && !userId.isBlank()) {
+                    distinct.add(userId);
+                }
+            }
+        }
+        int recipients;
+        if (broadcast) {
+            recipients = (int) userRepository.count();
+        } else if (segmented) {
+            // Resolved here too, so a bad segment is rejected before anything is published
+            Set<String> audience = new LinkedHashSet<>(distinct);
+            audience.addAll(segmentService.resolve(accepted.getSegment()));
+            recipients = audience.size();
+        } else {
+            recipients = distinct.size();
+        }
+        if (recipients == 0 && !broadcast) {
+            throw new IllegalArgumentException("Please select at least one user to send the notification");
+        }
+
+        List<CompletableFuture<?>> sends = new ArrayList<>(Math.max(1, distinct.size()));
+        try {
+            if (broadcast || segmented) {
+                sends.add(producer.send(topic, accepted.getEventId(), accepted));
+            } else {
+                for (String userId : distinct) {
+                    sends.add(producer.send(topic, userId, accepted.toBuilder().targetUserIds(List.of(userId)).build()));
+                }
+            }
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("Could not publish notification " + accepted.getEventId() + ": " + e.getMessage(), e);
+        }
+        log.info("Published notification {} to {} for {} recipient(s)", accepted.getEventId(), topic, recipients);
+
+        NotificationIngestReceipt.Status status = NotificationIngestReceipt.Status.ACCEPTED;
+        if (waitForPersisted) {
+            awaitAcks(accepted.getEventId(), sends, deadline);
+            String eventId = accepted.getEventId();
+            // A shared broadcast writes no per-user rows, so counting them would always wait out the timeout
+            BooleanSupplier persisted = broadcast && broadcastFanoutService.storesShared(accepted.getPriority() == NotificationPriority.CRITICAL)
+                    ? () -> broadcastRepository.findByEventId(eventId).isPresent()
+                    : () -> notificationRepository.countByEventId(eventId) >= recipients;
+            status = awaitPersisted(persisted, deadline)
+                    ? NotificationIngestReceipt.Status.PERSISTED
+                    : NotificationIngestReceipt.Status.PENDING;
+        }
+        return NotificationIngestReceipt.builder()
+                .eventId(accepted.getEventId())
+                .recipients(recipients)
+                .status(status)
+                .build();
+    }
+
+    private static void awaitAcks(String eventId, List<CompletableFuture<?>> sends, long deadline) {
+        try {
+            CompletableFuture.allOf(sends.toArray(new CompletableFuture[0]))
+                    .get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not publish notification " + eventId + ": " + e.getCause().getMessage(), e.getCause());
+        } catch (TimeoutException e) {
+            // Still in flight; the persisted check below reports PENDING
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Polls with a growing pause; the consumer may run on any node, so the database is the common ground
+    private static boolean awaitPersisted(BooleanSupplier persisted, long deadline) {
+        long pauseMs = 20;
+        while (true) {
+            if (persisted.getAsBoolean()) {
+                return true;
+            }
+            long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remainingMs <= 0) {
+                return false;
+            }
+            try {
+                Thread.sleep(Math.min(pauseMs, remainingMs));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            pauseMs = Math.min(pauseMs * 2, 250);
+        }
+    }
+}
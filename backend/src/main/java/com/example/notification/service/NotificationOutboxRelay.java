@@ -0,0 +1,207 @@
+package com.example.notification.service;
+
+import com.example.notification.config.ClusterNode;
+import com.example.notification.model.Notification;
+import com.example.notification.model.NotificationOutboxEntry;
+import com.example.notification.model.NotificationOutboxEntry.Channel;
+import com.example.notification.repository.NotificationRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Drains the notification outbox into the dispatch queues. Each channel has its own relay thread, so a slow
+ * SMTP server holds back email only; no transaction or connection is held while deliveries are in flight.
+ * Entries are deleted once their delivery has completed and rescheduled if it failed. A node that stops
+ * mid-batch leaves its entries leased, and they are delivered again when the lease expires.
+ */
+@Component
+@Slf4j
+public class NotificationOutboxRelay implements SmartLifecycle {
+
+    private final NotificationOutboxService outboxService;
+    private final NotificationDispatchService dispatchService;
+    private final NotificationPersistenceService persistenceService;
+    private final NotificationRepository notificationRepository;
+    private final int batchSize;
+    private final long pollIntervalMs;
+    private final long deliveryTimeoutMs;
+    private final Map<Channel, Counter> delivered = new EnumMap<>(Channel.class);
+    private final List<Thread> relays = new ArrayList<>();
+    private volatile boolean running;
+
+    private record Delivery(List<NotificationOutboxEntry> entries, CompletableFuture<Void> done) {
+    }
+
+    public NotificationOutboxRelay(NotificationOutboxService outboxService,
+                                   NotificationDispatchService dispatchService,
+                                   NotificationPersistenceService persistenceService,
+                                   NotificationRepository notificationRepository,
+                                   ClusterNode clusterNode,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${notification.outbox.batch-size:200}") int batchSize,
+                                   @Value("${notification.outbox.poll-interval-ms:1000}") long pollIntervalMs,
+                                   @Value("${notification.outbox.lease-ms:30000}") long leaseMs) {
+        this.outboxService = outboxService;
+        this.dispatchService = dispatchService;
+        this.persistenceService = persistenceService;
+        this.notificationRepository = notificationRepository;
+        this.batchSize = Math.max(1, batchSize);
+        this.pollIntervalMs = pollIntervalMs;
+        // Leave a margin so completion is recorded before the lease lets another relay take the entries
+        this.deliveryTimeoutMs = leaseMs * 3 / 4;
+        for (Channel channel : Channel.values()) {
+            delivered.put(channel, Counter.builder("notification_outbox_delivered_total")
+                    .description("Outbox entries delivered and removed")
+                    .tag("channel", channel.name().toLowerCase())
+                    .tag("node", clusterNode.getNodeId())
+                    .register(meterRegistry));
+        }
+    }
+
+    @Override
+    public synchronized void start() {
+        running = true;
+        for (Channel channel : Channel.values()) {
+            relays.add(Thread.ofPlatform().daemon().name("outbox-relay-" + channel.name().toLowerCase())
+                    .start(() -> relay(channel)));
+        }
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        relays.forEach(Thread::interrupt);
+        for (Thread relay : relays) {
+            try {
+                relay.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        relays.clear();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void relay(Channel channel) {
+        while (running) {
+            try {
+                if (relayBatch(channel) < batchSize) {
+                    outboxService.awaitWork(channel, pollIntervalMs);
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                log.error("{} outbox relay failed: {}", channel, e.getMessage(), e);
+                try {
+                    Thread.sleep(pollIntervalMs);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Claim, deliver and settle one batch of {@code channel} entries.
+     * @return the number of entries claimed
+     */
+    int relayBatch(Channel channel) throws InterruptedException {
+        List<NotificationOutboxEntry> entries = outboxService.claim(channel, batchSize);
+        if (entries.isEmpty()) {
+            return 0;
+        }
+        Map<Long, Notification> rows = notificationRepository.findAllById(entries.stream()
+                        .map(NotificationOutboxEntry::getNotificationId).distinct().toList())
+                .stream()
+                .collect(Collectors.toMap(Notification::getId, Function.identity()));
+
+        List<Long> done = new ArrayList<>(entries.size());
+        List<NotificationOutboxEntry> pending = new ArrayList<>(entries.size());
+        for (NotificationOutboxEntry entry : entries) {
+            // The user may have deleted the notification in the meantime
+            if (rows.containsKey(entry.getNotificationId())) {
+                pending.add(entry);
+            } else {
+                done.add(entry.getId());
+            }
+        }
+        List<Delivery> deliveries = channel == Channel.SSE ? deliverSse(pending, rows) : deliverEmail(pending, rows);
+
+        List<NotificationOutboxEntry> failed = new ArrayList<>();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deliveryTimeoutMs);
+        for (Delivery delivery : deliveries) {
+            try {
+                delivery.done().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                delivery.entries().forEach(entry -> done.add(entry.getId()));
+            } catch (ExecutionException e) {
+                failed.addAll(delivery.entries());
+            } catch (TimeoutException e) {
+                // Still queued or sending; the lease runs out and the entries are delivered again
+                log.warn("{} delivery of {} outbox entries did not finish within {} ms", channel, delivery.entries().size(), deliveryTimeoutMs);
+            }
+        }
+        outboxService.complete(done);
+        if (!failed.isEmpty()) {
+            outboxService.fail(failed);
+        }
+        delivered.get(channel).increment(done.size());
+        return entries.size();
+    }
+
+    // Rows of one event created together share their content, so each such group is encoded once
+    private List<Delivery> deliverSse(List<NotificationOutboxEntry> entries, Map<Long, Notification> rows) {
+        Map<List<Object>, List<NotificationOutboxEntry>> groups = new LinkedHashMap<>();
+        for (NotificationOutboxEntry entry : entries) {
+            Notification row = rows.get(entry.getNotificationId());
+            List<Object> key = row.getEventId() != null
+                    ? List.of(row.getEventId(), Objects.toString(row.getCreatedAt()))
+                    : List.of(row.getId());
+            groups.computeIfAbsent(key, k -> new ArrayList<>()).add(entry);
+        }
+        List<Delivery> deliveries = new ArrayList<>(groups.size());
+        for (List<NotificationOutboxEntry> group : groups.values()) {
+            Notification first = rows.get(group.get(0).getNotificationId());
+            CompletableFuture<Void> done;
+            if (group.size() == 1) {
+                done = dispatchService.dispatchNotification(first.getUserId(), persistenceService.convertToResponse(first));
+            } else {
+                List<Notification> notifications = group.stream().map(entry -> rows.get(entry.getNotificationId())).toList();
+                done = dispatchService.dispatchBroadcast(persistenceService.convertToResponse(first), notifications);
+            }
+            deliveries.add(new Delivery(group, done));
+        }
+        return deliveries;
+    }
+
+    private List<Delivery> deliverEmail(List<NotificationOutboxEntry> entries, Map<Long, Notification> rows) {
+        List<Delivery> deliveries = new ArrayList<>(entries.size());
+        for (NotificationOutboxEntry entry : entries) {
+            Notification row = rows.get(entry.getNotificationId());
+            deliveries.add(new Delivery(List.of(entry),
+                    dispatchService.dispatchToEmail(row.getUserId(), persistenceService.convertToResponse(row))));
+        }
+        return deliveries;
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.notification.service;
+
+import com.example.notification.config.ClusterNode;
+import com.example.notification.model.Notification;
+import com.example.notification.model.NotificationOutboxEntry;
+import com.example.notification.model.NotificationOutboxEntry.Channel;
+import com.example.notification.repository.NotificationOutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The notification outbox: every new notification row gets its pending SSE and email deliveries recorded in
+ * the same transaction, so a delivery is never lost to a crash between commit and dispatch and never sent for
+ * a row that rolled back. {@link NotificationOutboxRelay} claims due entries in short transactions, delivers
+ * them with no transaction open, and then completes or reschedules them. Delivery is at least once.
+ */
+@Service
+@Slf4j
+public class NotificationOutboxService {
+
+    private final NotificationOutboxRepository outboxRepository;
+    private final SseClusterRouter sseClusterRouter;
+    private final String nodeId;
+    private final Duration lease;
+    private final Duration retryBackoff;
+    private final int maxAttempts;
+    private final Map<Channel, Semaphore> signals = new EnumMap<>(Channel.class);
+    private final Map<Channel, Counter> abandoned = new EnumMap<>(Channel.class);
+
+    public NotificationOutboxService(NotificationOutboxRepository outboxRepository,
+                                     SseClusterRouter sseClusterRouter,
+                                     ClusterNode clusterNode,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${notification.outbox.lease-ms:30000}") long leaseMs,
+                                     @Value("${notification.outbox.retry-backoff-ms:1000}") long retryBackoffMs,
+                                     @Value("${notification.outbox.max-attempts:8}") int maxAttempts) {
+        this.outboxRepository = outboxRepository;
+        this.sseClusterRouter = sseClusterRouter;
+        this.nodeId = clusterNode.getNodeId();
+        this.lease = Duration.ofMillis(leaseMs);
+        this.retryBackoff = Duration.ofMillis(retryBackoffMs);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        for (Channel channel : Channel.values()) {
+            signals.put(channel, new Semaphore(0));
+            abandoned.put(channel, Counter.builder("notification_outbox_abandoned_total")
+                    .description("Outbox deliveries given up after the last attempt failed")
+                    .tag("channel", channel.name().toLowerCase())
+                    .tag("node", nodeId)
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * Record the deliveries for freshly inserted notifications. Only users with an SSE stream somewhere in the
+     * cluster get an SSE entry; the others read the row when they next open the app.
+     * @param email whether each notification is also sent by email
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(Collection<Notification> notifications, boolean email) {
+        if (notifications.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = now();
+        List<NotificationOutboxEntry> entries = new ArrayList<>(notifications.size() * (email ? 2 : 1));
+        boolean sse = false;
+        for (Notification notification : notifications) {
+            if (sseClusterRouter.isReachable(notification.getUserId())) {
+                entries.add(entry(notification, Channel.SSE, now));
+                sse = true;
+            }
+            if (email) {
+                entries.add(entry(notification, Channel.EMAIL, now));
+            }
+        }
+        if (entries.isEmpty()) {
+            return;
+        }
+        outboxRepository.saveAll(entries);
+        boolean signalSse = sse;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                if (signalSse) {
+                    signal(Channel.SSE);
+                }
+                if (email) {
+                    signal(Channel.EMAIL);
+                }
+            }
+        });
+    }
+
+    /**
+     * Lease up to {@code limit} due entries of one channel to this node, highest priority first. Entries not
+     * completed before the lease runs out become due again, for this or any other node.
+     */
+    @Transactional
+    public List<NotificationOutboxEntry> claim(Channel channel, int limit) {
+        LocalDateTime now = now();
+        List<Long> due = outboxRepository.findDueIds(channel, now, PageRequest.of(0, limit));
+        if (due.isEmpty()) {
+            return Collections.emptyList();
+        }
+        LocalDateTime leaseUntil = now.plus(lease);
+        if (outboxRepository.claim(due, nodeId, now, leaseUntil) == 0) {
+            return Collections.emptyList();
+        }
+        return outboxRepository.findClaimed(due, nodeId, leaseUntil);
+    }
+
+    @Transactional
+    public void complete(Collection<Long> ids) {
+        if (!ids.isEmpty()) {
+            outboxRepository.deleteByIdIn(ids);
+        }
+    }
+
+    /**
+     * Make failed entries due again after an exponential back-off, or drop them once they have used up
+     * {@code notification.outbox.max-attempts}.
+     */
+    @Transactional
+    public void fail(Collection<NotificationOutboxEntry> entries) {
+        List<Long> exhausted = new ArrayList<>();
+        Map<Integer, List<Long>> retryByAttempts = new HashMap<>();
+        for (NotificationOutboxEntry entry : entries) {
+            int attempts = entry.getAttempts() + 1;
+            if (attempts < maxAttempts) {
+                retryByAttempts.computeIfAbsent(entry.getAttempts(), k -> new ArrayList<>()).add(entry.getId());
+                continue;
+            }
+            log.error("Giving up {} delivery of notification {} to user {} after {} attempts",
+                    entry.getChannel(), entry.getNotificationId(), entry.getUserId(), attempts);
+            abandoned.get(entry.getChannel()).increment();
+            exhausted.add(entry.getId());
+        }
+        complete(exhausted);
+        LocalDateTime now = now();
+        retryByAttempts.forEach((attempts, ids) -> outboxRepository.reschedule(ids, now.plus(backoff(attempts))));
+    }
+
+    /**
+     * Wait until new entries for {@code channel} have been committed on this node, or the timeout passes.
+     * Entries written by other nodes are only found by polling.
+     */
+    public void awaitWork(Channel channel, long timeoutMs) throws InterruptedException {
+        Semaphore signal = signals.get(channel);
+        signal.tryAcquire(timeoutMs, TimeUnit.MILLISECONDS);
+        signal.drainPermits();
+    }
+
+    void signal(Channel channel) {
+        Semaphore signal = signals.get(channel);
+        if (signal.availablePermits() == 0) {
+            signal.release();
+        }
+    }
+
+    Duration backoff(int attempts) {
+        return retryBackoff.multipliedBy(1L << Math.min(attempts, 10));
+    }
+
+    private NotificationOutboxEntry entry(Notification notification, Channel channel, LocalDateTime now) {
+        return NotificationOutboxEntry.builder()
+                .notificationId(notification.getId())
+                .userId(notification.getUserId())
+                .channel(channel)
+                .priorityRank(notification.getPriority() != null ? notification.getPriority().ordinal() : 0)
+                .nextAttemptAt(now)
+                .createdAt(now)
+                .build();
+    }
+
+    // Millisecond precision, so a lease read back from the database compares equal to the one written
+    private static LocalDateTime now() {
+        return LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+    }
+}
@@ -1,42 +1,81 @@
 package com.example.notification.service;
 
 import com.example.notification.dto.NotificationResponse;
+import com.example.notification.model.BroadcastCheckpoint;
+import com.example.notification.model.BroadcastNotification;
 import com.example.notification.model.Notification;
 import com.example.notification.model.NotificationStatus;
 import com.example.notification.model.NotificationType;
-import com.example.notification.model.User;
+import com.example.notification.repository.BroadcastCheckpointRepository;
+import com.example.notification.repository.BroadcastNotificationRepository;
 import com.example.notification.repository.NotificationRepository;
 import com.example.notification.repository.NotificationTypeRepository;
+import com.example.notification.repository.PooledIdAllocator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import com.example.notification.dto.NotificationEvent;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class NotificationPersistenceService {
 
+    private static final int EVENT_ID_CHUNK = 500;
+
+    private static final int BULK_CHUNK = 500;
+
+    private static final String BULK_MERGE_HEAD = "MERGE INTO notifications n USING (";
+    private static final String BULK_MERGE_ROW = "SELECT CAST(? AS VARCHAR(255)) AS user_id, CAST(? AS NUMBER(19)) AS id FROM dual";
+    private static final String BULK_MERGE_TAIL = ") r ON (n.event_id = ? AND n.user_id = r.user_id) "
+            + "WHEN NOT MATCHED THEN INSERT "
+            + "(id, user_id, event_id, notification_type_id, source_service, title, priority, content, created_at, read_status, metadata, tags) "
+            + "VALUES (r.id, r.user_id, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String BROADCAST_INSERT = "INSERT INTO notifications "
+            + "(id, user_id, event_id, notification_type_id, source_service, title, priority, content, created_at, read_status, metadata, tags) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
     private final NotificationRepository notificationRepository;
     private final NotificationTypeRepository notificationTypeRepository;
+    private final NotificationTypeService notificationTypeService;
     private final ObjectMapper objectMapper;
-    private final com.example.notification.repository.UserRepository userRepository;
+    private final UnreadCounterService unreadCounterService;
+    private final NotificationOutboxService outboxService;
+    private final RecipientKeyFilter recipientKeyFilter;
+    private final BroadcastCheckpointRepository checkpointRepository;
+    private final BroadcastNotificationRepository broadcastRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final PooledIdAllocator idAllocator;
+
     /**
-     * Returns a list of all user IDs (usernames) in the system.
+     * Persist one recipient's notification and, if it is new, its outbox entries. The database is asked
+     * whether the pair exists only when {@link RecipientKeyFilter} cannot rule it out.
+     * @param email whether the notification is also delivered by email
+     * @return the inserted row, or null if the recipient already has this notification
+     * @throws org.springframework.dao.DataIntegrityViolationException if another node inserted the pair first;
+     *         see {@link #isDuplicateRecipient}
      */
-    public java.util.List<String> getAllUserIds() {
-        return userRepository.findAll().stream()
-                .map(com.example.notification.model.User::getUsername)
-                .collect(java.util.stream.Collectors.toList());
-    }
-
     @Transactional
-    public Notification persistNotification(NotificationEvent event, String userId) {
+    public Notification persistNotification(NotificationEvent event, String userId, boolean email) {
         log.info("Persisting notification for userId={} with eventId={}, title='{}'", userId, event.getEventId(), event.getTitle());
         // Validate eventId
         if (event.getEventId() == null || event.getEventId().trim().isEmpty()) {
@@ -44,12 +83,19 @@ public class NotificationPersistenceService {
             throw new IllegalArgumentException("eventId is mandatory and cannot be null or empty for notifications.");
         }
 
-        // Check for existing notification if eventId is present
-        java.util.Optional<Notification> existingNotification = notificationRepository.findByEventIdAndUserId(event.getEventId(), userId);
-        if (existingNotification.isPresent()) {
-            log.info("Notification with eventId {} and userId {} already exists with ID {}. Skipping persistence.",
-                     event.getEventId(), userId, existingNotification.get().getId());
-            return existingNotification.get();
+        RecipientKeyFilter.Verdict verdict = recipientKeyFilter.classify(event.getEventId(), userId);
+        if (verdict == RecipientKeyFilter.Verdict.DUPLICATE) {
+            log.info("Notification with eventId {} and userId {} was persisted recently. Skipping persistence.", event.getEventId(), userId);
+            return null;
+        }
+        if (verdict == RecipientKeyFilter.Verdict.CHECK_DATABASE) {
+            java.util.Optional<Notification> existingNotification = notificationRepository.findByEventIdAndUserId(event.getEventId(), userId);
+            if (existingNotification.isPresent()) {
+                log.info("Notification with eventId {} and userId {} already exists with ID {}. Skipping persistence.",
+                         event.getEventId(), userId, existingNotification.get().getId());
+                recipientKeyFilter.recordExisting(event.getEventId(), userId);
+                return null;
+            }
         }
 
         NotificationType notificationType = findOrCreateNotificationType(event.getNotificationType());
@@ -66,70 +112,294 @@ public class NotificationPersistenceService {
                 .readStatus(NotificationStatus.UNREAD)
                 .title(event.getTitle())
                 .build();
-        return notificationRepository.save(notification);
+        Notification saved = notificationRepository.save(notification);
+        notificationRepository.flush(); // Sequence ids defer the insert; surface a duplicate pair here, not at commit
+        unreadCounterService.recordChange(userId, 1);
+        outboxService.enqueue(List.of(saved), email);
+        recipientKeyFilter.recordPersisted(List.of(saved));
+        return saved;
     }
 
+    /**
+     * Persist every (event, recipient) pair of a consumer batch in one transaction. Existing pairs are
+     * found with one query per chunk of event ids rather than one lookup per recipient, and only for events
+     * with a pair {@link RecipientKeyFilter} cannot rule out. Each notification type is resolved once. All rows of one event share a creation time. The new rows' outbox
+     * entries are written in the same transaction.
+     * @param recipientsByEvent validated events mapped to their resolved recipient user ids
+     * @param email whether the notifications are also delivered by email
+     * @return the rows inserted by this call, grouped by event in input order; pairs that already existed are left out
+     * @throws org.springframework.dao.DataIntegrityViolationException if another node inserted a pair first;
+     *         see {@link #isDuplicateRecipient}
+     */
     @Transactional
-    public List<Notification> persistBroadcastNotifications(NotificationEvent event, List<User> users) {
-        // Note: Idempotency for broadcast notifications is more complex.
-        // If an eventId is present, it means the event itself is unique.
-        // Persisting for each user means each user-notification will be unique by (eventId, userId).
-        // The current NotificationRepository.findByEventIdAndUserId would handle this if called per user.
-        // However, saveAll doesn't typically do individual checks.
-        // For true idempotency on broadcast, we might need to filter users for whom the (eventId, userId) combo already exists.
-        // This implementation will rely on the unique constraint (eventId, userId) at DB level if saveAll attempts duplicates with same eventId.
-        // Or, iterate and call persistNotification for each user if strict per-user idempotency check before attempting save is needed.
+    public List<Notification> persistBatch(Map<NotificationEvent, List<String>> recipientsByEvent, boolean email) {
+        Set<String> knownDuplicates = new HashSet<>();
+        Set<String> eventIdsToCheck = new LinkedHashSet<>();
+        for (Map.Entry<NotificationEvent, List<String>> entry : recipientsByEvent.entrySet()) {
+            String eventId = entry.getKey().getEventId();
+            for (String userId : entry.getValue()) {
+                switch (recipientKeyFilter.classify(eventId, userId)) {
+                    case DUPLICATE -> knownDuplicates.add(recipientKey(eventId, userId));
+                    case CHECK_DATABASE -> eventIdsToCheck.add(eventId);
+                    case NEW -> { }
+                }
+            }
+        }
+        Set<String> existing = findExistingRecipientKeys(eventIdsToCheck);
+        existing.addAll(knownDuplicates);
+        Map<String, NotificationType> types = new HashMap<>();
+        Map<String, Integer> newUnreadByUser = new HashMap<>();
+        List<Notification> notificationsToSave = new ArrayList<>();
 
-        if (event.getEventId() == null || event.getEventId().trim().isEmpty()) {
-            log.error("eventId is mandatory and cannot be null or empty for broadcast NotificationEvent. Event: {}", event);
-            throw new IllegalArgumentException("eventId is mandatory and cannot be null or empty for broadcast notifications.");
+        for (Map.Entry<NotificationEvent, List<String>> entry : recipientsByEvent.entrySet()) {
+            NotificationEvent event = entry.getKey();
+            NotificationType notificationType = types.computeIfAbsent(event.getNotificationType(), this::findOrCreateNotificationType);
+            LocalDateTime createdAt = LocalDateTime.now();
+            for (String userId : entry.getValue()) {
+                // add() also drops a pair that appears twice within the batch
+                if (!existing.add(recipientKey(event.getEventId(), userId))) {
+                    continue;
+                }
+                notificationsToSave.add(Notification.builder()
+                        .userId(userId)
+                        .eventId(event.getEventId())
+                        .sourceService(event.getSourceService())
+                        .notificationType(notificationType)
+                        .priority(event.getPriority())
+                        .content(event.getContent())
+                        .metadata(serializeToJson(event.getMetadata()))
+                        .tags(serializeToJson(event.getTags()))
+                        .readStatus(NotificationStatus.UNREAD)
+                        .title(event.getTitle())
+                        .createdAt(createdAt)
+                        .build());
+                newUnreadByUser.merge(userId, 1, Integer::sum);
+            }
+        }
+
+        if (notificationsToSave.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // Ids come from a pooled sequence, so these go out as JDBC batches of notification.persistence.batch-size
+        List<Notification> saved = notificationRepository.saveAll(notificationsToSave);
+        notificationRepository.flush();
+        newUnreadByUser.forEach(unreadCounterService::recordChange);
+        outboxService.enqueue(saved, email);
+        recipientKeyFilter.recordPersisted(saved);
+        log.info("Persisted {} notifications for {} events in one batch ({} looked up)",
+                saved.size(), recipientsByEvent.size(), eventIdsToCheck.size());
+        return saved;
+    }
+
+    /**
+     * Persist one event for many recipients with set-based statements instead of a lookup, a type resolution
+     * and an insert per recipient. The type is resolved once; each chunk of up to 500 recipients is written by
+     * one MERGE that skips users who already have the event, under ids claimed for the chunk beforehand; the rows
+     * inserted are read back by those ids, for their outbox entries and for the caller. Pairs {@link RecipientKeyFilter} knows were persisted recently
+     * are left out up front.
+     * @param email whether the notifications are also delivered by email
+     * @return the rows inserted by this call; users who already had the event are left out
+     * @throws org.springframework.dao.DataIntegrityViolationException if another node inserted a pair while the
+     *         MERGE ran; see {@link #isDuplicateRecipient}
+     */
+    @Transactional
+    public List<Notification> persistForRecipients(NotificationEvent event, Collection<String> userIds, boolean email) {
+        String eventId = event.getEventId();
+        if (eventId == null || eventId.trim().isEmpty()) {
+            throw new IllegalArgumentException("eventId is mandatory and cannot be null or empty for notifications.");
+        }
+        List<String> recipients = new ArrayList<>(userIds.size());
+        for (String userId : new LinkedHashSet<>(userIds)) {
+            if (recipientKeyFilter.classify(eventId, userId) != RecipientKeyFilter.Verdict.DUPLICATE) {
+                recipients.add(userId);
+            }
+        }
+        if (recipients.isEmpty()) {
+            return Collections.emptyList();
         }
 
         NotificationType notificationType = findOrCreateNotificationType(event.getNotificationType());
+        LocalDateTime createdAt = LocalDateTime.now();
+        String priority = event.getPriority() != null ? event.getPriority().name() : null;
+        String metadata = serializeToJson(event.getMetadata());
+        String tags = serializeToJson(event.getTags());
+        List<Notification> saved = new ArrayList<>(recipients.size());
+        for (int from = 0; from < recipients.size(); from += BULK_CHUNK) {
+            List<String> chunk = recipients.subList(from, Math.min(recipients.size(), from + BULK_CHUNK));
+            // Claimed for every row; the few left unused by users who already have the event are skipped. Only this
+            // call can insert under them, so reading them back finds exactly its rows, whoever else writes the event.
+            long[] ids = idAllocator.allocate(Notification.class, chunk.size());
+            List<Object> args = new ArrayList<>(chunk.size() * 2 + 11);
+            for (int i = 0; i < chunk.size(); i++) {
+                args.add(chunk.get(i));
+                args.add(ids[i]);
+            }
+            args.add(eventId);
+            args.addAll(Arrays.asList(eventId, notificationType.getId(), event.getSourceService(), event.getTitle(), priority,
+                    event.getContent(), createdAt, NotificationStatus.UNREAD.name(), metadata, tags));
+            jdbcTemplate.update(bulkMergeSql(chunk.size()), args.toArray());
+            saved.addAll(notificationRepository.findAllById(Arrays.stream(ids).boxed().toList()));
+        }
 
-        List<Notification> notificationsToSave = users.stream()
-                .map(user -> {
-                    // Optional: Add individual idempotency check here if needed before adding to batch
-                    // if (event.getEventId() != null && !event.getEventId().trim().isEmpty()) {
-                    //     Optional<Notification> existing = notificationRepository.findByEventIdAndUserId(event.getEventId(), user.getUsername());
-                    //     if (existing.isPresent()) {
-                    //         log.info("Broadcast notification for eventId {} and userId {} already exists. Skipping for this user.", event.getEventId(), user.getUsername());
-                    //         return null; // Will be filtered out by .filter(Objects::nonNull)
-                    //     }
-                    // }
-                    return Notification.builder()
-                            .userId(user.getUsername())
-                            .eventId(event.getEventId()) // Set eventId
-                            .sourceService(event.getSourceService())
-                            .notificationType(notificationType)
-                            .priority(event.getPriority())
-                            .content(event.getContent())
-                            .metadata(serializeToJson(event.getMetadata()))
-                            .tags(serializeToJson(event.getTags()))
-                            .readStatus(NotificationStatus.UNREAD)
-                            .title(event.getTitle())
-                            .build();
-                })
-                // .filter(java.util.Objects::nonNull) // Uncomment if individual check above is used
-                .collect(Collectors.toList());
+        Set<String> inserted = new HashSet<>();
+        for (Notification notification : saved) {
+            inserted.add(notification.getUserId());
+            unreadCounterService.recordChange(notification.getUserId(), 1);
+        }
+        recipients.stream().filter(userId -> !inserted.contains(userId))
+                .forEach(userId -> recipientKeyFilter.recordExisting(eventId, userId));
+        outboxService.enqueue(saved, email);
+        recipientKeyFilter.recordPersisted(saved);
+        log.info("Persisted event {} for {} of {} recipients in bulk", eventId, saved.size(), recipients.size());
+        return saved;
+    }
 
-        if (notificationsToSave.isEmpty()) {
-            log.info("No new broadcast notifications to save for event: {}", event.getEventId());
-            return java.util.Collections.emptyList();
+    private static String bulkMergeSql(int rows) {
+        StringBuilder sql = new StringBuilder(BULK_MERGE_HEAD.length() + rows * (BULK_MERGE_ROW.length() + 11) + BULK_MERGE_TAIL.length());
+        sql.append(BULK_MERGE_HEAD);
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sql.append(" UNION ALL ");
+            }
+            sql.append(BULK_MERGE_ROW);
+        }
+        return sql.append(BULK_MERGE_TAIL).toString();
+    }
+
+    private Set<String> findExistingRecipientKeys(Collection<String> eventIdsToCheck) {
+        List<String> eventIds = new ArrayList<>(eventIdsToCheck);
+        Set<String> keys = new HashSet<>();
+        // Keep IN lists well below Oracle's 1000-element limit
+        for (int from = 0; from < eventIds.size(); from += EVENT_ID_CHUNK) {
+            List<String> chunk = eventIds.subList(from, Math.min(eventIds.size(), from + EVENT_ID_CHUNK));
+            for (Object[] row : notificationRepository.findRecipientKeysByEventIdIn(chunk)) {
+                keys.add(recipientKey((String) row[0], (String) row[1]));
+            }
+        }
+        return keys;
+    }
+
+    private static String recipientKey(String eventId, String userId) {
+        return eventId + '\u0000' + userId;
+    }
+
+    /**
+     * Whether {@code e} is the {@code uc_event_user} constraint rejecting a pair that already has a row, which
+     * happens when the pair was inserted by another node or before this node started. Retrying the same call
+     * then looks the pair up, because the failed attempt left it in the {@link RecipientKeyFilter}.
+     */
+    public static boolean isDuplicateRecipient(DataIntegrityViolationException e) {
+        return violates(e, "UC_EVENT_USER");
+    }
+
+    /**
+     * Whether {@code e} is a foreign key on a notification's type: the type id came from a registry that had not
+     * yet seen the type deleted on another node.
+     */
+    public static boolean isUnknownType(DataIntegrityViolationException e) {
+        return violates(e, "FK_NOTIFICATION_TYPE") || violates(e, "FK_BROADCAST_TYPE");
+    }
+
+    /**
+     * Whether {@code e} is the {@code uc_broadcast_event} constraint: another consumer stored the broadcast first.
+     */
+    public static boolean isDuplicateBroadcast(DataIntegrityViolationException e) {
+        return violates(e, "UC_BROADCAST_EVENT");
+    }
+
+    private static boolean violates(DataIntegrityViolationException e, String constraint) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause.getMessage() != null && cause.getMessage().toUpperCase(Locale.ROOT).contains(constraint)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Persist one chunk of an "ALL" broadcast and advance its checkpoint in the same transaction, so a resumed
+     * broadcast neither skips nor repeats recipients. The rows are written with one JDBC batch under ids claimed
+     * from the notification sequence's pooled blocks, so their outbox entries are built without reading the rows
+     * back; no entities are loaded.
+     * @param userIds the next recipients in username order
+     * @param email whether the notifications are also delivered by email
+     * @return the advanced checkpoint
+     * @throws org.springframework.dao.DataIntegrityViolationException if a pair was inserted outside the filter's
+     *         knowledge; see {@link #isDuplicateRecipient}
+     * @throws org.springframework.orm.ObjectOptimisticLockingFailureException if another consumer advanced the
+     *         checkpoint first
+     */
+    @Transactional
+    public BroadcastCheckpoint persistBroadcastChunk(NotificationEvent event, BroadcastCheckpoint checkpoint,
+                                                     List<String> userIds, boolean email) {
+        String eventId = event.getEventId();
+        List<String> toCheck = new ArrayList<>();
+        Set<String> skip = new HashSet<>();
+        for (String userId : userIds) {
+            switch (recipientKeyFilter.classify(eventId, userId)) {
+                case DUPLICATE -> skip.add(userId);
+                case CHECK_DATABASE -> toCheck.add(userId);
+                case NEW -> { }
+            }
+        }
+        if (!toCheck.isEmpty()) {
+            skip.addAll(notificationRepository.findUserIdsByEventIdAndUserIdIn(eventId, toCheck));
+        }
+        List<String> recipients = skip.isEmpty() ? userIds : userIds.stream().filter(userId -> !skip.contains(userId)).toList();
+
+        if (!recipients.isEmpty()) {
+            NotificationType notificationType = findOrCreateNotificationType(event.getNotificationType());
+            String priority = event.getPriority() != null ? event.getPriority().name() : null;
+            String metadata = serializeToJson(event.getMetadata());
+            String tags = serializeToJson(event.getTags());
+            long[] ids = idAllocator.allocate(Notification.class, recipients.size());
+            List<Object[]> rows = new ArrayList<>(recipients.size());
+            List<Notification> inserted = new ArrayList<>(recipients.size());
+            for (int i = 0; i < recipients.size(); i++) {
+                String userId = recipients.get(i);
+                rows.add(new Object[]{ids[i], userId, eventId, notificationType.getId(), event.getSourceService(), event.getTitle(),
+                        priority, event.getContent(), checkpoint.getCreatedAt(), NotificationStatus.UNREAD.name(), metadata, tags});
+                inserted.add(Notification.builder().id(ids[i]).userId(userId).eventId(eventId).priority(event.getPriority()).build());
+            }
+            jdbcTemplate.batchUpdate(BROADCAST_INSERT, rows);
+            recipients.forEach(userId -> unreadCounterService.recordChange(userId, 1));
+            outboxService.enqueue(inserted, email);
+            recipientKeyFilter.recordPersisted(eventId, recipients);
         }
 
-        return notificationRepository.saveAll(notificationsToSave);
+        return checkpointRepository.save(checkpoint.toBuilder()
+                .lastUserId(userIds.get(userIds.size() - 1))
+                .persistedCount(checkpoint.getPersistedCount() + recipients.size())
+                .updatedAt(LocalDateTime.now())
+                .build());
+    }
+
+    /**
+     * Store a broadcast once for every user instead of one row per user.
+     * @return the stored broadcast, or null if the event was stored before
+     */
+    @Transactional
+    public BroadcastNotification persistSharedBroadcast(NotificationEvent event) {
+        if (broadcastRepository.findByEventId(event.getEventId()).isPresent()) {
+            log.info("Broadcast {} already stored. Skipping.", event.getEventId());
+            return null;
+        }
+        return broadcastRepository.save(BroadcastNotification.builder()
+                .eventId(event.getEventId())
+                .notificationType(findOrCreateNotificationType(event.getNotificationType()))
+                .sourceService(event.getSourceService())
+                .title(event.getTitle())
+                .content(event.getContent())
+                .priority(event.getPriority())
+                .createdAt(LocalDateTime.now())
+                .metadata(serializeToJson(event.getMetadata()))
+                .tags(serializeToJson(event.getTags()))
+                .build());
     }
 
+    // A reference by id: neither resolving the type nor inserting with it reads notification_types
     private NotificationType findOrCreateNotificationType(String typeCode) {
-        return notificationTypeRepository.findByTypeCode(typeCode)
-                .orElseGet(() -> {
-                    log.info("Notification type {} not found, creating new type.", typeCode);
-                    NotificationType newType = new NotificationType();
-                    newType.setTypeCode(typeCode);
-                    newType.setDescription("Automatically created for " + typeCode);
-                    return notificationTypeRepository.save(newType);
-                });
+        return notificationTypeRepository.getReferenceById(notificationTypeService.resolveTypeId(typeCode));
     }
 
     public NotificationResponse convertToResponse(Notification notification) {
@@ -137,7 +407,7 @@ public class NotificationPersistenceService {
                 .id(notification.getId())
                 .userId(notification.getUserId())
                 .sourceService(notification.getSourceService())
-                .notificationType(notification.getNotificationType() != null ? notification.getNotificationType().getTypeCode() : null)
+                .notificationType(notificationTypeService.typeCodeOf(notification.getNotificationType()))
                 .priority(notification.getPriority())
                 .content(notification.getContent())
                 .metadata(deserializeFromJson(notification.getMetadata()))
@@ -1,84 +1,254 @@
 package com.example.notification.service;
 
+import com.example.notification.config.LaneRoutingDataSource;
 import com.example.notification.dto.NotificationEvent;
-import com.example.notification.dto.NotificationResponse;
 import com.example.notification.model.Notification;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional; // Important for atomicity
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Persists incoming notifications. Each write is a short transaction that also records the SSE and email
+ * deliveries in the outbox; {@link NotificationOutboxRelay} sends them once the rows are committed.
+ */
 @Service
 @Slf4j
-@RequiredArgsConstructor
 public class NotificationProcessingOrchestrator {
 
     private final NotificationPersistenceService persistenceService;
-    private final NotificationDispatchService dispatchService;
+    private final BroadcastFanoutService broadcastFanoutService;
+    private final ProcessingLanes lanes;
+    private final AudienceSegmentService segmentService;
+    private final NotificationTypeService notificationTypeService;
+    private final int bulkMinRecipients;
+
+    public NotificationProcessingOrchestrator(NotificationPersistenceService persistenceService,
+                                              BroadcastFanoutService broadcastFanoutService,
+                                              ProcessingLanes lanes,
+                                              AudienceSegmentService segmentService,
+                                              NotificationTypeService notificationTypeService,
+                                              @Value("${notification.bulk.min-recipients:50}") int bulkMinRecipients) {
+        this.persistenceService = persistenceService;
+        this.broadcastFanoutService = broadcastFanoutService;
+        this.lanes = lanes;
+        this.segmentService = segmentService;
+        this.notificationTypeService = notificationTypeService;
+        this.bulkMinRecipients = Math.max(2, bulkMinRecipients);
+    }
 
     /**
-     * Process a standard or critical notification for specific users.
-     * @param event The notification event.
-     * @param isCritical Whether this is a critical notification.
+     * Process one event with per-user work spread over its lane's {@link UserKeyedExecutor}: recipients run in
+     * parallel, each in its own persistence transaction, while work for the same user keeps submission
+     * order. Critical events use the critical lane, which standard work can't fill up.
+     * A broadcast ("ALL") runs on the existing broadcast path once in-flight work in its lane has finished,
+     * and later work in the lane waits for it, so it is never reordered against per-user events around it.
+     * The caller is not blocked meanwhile.
+     * Not transactional: every recipient, or broadcast chunk, commits on its own. A broadcast that fails part
+     * way throws, so the record is retried and the broadcast resumes from its checkpoint.
+     * @return completes once every recipient has been handled, exceptionally with
+     *         {@link RecipientsFailedException} naming the users whose processing threw
      */
-    @Transactional // Ensures that saving and dispatch attempts are part of the same transaction context
-    public void processNotification(NotificationEvent event, boolean isCritical) {
-        log.info("Orchestrating processing for {} notification: {}", isCritical ? "critical" : "standard", event);
+    public CompletableFuture<Void> processNotificationKeyed(NotificationEvent event, boolean isCritical) {
+        return inLane(isCritical, () -> processKeyed(event, isCritical));
+    }
 
+    private CompletableFuture<Void> processKeyed(NotificationEvent event, boolean isCritical) {
         validateNotificationEvent(event);
-
-        // Handle broadcast use case: targetUserIds contains only "ALL"
-        java.util.List<String> targetUserIds = event.getTargetUserIds();
+        UserKeyedExecutor lane = lanes.lane(isCritical);
+        if (isBroadcast(event)) {
+            return lane.submitAfterAll(() -> processBroadcast(event, isCritical));
+        }
+        List<String> targetUserIds = recipientsOf(event);
         if (targetUserIds == null || targetUserIds.isEmpty()) {
             log.warn("No target user IDs provided for notification. Skipping. Event: {}", event);
-            return;
+            return CompletableFuture.completedFuture(null);
         }
-
-        if (targetUserIds.size() == 1 && "ALL".equalsIgnoreCase(targetUserIds.get(0))) {
-            // Fetch all user IDs from persistenceService or user service
-            try {
-                targetUserIds = persistenceService.getAllUserIds();
-                if (targetUserIds == null || targetUserIds.isEmpty()) {
-                    log.warn("No users found for broadcast notification. Event: {}", event);
-                    return;
-                }
-                log.info("Broadcasting notification to all users ({} total)", targetUserIds.size());
-            } catch (Exception e) {
-                log.error("Failed to fetch all user IDs for broadcast: {}", e.getMessage(), e);
-                return;
-            }
+        if (targetUserIds.size() >= bulkMinRecipients) {
+            // One set-based write beats a transaction per recipient; like a broadcast, it runs once earlier work is done
+            return lane.submitAfterAll(() -> processBulk(event, targetUserIds, isCritical));
         }
 
-        int processedCount = 0;
-        for (String userId : targetUserIds) {
+        List<CompletableFuture<Void>> perUser = new ArrayList<>(targetUserIds.size());
+        List<String> failedUserIds = Collections.synchronizedList(new ArrayList<>());
+        AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+        for (String userId : new LinkedHashSet<>(targetUserIds)) {
             if (userId == null || userId.trim().isEmpty()) {
                 log.warn("Skipping notification for null or empty userId in event: {}", event);
                 continue;
             }
-            try {
-                // 1. Persist the notification
-                Notification savedNotification = persistenceService.persistNotification(event, userId);
+            perUser.add(lane.submit(userId, () -> {
+                try {
+                    processForUser(event, userId, isCritical);
+                } catch (Exception e) {
+                    log.error("Error processing notification for user {}: {}. Event: {}", userId, e.getMessage(), event, e);
+                    failedUserIds.add(userId);
+                    firstFailure.compareAndSet(null, e);
+                }
+            }));
+        }
+        return CompletableFuture.allOf(perUser.toArray(new CompletableFuture[0]))
+                .thenRun(() -> {
+                    if (!failedUserIds.isEmpty()) {
+                        throw new RecipientsFailedException(failedUserIds, firstFailure.get());
+                    }
+                });
+    }
+
+    /**
+     * Persist one recipient's copy of the event; the outbox takes care of delivery.
+     */
+    private void processForUser(NotificationEvent event, String userId, boolean isCritical) {
+        persistWithRetry(() -> persistenceService.persistNotification(event, userId, isCritical));
+    }
+
+    /**
+     * Persist the event for all recipients at once; see {@link NotificationPersistenceService#persistForRecipients}.
+     */
+    private void processBulk(NotificationEvent event, List<String> targetUserIds, boolean isCritical) {
+        if (event.getEventId() == null || event.getEventId().trim().isEmpty()) {
+            log.error("eventId is mandatory for notifications. Skipping. Event: {}", event);
+            return;
+        }
+        List<String> recipients = targetUserIds.stream()
+                .filter(userId -> userId != null && !userId.trim().isEmpty())
+                .toList();
+        List<Notification> saved = persistWithRetry(() -> persistenceService.persistForRecipients(event, recipients, isCritical));
+        log.info("Processed notification {} in bulk: {} new of {} target users.", event.getEventId(), saved.size(), recipients.size());
+    }
+
+    private void processBroadcast(NotificationEvent event, boolean isCritical) {
+        if (event.getEventId() == null || event.getEventId().trim().isEmpty()) {
+            log.error("eventId is mandatory for broadcast notifications. Skipping. Event: {}", event);
+            return;
+        }
+        persistWithRetry(() -> broadcastFanoutService.broadcast(event, isCritical));
+    }
 
-                // 2. Convert to response DTO
-                NotificationResponse response = persistenceService.convertToResponse(savedNotification);
+    // Work done on this thread for a critical event takes its connections from the critical pool
+    private static <T> T inLane(boolean isCritical, Supplier<T> work) {
+        return isCritical ? LaneRoutingDataSource.critical(work) : work.get();
+    }
 
-                // 3. Dispatch via SSE (and other channels if applicable)
-                dispatchService.dispatchNotification(userId, response);
+    private static boolean isBroadcast(NotificationEvent event) {
+        List<String> targetUserIds = event.getTargetUserIds();
+        return targetUserIds != null && targetUserIds.size() == 1 && "ALL".equalsIgnoreCase(targetUserIds.get(0));
+    }
 
-                // 4. Dispatch via Email if critical
-                if (isCritical) {
-                    dispatchService.dispatchToEmail(userId, response);
+    /**
+     * The event's targetUserIds followed by the members of its segment, if it names one.
+     * @throws IllegalArgumentException if the segment is malformed or unknown
+     */
+    private List<String> recipientsOf(NotificationEvent event) {
+        List<String> targetUserIds = event.getTargetUserIds();
+        if (event.getSegment() == null || event.getSegment().isBlank()) {
+            return targetUserIds;
+        }
+        List<String> members = segmentService.resolve(event.getSegment());
+        log.info("Segment '{}' of event {} resolved to {} users", event.getSegment(), event.getEventId(), members.size());
+        if (targetUserIds == null || targetUserIds.isEmpty()) {
+            return members;
+        }
+        LinkedHashSet<String> recipients = new LinkedHashSet<>(targetUserIds);
+        recipients.addAll(members);
+        return new ArrayList<>(recipients);
+    }
+
+    /**
+     * Process one consumer poll. All rows and their outbox entries are persisted in a single transaction.
+     * Invalid events are logged and skipped, as the per-record path does. Redelivered pairs that already
+     * have a row are not dispatched again.
+     * @param events the polled events
+     * @param isCritical Whether these are critical notifications.
+     */
+    public void processBatch(List<NotificationEvent> events, boolean isCritical) {
+        inLane(isCritical, () -> {
+            persistBatch(events, isCritical);
+            return null;
+        });
+    }
+
+    private void persistBatch(List<NotificationEvent> events, boolean isCritical) {
+        Map<NotificationEvent, List<String>> recipientsByEvent = new LinkedHashMap<>();
+        List<NotificationEvent> broadcasts = new ArrayList<>();
+        for (NotificationEvent event : events) {
+            List<String> targetUserIds;
+            try {
+                validateNotificationEvent(event);
+                if (event.getEventId() == null || event.getEventId().trim().isEmpty()) {
+                    throw new IllegalArgumentException("eventId is mandatory and cannot be null or empty for notifications.");
+                }
+                if (isBroadcast(event)) {
+                    broadcasts.add(event);
+                    continue;
                 }
-                processedCount++;
-            } catch (Exception e) {
-                log.error("Error processing notification for user {}: {}. Event: {}", userId, e.getMessage(), event, e);
-                // Depending on requirements, you might rethrow, or collect errors, or send to DLQ
+                targetUserIds = recipientsOf(event);
+            } catch (IllegalArgumentException e) {
+                log.error("Skipping invalid notification event in batch: {}. Event: {}", e.getMessage(), event);
+                continue;
+            }
+            if (targetUserIds == null || targetUserIds.isEmpty()) {
+                log.warn("No target user IDs provided for notification. Skipping. Event: {}", event);
+                continue;
+            }
+            List<String> recipients = targetUserIds.stream()
+                    .filter(userId -> userId != null && !userId.trim().isEmpty())
+                    .collect(Collectors.toList());
+            if (!recipients.isEmpty()) {
+                recipientsByEvent.merge(event, recipients, (first, second) -> first);
+            }
+        }
+        if (!recipientsByEvent.isEmpty()) {
+            List<Notification> saved = persistWithRetry(() -> persistenceService.persistBatch(recipientsByEvent, isCritical));
+            log.info("Processed batch of {} {} events: {} new notifications.",
+                    events.size(), isCritical ? "critical" : "standard", saved.size());
+        }
+        // Broadcasts stream through the user table in their own chunks rather than joining the batch insert
+        broadcasts.forEach(event -> persistWithRetry(() -> broadcastFanoutService.broadcast(event, isCritical)));
+    }
+
+    /**
+     * Run a persistence call, and run it once more if a constraint rejected it for a reason the retry avoids.
+     * The rolled-back attempt persisted nothing.
+     * <ul>
+     *     <li>The unique constraint rejected a pair the idempotency filter did not know about. The retry looks
+     *     such pairs up.</li>
+     *     <li>A type foreign key rejected a type id this node still had in memory after the type was deleted
+     *     elsewhere. The types are reloaded first, so the retry resolves the code afresh.</li>
+     * </ul>
+     */
+    private <T> T persistWithRetry(Supplier<T> persist) {
+        try {
+            return persist.get();
+        } catch (DataIntegrityViolationException e) {
+            if (NotificationPersistenceService.isUnknownType(e)) {
+                log.warn("Notification type was removed after this node cached it; reloading types and retrying");
+                notificationTypeService.refresh();
+                return persist.get();
             }
+            if (!NotificationPersistenceService.isDuplicateRecipient(e)) {
+                throw e;
+            }
+            log.info("Recipient already persisted outside this node's idempotency filter; retrying with lookups");
+            return persist.get();
         }
-        log.info("Successfully processed notification for {} target users.", processedCount);
     }
 
-    private void validateNotificationEvent(NotificationEvent event) {
+    /**
+     * @throws IllegalArgumentException if a mandatory field is missing
+     */
+    public void validateNotificationEvent(NotificationEvent event) {
         // Basic validation, can be expanded or moved to a dedicated validation service
         if (event == null) {
             throw new IllegalArgumentException("Notification event cannot be null");
@@ -1,51 +1,66 @@
 package com.example.notification.service;
 
 import com.example.notification.dto.NotificationEvent;
+import com.example.notification.dto.NotificationIngestReceipt;
 import com.example.notification.dto.NotificationResponse;
 import com.example.notification.dto.NotificationStats;
 import com.example.notification.model.Notification;
 import com.example.notification.model.NotificationPriority;
 import com.example.notification.model.NotificationStatus;
-import com.example.notification.model.NotificationType;
 import com.example.notification.repository.NotificationRepository;
-import com.example.notification.repository.NotificationTypeRepository;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Arrays;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 public class NotificationService {
 
+    private static final Sort NEWEST_FIRST = Sort.by(Sort.Direction.DESC, "createdAt");
+
     private final NotificationRepository notificationRepository;
-    private final NotificationTypeRepository notificationTypeRepository;
-    private final NotificationProcessingOrchestrator notificationProcessingOrchestrator;
+    private final NotificationTypeService notificationTypeService;
+    private final NotificationIngestService notificationIngestService;
     private final ObjectMapper objectMapper;
+    private final UnreadCounterService unreadCounterService;
+    private final BroadcastInboxService broadcastInboxService;
 
     public NotificationService(NotificationRepository notificationRepository,
-                               NotificationTypeRepository notificationTypeRepository,
-                               NotificationProcessingOrchestrator notificationProcessingOrchestrator,
-                               ObjectMapper objectMapper) {
+                               NotificationTypeService notificationTypeService,
+                               NotificationIngestService notificationIngestService,
+                               ObjectMapper objectMapper,
+                               UnreadCounterService unreadCounterService,
+                               BroadcastInboxService broadcastInboxService) {
         this.notificationRepository = notificationRepository;
-        this.notificationTypeRepository = notificationTypeRepository;
-        this.notificationProcessingOrchestrator = notificationProcessingOrchestrator;
+        this.notificationTypeService = notificationTypeService;
+        this.notificationIngestService = notificationIngestService;
         this.objectMapper = objectMapper;
+        this.unreadCounterService = unreadCounterService;
+        this.broadcastInboxService = broadcastInboxService;
     }
 
     public Page<NotificationResponse> getUserNotifications(String userId, Pageable pageable) {
         log.info("Fetching notifications for userId={}, pageable={}", userId, pageable);
-        Page<Notification> notifications = notificationRepository.findByUserIdOrderByCreatedAtDesc(userId, pageable);
+        Page<NotificationResponse> notifications = mergeWithBroadcasts(pageable,
+                page -> notificationRepository.findByUserIdOrderByCreatedAtDesc(userId, page).map(this::convertToResponse),
+                page -> broadcastInboxService.getBroadcasts(userId, page));
         log.info("Fetched {} notifications for userId={}", notifications.getTotalElements(), userId);
         if (notifications.getContent().isEmpty()) {
             log.warn("No notifications found for userId={}", userId);
@@ -55,12 +70,44 @@ public class NotificationService {
                     n.getId(), n.getNotificationType(), n.getContent(), n.getCreatedAt())
             );
         }
-        return notifications.map(this::convertToResponse);
+        return notifications;
     }
 
     public Page<NotificationResponse> getNotificationsByType(String userId, String notificationType, Pageable pageable) {
-        return notificationRepository.findByUserIdAndNotificationTypeOrderByCreatedAtDesc(userId, notificationType, pageable)
-                .map(this::convertToResponse);
+        Long typeId = notificationTypeService.findTypeId(notificationType);
+        return mergeWithBroadcasts(pageable,
+                page -> typeId == null ? Page.<NotificationResponse>empty(page)
+                        : notificationRepository.findByUserIdAndNotificationTypeIdOrderByCreatedAtDesc(userId, typeId, page)
+                                .map(this::convertToResponse),
+                page -> broadcastInboxService.getBroadcastsByType(userId, notificationType, page));
+    }
+
+    /**
+     * Merge the user's own notifications with the shared broadcasts, newest first. Both are read up to the end
+     * of the requested page and merged in memory. While no broadcast applies, only the personal query runs,
+     * with the caller's paging and sort untouched.
+     * @param personal reads the user's notifications; the page passed in is sorted newest first
+     * @param broadcasts reads the broadcasts, which order themselves
+     */
+    private Page<NotificationResponse> mergeWithBroadcasts(Pageable pageable,
+                                                           Function<Pageable, Page<NotificationResponse>> personal,
+                                                           Function<Pageable, Page<NotificationResponse>> broadcasts) {
+        int window = pageable.isPaged() ? (int) Math.min(Integer.MAX_VALUE, pageable.getOffset() + pageable.getPageSize()) : 0;
+        Page<NotificationResponse> shared = broadcasts.apply(pageable.isPaged() ? PageRequest.of(0, window) : Pageable.unpaged());
+        if (shared.getTotalElements() == 0) {
+            return personal.apply(pageable);
+        }
+        Page<NotificationResponse> own = personal.apply(pageable.isPaged() ? PageRequest.of(0, window, NEWEST_FIRST) : Pageable.unpaged(NEWEST_FIRST));
+
+        List<NotificationResponse> merged = new ArrayList<>(own.getNumberOfElements() + shared.getNumberOfElements());
+        merged.addAll(own.getContent());
+        merged.addAll(shared.getContent());
+        merged.sort(Comparator.comparing(NotificationResponse::getCreatedAt, Comparator.nullsLast(Comparator.reverseOrder())));
+        if (pageable.isPaged()) {
+            int from = (int) Math.min(pageable.getOffset(), merged.size());
+            merged = merged.subList(from, Math.min(from + pageable.getPageSize(), merged.size()));
+        }
+        return new PageImpl<>(merged, pageable, own.getTotalElements() + shared.getTotalElements());
     }
 
     /**
@@ -101,25 +148,27 @@ public class NotificationService {
                 .map(this::convertToResponse);
     }
 
-    @Transactional
-    public void sendNotification(NotificationEvent event) { // Return type changed to void
+    /**
+     * Publish an admin notification for asynchronous processing.
+     * @param waitForPersisted also wait until every recipient's row exists
+     */
+    public NotificationIngestReceipt sendNotification(NotificationEvent event, boolean waitForPersisted) {
         if (event.getEventId() == null || event.getEventId().trim().isEmpty()) {
             log.error("eventId is mandatory in NotificationEvent and cannot be null or empty. Event: {}", event);
             throw new IllegalArgumentException("eventId is mandatory in NotificationEvent and cannot be null or empty.");
         }
-        if (event.getTargetUserIds() == null || event.getTargetUserIds().isEmpty()) {
+        boolean segmented = event.getSegment() != null && !event.getSegment().isBlank();
+        if ((event.getTargetUserIds() == null || event.getTargetUserIds().isEmpty()) && !segmented) {
             throw new IllegalArgumentException("Please select at least one user to send the notification");
         }
 
-        // Add detailed logging to debug the issue
         log.info("Received notification event: {}", event);
-        log.info("Target users count: {}", event.getTargetUserIds().size());
-        log.info("Target users: {}", event.getTargetUserIds());
-        log.info("Dispatching to NotificationProcessingOrchestrator. Critical based on Prio: {}", event.getPriority() == NotificationPriority.CRITICAL);
+        log.info("Target users count: {}, segment: {}",
+                event.getTargetUserIds() != null ? event.getTargetUserIds().size() : 0, event.getSegment());
+        log.debug("Target users: {}", event.getTargetUserIds());
 
-        // Delegate to the orchestrator
-        notificationProcessingOrchestrator.processNotification(event, event.getPriority() == NotificationPriority.CRITICAL);
-        // The orchestrator will handle type creation, persistence, and SSE
+        // Persistence, SSE and email happen in the Kafka consumers
+        return notificationIngestService.ingest(event, waitForPersisted);
     }
 
     @SuppressWarnings("unchecked")
@@ -136,12 +185,17 @@ public class NotificationService {
     }
 
     public Page<NotificationResponse> getUnreadNotifications(String userId, Pageable pageable) {
-        return notificationRepository.findByUserIdAndReadStatus(
-                        userId, NotificationStatus.UNREAD, pageable)
-                .map(this::convertToResponse);
+        return mergeWithBroadcasts(pageable,
+                page -> notificationRepository.findByUserIdAndReadStatus(userId, NotificationStatus.UNREAD, page)
+                        .map(this::convertToResponse),
+                page -> broadcastInboxService.getUnreadBroadcasts(userId, page));
     }
 
     public NotificationResponse getNotificationById(Long id) {
+        if (BroadcastInboxService.isBroadcastId(id)) {
+            return broadcastInboxService.getBroadcast(id)
+                    .orElseThrow(() -> new RuntimeException("Notification not found"));
+        }
         return notificationRepository.findById(id)
                 .map(this::convertToResponse)
                 .orElseThrow(() -> new RuntimeException("Notification not found"));
@@ -149,11 +203,21 @@ public class NotificationService {
 
     @Transactional
     public void markAsRead(Long id, String userId) {
+        if (BroadcastInboxService.isBroadcastId(id)) {
+            if (broadcastInboxService.markAsRead(id, userId)) {
+                unreadCounterService.recordChange(userId, -1);
+            }
+            return;
+        }
         Notification notification = notificationRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Notification not found"));
         if (notification.getUserId().equals(userId)) {
+            boolean wasUnread = notification.getReadStatus() == NotificationStatus.UNREAD;
             notification.setReadStatus(NotificationStatus.READ);
             notificationRepository.save(notification);
+            if (wasUnread) {
+                unreadCounterService.recordChange(userId, -1);
+            }
         }
     }
 
@@ -164,7 +228,9 @@ public class NotificationService {
                 .getContent();
         unreadNotifications.forEach(n -> n.setReadStatus(NotificationStatus.READ));
         notificationRepository.saveAll(unreadNotifications);
-        return unreadNotifications.size();
+        long unreadBroadcasts = broadcastInboxService.markAllAsRead(userId);
+        unreadCounterService.recordChange(userId, -(unreadNotifications.size() + unreadBroadcasts));
+        return unreadNotifications.size() + (int) unreadBroadcasts;
     }
 
     public NotificationStats getNotificationStats() {
@@ -174,7 +240,7 @@ public class NotificationService {
                 .stream()
                 .filter(row -> row[0] != null)
                 .collect(Collectors.toMap(
-                        row -> (String) row[0],
+                        row -> notificationTypeService.typeCodeOf((Long) row[0]),
                         row -> (Long) row[1]
                 ));
 
@@ -216,7 +282,7 @@ public class NotificationService {
                 .id(notification.getId())
                 .userId(notification.getUserId())
                 .sourceService(notification.getSourceService())
-                .notificationType(notification.getNotificationType() != null ? notification.getNotificationType().getTypeCode() : null)
+                .notificationType(notificationTypeService.typeCodeOf(notification.getNotificationType()))
                 .priority(notification.getPriority())
                 .content(notification.getContent())
                 .metadata(deserializeFromJson(notification.getMetadata()))
@@ -228,11 +294,9 @@ public class NotificationService {
     }
 
     public long countUnreadNotifications(String userId) {
-        return notificationRepository.countByUserIdAndReadStatus(userId, NotificationStatus.UNREAD);
+        return unreadCounterService.getUnreadCount(userId);
     }
     public List<String> getNotificationTypes() {
-        return notificationTypeRepository.findByActiveTrue().stream()
-                .map(NotificationType::getTypeCode)
-                .collect(Collectors.toList());
+        return notificationTypeService.getActiveTypeCodes();
     }
 }
\ No newline at end of file
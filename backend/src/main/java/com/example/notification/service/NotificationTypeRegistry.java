@@ -0,0 +1,114 @@
+package com.example.notification.service;
+
+import com.example.notification.model.NotificationType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable snapshot of the notification types: id to code over a sorted {@code long[]}, so no id is
+ * boxed on lookup, and code to id through one map. Changes produce a new snapshot, so readers need no lock.
+ */
+final class NotificationTypeRegistry {
+
+    static final long UNKNOWN = -1;
+
+    static final NotificationTypeRegistry EMPTY = new NotificationTypeRegistry(new long[0], new String[0], new boolean[0]);
+
+    private final long[] ids; // Ascending
+    private final String[] codes; // codes[i] is the code of ids[i]
+    private final boolean[] active;
+    private final Map<String, Integer> indexByCode;
+    private final List<String> activeCodes;
+
+    private NotificationTypeRegistry(long[] ids, String[] codes, boolean[] active) {
+        this.ids = ids;
+        this.codes = codes;
+        this.active = active;
+        Map<String, Integer> index = new HashMap<>(ids.length * 2);
+        List<String> activeList = new ArrayList<>(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            index.put(codes[i], i);
+            if (active[i]) {
+                activeList.add(codes[i]);
+            }
+        }
+        this.indexByCode = index;
+        this.activeCodes = Collections.unmodifiableList(activeList);
+    }
+
+    static NotificationTypeRegistry of(Collection<NotificationType> types) {
+        NotificationType[] sorted = types.stream()
+                .filter(type -> type.getId() != null && type.getTypeCode() != null)
+                .sorted((a, b) -> Long.compare(a.getId(), b.getId()))
+                .toArray(NotificationType[]::new);
+        long[] ids = new long[sorted.length];
+        String[] codes = new String[sorted.length];
+        boolean[] active = new boolean[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            ids[i] = sorted[i].getId();
+            codes[i] = sorted[i].getTypeCode();
+            active[i] = sorted[i].isActive();
+        }
+        return new NotificationTypeRegistry(ids, codes, active);
+    }
+
+    /**
+     * @return the id of the type with this code, or {@link #UNKNOWN}
+     */
+    long idOf(String typeCode) {
+        Integer index = typeCode == null ? null : indexByCode.get(typeCode);
+        return index == null ? UNKNOWN : ids[index];
+    }
+
+    /**
+     * @return the code of the type with this id, or null if there is none
+     */
+    String codeOf(long id) {
+        int index = Arrays.binarySearch(ids, id);
+        return index < 0 ? null : codes[index];
+    }
+
+    List<String> activeCodes() {
+        return activeCodes;
+    }
+
+    int size() {
+        return ids.length;
+    }
+
+    /**
+     * @return a snapshot that also holds {@code type}, replacing any type with the same id
+     */
+    NotificationTypeRegistry with(NotificationType type) {
+        int index = Arrays.binarySearch(ids, type.getId());
+        long[] newIds;
+        String[] newCodes;
+        boolean[] newActive;
+        if (index >= 0) {
+            newIds = ids;
+            newCodes = codes.clone();
+            newActive = active.clone();
+        } else {
+            index = -index - 1;
+            newIds = new long[ids.length + 1];
+            newCodes = new String[ids.length + 1];
+            newActive = new boolean[ids.length + 1];
+            System.arraycopy(ids, 0, newIds, 0, index);
+            System.arraycopy(codes, 0, newCodes, 0, index);
+            System.arraycopy(active, 0, newActive, 0, index);
+            System.arraycopy(ids, index, newIds, index + 1, ids.length - index);
+            System.arraycopy(codes, index, newCodes, index + 1, ids.length - index);
+            System.arraycopy(active, index, newActive, index + 1, ids.length - index);
+            newIds[index] = type.getId();
+        }
+        newCodes[index] = type.getTypeCode();
+        newActive[index] = type.isActive();
+        return new NotificationTypeRegistry(newIds, newCodes, newActive);
+    }
+}
@@ -1,18 +1,56 @@
 package com.example.notification.service;
 
+import com.example.notification.config.ClusterNode;
+import com.example.notification.dto.NotificationTypeChangedEvent;
 import com.example.notification.model.NotificationType;
 import com.example.notification.repository.NotificationTypeRepository;
-import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.List;
 
+/**
+ * Notification types, and the in-process {@link NotificationTypeRegistry} that persistence and read paths use
+ * to turn a type code into its id and back without a query or a join. The registry is loaded on first use,
+ * replaced after every create, update or delete made here commits. In cluster mode the change is then announced
+ * on the type changes topic, and every other node reloads its registry. A reload every
+ * {@code notification.types.refresh-ms} covers a lost announcement or a row edited directly in the database.
+ * A code or id the registry has not seen yet is looked up on the spot.
+ */
 @Service
-@RequiredArgsConstructor
+@Slf4j
 public class NotificationTypeService {
 
     private final NotificationTypeRepository notificationTypeRepository;
+    private final TransactionTemplate newTransaction;
+    private final ClusterNode clusterNode;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final String changesTopic;
+    private final Object registryLock = new Object(); // Serializes registry updates; never held across a query
+    private volatile NotificationTypeRegistry registry; // null until first loaded
+
+    public NotificationTypeService(NotificationTypeRepository notificationTypeRepository,
+                                   PlatformTransactionManager transactionManager,
+                                   ClusterNode clusterNode,
+                                   KafkaTemplate<String, Object> kafkaTemplate,
+                                   @Value("${notification.kafka.topics.type-changes:notification-type-changes}") String changesTopic) {
+        this.notificationTypeRepository = notificationTypeRepository;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.clusterNode = clusterNode;
+        this.kafkaTemplate = kafkaTemplate;
+        this.changesTopic = changesTopic;
+    }
 
     /**
      * Get all active notification types
@@ -21,6 +59,13 @@ public class NotificationTypeService {
         return notificationTypeRepository.findByActiveTrue();
     }
 
+    /**
+     * Codes of the active notification types, from the registry
+     */
+    public List<String> getActiveTypeCodes() {
+        return current().activeCodes();
+    }
+
     /**
      * Get notification type by code
      */
@@ -29,6 +74,55 @@ public class NotificationTypeService {
                 .orElseThrow(() -> new IllegalArgumentException("Notification type not found with code: " + code));
     }
 
+    /**
+     * The id of the type with this code, creating the type if no node has yet. Callers racing to create the
+     * same code, on this node or another, are settled by the {@code type_code} unique constraint: the losers
+     * read the winner's row.
+     */
+    public long resolveTypeId(String typeCode) {
+        long id = current().idOf(typeCode);
+        if (id != NotificationTypeRegistry.UNKNOWN) {
+            return id;
+        }
+        // Looked up and created without registryLock: the caller's transaction already holds a connection, and
+        // the creation needs a second one, which threads parked on the lock with theirs could leave the pool short of
+        NotificationType type = notificationTypeRepository.findByTypeCode(typeCode)
+                .orElseGet(() -> createAutomatically(typeCode));
+        return remember(type).getId();
+    }
+
+    /**
+     * @return the id of the type with this code, or null if there is no such type
+     */
+    public Long findTypeId(String typeCode) {
+        long id = current().idOf(typeCode);
+        if (id != NotificationTypeRegistry.UNKNOWN) {
+            return id;
+        }
+        return notificationTypeRepository.findByTypeCode(typeCode).map(this::remember).map(NotificationType::getId).orElse(null);
+    }
+
+    /**
+     * @return the code of the type with this id, or null if the id is null or there is no such type
+     */
+    public String typeCodeOf(Long typeId) {
+        if (typeId == null) {
+            return null;
+        }
+        String code = current().codeOf(typeId);
+        if (code != null) {
+            return code;
+        }
+        return notificationTypeRepository.findById(typeId).map(this::remember).map(NotificationType::getTypeCode).orElse(null);
+    }
+
+    /**
+     * The code of a notification's type. A lazy type reference yields its id without being loaded.
+     */
+    public String typeCodeOf(NotificationType type) {
+        return type == null ? null : typeCodeOf(type.getId());
+    }
+
     /**
      * Create a new notification type
      */
@@ -42,8 +136,10 @@ public class NotificationTypeService {
         type.setTypeCode(code);
         type.setDescription(description);
         type.setActive(true);
-        
-        return notificationTypeRepository.save(type);
+
+        NotificationType saved = notificationTypeRepository.save(type);
+        afterCommit(() -> refreshAndAnnounce(code));
+        return saved;
     }
 
     /**
@@ -52,16 +148,18 @@ public class NotificationTypeService {
     @Transactional
     public NotificationType updateNotificationType(String code, String description, Boolean active) {
         NotificationType type = getNotificationTypeByCode(code);
-        
+
         if (description != null) {
             type.setDescription(description);
         }
-        
+
         if (active != null) {
             type.setActive(active);
         }
-        
-        return notificationTypeRepository.save(type);
+
+        NotificationType saved = notificationTypeRepository.save(type);
+        afterCommit(() -> refreshAndAnnounce(code));
+        return saved;
     }
 
     /**
@@ -71,5 +169,89 @@ public class NotificationTypeService {
     public void deleteNotificationType(String code) {
         NotificationType type = getNotificationTypeByCode(code);
         notificationTypeRepository.delete(type);
+        afterCommit(() -> refreshAndAnnounce(code));
+    }
+
+    /**
+     * Reloads the registry after a type change announced by another node.
+     */
+    public void applyRemoteChange(NotificationTypeChangedEvent event) {
+        if (event == null || clusterNode.getNodeId().equals(event.getNodeId())) {
+            return; // This node reloaded when its own change committed
+        }
+        log.debug("Notification type {} changed on node {}; reloading", event.getTypeCode(), event.getNodeId());
+        refresh();
+    }
+
+    @Scheduled(fixedDelayString = "${notification.types.refresh-ms:300000}")
+    public void refresh() {
+        NotificationTypeRegistry loaded = NotificationTypeRegistry.of(notificationTypeRepository.findAll());
+        synchronized (registryLock) {
+            registry = loaded; // A type remembered meanwhile may drop out; it is looked up again on next use
+        }
+        log.debug("Loaded {} notification types", loaded.size());
+    }
+
+    private NotificationTypeRegistry current() {
+        NotificationTypeRegistry loaded = registry;
+        if (loaded == null) {
+            refresh();
+            loaded = registry;
+        }
+        return loaded;
+    }
+
+    private NotificationType remember(NotificationType type) {
+        current(); // Loaded before taking the lock
+        synchronized (registryLock) {
+            registry = registry.with(type);
+        }
+        return type;
+    }
+
+    // Committed on its own, so the type is visible to every node before any notification refers to it
+    private NotificationType createAutomatically(String typeCode) {
+        log.info("Notification type {} not found, creating new type.", typeCode);
+        try {
+            return newTransaction.execute(status -> {
+                NotificationType newType = new NotificationType();
+                newType.setTypeCode(typeCode);
+                newType.setDescription("Automatically created for " + typeCode);
+                return notificationTypeRepository.saveAndFlush(newType);
+            });
+        } catch (DataIntegrityViolationException e) {
+            // Another node created it first
+            return notificationTypeRepository.findByTypeCode(typeCode).orElseThrow(() -> e);
+        }
+    }
+
+    private void refreshAndAnnounce(String typeCode) {
+        refresh();
+        if (!clusterNode.isEnabled()) {
+            return;
+        }
+        NotificationTypeChangedEvent event = NotificationTypeChangedEvent.builder()
+                .typeCode(typeCode)
+                .nodeId(clusterNode.getNodeId())
+                .timestamp(System.currentTimeMillis())
+                .build();
+        try {
+            kafkaTemplate.send(changesTopic, typeCode, event);
+        } catch (Exception e) {
+            log.error("Failed to announce change of notification type {}: {}", typeCode, e.getMessage(), e);
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
     }
 }
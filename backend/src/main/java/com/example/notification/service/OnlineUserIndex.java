@@ -0,0 +1,92 @@
+package com.example.notification.service;
+
+import com.example.notification.config.ClusterNode;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Which users have a live SSE connection on this node, as one bit per interned user id.
+ * Lookups are lock-free reads; connects and disconnects are rare by comparison and serialize on a lock,
+ * which also covers growing the bitset.
+ */
+@Component
+public class OnlineUserIndex {
+
+    private final UserIdInterner interner = new UserIdInterner();
+    private final Object writeLock = new Object();
+    private volatile AtomicLongArray words = new AtomicLongArray(16);
+    private volatile int onlineCount;
+
+    public OnlineUserIndex(MeterRegistry meterRegistry, ClusterNode clusterNode) {
+        Gauge.builder("sse_online_users", this, OnlineUserIndex::getOnlineCount)
+                .description("Users with a live SSE connection on this node")
+                .tag("node", clusterNode.getNodeId())
+                .register(meterRegistry);
+    }
+
+    public void markOnline(String userId) {
+        int id = interner.intern(userId);
+        synchronized (writeLock) {
+            AtomicLongArray current = ensureCapacity(id);
+            long word = current.get(id >>> 6);
+            long bit = 1L << id;
+            if ((word & bit) == 0) {
+                current.set(id >>> 6, word | bit);
+                onlineCount++;
+            }
+        }
+    }
+
+    public void markOffline(String userId) {
+        int id = interner.idOf(userId);
+        if (id < 0) {
+            return;
+        }
+        synchronized (writeLock) {
+            AtomicLongArray current = words;
+            if ((id >>> 6) >= current.length()) {
+                return;
+            }
+            long word = current.get(id >>> 6);
+            long bit = 1L << id;
+            if ((word & bit) != 0) {
+                current.set(id >>> 6, word & ~bit);
+                onlineCount--;
+            }
+        }
+    }
+
+    public boolean isOnline(String userId) {
+        if (userId == null) {
+            return false;
+        }
+        int id = interner.idOf(userId);
+        if (id < 0) {
+            return false;
+        }
+        AtomicLongArray current = words;
+        return (id >>> 6) < current.length() && (current.get(id >>> 6) & (1L << id)) != 0;
+    }
+
+    public int getOnlineCount() {
+        return onlineCount;
+    }
+
+    // Caller holds writeLock
+    private AtomicLongArray ensureCapacity(int id) {
+        AtomicLongArray current = words;
+        int wordIndex = id >>> 6;
+        if (wordIndex < current.length()) {
+            return current;
+        }
+        AtomicLongArray grown = new AtomicLongArray(Math.max(current.length() * 2, wordIndex + 1));
+        for (int i = 0; i < current.length(); i++) {
+            grown.set(i, current.get(i));
+        }
+        words = grown;
+        return grown;
+    }
+}
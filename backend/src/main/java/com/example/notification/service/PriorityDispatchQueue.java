@@ -0,0 +1,115 @@
+package com.example.notification.service;
+
+import com.example.notification.model.NotificationPriority;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Hands dispatch work to a fixed set of worker threads, highest {@link NotificationPriority} first and in
+ * submission order within a priority. With a single worker, work for one user keeps its order within each
+ * priority. Once {@code capacity} tasks are waiting, non-critical work runs on the submitting thread instead,
+ * which slows the standard lane down rather than letting it push critical work back; critical work is always
+ * queued.
+ */
+@Slf4j
+class PriorityDispatchQueue {
+
+    private static final Comparator<Task> ORDER = Comparator
+            .comparingInt((Task task) -> -task.priority().ordinal())
+            .thenComparingLong(Task::sequence);
+
+    private record Task(NotificationPriority priority, long sequence, long enqueuedAt, Runnable work, CompletableFuture<Void> done) {
+    }
+
+    private final String name;
+    private final int capacity;
+    private final PriorityBlockingQueue<Task> queue = new PriorityBlockingQueue<>(64, ORDER);
+    private final AtomicLong sequence = new AtomicLong();
+    private final ObjLongConsumer<NotificationPriority> latencyListener;
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running = true;
+
+    /**
+     * @param latencyListener told how long each task took from submission to completion, in nanoseconds
+     */
+    PriorityDispatchQueue(String name, int workerCount, int capacity, ObjLongConsumer<NotificationPriority> latencyListener) {
+        this.name = name;
+        this.capacity = Math.max(1, capacity);
+        this.latencyListener = latencyListener;
+        for (int i = 0; i < Math.max(1, workerCount); i++) {
+            workers.add(Thread.ofPlatform().daemon().name(name + "-" + i).start(this::drain));
+        }
+    }
+
+    /**
+     * @return completes when the work has run, exceptionally if it threw
+     */
+    CompletableFuture<Void> submit(NotificationPriority priority, Runnable work) {
+        NotificationPriority effective = priority != null ? priority : NotificationPriority.NORMAL;
+        Task task = new Task(effective, sequence.getAndIncrement(), System.nanoTime(), work, new CompletableFuture<>());
+        if (!running || (effective != NotificationPriority.CRITICAL && queue.size() >= capacity)) {
+            run(task);
+        } else {
+            queue.add(task);
+        }
+        return task.done();
+    }
+
+    int size() {
+        return queue.size();
+    }
+
+    /**
+     * Stop taking new work and let the workers finish what is queued, for at most {@code timeout}.
+     */
+    void shutdown(Duration timeout) throws InterruptedException {
+        running = false;
+        long deadline = System.nanoTime() + timeout.toNanos();
+        for (Thread worker : workers) {
+            worker.join(Duration.ofNanos(Math.max(1, deadline - System.nanoTime())));
+        }
+        if (!queue.isEmpty()) {
+            log.warn("{} did not drain in time; {} dispatches dropped", name, queue.size());
+            workers.forEach(Thread::interrupt);
+            Task dropped;
+            while ((dropped = queue.poll()) != null) {
+                dropped.done().cancel(false);
+            }
+        }
+    }
+
+    private void drain() {
+        while (running || !queue.isEmpty()) {
+            try {
+                Task task = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (task != null) {
+                    run(task);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void run(Task task) {
+        try {
+            task.work().run();
+            task.done().complete(null);
+        } catch (RuntimeException e) {
+            log.error("{} task failed: {}", name, e.getMessage(), e);
+            task.done().completeExceptionally(e);
+        } finally {
+            latencyListener.accept(task.priority(), System.nanoTime() - task.enqueuedAt());
+        }
+    }
+}
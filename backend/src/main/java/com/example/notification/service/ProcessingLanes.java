@@ -0,0 +1,46 @@
+package com.example.notification.service;
+
+import com.example.notification.config.LaneRoutingDataSource;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * The standard and critical processing lanes. Each lane has its own {@link UserKeyedExecutor}, so a
+ * backlog of standard work never holds up a critical event. Critical tasks also take their connections
+ * from the critical pool (see {@link LaneRoutingDataSource}), which nothing else touches.
+ */
+@Component
+@Slf4j
+public class ProcessingLanes {
+
+    private final UserKeyedExecutor standard;
+    private final UserKeyedExecutor critical;
+
+    public ProcessingLanes(@Value("${notification.kafka.keyed.max-concurrency:64}") int standardConcurrency,
+                           @Value("${notification.lanes.critical.max-concurrency:16}") int criticalConcurrency,
+                           @Value("${spring.datasource.hikari.maximum-pool-size:10}") int standardPoolSize,
+                           @Value("${notification.lanes.critical.pool-size:8}") int criticalPoolSize) {
+        this.standard = new UserKeyedExecutor(permits(standardConcurrency, standardPoolSize));
+        this.critical = new UserKeyedExecutor(permits(criticalConcurrency, criticalPoolSize), task -> () -> LaneRoutingDataSource.critical(task));
+        log.info("Processing lanes: standard runs up to {} recipients at once on {} connections, critical up to {} on its own {}",
+                standard.maxConcurrency(), standardPoolSize, critical.maxConcurrency(), criticalPoolSize);
+    }
+
+    public UserKeyedExecutor lane(boolean isCritical) {
+        return isCritical ? critical : standard;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        standard.shutdown();
+        critical.shutdown();
+    }
+
+    // A task may open a second transaction (REQUIRES_NEW) while holding its first connection. One task fewer
+    // than the pool leaves a connection for that, so tasks can't all wait on each other
+    static int permits(int configured, int poolSize) {
+        return Math.max(1, Math.min(configured, poolSize - 1));
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.notification.service;
+
+import com.example.notification.config.ClusterNode;
+import com.example.notification.model.Notification;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides whether an (eventId, userId) pair needs the database to tell if it was persisted before. Nearly every
+ * pair is new, and a {@link ScalableBloomFilter} says so without a query. Pairs this node persisted recently
+ * are remembered exactly, so a redelivered record is recognised without a query too. Everything else, such as
+ * a Bloom false positive, is looked up.
+ * The filter only knows what this node persisted since it started. A pair persisted by another node or before
+ * a restart reads as new, and its insert hits the {@code uc_event_user} constraint, which stays the final guard.
+ */
+@Component
+public class RecipientKeyFilter {
+
+    public enum Verdict {
+        /** Certainly not persisted by this node since it started */
+        NEW,
+        /** Persisted recently; no lookup needed */
+        DUPLICATE,
+        /** Possibly persisted; look it up */
+        CHECK_DATABASE
+    }
+
+    private final boolean enabled;
+    private final ScalableBloomFilter bloomFilter;
+    private final long recentTtlNanos;
+    private final int recentMaxEntries;
+    // Two generations: keys live between one and two TTLs, and expiry is a reference swap
+    private volatile Set<String> recent = ConcurrentHashMap.newKeySet();
+    private volatile Set<String> previous = ConcurrentHashMap.newKeySet();
+    private volatile long rotateAt;
+    private final Counter newCount;
+    private final Counter duplicateCount;
+    private final Counter lookupCount;
+
+    public RecipientKeyFilter(MeterRegistry meterRegistry,
+                              ClusterNode clusterNode,
+                              @Value("${notification.idempotency.filter.enabled:true}") boolean enabled,
+                              @Value("${notification.idempotency.filter.initial-capacity:131072}") int initialCapacity,
+                              @Value("${notification.idempotency.filter.false-positive-rate:0.01}") double falsePositiveRate,
+                              @Value("${notification.idempotency.filter.max-stages:6}") int maxStages,
+                              @Value("${notification.idempotency.recent.ttl-ms:600000}") long recentTtlMs,
+                              @Value("${notification.idempotency.recent.max-entries:100000}") int recentMaxEntries) {
+        this.enabled = enabled;
+        this.bloomFilter = new ScalableBloomFilter(initialCapacity, falsePositiveRate, maxStages);
+        this.recentTtlNanos = recentTtlMs * 1_000_000L;
+        this.recentMaxEntries = Math.max(1, recentMaxEntries);
+        this.rotateAt = System.nanoTime() + recentTtlNanos;
+        this.newCount = checks(meterRegistry, clusterNode, "new");
+        this.duplicateCount = checks(meterRegistry, clusterNode, "duplicate");
+        this.lookupCount = checks(meterRegistry, clusterNode, "lookup");
+    }
+
+    /**
+     * Classify a pair about to be persisted and remember it as possibly persisted. Calling this again for the
+     * same pair, e.g. when retrying after a constraint violation, therefore never answers {@link Verdict#NEW}.
+     */
+    public Verdict classify(String eventId, String userId) {
+        if (!enabled) {
+            lookupCount.increment();
+            return Verdict.CHECK_DATABASE;
+        }
+        String key = key(eventId, userId);
+        if (recent.contains(key) || previous.contains(key)) {
+            duplicateCount.increment();
+            return Verdict.DUPLICATE;
+        }
+        if (bloomFilter.put(key)) {
+            lookupCount.increment();
+            return Verdict.CHECK_DATABASE;
+        }
+        newCount.increment();
+        return Verdict.NEW;
+    }
+
+    /**
+     * Remember rows inserted by the current transaction, once it has committed.
+     */
+    public void recordPersisted(Collection<Notification> notifications) {
+        if (enabled && !notifications.isEmpty()) {
+            rememberAfterCommit(notifications.stream().map(n -> key(n.getEventId(), n.getUserId())).toList());
+        }
+    }
+
+    /**
+     * Remember rows of one event inserted by the current transaction, once it has committed.
+     */
+    public void recordPersisted(String eventId, Collection<String> userIds) {
+        if (enabled && !userIds.isEmpty()) {
+            rememberAfterCommit(userIds.stream().map(userId -> key(eventId, userId)).toList());
+        }
+    }
+
+    private void rememberAfterCommit(List<String> keys) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    keys.forEach(RecipientKeyFilter.this::remember);
+                }
+            });
+        } else {
+            keys.forEach(this::remember);
+        }
+    }
+
+    /**
+     * Remember a pair the database already has a row for.
+     */
+    public void recordExisting(String eventId, String userId) {
+        if (enabled) {
+            remember(key(eventId, userId));
+        }
+    }
+
+    private void remember(String key) {
+        bloomFilter.put(key);
+        if (System.nanoTime() - rotateAt >= 0 || recent.size() >= recentMaxEntries) {
+            rotate();
+        }
+        recent.add(key);
+    }
+
+    private synchronized void rotate() {
+        if (System.nanoTime() - rotateAt < 0 && recent.size() < recentMaxEntries) {
+            return; // Rotated by another thread
+        }
+        previous = recent;
+        recent = ConcurrentHashMap.newKeySet();
+        rotateAt = System.nanoTime() + recentTtlNanos;
+    }
+
+    private static String key(String eventId, String userId) {
+        return eventId + '\u0000' + userId;
+    }
+
+    private static Counter checks(MeterRegistry meterRegistry, ClusterNode clusterNode, String result) {
+        return Counter.builder("notification_idempotency_checks_total")
+                .description("Recipient idempotency checks by outcome; lookup means a database query was needed")
+                .tag("result", result)
+                .tag("node", clusterNode.getNodeId())
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.notification.service;
+
+import java.util.List;
+
+/**
+ * Some recipients of an event could not be processed. Carries their ids so only they are retried.
+ */
+public class RecipientsFailedException extends RuntimeException {
+
+    private final List<String> failedUserIds;
+
+    public RecipientsFailedException(List<String> failedUserIds, Throwable cause) {
+        super(failedUserIds.size() + " recipient(s) failed: " + cause.getMessage(), cause);
+        this.failedUserIds = List.copyOf(failedUserIds);
+    }
+
+    public List<String> getFailedUserIds() {
+        return failedUserIds;
+    }
+}
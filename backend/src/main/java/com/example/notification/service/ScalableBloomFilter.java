@@ -0,0 +1,146 @@
+package com.example.notification.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter that adds a larger stage whenever the current one reaches its capacity, so the false-positive
+ * rate stays bounded however many keys arrive. Each stage doubles the capacity and halves the error rate of the
+ * one before, which keeps the overall rate below twice the first stage's. Once {@code maxStages} exist the
+ * oldest is dropped: its keys then read as absent, which callers must tolerate.
+ * Safe for concurrent use; lookups take no lock.
+ */
+final class ScalableBloomFilter {
+
+    private static final double LN2_SQUARED = Math.log(2) * Math.log(2);
+
+    private static final class Stage {
+        final AtomicLongArray words;
+        final long bits;
+        final int hashes;
+        final int capacity;
+        final double falsePositiveRate;
+        final AtomicInteger count = new AtomicInteger();
+
+        Stage(int capacity, double falsePositiveRate) {
+            this.capacity = capacity;
+            this.falsePositiveRate = falsePositiveRate;
+            long optimalBits = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / LN2_SQUARED);
+            this.words = new AtomicLongArray((int) ((optimalBits + 63) >>> 6));
+            this.bits = (long) words.length() << 6;
+            this.hashes = Math.max(1, (int) Math.round((double) bits / capacity * Math.log(2)));
+        }
+
+        boolean mightContain(long h1, long h2) {
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bits);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void add(long h1, long h2) {
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bits);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long current;
+                while (((current = words.get(word)) & mask) == 0 && !words.compareAndSet(word, current, current | mask)) {
+                    Thread.onSpinWait();
+                }
+            }
+            count.incrementAndGet();
+        }
+    }
+
+    private final int maxStages;
+    private volatile List<Stage> stages; // copy-on-write; the last stage takes new keys
+
+    ScalableBloomFilter(int initialCapacity, double falsePositiveRate, int maxStages) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1");
+        }
+        this.maxStages = Math.max(1, maxStages);
+        this.stages = List.of(new Stage(Math.max(64, initialCapacity), falsePositiveRate));
+    }
+
+    boolean mightContain(String key) {
+        long h1 = hash(key);
+        long h2 = secondHash(h1);
+        for (Stage stage : stages) {
+            if (stage.mightContain(h1, h2)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Add {@code key} unless the filter may already hold it.
+     * @return true if the key may have been added before, false if it is certainly new
+     */
+    boolean put(String key) {
+        long h1 = hash(key);
+        long h2 = secondHash(h1);
+        List<Stage> current = stages;
+        for (Stage stage : current) {
+            if (stage.mightContain(h1, h2)) {
+                return true;
+            }
+        }
+        Stage last = current.get(current.size() - 1);
+        if (last.count.get() >= last.capacity) {
+            last = grow(last);
+        }
+        last.add(h1, h2);
+        return false;
+    }
+
+    int stageCount() {
+        return stages.size();
+    }
+
+    private synchronized Stage grow(Stage full) {
+        List<Stage> current = stages;
+        Stage last = current.get(current.size() - 1);
+        if (last != full) {
+            return last; // Another thread grew the filter first
+        }
+        List<Stage> next = new ArrayList<>(current.size() + 1);
+        next.addAll(current.size() >= maxStages ? current.subList(1, current.size()) : current);
+        Stage added = new Stage(saturatedDouble(full.capacity), full.falsePositiveRate / 2);
+        next.add(added);
+        stages = List.copyOf(next);
+        return added;
+    }
+
+    private static int saturatedDouble(int capacity) {
+        return capacity > Integer.MAX_VALUE / 2 ? Integer.MAX_VALUE : capacity * 2;
+    }
+
+    // 64-bit FNV-1a over the UTF-8 bytes, finished with the SplitMix64 mixer to spread short keys
+    private static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    // Probe step for double hashing (Kirsch and Mitzenmacher); odd so it is never zero
+    private static long secondHash(long h1) {
+        return mix(h1 ^ 0x9e3779b97f4a7c15L) | 1;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
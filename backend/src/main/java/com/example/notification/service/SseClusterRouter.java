@@ -0,0 +1,118 @@
+package com.example.notification.service;
+
+import com.example.notification.config.ClusterNode;
+import com.example.notification.dto.SseDeliveryMessage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Delivers encoded SSE frames to a user wherever their stream lives.
+ * Local sinks are written directly; users connected to another replica are reached by
+ * sending the frame once to that node's delivery topic.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class SseClusterRouter {
+
+    private final SseEmitterManager sseEmitterManager;
+    private final OnlineUserIndex onlineUsers;
+    private final SsePresenceRegistry presenceRegistry;
+    private final ClusterNode clusterNode;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+
+    /**
+     * Whether a frame for the user would go anywhere: a live local connection, a stream retained here for
+     * replay, or a connection on another node. Callers use it to skip encoding for offline users.
+     */
+    public boolean isReachable(String userId) {
+        return onlineUsers.isOnline(userId)
+                || sseEmitterManager.hasStream(userId)
+                || (clusterNode.isEnabled() && presenceRegistry.locateRemote(userId) != null);
+    }
+
+    /**
+     * Every user {@link #isReachable} holds for: streams on this node and, in cluster mode, on other nodes.
+     */
+    public Set<String> reachableUserIds() {
+        Set<String> local = sseEmitterManager.streamUserIds();
+        if (!clusterNode.isEnabled()) {
+            return Set.copyOf(local);
+        }
+        Set<String> all = new HashSet<>(local);
+        all.addAll(presenceRegistry.remoteUserIds());
+        return all;
+    }
+
+    /**
+     * Route a pre-encoded frame to the user.
+     * @return true if the frame was emitted locally or forwarded to the owning node
+     */
+    public boolean deliver(String userId, String eventName, String data) {
+        return deliver(userId, eventName, data, false);
+    }
+
+    /**
+     * Route a pre-encoded frame to the user.
+     * @param batchable whether the owning node may hold the frame for its micro-batch window
+     * @return true if the frame was emitted locally or forwarded to the owning node
+     */
+    public boolean deliver(String userId, String eventName, String data, boolean batchable) {
+        if (onlineUsers.isOnline(userId)) {
+            emitLocally(userId, eventName, data, batchable);
+            return true;
+        }
+
+        String targetNode = clusterNode.isEnabled() ? presenceRegistry.locateRemote(userId) : null;
+        if (targetNode == null) {
+            if (sseEmitterManager.hasStream(userId)) {
+                // Recently disconnected here: retain the frame so the reconnect can replay it
+                sseEmitterManager.sendEncodedToUser(userId, eventName, data);
+                return true;
+            }
+            log.debug("User {} has no SSE stream on any node. Skipping {} event.", userId, eventName);
+            return false;
+        }
+
+        SseDeliveryMessage message = SseDeliveryMessage.builder()
+                .userId(userId)
+                .eventName(eventName)
+                .data(data)
+                .originNodeId(clusterNode.getNodeId())
+                .batchable(batchable)
+                .build();
+        try {
+            kafkaTemplate.send(clusterNode.deliveryTopicFor(targetNode), userId, message);
+            log.debug("Forwarded {} event for user {} to node {}", eventName, userId, targetNode);
+            return true;
+        } catch (Exception e) {
+            log.error("Failed to forward {} event for user {} to node {}: {}", eventName, userId, targetNode, e.getMessage(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Emit a frame forwarded from another node into the local sink.
+     */
+    public void deliverForwarded(SseDeliveryMessage message) {
+        if (!sseEmitterManager.hasStream(message.getUserId())) {
+            log.debug("Forwarded {} event from node {} for user {} arrived after disconnect. Dropping.",
+                    message.getEventName(), message.getOriginNodeId(), message.getUserId());
+            return;
+        }
+        emitLocally(message.getUserId(), message.getEventName(), message.getData(), message.isBatchable());
+    }
+
+    private void emitLocally(String userId, String eventName, String data, boolean batchable) {
+        if (batchable) {
+            sseEmitterManager.sendBatchableToUser(userId, eventName, data);
+        } else {
+            sseEmitterManager.sendEncodedToUser(userId, eventName, data);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.example.notification.service;
+
+import com.example.notification.config.SseMetrics;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One live SSE connection: a bounded frame queue drained only as fast as the client requests.
+ * When the queue is full the {@link SseOverflowPolicy} decides what gives. Losing a sequenced frame
+ * puts a {@code resync} event at the head of the queue so the client knows to refetch.
+ */
+final class SseConnection {
+
+    enum Offer { QUEUED, DROPPED, COALESCED, OVERFLOW, CLOSED }
+
+    private static final ServerSentEvent<String> RESYNC = ServerSentEvent.<String>builder()
+            .event("resync")
+            .data("{\"reason\":\"overflow\"}")
+            .build();
+
+    private final int capacity;
+    private final SseOverflowPolicy policy;
+    private final SseMetrics metrics;
+    private final ArrayDeque<ServerSentEvent<String>> queue = new ArrayDeque<>();
+    private final AtomicInteger wip = new AtomicInteger();
+    private final Flux<ServerSentEvent<String>> flux;
+
+    // Guarded by this
+    private FluxSink<ServerSentEvent<String>> downstream;
+    private boolean terminating;
+    private boolean completed;
+    private boolean resyncPending;
+    private long pendingSince;
+
+    SseConnection(int capacity, SseOverflowPolicy policy, SseMetrics metrics) {
+        this.capacity = Math.max(1, capacity);
+        this.policy = policy;
+        this.metrics = metrics;
+        // IGNORE: the drain loop below never emits beyond demand, so reactor needs no buffer of its own
+        this.flux = Flux.create(this::attach, FluxSink.OverflowStrategy.IGNORE);
+    }
+
+    Flux<ServerSentEvent<String>> asFlux() {
+        return flux;
+    }
+
+    /**
+     * Queue a frame for delivery. Never blocks; returns how the frame was (or was not) accepted.
+     */
+    Offer offer(ServerSentEvent<String> frame) {
+        Offer result = Offer.QUEUED;
+        synchronized (this) {
+            if (terminating || completed) {
+                return Offer.CLOSED;
+            }
+            if (queue.size() >= capacity) {
+                if (policy == SseOverflowPolicy.DISCONNECT) {
+                    return Offer.OVERFLOW;
+                }
+                if (policy == SseOverflowPolicy.COALESCE && removeNewestOfType(frame.event())) {
+                    result = Offer.COALESCED;
+                } else {
+                    discarded(queue.pollFirst());
+                    result = Offer.DROPPED;
+                }
+            }
+            if (queue.isEmpty()) {
+                pendingSince = System.currentTimeMillis();
+            }
+            queue.addLast(frame);
+            metrics.adjustBufferedFrames(1);
+        }
+        drain();
+        return result;
+    }
+
+    /**
+     * Discard everything queued, deliver {@code hint} once the client next asks for a frame, then complete.
+     * Only the hint is held meanwhile, so a stuck client costs no more than one frame until the container
+     * times the request out.
+     */
+    void evict(ServerSentEvent<String> hint) {
+        synchronized (this) {
+            if (terminating || completed) {
+                return;
+            }
+            clear();
+            queue.addLast(hint);
+            metrics.adjustBufferedFrames(1);
+            terminating = true;
+        }
+        drain();
+    }
+
+    /**
+     * Discard everything queued and send a resync frame next, so the client reloads instead of catching up.
+     */
+    void resync() {
+        synchronized (this) {
+            if (terminating || completed) {
+                return;
+            }
+            clear();
+            resyncPending = true;
+        }
+        drain();
+    }
+
+    /**
+     * Discard everything queued and complete the stream.
+     */
+    void close() {
+        synchronized (this) {
+            if (terminating || completed) {
+                return;
+            }
+            clear();
+            terminating = true;
+        }
+        drain();
+    }
+
+    /**
+     * True if frames have been waiting longer than {@code timeoutMs} without the client taking any.
+     */
+    synchronized boolean isStalled(long now, long timeoutMs) {
+        return !completed && !queue.isEmpty() && now - pendingSince > timeoutMs;
+    }
+
+    synchronized int depth() {
+        return queue.size();
+    }
+
+    private void attach(FluxSink<ServerSentEvent<String>> sink) {
+        synchronized (this) {
+            if (downstream != null) {
+                sink.error(new IllegalStateException("SSE connection supports a single subscriber"));
+                return;
+            }
+            downstream = sink;
+        }
+        sink.onRequest(n -> drain());
+        sink.onDispose(this::disposed);
+        drain();
+    }
+
+    private void disposed() {
+        synchronized (this) {
+            clear();
+            completed = true;
+        }
+    }
+
+    // Serialized emission loop: whichever thread wins the wip counter emits on behalf of all callers
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            FluxSink<ServerSentEvent<String>> out;
+            synchronized (this) {
+                out = completed ? null : downstream;
+            }
+            while (out != null) {
+                ServerSentEvent<String> next = null;
+                boolean finish = false;
+                synchronized (this) {
+                    if (out.requestedFromDownstream() > 0) {
+                        if (resyncPending) {
+                            resyncPending = false;
+                            next = RESYNC;
+                        } else {
+                            next = queue.pollFirst();
+                            if (next != null) {
+                                metrics.adjustBufferedFrames(-1);
+                                pendingSince = System.currentTimeMillis();
+                            }
+                        }
+                    }
+                    if (next == null && terminating && queue.isEmpty()) {
+                        completed = true;
+                        finish = true;
+                    }
+                }
+                if (next != null) {
+                    out.next(next);
+                } else {
+                    if (finish) {
+                        out.complete();
+                    }
+                    break;
+                }
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private boolean removeNewestOfType(String eventName) {
+        Iterator<ServerSentEvent<String>> it = queue.descendingIterator();
+        while (it.hasNext()) {
+            ServerSentEvent<String> queued = it.next();
+            if (Objects.equals(queued.event(), eventName)) {
+                it.remove();
+                discarded(queued);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void discarded(ServerSentEvent<String> frame) {
+        metrics.adjustBufferedFrames(-1);
+        if (frame.id() != null) {
+            resyncPending = true;
+        }
+    }
+
+    private void clear() {
+        metrics.adjustBufferedFrames(-queue.size());
+        queue.clear();
+        resyncPending = false;
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.notification.service;
+
+import com.example.notification.config.SseMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Creates SSE connections with the configured buffer limits and builds the hints sent to evicted clients.
+ */
+@Component
+public class SseConnectionFactory {
+
+    static final String RECONNECT_EVENT = "reconnect";
+
+    private final int bufferCapacity;
+    private final SseOverflowPolicy overflowPolicy;
+    private final long slowConsumerTimeoutMs;
+    private final long reconnectRetryMs;
+    private final SseMetrics metrics;
+
+    public SseConnectionFactory(@Value("${notification.sse.buffer.capacity:256}") int bufferCapacity,
+                                @Value("${notification.sse.buffer.overflow-policy:DROP_OLDEST}") SseOverflowPolicy overflowPolicy,
+                                @Value("${notification.sse.buffer.slow-consumer-timeout-ms:30000}") long slowConsumerTimeoutMs,
+                                @Value("${notification.sse.buffer.reconnect-retry-ms:5000}") long reconnectRetryMs,
+                                SseMetrics metrics) {
+        this.bufferCapacity = bufferCapacity;
+        this.overflowPolicy = overflowPolicy;
+        this.slowConsumerTimeoutMs = slowConsumerTimeoutMs;
+        this.reconnectRetryMs = reconnectRetryMs;
+        this.metrics = metrics;
+    }
+
+    SseConnection open() {
+        return new SseConnection(bufferCapacity, overflowPolicy, metrics);
+    }
+
+    long getSlowConsumerTimeoutMs() {
+        return slowConsumerTimeoutMs;
+    }
+
+    SseMetrics getMetrics() {
+        return metrics;
+    }
+
+    // The retry field sets EventSource's own reconnect delay; retryMs is repeated in the data for manual reconnects
+    ServerSentEvent<String> reconnectHint(String reason) {
+        return ServerSentEvent.<String>builder()
+                .event(RECONNECT_EVENT)
+                .retry(Duration.ofMillis(reconnectRetryMs))
+                .data("{\"reason\":\"" + reason + "\",\"retryMs\":" + reconnectRetryMs + "}")
+                .build();
+    }
+}
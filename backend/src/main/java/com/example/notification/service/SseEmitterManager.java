@@ -2,31 +2,104 @@ package com.example.notification.service;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.http.codec.ServerSentEvent;
 import reactor.core.publisher.Flux;
-import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class SseEmitterManager {
 
     private static final Logger logger = LoggerFactory.getLogger(SseEmitterManager.class);
-    private final ConcurrentHashMap<String, Sinks.Many<ServerSentEvent<String>>> userSinks = new ConcurrentHashMap<>();
+    private static final String RESYNC_EVENT = "resync";
+    private static final String NOTIFICATION_EVENT = "notification";
+    private static final String BATCH_EVENT = "notifications";
+    // Immutable and shared by every connection; heartbeats carry no id so they never move Last-Event-ID
+    public static final ServerSentEvent<String> KEEPALIVE = ServerSentEvent.<String>builder()
+            .event("KEEPALIVE")
+            .data("ping")
+            .build();
+
+    private final ConcurrentHashMap<String, SseUserStream> userStreams = new ConcurrentHashMap<>();
     private final ObjectMapper objectMapper;
+    private final SsePresenceRegistry presenceRegistry;
+    private final SseConnectionFactory connectionFactory;
+    private final OnlineUserIndex onlineUsers;
+    private final int replayCapacity;
+    private final long replayRetentionMs;
+    private final long heartbeatIntervalMs;
+    private final HeartbeatWheel heartbeatWheel;
+    private final boolean batchEnabled;
+    private final long batchWindowMs;
 
-    public SseEmitterManager(ObjectMapper objectMapper) {
+    public SseEmitterManager(ObjectMapper objectMapper,
+                             SsePresenceRegistry presenceRegistry,
+                             SseConnectionFactory connectionFactory,
+                             OnlineUserIndex onlineUsers,
+                             @Value("${notification.sse.replay.capacity:64}") int replayCapacity,
+                             @Value("${notification.sse.replay.retention-ms:300000}") long replayRetentionMs,
+                             @Value("${notification.sse.heartbeat.interval-ms:20000}") long heartbeatIntervalMs,
+                             @Value("${notification.sse.heartbeat.tick-ms:1000}") long heartbeatTickMs,
+                             @Value("${notification.sse.batch.enabled:false}") boolean batchEnabled,
+                             @Value("${notification.sse.batch.window-ms:50}") long batchWindowMs) {
         this.objectMapper = objectMapper;
+        this.presenceRegistry = presenceRegistry;
+        this.connectionFactory = connectionFactory;
+        this.onlineUsers = onlineUsers;
+        this.replayCapacity = replayCapacity;
+        this.replayRetentionMs = replayRetentionMs;
+        this.heartbeatIntervalMs = heartbeatIntervalMs;
+        this.heartbeatWheel = new HeartbeatWheel((int) Math.max(1, heartbeatIntervalMs / heartbeatTickMs));
+        this.batchEnabled = batchEnabled;
+        this.batchWindowMs = batchWindowMs;
     }
 
     public Flux<ServerSentEvent<String>> addEmitter(String userId) {
-        Sinks.Many<ServerSentEvent<String>> sink = Sinks.many().replay().latest();
-        userSinks.put(userId, sink);
+        return addEmitter(userId, null);
+    }
+
+    /**
+     * Open a stream for the user. If {@code lastEventId} belongs to the user's retained stream, only the
+     * frames sent after it are replayed; if the gap is no longer covered a {@code resync} event tells the
+     * client to refetch.
+     */
+    public Flux<ServerSentEvent<String>> addEmitter(String userId, String lastEventId) {
+        // The connection queues frames emitted before the subscriber arrives (the replayed gap)
+        SseConnection connection = connectionFactory.open();
+        while (true) {
+            SseUserStream stream = userStreams.computeIfAbsent(userId, id -> new SseUserStream(newEpoch(), replayCapacity));
+            synchronized (stream) {
+                if (userStreams.get(userId) != stream) {
+                    continue; // Expired and removed concurrently; start over with a fresh stream
+                }
+                if (stream.connection != null) {
+                    stream.connection.close();
+                }
+                if (lastEventId != null && !lastEventId.isBlank()) {
+                    replayGap(userId, stream, lastEventId, connection);
+                }
+                stream.connection = connection;
+                stream.pendingBatch.clear(); // Already retained; the replayed gap covers them
+                stream.disconnectedAt = 0;
+                stream.lastActivityAt = System.currentTimeMillis();
+            }
+            break;
+        }
+        heartbeatWheel.add(userId);
+        onlineUsers.markOnline(userId);
+        presenceRegistry.announceOnline(userId);
         logger.info("Added sink for user: {}", userId);
-        return sink.asFlux();
+        return connection.asFlux().doFinally(signal -> detach(userId, connection));
     }
 
     public void removeEmitter(String userId) {
@@ -34,37 +107,223 @@ public class SseEmitterManager {
             logger.warn("Attempted to remove sink with null userId.");
             return;
         }
-        Sinks.Many<ServerSentEvent<String>> sink = userSinks.remove(userId);
-        if (sink != null) {
-            sink.tryEmitComplete();
+        SseUserStream stream = userStreams.get(userId);
+        SseConnection connection = null;
+        if (stream != null) {
+            synchronized (stream) {
+                connection = stream.connection;
+                stream.connection = null;
+                stream.pendingBatch.clear();
+                stream.disconnectedAt = System.currentTimeMillis();
+            }
+        }
+        if (connection != null) {
+            connection.close();
+            heartbeatWheel.remove(userId);
+            onlineUsers.markOffline(userId);
+            presenceRegistry.announceOffline(userId);
             logger.info("Removed sink for user: {}", userId);
         } else {
             logger.debug("No sink found for user: {}. Nothing to remove.", userId);
         }
     }
 
+    // Called when a stream's Flux terminates; only detaches if it is still the user's current sink
+    private void detach(String userId, SseConnection connection) {
+        SseUserStream stream = userStreams.get(userId);
+        if (stream == null) {
+            return;
+        }
+        synchronized (stream) {
+            if (stream.connection != connection) {
+                return;
+            }
+            stream.connection = null;
+            stream.pendingBatch.clear();
+            stream.disconnectedAt = System.currentTimeMillis();
+        }
+        heartbeatWheel.remove(userId);
+        onlineUsers.markOffline(userId);
+        presenceRegistry.announceOffline(userId);
+        logger.info("Stream closed, detached sink for user: {}", userId);
+    }
+
+    public boolean hasSink(String userId) {
+        SseUserStream stream = userId != null ? userStreams.get(userId) : null;
+        if (stream == null) {
+            return false;
+        }
+        synchronized (stream) {
+            return stream.connection != null;
+        }
+    }
+
+    /**
+     * True if this node holds the user's stream, connected or within the replay retention window.
+     */
+    public boolean hasStream(String userId) {
+        return userId != null && userStreams.containsKey(userId);
+    }
+
+    /**
+     * Users whose stream this node holds, connected or within the replay retention window.
+     */
+    public Set<String> streamUserIds() {
+        return Collections.unmodifiableSet(userStreams.keySet());
+    }
+
     public void sendToUser(String userId, Object data) {
-        Sinks.Many<ServerSentEvent<String>> sink = userSinks.get(userId);
-        if (sink != null) {
-            String randomId = String.valueOf(new Random().nextInt(3) + 1);
-            try {
-                String jsonData = objectMapper.writeValueAsString(data);
-                ServerSentEvent<String> event = ServerSentEvent.<String>builder()
-                        .id(randomId)
-                        .event("notification")
-                        .data(jsonData)
-                        .build();
-                Sinks.EmitResult result = sink.tryEmitNext(event);
-                if (result.isSuccess()) {
-                    logger.info("Sent event to user: {} - Data: {}", userId, data);
-                } else {
-                    logger.warn("Failed to send event to user: {}. Result: {}", userId, result);
+        if (!hasStream(userId)) {
+            logger.debug("No sink found for user: {}", userId);
+            return;
+        }
+        try {
+            sendEncodedToUser(userId, NOTIFICATION_EVENT, objectMapper.writeValueAsString(data));
+        } catch (Exception e) {
+            logger.error("Error serializing data to JSON for user: {}", userId, e);
+        }
+    }
+
+    /**
+     * Emit an already-encoded JSON payload to the user's stream. The frame gets the next sequence id and is
+     * retained for replay, so it also reaches a client that is momentarily reconnecting.
+     */
+    public void sendEncodedToUser(String userId, String eventName, String jsonData) {
+        SseUserStream stream = userStreams.get(userId);
+        if (stream == null) {
+            logger.debug("No sink found for user: {}", userId);
+            return;
+        }
+        SseConnection connection;
+        SseConnection.Offer batchOffer;
+        SseConnection.Offer offer = null;
+        synchronized (stream) {
+            long sequence = ++stream.lastSequence;
+            stream.replay.append(sequence, eventName, jsonData);
+            batchOffer = emitPendingBatch(stream); // Keep frames in sequence order
+            connection = stream.connection;
+            if (connection != null) {
+                offer = connection.offer(frame(stream.eventId(sequence), eventName, jsonData));
+                stream.lastActivityAt = System.currentTimeMillis();
+            }
+        }
+        if (batchOffer != null) {
+            handleOffer(userId, stream, connection, batchOffer);
+        }
+        if (offer == null) {
+            logger.debug("User {} is reconnecting; {} event retained for replay.", userId, eventName);
+            return;
+        }
+        handleOffer(userId, stream, connection, offer);
+        if (offer != SseConnection.Offer.OVERFLOW) {
+            logger.debug("Sent {} event to user: {}", eventName, userId);
+        }
+    }
+
+    /**
+     * Like {@link #sendEncodedToUser} for a notification that may wait up to the batch window, so a burst
+     * reaches the client as one {@code notifications} frame carrying a JSON array. Each notification is
+     * still sequenced and retained individually; the batch frame's id is that of its last element.
+     * Sent immediately when batching is disabled.
+     */
+    public void sendBatchableToUser(String userId, String eventName, String jsonData) {
+        if (!batchEnabled || !NOTIFICATION_EVENT.equals(eventName)) {
+            sendEncodedToUser(userId, eventName, jsonData);
+            return;
+        }
+        SseUserStream stream = userStreams.get(userId);
+        if (stream == null) {
+            logger.debug("No sink found for user: {}", userId);
+            return;
+        }
+        boolean openedBatch;
+        synchronized (stream) {
+            long sequence = ++stream.lastSequence;
+            stream.replay.append(sequence, eventName, jsonData);
+            if (stream.connection == null) {
+                logger.debug("User {} is reconnecting; {} event retained for replay.", userId, eventName);
+                return;
+            }
+            openedBatch = stream.pendingBatch.isEmpty();
+            stream.pendingBatch.add(jsonData);
+            stream.pendingBatchSequence = sequence;
+        }
+        if (openedBatch) {
+            Schedulers.parallel().schedule(() -> flushBatch(userId, stream), batchWindowMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flushBatch(String userId, SseUserStream stream) {
+        SseConnection connection;
+        SseConnection.Offer offer;
+        int size;
+        synchronized (stream) {
+            connection = stream.connection;
+            size = stream.pendingBatch.size();
+            offer = emitPendingBatch(stream);
+        }
+        if (offer != null) {
+            handleOffer(userId, stream, connection, offer);
+            logger.debug("Sent batch of {} notifications to user: {}", size, userId);
+        }
+    }
+
+    // Caller holds the stream monitor
+    private SseConnection.Offer emitPendingBatch(SseUserStream stream) {
+        List<String> batch = stream.pendingBatch;
+        if (batch.isEmpty() || stream.connection == null) {
+            batch.clear();
+            return null;
+        }
+        String id = stream.eventId(stream.pendingBatchSequence);
+        ServerSentEvent<String> frame = batch.size() == 1
+                ? frame(id, NOTIFICATION_EVENT, batch.get(0))
+                : frame(id, BATCH_EVENT, joinArray(batch));
+        batch.clear();
+        stream.lastActivityAt = System.currentTimeMillis();
+        return stream.connection.offer(frame);
+    }
+
+    // Payloads are already JSON values, so the array is built by concatenation rather than re-serialization
+    private static String joinArray(List<String> payloads) {
+        int length = 2 + payloads.size();
+        for (String payload : payloads) {
+            length += payload.length();
+        }
+        StringBuilder json = new StringBuilder(length).append('[');
+        for (int i = 0; i < payloads.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(payloads.get(i));
+        }
+        return json.append(']').toString();
+    }
+
+    /**
+     * Emit a frame that is neither sequenced nor retained for replay (connection notices and the like).
+     */
+    public void sendTransientToUser(String userId, String eventName, Object data) {
+        SseUserStream stream = userStreams.get(userId);
+        if (stream == null) {
+            return;
+        }
+        try {
+            String jsonData = objectMapper.writeValueAsString(data);
+            SseConnection connection;
+            SseConnection.Offer offer = null;
+            synchronized (stream) {
+                connection = stream.connection;
+                if (connection != null) {
+                    offer = connection.offer(frame(null, eventName, jsonData));
+                    stream.lastActivityAt = System.currentTimeMillis();
                 }
-            } catch (Exception e) {
-                logger.error("Error serializing data to JSON for user: {}", userId, e);
             }
-        } else {
-            logger.warn("No sink found for user: {}", userId);
+            if (offer != null) {
+                handleOffer(userId, stream, connection, offer);
+            }
+        } catch (Exception e) {
+            logger.error("Error serializing data to JSON for user: {}", userId, e);
         }
     }
 
@@ -72,31 +331,155 @@ public class SseEmitterManager {
         removeEmitter(userId);
     }
 
-    @Scheduled(fixedRate = 20000) // Send heartbeat every 20 seconds
-    public void sendHeartbeats() {
-        userSinks.forEach((userId, sink) -> {
-            if (userId == null || sink == null) {
-                logger.warn("Skipping heartbeat for null userId or sink.");
-                return;
+    /**
+     * Complete every local stream on shutdown so the rest of the cluster stops routing to this node.
+     */
+    @PreDestroy
+    public void closeAll() {
+        userStreams.keySet().forEach(this::removeEmitter);
+    }
+
+    /**
+     * Drop replay state for users who have not reconnected within the retention window.
+     */
+    @Scheduled(fixedDelayString = "${notification.sse.replay.cleanup-interval-ms:60000}")
+    public void evictExpiredStreams() {
+        long cutoff = System.currentTimeMillis() - replayRetentionMs;
+        userStreams.forEach((userId, stream) -> {
+            synchronized (stream) {
+                if (stream.connection == null && stream.disconnectedAt > 0 && stream.disconnectedAt < cutoff) {
+                    userStreams.remove(userId, stream);
+                }
             }
-            try {
-                String randomId = String.valueOf(new Random().nextInt(3) + 1);
-                ServerSentEvent<String> heartbeatEvent = ServerSentEvent.<String>builder()
-                        .id(randomId)
-                        .event("KEEPALIVE")
-                        .data("ping")
-                        .build();
-                Sinks.EmitResult result = sink.tryEmitNext(heartbeatEvent);
-                if (result.isSuccess()) {
-                    logger.info("Sent KEEPALIVE event to user: {}", userId);
-                } else {
-                    logger.warn("Failed to send KEEPALIVE event to user: {}, removing sink. Result: {}", userId, result);
-                    removeEmitter(userId);
+        });
+    }
+
+    /**
+     * Advance the heartbeat wheel by one slot. Each tick only visits the users hashed to that slot, so
+     * keepalives are spread evenly over the interval. Streams that carried any frame within the last
+     * interval already proved the connection alive and are skipped. The same visit evicts connections
+     * whose client has stopped reading.
+     */
+    @Scheduled(fixedRateString = "${notification.sse.heartbeat.tick-ms:1000}")
+    public void heartbeatTick() {
+        long now = System.currentTimeMillis();
+        int sent = 0;
+        int skipped = 0;
+        for (String userId : heartbeatWheel.advance()) {
+            SseUserStream stream = userStreams.get(userId);
+            if (stream == null) {
+                heartbeatWheel.remove(userId);
+                continue;
+            }
+            SseConnection connection;
+            SseConnection.Offer offer = null;
+            boolean stalled;
+            synchronized (stream) {
+                connection = stream.connection;
+                if (connection == null) {
+                    continue;
                 }
-            } catch (Exception e) {
-                logger.error("Error occurred while sending heartbeats for user: {} - Error: {}", userId, e.getMessage(), e);
-                removeEmitter(userId);
+                stalled = connection.isStalled(now, connectionFactory.getSlowConsumerTimeoutMs());
+                if (!stalled) {
+                    if (now - stream.lastActivityAt < heartbeatIntervalMs) {
+                        skipped++;
+                        continue;
+                    }
+                    offer = connection.offer(KEEPALIVE);
+                    stream.lastActivityAt = now;
+                }
+            }
+            if (stalled) {
+                evict(userId, stream, connection, "slow-consumer");
+            } else {
+                handleOffer(userId, stream, connection, offer);
+                sent++;
+            }
+        }
+        if (sent > 0 || skipped > 0) {
+            logger.debug("Heartbeat tick: {} KEEPALIVE sent, {} skipped for recent traffic", sent, skipped);
+        }
+    }
+
+    private void handleOffer(String userId, SseUserStream stream, SseConnection connection, SseConnection.Offer offer) {
+        switch (offer) {
+            case DROPPED -> {
+                connectionFactory.getMetrics().incrementFramesDropped();
+                logger.debug("SSE buffer full for user {}; dropped the oldest frame.", userId);
+            }
+            case COALESCED -> connectionFactory.getMetrics().incrementFramesCoalesced();
+            case OVERFLOW -> evict(userId, stream, connection, "overflow");
+            default -> { }
+        }
+    }
+
+    /**
+     * Detach a connection whose client cannot keep up and tell it to come back. Frames sent meanwhile are
+     * retained for replay, so the client resumes from its Last-Event-ID without loss if it returns in time.
+     */
+    private void evict(String userId, SseUserStream stream, SseConnection connection, String reason) {
+        synchronized (stream) {
+            if (stream.connection != connection) {
+                return;
+            }
+            stream.connection = null;
+            stream.pendingBatch.clear();
+            stream.disconnectedAt = System.currentTimeMillis();
+        }
+        connection.evict(connectionFactory.reconnectHint(reason));
+        heartbeatWheel.remove(userId);
+        onlineUsers.markOffline(userId);
+        presenceRegistry.announceOffline(userId);
+        if ("overflow".equals(reason)) {
+            connectionFactory.getMetrics().incrementOverflowEvictions();
+        } else {
+            connectionFactory.getMetrics().incrementSlowConsumerEvictions();
+        }
+        logger.warn("Evicted SSE connection for user {} ({}); client asked to reconnect.", userId, reason);
+    }
+
+    private void replayGap(String userId, SseUserStream stream, String lastEventId, SseConnection connection) {
+        long afterSequence = parseSequence(stream, lastEventId);
+        boolean[] overflowed = {false};
+        boolean covered = afterSequence >= 0 && stream.replay.replayAfter(afterSequence, (sequence, eventName, data) -> {
+            if (!overflowed[0]) {
+                overflowed[0] = connection.offer(frame(stream.eventId(sequence), eventName, data)) == SseConnection.Offer.OVERFLOW;
             }
         });
+        if (overflowed[0]) {
+            // Dropped or coalesced frames already ask for a resync; under DISCONNECT the rest of the gap was refused
+            logger.info("Gap for user {} after event {} does not fit the connection buffer. Asking client to resync.", userId, lastEventId);
+            connection.resync();
+        } else if (covered) {
+            logger.info("Resumed stream for user {} after event {} (last sent {}).", userId, lastEventId, stream.lastSequence);
+        } else {
+            logger.info("Cannot resume stream for user {} from event {}. Asking client to resync.", userId, lastEventId);
+            connection.offer(frame(null, RESYNC_EVENT, "{\"reason\":\"gap\"}"));
+        }
+    }
+
+    // Event ids are "<epoch>-<sequence>"; an id from another stream (expired, other node) cannot be resumed
+    private static long parseSequence(SseUserStream stream, String lastEventId) {
+        int separator = lastEventId.lastIndexOf('-');
+        if (separator <= 0 || !stream.epoch.equals(lastEventId.substring(0, separator))) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(lastEventId.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static ServerSentEvent<String> frame(String id, String eventName, String data) {
+        return ServerSentEvent.<String>builder()
+                .id(id)
+                .event(eventName)
+                .data(data)
+                .build();
+    }
+
+    private static String newEpoch() {
+        return Long.toHexString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE);
     }
 }
@@ -0,0 +1,13 @@
+package com.example.notification.service;
+
+/**
+ * What a connection does when its outbound buffer is full.
+ */
+public enum SseOverflowPolicy {
+    /** Discard the oldest queued frame to make room. */
+    DROP_OLDEST,
+    /** Replace the newest queued frame of the same event type; falls back to dropping the oldest. */
+    COALESCE,
+    /** Evict the connection with a reconnect hint; the client resumes from its Last-Event-ID. */
+    DISCONNECT
+}
@@ -0,0 +1,227 @@
+package com.example.notification.service;
+
+import com.example.notification.config.ClusterNode;
+import com.example.notification.dto.SseNodeHeartbeat;
+import com.example.notification.dto.SsePresenceEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cluster-wide view of which node holds which user's SSE stream.
+ * Local connections are announced on the presence topic; announcements from other nodes are
+ * folded into {@link #remoteNodes} so any node can route a frame to the right replica.
+ * A disconnect is a tombstone for the user's key, so compaction drops users who left; the departing node's
+ * id travels in the {@link #NODE_HEADER} header.
+ * <p>
+ * Every node also sends a heartbeat every {@code notification.cluster.heartbeat-ms}. The compacted presence
+ * topic keeps a crashed node's last "online" records forever, so presence is only trusted while its node
+ * keeps beating:
+ * <ul>
+ *     <li>A node silent for {@code notification.cluster.node-timeout-ms} is treated as gone. Its users are no
+ *     longer located and their entries are swept.</li>
+ *     <li>A node that restarted under the same id reports a new start time. Presence it announced before that
+ *     is dropped, since those streams died with the old process.</li>
+ *     <li>A node not heard from since this one started gets one timeout's grace, as its next heartbeat may
+ *     simply not have arrived yet.</li>
+ * </ul>
+ */
+@Service
+@Slf4j
+public class SsePresenceRegistry {
+
+    public static final String NODE_HEADER = "sse-node-id";
+
+    private final ClusterNode clusterNode;
+    private final OnlineUserIndex onlineUsers;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final String presenceTopic;
+    private final String heartbeatTopic;
+    private final long nodeTimeoutMillis;
+    private final long startedAt = System.currentTimeMillis();
+
+    // userId -> where the stream is, only for users connected to OTHER nodes
+    private final ConcurrentHashMap<String, Location> remoteNodes = new ConcurrentHashMap<>();
+    // nodeId -> last heartbeat from that node
+    private final ConcurrentHashMap<String, NodeLiveness> nodes = new ConcurrentHashMap<>();
+
+    public SsePresenceRegistry(ClusterNode clusterNode,
+                               OnlineUserIndex onlineUsers,
+                               KafkaTemplate<String, Object> kafkaTemplate,
+                               @Value("${notification.kafka.topics.sse-presence:sse-presence}") String presenceTopic,
+                               @Value("${notification.kafka.topics.sse-heartbeats:sse-heartbeats}") String heartbeatTopic,
+                               @Value("${notification.cluster.node-timeout-ms:30000}") long nodeTimeoutMillis) {
+        this.clusterNode = clusterNode;
+        this.onlineUsers = onlineUsers;
+        this.kafkaTemplate = kafkaTemplate;
+        this.presenceTopic = presenceTopic;
+        this.heartbeatTopic = heartbeatTopic;
+        this.nodeTimeoutMillis = nodeTimeoutMillis;
+    }
+
+    public void announceOnline(String userId) {
+        if (!clusterNode.isEnabled() || userId == null) {
+            return;
+        }
+        SsePresenceEvent event = SsePresenceEvent.builder()
+                .userId(userId)
+                .nodeId(clusterNode.getNodeId())
+                .online(true)
+                .timestamp(System.currentTimeMillis())
+                .build();
+        send(new ProducerRecord<>(presenceTopic, userId, event), userId, true);
+    }
+
+    public void announceOffline(String userId) {
+        if (!clusterNode.isEnabled() || userId == null) {
+            return;
+        }
+        ProducerRecord<String, Object> tombstone = new ProducerRecord<>(presenceTopic, userId, null);
+        tombstone.headers().add(NODE_HEADER, clusterNode.getNodeId().getBytes(StandardCharsets.UTF_8));
+        send(tombstone, userId, false);
+    }
+
+    /**
+     * Applies a presence change received from the presence topic.
+     * An offline event only clears the entry if it still points at the node that went offline,
+     * so a late disconnect from the old node cannot hide a newer connection on another node.
+     * Offline events are only found in records written before disconnects became tombstones.
+     */
+    public void apply(SsePresenceEvent event) {
+        if (event == null || event.getUserId() == null || event.getNodeId() == null) {
+            return;
+        }
+        if (clusterNode.getNodeId().equals(event.getNodeId())) {
+            return; // Local streams are tracked by SseEmitterManager itself
+        }
+        if (event.isOnline()) {
+            remoteNodes.put(event.getUserId(), new Location(event.getNodeId(), event.getTimestamp()));
+        } else {
+            remoteNodes.computeIfPresent(event.getUserId(),
+                    (userId, location) -> location.nodeId.equals(event.getNodeId()) ? null : location);
+        }
+        log.debug("Presence updated: user={} node={} online={}", event.getUserId(), event.getNodeId(), event.isOnline());
+    }
+
+    /**
+     * Applies a tombstone received from the presence topic. As with an offline event, the entry is only cleared
+     * if it still points at the departing node. Compaction keeps only the tombstone, even if a newer "online"
+     * from another node came first, so a user still connected here is announced again for nodes that rebuild
+     * from the topic.
+     * @param nodeId the departing node, or null if the tombstone carries none
+     */
+    public void applyDeparture(String userId, String nodeId) {
+        if (userId == null) {
+            return;
+        }
+        if (onlineUsers.isOnline(userId)) {
+            announceOnline(userId);
+        }
+        if (clusterNode.getNodeId().equals(nodeId)) {
+            return;
+        }
+        remoteNodes.computeIfPresent(userId,
+                (user, location) -> nodeId == null || location.nodeId.equals(nodeId) ? null : location);
+        log.debug("Presence updated: user={} node={} departed", userId, nodeId);
+    }
+
+    /**
+     * Records a heartbeat received from the heartbeat topic. A later start time than the one known for the
+     * node drops the presence it announced before restarting.
+     */
+    public void applyHeartbeat(SseNodeHeartbeat heartbeat) {
+        if (heartbeat == null || heartbeat.getNodeId() == null || clusterNode.getNodeId().equals(heartbeat.getNodeId())) {
+            return;
+        }
+        NodeLiveness previous = nodes.put(heartbeat.getNodeId(),
+                new NodeLiveness(heartbeat.getStartedAt(), System.currentTimeMillis()));
+        if (previous == null || previous.startedAt != heartbeat.getStartedAt()) {
+            int before = remoteNodes.size();
+            remoteNodes.values().removeIf(location -> location.nodeId.equals(heartbeat.getNodeId())
+                    && location.since < heartbeat.getStartedAt());
+            log.info("Node {} started at {}; dropped {} presence entries from before", heartbeat.getNodeId(),
+                    heartbeat.getStartedAt(), before - remoteNodes.size());
+        }
+    }
+
+    /**
+     * Sends this node's heartbeat and drops the users of nodes that have stopped sending theirs.
+     */
+    @Scheduled(fixedDelayString = "${notification.cluster.heartbeat-ms:10000}")
+    public void heartbeat() {
+        if (!clusterNode.isEnabled()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        SseNodeHeartbeat heartbeat = SseNodeHeartbeat.builder()
+                .nodeId(clusterNode.getNodeId())
+                .startedAt(startedAt)
+                .timestamp(now)
+                .build();
+        try {
+            kafkaTemplate.send(heartbeatTopic, clusterNode.getNodeId(), heartbeat);
+        } catch (Exception e) {
+            log.error("Failed to publish heartbeat: {}", e.getMessage(), e);
+        }
+        expire(now);
+    }
+
+    /**
+     * @return the id of the live remote node holding the user's stream, or null if none is known
+     */
+    public String locateRemote(String userId) {
+        Location location = remoteNodes.get(userId);
+        return location != null && isCurrent(location, System.currentTimeMillis()) ? location.nodeId : null;
+    }
+
+    /**
+     * Users connected to other nodes. May include users of a node that went silent since the last sweep.
+     */
+    public Set<String> remoteUserIds() {
+        return Collections.unmodifiableSet(remoteNodes.keySet());
+    }
+
+    public int getRemoteUserCount() {
+        return remoteNodes.size();
+    }
+
+    void expire(long now) {
+        int before = remoteNodes.size();
+        remoteNodes.values().removeIf(location -> !isCurrent(location, now));
+        nodes.values().removeIf(node -> node.lastSeen <= now - nodeTimeoutMillis);
+        if (remoteNodes.size() < before) {
+            log.warn("Dropped {} presence entries of nodes silent for over {} ms", before - remoteNodes.size(), nodeTimeoutMillis);
+        }
+    }
+
+    // The node is alive and the stream was announced by its current process
+    private boolean isCurrent(Location location, long now) {
+        NodeLiveness node = nodes.get(location.nodeId);
+        if (node == null) {
+            return startedAt > now - nodeTimeoutMillis;
+        }
+        return node.lastSeen > now - nodeTimeoutMillis && location.since >= node.startedAt;
+    }
+
+    private void send(ProducerRecord<String, Object> record, String userId, boolean online) {
+        try {
+            kafkaTemplate.send(record);
+        } catch (Exception e) {
+            log.error("Failed to publish presence for user {} (online={}): {}", userId, online, e.getMessage(), e);
+        }
+    }
+
+    private record Location(String nodeId, long since) {
+    }
+
+    private record NodeLiveness(long startedAt, long lastSeen) {
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.notification.service;
+
+/**
+ * Fixed-size ring of the most recent frames sent to one user.
+ * Sequences, event names and payloads live in parallel arrays so appending never allocates
+ * and a replay is a plain index walk. Not thread-safe: callers synchronize on the owning stream.
+ */
+class SseReplayBuffer {
+
+    @FunctionalInterface
+    interface FrameConsumer {
+        void accept(long sequence, String eventName, String data);
+    }
+
+    private final long[] sequences;
+    private final String[] eventNames;
+    private final String[] payloads;
+    private final int mask;
+    private long appended;
+
+    SseReplayBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.sequences = new long[size];
+        this.eventNames = new String[size];
+        this.payloads = new String[size];
+        this.mask = size - 1;
+    }
+
+    void append(long sequence, String eventName, String data) {
+        int slot = (int) (appended & mask);
+        sequences[slot] = sequence;
+        eventNames[slot] = eventName;
+        payloads[slot] = data;
+        appended++;
+    }
+
+    int capacity() {
+        return sequences.length;
+    }
+
+    int size() {
+        return (int) Math.min(appended, sequences.length);
+    }
+
+    /**
+     * Replays every retained frame with a sequence greater than {@code afterSequence}, oldest first.
+     * @return false if frames after {@code afterSequence} were already overwritten, in which case nothing is replayed
+     */
+    boolean replayAfter(long afterSequence, FrameConsumer consumer) {
+        int size = size();
+        long first = appended - size;
+        if (size > 0 && sequences[(int) (first & mask)] > afterSequence + 1) {
+            return false;
+        }
+        for (long i = first; i < appended; i++) {
+            int slot = (int) (i & mask);
+            if (sequences[slot] > afterSequence) {
+                consumer.accept(sequences[slot], eventNames[slot], payloads[slot]);
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.notification.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Per-user SSE state on this node. Outlives individual connections for the replay retention
+ * window so a reconnecting client can resume from its Last-Event-ID.
+ * All fields are guarded by the stream's own monitor.
+ */
+final class SseUserStream {
+
+    final String epoch;
+    final SseReplayBuffer replay;
+    long lastSequence;
+    SseConnection connection;
+    long disconnectedAt;
+    long lastActivityAt;
+    // Notification payloads already sequenced and retained, waiting for the micro-batch flush
+    final List<String> pendingBatch = new ArrayList<>();
+    long pendingBatchSequence;
+
+    SseUserStream(String epoch, int replayCapacity) {
+        this.epoch = epoch;
+        this.replay = new SseReplayBuffer(replayCapacity);
+    }
+
+    String eventId(long sequence) {
+        return epoch + "-" + sequence;
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.notification.service;
+
+import com.example.notification.model.NotificationStatus;
+import com.example.notification.repository.BroadcastNotificationRepository;
+import com.example.notification.repository.NotificationRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-user unread counts kept in memory so badge reads don't run a COUNT against {@code notifications}.
+ * A count covers the user's own notifications and the shared broadcasts they have not read.
+ * A count is loaded from the database on first use and reloaded once it is older than the reconcile
+ * interval, which bounds any drift from missed or racing updates. Changes are applied after the
+ * surrounding transaction commits and pushed to the user as an {@code unread} SSE event.
+ */
+@Service
+@Slf4j
+public class UnreadCounterService {
+
+    static final String UNREAD_EVENT = "unread";
+
+    private final NotificationRepository notificationRepository;
+    private final BroadcastNotificationRepository broadcastRepository;
+    private final SseClusterRouter sseClusterRouter;
+    private final long reconcileMs;
+    private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+
+    public UnreadCounterService(NotificationRepository notificationRepository,
+                                BroadcastNotificationRepository broadcastRepository,
+                                SseClusterRouter sseClusterRouter,
+                                @Value("${notification.unread.reconcile-ms:300000}") long reconcileMs) {
+        this.notificationRepository = notificationRepository;
+        this.broadcastRepository = broadcastRepository;
+        this.sseClusterRouter = sseClusterRouter;
+        this.reconcileMs = reconcileMs;
+    }
+
+    public long getUnreadCount(String userId) {
+        long now = System.currentTimeMillis();
+        Counter counter = counters.get(userId);
+        if (counter == null || counter.isStale(now, reconcileMs)) {
+            counter = new Counter(notificationRepository.countByUserIdAndReadStatus(userId, NotificationStatus.UNREAD)
+                    + broadcastRepository.countUnreadByUserId(userId), now);
+            counters.put(userId, counter);
+        }
+        return counter.count.get();
+    }
+
+    /**
+     * Adjust the user's count by {@code delta} once the current transaction commits; rolled-back
+     * changes never touch the counter.
+     */
+    public void recordChange(String userId, long delta) {
+        if (delta == 0) {
+            return;
+        }
+        afterCommit(() -> apply(userId, delta));
+    }
+
+    /**
+     * A shared broadcast was stored: it is unread for every user. Cached counts are bumped in place and
+     * reachable users among them get their new count. Nothing is loaded: users without a fresh cached
+     * count pick the broadcast up when their count is next loaded.
+     */
+    public void recordBroadcast() {
+        afterCommit(() -> {
+            long now = System.currentTimeMillis();
+            counters.forEach((userId, counter) -> {
+                long count = counter.count.incrementAndGet();
+                if (!counter.isStale(now, reconcileMs) && sseClusterRouter.isReachable(userId)) {
+                    push(userId, count);
+                }
+            });
+        });
+    }
+
+    // Counters not read or refreshed within the reconcile interval would be reloaded anyway; drop them
+    @Scheduled(fixedDelayString = "${notification.unread.reconcile-ms:300000}")
+    public void evictStale() {
+        long now = System.currentTimeMillis();
+        counters.values().removeIf(counter -> counter.isStale(now, reconcileMs));
+    }
+
+    int cachedUsers() {
+        return counters.size();
+    }
+
+    private void apply(String userId, long delta) {
+        Counter counter = counters.get(userId);
+        if (counter != null) {
+            counter.count.accumulateAndGet(delta, (current, change) -> Math.max(0, current + change));
+        }
+        // Nobody is listening: leave the count to be loaded lazily on the next read
+        if (!sseClusterRouter.isReachable(userId)) {
+            return;
+        }
+        push(userId, getUnreadCount(userId));
+    }
+
+    private void push(String userId, long count) {
+        sseClusterRouter.deliver(userId, UNREAD_EVENT, "{\"count\":" + count + "}");
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static final class Counter {
+        final AtomicLong count;
+        final long loadedAt;
+
+        Counter(long count, long loadedAt) {
+            this.count = new AtomicLong(count);
+            this.loadedAt = loadedAt;
+        }
+
+        boolean isStale(long now, long reconcileMs) {
+            return now - loadedAt > reconcileMs;
+        }
+    }
+}
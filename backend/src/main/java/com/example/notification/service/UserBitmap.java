@@ -0,0 +1,353 @@
+package com.example.notification.service;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Compressed set of non-negative ints, laid out like a Roaring bitmap: values are grouped by their high 16 bits,
+ * and each group is a sorted {@code char[]} while it holds at most 4096 values, or a 1024-word bitset beyond
+ * that. A group costs at most 8 KB, and a sparse one two bytes per value.
+ * Set operations return new bitmaps and leave their operands alone. Not safe for concurrent mutation:
+ * build a bitmap on one thread, then publish it and only read it.
+ */
+final class UserBitmap {
+
+    private static final int ARRAY_MAX = 4096;
+    private static final int WORDS = 1024;
+
+    private char[] keys;
+    private Object[] containers; // Array or Bitset
+    private int size;
+
+    /** Sorted values of a sparse container, with the count in use. */
+    private static final class Array {
+        char[] values;
+        int count;
+
+        Array(char[] values, int count) {
+            this.values = values;
+            this.count = count;
+        }
+    }
+
+    private static final class Bitset {
+        final long[] words;
+        int cardinality;
+
+        Bitset(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+    }
+
+    UserBitmap() {
+        this(4);
+    }
+
+    private UserBitmap(int capacity) {
+        this.keys = new char[capacity];
+        this.containers = new Object[capacity];
+    }
+
+    void add(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value " + value);
+        }
+        char key = (char) (value >>> 16);
+        char low = (char) value;
+        int index = indexOf(key);
+        if (index < 0) {
+            index = -index - 1;
+            insertAt(index, key, new Array(new char[4], 0));
+        }
+        containers[index] = add(containers[index], low);
+    }
+
+    boolean contains(int value) {
+        if (value < 0) {
+            return false;
+        }
+        int index = indexOf((char) (value >>> 16));
+        return index >= 0 && contains(containers[index], (char) value);
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int cardinality() {
+        int total = 0;
+        for (int i = 0; i < size; i++) {
+            total += cardinality(containers[i]);
+        }
+        return total;
+    }
+
+    /** Visit every value in ascending order. */
+    void forEach(IntConsumer action) {
+        for (int i = 0; i < size; i++) {
+            int high = keys[i] << 16;
+            Object container = containers[i];
+            if (container instanceof Array array) {
+                for (int j = 0; j < array.count; j++) {
+                    action.accept(high | array.values[j]);
+                }
+            } else {
+                long[] words = ((Bitset) container).words;
+                for (int w = 0; w < WORDS; w++) {
+                    long word = words[w];
+                    while (word != 0) {
+                        action.accept(high | (w << 6) | Long.numberOfTrailingZeros(word));
+                        word &= word - 1;
+                    }
+                }
+            }
+        }
+    }
+
+    /** Approximate heap footprint of the containers, for reporting. */
+    long sizeInBytes() {
+        long bytes = 3L * keys.length + 8L * containers.length;
+        for (int i = 0; i < size; i++) {
+            bytes += containers[i] instanceof Array array ? 2L * array.values.length : 8L * WORDS;
+        }
+        return bytes;
+    }
+
+    UserBitmap or(UserBitmap other) {
+        UserBitmap result = new UserBitmap(Math.max(4, size + other.size));
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            if (j >= other.size || (i < size && keys[i] < other.keys[j])) {
+                result.append(keys[i], copy(containers[i]));
+                i++;
+            } else if (i >= size || other.keys[j] < keys[i]) {
+                result.append(other.keys[j], copy(other.containers[j]));
+                j++;
+            } else {
+                result.append(keys[i], or(containers[i], other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    UserBitmap and(UserBitmap other) {
+        UserBitmap result = new UserBitmap(Math.max(4, Math.min(size, other.size)));
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (other.keys[j] < keys[i]) {
+                j++;
+            } else {
+                Object container = and(containers[i], other.containers[j]);
+                if (cardinality(container) > 0) {
+                    result.append(keys[i], container);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    UserBitmap andNot(UserBitmap other) {
+        UserBitmap result = new UserBitmap(Math.max(4, size));
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            while (j < other.size && other.keys[j] < keys[i]) {
+                j++;
+            }
+            Object container = j < other.size && other.keys[j] == keys[i]
+                    ? andNot(containers[i], other.containers[j])
+                    : copy(containers[i]);
+            if (cardinality(container) > 0) {
+                result.append(keys[i], container);
+            }
+        }
+        return result;
+    }
+
+    private int indexOf(char key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void insertAt(int index, char key, Object container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        keys[index] = key;
+        containers[index] = container;
+        size++;
+    }
+
+    private void append(char key, Object container) {
+        insertAt(size, key, container);
+    }
+
+    private static Object add(Object container, char low) {
+        if (container instanceof Bitset bitset) {
+            long mask = 1L << low;
+            if ((bitset.words[low >>> 6] & mask) == 0) {
+                bitset.words[low >>> 6] |= mask;
+                bitset.cardinality++;
+            }
+            return bitset;
+        }
+        Array array = (Array) container;
+        int index = Arrays.binarySearch(array.values, 0, array.count, low);
+        if (index >= 0) {
+            return array;
+        }
+        if (array.count == ARRAY_MAX) {
+            Bitset bitset = toBitset(array);
+            return add(bitset, low);
+        }
+        index = -index - 1;
+        if (array.count == array.values.length) {
+            array.values = Arrays.copyOf(array.values, Math.min(ARRAY_MAX, Math.max(4, array.count * 2)));
+        }
+        System.arraycopy(array.values, index, array.values, index + 1, array.count - index);
+        array.values[index] = low;
+        array.count++;
+        return array;
+    }
+
+    private static boolean contains(Object container, char low) {
+        if (container instanceof Bitset bitset) {
+            return (bitset.words[low >>> 6] & (1L << low)) != 0;
+        }
+        Array array = (Array) container;
+        return Arrays.binarySearch(array.values, 0, array.count, low) >= 0;
+    }
+
+    private static int cardinality(Object container) {
+        return container instanceof Bitset bitset ? bitset.cardinality : ((Array) container).count;
+    }
+
+    private static Object copy(Object container) {
+        if (container instanceof Bitset bitset) {
+            return new Bitset(bitset.words.clone(), bitset.cardinality);
+        }
+        Array array = (Array) container;
+        return new Array(Arrays.copyOf(array.values, Math.max(1, array.count)), array.count);
+    }
+
+    private static Object or(Object a, Object b) {
+        if (a instanceof Array left && b instanceof Array right && left.count + right.count <= ARRAY_MAX) {
+            char[] merged = new char[left.count + right.count];
+            int i = 0;
+            int j = 0;
+            int n = 0;
+            while (i < left.count || j < right.count) {
+                if (j >= right.count || (i < left.count && left.values[i] < right.values[j])) {
+                    merged[n++] = left.values[i++];
+                } else if (i >= left.count || right.values[j] < left.values[i]) {
+                    merged[n++] = right.values[j++];
+                } else {
+                    merged[n++] = left.values[i++];
+                    j++;
+                }
+            }
+            return new Array(merged, n);
+        }
+        long[] words = toBitset(a).words;
+        if (b instanceof Bitset right) {
+            for (int w = 0; w < WORDS; w++) {
+                words[w] |= right.words[w];
+            }
+        } else {
+            Array right = (Array) b;
+            for (int j = 0; j < right.count; j++) {
+                words[right.values[j] >>> 6] |= 1L << right.values[j];
+            }
+        }
+        return shrink(words);
+    }
+
+    private static Object and(Object a, Object b) {
+        if (a instanceof Array || b instanceof Array) {
+            Array sparse = (Array) (a instanceof Array ? a : b);
+            Object other = sparse == a ? b : a;
+            char[] kept = new char[sparse.count];
+            int n = 0;
+            for (int i = 0; i < sparse.count; i++) {
+                if (contains(other, sparse.values[i])) {
+                    kept[n++] = sparse.values[i];
+                }
+            }
+            return new Array(kept, n);
+        }
+        long[] words = ((Bitset) a).words.clone();
+        long[] right = ((Bitset) b).words;
+        for (int w = 0; w < WORDS; w++) {
+            words[w] &= right[w];
+        }
+        return shrink(words);
+    }
+
+    private static Object andNot(Object a, Object b) {
+        if (a instanceof Array left) {
+            char[] kept = new char[left.count];
+            int n = 0;
+            for (int i = 0; i < left.count; i++) {
+                if (!contains(b, left.values[i])) {
+                    kept[n++] = left.values[i];
+                }
+            }
+            return new Array(kept, n);
+        }
+        long[] words = ((Bitset) a).words.clone();
+        if (b instanceof Bitset right) {
+            for (int w = 0; w < WORDS; w++) {
+                words[w] &= ~right.words[w];
+            }
+        } else {
+            Array right = (Array) b;
+            for (int j = 0; j < right.count; j++) {
+                words[right.values[j] >>> 6] &= ~(1L << right.values[j]);
+            }
+        }
+        return shrink(words);
+    }
+
+    // Always a fresh bitset, which callers may modify
+    private static Bitset toBitset(Object container) {
+        if (container instanceof Bitset bitset) {
+            return new Bitset(bitset.words.clone(), bitset.cardinality);
+        }
+        Array array = (Array) container;
+        long[] words = new long[WORDS];
+        for (int i = 0; i < array.count; i++) {
+            words[array.values[i] >>> 6] |= 1L << array.values[i];
+        }
+        return new Bitset(words, array.count);
+    }
+
+    private static Object shrink(long[] words) {
+        int cardinality = 0;
+        for (long word : words) {
+            cardinality += Long.bitCount(word);
+        }
+        if (cardinality > ARRAY_MAX) {
+            return new Bitset(words, cardinality);
+        }
+        char[] values = new char[cardinality];
+        int n = 0;
+        for (int w = 0; w < WORDS; w++) {
+            long word = words[w];
+            while (word != 0) {
+                values[n++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        return new Array(values, n);
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.notification.service;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns each user id a small, dense int so per-user flags can live in a bitset.
+ * Ids are never reused; the table grows with the number of distinct users seen by this node.
+ */
+final class UserIdInterner {
+
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] userIds = new String[16]; // written under this
+    private int next; // guarded by this
+
+    int intern(String userId) {
+        Integer id = ids.get(userId);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            return ids.computeIfAbsent(userId, key -> {
+                String[] current = userIds;
+                if (next == current.length) {
+                    current = Arrays.copyOf(current, current.length * 2);
+                }
+                current[next] = key;
+                userIds = current; // publishes the new entry
+                return next++;
+            });
+        }
+    }
+
+    /**
+     * @return the user's id, or -1 if the user was never interned
+     */
+    int idOf(String userId) {
+        Integer id = ids.get(userId);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * @return the user id interned as {@code id}, or null if no user has that id
+     */
+    String userIdOf(int id) {
+        String[] current = userIds;
+        return id >= 0 && id < current.length ? current[id] : null;
+    }
+
+    int size() {
+        return ids.size();
+    }
+}
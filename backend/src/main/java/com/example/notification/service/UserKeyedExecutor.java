@@ -0,0 +1,113 @@
+package com.example.notification.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.UnaryOperator;
+
+/**
+ * Runs tasks on virtual threads, serially per key and in parallel across keys. Each key keeps only the
+ * tail of its chain, which is dropped once it completes. A task for every key (a broadcast) runs after
+ * all earlier tasks and before all later ones. A semaphore caps how many tasks run at once so
+ * a wide fan-out waits here instead of queueing on the connection pool. Instances are owned by
+ * {@link ProcessingLanes}, one per lane.
+ */
+@Slf4j
+public class UserKeyedExecutor {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ConcurrentMap<String, CompletableFuture<Void>> tails = new ConcurrentHashMap<>();
+    // Submissions share the read lock; submitAfterAll takes the write lock, so none slips past its snapshot of the tails
+    private final ReadWriteLock submitLock = new ReentrantReadWriteLock();
+    private volatile CompletableFuture<Void> barrier = CompletableFuture.completedFuture(null);
+    private final Semaphore running;
+    private final int maxConcurrency;
+    private final UnaryOperator<Runnable> around;
+
+    public UserKeyedExecutor(int maxConcurrency) {
+        this(maxConcurrency, UnaryOperator.identity());
+    }
+
+    /**
+     * @param around wraps every task, e.g. to set up the thread it runs on
+     */
+    public UserKeyedExecutor(int maxConcurrency, UnaryOperator<Runnable> around) {
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.running = new Semaphore(this.maxConcurrency);
+        this.around = around;
+    }
+
+    /**
+     * Run {@code task} after every task previously submitted for {@code key} has finished, and after the
+     * last task submitted with {@link #submitAfterAll}.
+     * The returned future completes exceptionally if the task throws; later tasks for the key still run.
+     */
+    public CompletableFuture<Void> submit(String key, Runnable task) {
+        submitLock.readLock().lock();
+        try {
+            CompletableFuture<Void> after = barrier;
+            CompletableFuture<Void> next = tails.compute(key, (k, tail) -> {
+                CompletableFuture<Void> previous = tail != null ? CompletableFuture.allOf(tail, after) : after;
+                return previous.handle((ignored, error) -> null).thenRunAsync(around.apply(() -> runBounded(task)), executor);
+            });
+            next.whenComplete((ignored, error) -> tails.remove(key, next));
+            return next;
+        } finally {
+            submitLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Run {@code task} once everything submitted so far has finished; tasks submitted later, for any key,
+     * wait for it. The caller is not blocked. The returned future completes exceptionally if the task throws.
+     */
+    public CompletableFuture<Void> submitAfterAll(Runnable task) {
+        submitLock.writeLock().lock();
+        try {
+            List<CompletableFuture<Void>> outstanding = new ArrayList<>(tails.values());
+            outstanding.add(barrier);
+            CompletableFuture<Void> next = CompletableFuture.allOf(outstanding.toArray(new CompletableFuture[0]))
+                    .handle((ignored, error) -> null)
+                    .thenRunAsync(around.apply(() -> runBounded(task)), executor);
+            barrier = next.handle((ignored, error) -> null);
+            return next;
+        } finally {
+            submitLock.writeLock().unlock();
+        }
+    }
+
+    int activeKeys() {
+        return tails.size();
+    }
+
+    public int maxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("Keyed executor did not drain within 10s; {} keys still pending", tails.size());
+            executor.shutdownNow();
+        }
+    }
+
+    private void runBounded(Runnable task) {
+        running.acquireUninterruptibly();
+        try {
+            task.run();
+        } finally {
+            running.release();
+        }
+    }
+}
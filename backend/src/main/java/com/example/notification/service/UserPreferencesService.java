@@ -0,0 +1,305 @@
+package com.example.notification.service;
+
+import com.example.notification.config.ClusterNode;
+import com.example.notification.dto.ResourceNotFoundException;
+import com.example.notification.dto.UserPreferencesChangedEvent;
+import com.example.notification.dto.UserPreferencesDTO;
+import com.example.notification.model.UserPreferences;
+import com.example.notification.repository.UserPreferencesRepository;
+import com.example.notification.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Users' preferences, read through a bounded in-memory cache so that SSE connects, email dispatch and user
+ * listings do not query {@code user_preferences} and {@code muted_notification_types} each time.
+ * <ul>
+ *     <li>A miss loads the user with one query. Users without a row are cached too, as absent.</li>
+ *     <li>{@link #updatePreferences} writes the row and, once it commits, puts the new value in this node's
+ *     cache and announces the change on the preferences topic. The other nodes drop their copy and load
+ *     the new value on next use.</li>
+ *     <li>Entries also expire after {@code notification.preferences.cache.ttl-ms}, which bounds how long a
+ *     missed announcement or a change made directly in the database can go unnoticed.</li>
+ * </ul>
+ * A muted type code that matches no notification type is not held; it takes effect on the next load after
+ * the type exists.
+ */
+@Service
+@Slf4j
+public class UserPreferencesService {
+
+    private static final String LOAD_PREFERENCES = "SELECT p.email_enabled, p.sse_enabled, p.minimum_email_priority, "
+            + "m.muted_notification_types FROM user_preferences p "
+            + "LEFT JOIN muted_notification_types m ON m.user_preferences_user_id = p.user_id WHERE p.user_id = ?";
+
+    private final UserPreferencesRepository preferencesRepository;
+    private final UserRepository userRepository;
+    private final NotificationTypeService notificationTypeService;
+    private final JdbcTemplate jdbcTemplate;
+    private final ClusterNode clusterNode;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final String changesTopic;
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final Counter hits;
+    private final Counter misses;
+
+    private final ConcurrentHashMap<String, Entry> cache = new ConcurrentHashMap<>();
+
+    public UserPreferencesService(UserPreferencesRepository preferencesRepository,
+                                  UserRepository userRepository,
+                                  NotificationTypeService notificationTypeService,
+                                  JdbcTemplate jdbcTemplate,
+                                  ClusterNode clusterNode,
+                                  KafkaTemplate<String, Object> kafkaTemplate,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${notification.kafka.topics.preferences-changes:user-preferences-changes}") String changesTopic,
+                                  @Value("${notification.preferences.cache.max-entries:100000}") int maxEntries,
+                                  @Value("${notification.preferences.cache.ttl-ms:300000}") long ttlMillis) {
+        this.preferencesRepository = preferencesRepository;
+        this.userRepository = userRepository;
+        this.notificationTypeService = notificationTypeService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.clusterNode = clusterNode;
+        this.kafkaTemplate = kafkaTemplate;
+        this.changesTopic = changesTopic;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlMillis = ttlMillis;
+        this.hits = lookups(meterRegistry, clusterNode, "hit");
+        this.misses = lookups(meterRegistry, clusterNode, "miss");
+        Gauge.builder("notification_preferences_cache_size", cache, ConcurrentHashMap::size)
+                .description("Users whose preferences are cached on this node")
+                .tag("node", clusterNode.getNodeId())
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return the user's preferences, or empty if the user has never saved any
+     */
+    public Optional<CachedUserPreferences> find(String userId) {
+        long now = System.currentTimeMillis();
+        Entry cached = cache.get(userId);
+        if (cached != null && cached.expiresAt > now) {
+            hits.increment();
+            return Optional.ofNullable(cached.preferences);
+        }
+        misses.increment();
+        Entry loaded = new Entry(load(userId), now + ttlMillis);
+        if (cached == null) {
+            // A value written meanwhile by updatePreferences or another load is at least as new; keep it
+            if (cache.size() >= maxEntries) {
+                evict(now);
+            }
+            cache.putIfAbsent(userId, loaded);
+        } else {
+            cache.replace(userId, cached, loaded);
+        }
+        return Optional.ofNullable(loaded.preferences);
+    }
+
+    /**
+     * Users without saved preferences may connect.
+     */
+    public boolean isSseEnabled(String userId) {
+        return find(userId).map(CachedUserPreferences::isSseEnabled).orElse(true);
+    }
+
+    /**
+     * Whether an email of this type may go to the user: they have saved preferences, with email on and the
+     * type not muted. {@link EmailService} applies the same rules.
+     */
+    public boolean acceptsEmail(String userId, String typeCode) {
+        return find(userId).filter(preferences -> preferences.isEmailEnabled() && !isMuted(preferences, typeCode)).isPresent();
+    }
+
+    public boolean isMuted(CachedUserPreferences preferences, String typeCode) {
+        Long typeId = typeCode == null ? null : notificationTypeService.findTypeId(typeCode);
+        return typeId != null && preferences.isMuted(typeId);
+    }
+
+    /**
+     * @return the user's preferences, or the defaults if the user has never saved any
+     */
+    public UserPreferencesDTO getPreferences(String userId) {
+        return find(userId).map(this::toDTO).orElseGet(() -> toDTO(new UserPreferences()));
+    }
+
+    /**
+     * Replace the user's preferences. A null {@code minimumEmailPriority} or {@code mutedNotificationTypes}
+     * keeps the current value.
+     * @throws ResourceNotFoundException if there is no such user
+     * @throws IllegalArgumentException if a muted type code is not a notification type
+     */
+    @Transactional
+    public UserPreferencesDTO updatePreferences(String userId, UserPreferencesDTO update) {
+        if (!userRepository.existsById(userId)) {
+            throw new ResourceNotFoundException("User not found: " + userId);
+        }
+        UserPreferences preferences = preferencesRepository.findById(userId).orElseGet(() -> {
+            UserPreferences created = new UserPreferences();
+            created.setUserId(userId);
+            return created;
+        });
+        preferences.setEmailEnabled(update.isEmailEnabled());
+        preferences.setSseEnabled(update.isSseEnabled());
+        if (update.getMinimumEmailPriority() != null) {
+            preferences.setMinimumEmailPriority(update.getMinimumEmailPriority());
+        }
+        if (update.getMutedNotificationTypes() != null) {
+            preferences.getMutedNotificationTypes().clear();
+            preferences.getMutedNotificationTypes().addAll(update.getMutedNotificationTypes());
+        }
+        List<Long> mutedTypeIds = new ArrayList<>();
+        for (String typeCode : preferences.getMutedNotificationTypes()) {
+            Long typeId = notificationTypeService.findTypeId(typeCode);
+            if (typeId == null) {
+                throw new IllegalArgumentException("Unknown notification type: " + typeCode);
+            }
+            mutedTypeIds.add(typeId);
+        }
+        UserPreferences saved = preferencesRepository.save(preferences);
+
+        CachedUserPreferences written = new CachedUserPreferences(userId, saved.isEmailEnabled(), saved.isSseEnabled(),
+                saved.getMinimumEmailPriority(), mutedTypeIds);
+        afterCommit(() -> {
+            cache.put(userId, new Entry(written, System.currentTimeMillis() + ttlMillis));
+            publishChange(userId);
+        });
+        log.info("Saved preferences for user {}", userId);
+        return toDTO(written);
+    }
+
+    /**
+     * Drops this node's copy of a user's preferences that another node changed.
+     */
+    public void applyRemoteChange(UserPreferencesChangedEvent event) {
+        if (event == null || event.getUserId() == null || clusterNode.getNodeId().equals(event.getNodeId())) {
+            return; // This node already holds the value it wrote
+        }
+        cache.remove(event.getUserId());
+        log.debug("Preferences of user {} changed on node {}", event.getUserId(), event.getNodeId());
+    }
+
+    private CachedUserPreferences load(String userId) {
+        List<String> mutedTypeCodes = new ArrayList<>();
+        CachedUserPreferences withoutMuted = jdbcTemplate.query(LOAD_PREFERENCES, rs -> {
+            if (!rs.next()) {
+                return null;
+            }
+            CachedUserPreferences row = new CachedUserPreferences(userId, rs.getBoolean(1), rs.getBoolean(2), rs.getString(3), List.of());
+            do {
+                if (rs.getString(4) != null) {
+                    mutedTypeCodes.add(rs.getString(4));
+                }
+            } while (rs.next());
+            return row;
+        }, userId);
+        if (withoutMuted == null || mutedTypeCodes.isEmpty()) {
+            return withoutMuted;
+        }
+        // Resolved after the query, as a code new to this node is looked up
+        List<Long> mutedTypeIds = new ArrayList<>(mutedTypeCodes.size());
+        for (String typeCode : mutedTypeCodes) {
+            Long typeId = notificationTypeService.findTypeId(typeCode);
+            if (typeId != null) {
+                mutedTypeIds.add(typeId);
+            }
+        }
+        return new CachedUserPreferences(userId, withoutMuted.isEmailEnabled(), withoutMuted.isSseEnabled(),
+                withoutMuted.getMinimumEmailPriority(), mutedTypeIds);
+    }
+
+    private UserPreferencesDTO toDTO(CachedUserPreferences preferences) {
+        Set<String> muted = new LinkedHashSet<>();
+        preferences.forEachMutedType(typeId -> {
+            String typeCode = notificationTypeService.typeCodeOf(typeId);
+            if (typeCode != null) {
+                muted.add(typeCode);
+            }
+        });
+        return UserPreferencesDTO.builder()
+                .emailEnabled(preferences.isEmailEnabled())
+                .sseEnabled(preferences.isSseEnabled())
+                .minimumEmailPriority(preferences.getMinimumEmailPriority())
+                .mutedNotificationTypes(muted)
+                .build();
+    }
+
+    private UserPreferencesDTO toDTO(UserPreferences defaults) {
+        return UserPreferencesDTO.builder()
+                .emailEnabled(defaults.isEmailEnabled())
+                .sseEnabled(defaults.isSseEnabled())
+                .minimumEmailPriority(defaults.getMinimumEmailPriority())
+                .mutedNotificationTypes(defaults.getMutedNotificationTypes())
+                .build();
+    }
+
+    private void publishChange(String userId) {
+        if (!clusterNode.isEnabled()) {
+            return;
+        }
+        UserPreferencesChangedEvent event = UserPreferencesChangedEvent.builder()
+                .userId(userId)
+                .nodeId(clusterNode.getNodeId())
+                .timestamp(System.currentTimeMillis())
+                .build();
+        try {
+            kafkaTemplate.send(changesTopic, userId, event);
+        } catch (Exception e) {
+            log.error("Failed to announce preferences change for user {}: {}", userId, e.getMessage(), e);
+        }
+    }
+
+    // Drop expired entries; if the cache is still full, drop arbitrary ones until it is back under 90%
+    private void evict(long now) {
+        cache.values().removeIf(entry -> entry.expiresAt <= now);
+        int target = maxEntries * 9 / 10;
+        Iterator<String> keys = cache.keySet().iterator();
+        while (cache.size() > target && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static Counter lookups(MeterRegistry meterRegistry, ClusterNode clusterNode, String result) {
+        return Counter.builder("notification_preferences_lookups_total")
+                .description("User preference lookups by outcome; miss means a database query was needed")
+                .tag("result", result)
+                .tag("node", clusterNode.getNodeId())
+                .register(meterRegistry);
+    }
+
+    // preferences is null for a user without a row
+    private record Entry(CachedUserPreferences preferences, long expiresAt) {
+    }
+}
@@ -1,10 +1,7 @@
 package com.example.notification.service;
 
 import com.example.notification.dto.UserDTO;
-import com.example.notification.dto.UserPreferencesDTO;
 import com.example.notification.model.User;
-import com.example.notification.model.UserPreferences;
-import com.example.notification.repository.UserPreferencesRepository;
 import com.example.notification.repository.UserRepository;
 
 import org.springframework.stereotype.Service;
@@ -24,11 +21,11 @@ import java.util.stream.Collectors;
 @Transactional(readOnly = true)
 public class UserService {
     private final UserRepository userRepository;
-    private final UserPreferencesRepository preferencesRepository;
+    private final UserPreferencesService preferencesService;
 
-    public UserService(UserRepository userRepository, UserPreferencesRepository preferencesRepository) {
+    public UserService(UserRepository userRepository, UserPreferencesService preferencesService) {
         this.userRepository = userRepository;
-        this.preferencesRepository = preferencesRepository;
+        this.preferencesService = preferencesService;
     }
 
     /**
@@ -69,27 +66,11 @@ public class UserService {
     }
 
     private UserDTO convertToDTO(User user) {
-        UserPreferences prefs = preferencesRepository.findByUserId(user.getUsername())
-                .orElseGet(() -> {
-                    UserPreferences defaultPrefs = new UserPreferences();
-                    defaultPrefs.setUserId(user.getUsername());
-                    return defaultPrefs;
-                });
-
         return UserDTO.builder()
                 .userId(user.getUsername())
                 .username(user.getUsername())
-                .preferences(convertToPreferencesDTO(prefs))
+                .preferences(preferencesService.getPreferences(user.getUsername()))
                 .isActive(user.isEnabled())
                 .build();
     }
-
-    private UserPreferencesDTO convertToPreferencesDTO(UserPreferences preferences) {
-        return UserPreferencesDTO.builder()
-                .emailEnabled(preferences.isEmailEnabled())
-                .sseEnabled(preferences.isSseEnabled())
-                .minimumEmailPriority(preferences.getMinimumEmailPriority())
-                .mutedNotificationTypes(preferences.getMutedNotificationTypes())
-                .build();
-    }
 }
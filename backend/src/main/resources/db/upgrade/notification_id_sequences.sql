@@ -0,0 +1,22 @@
+-- Moves notifications.id and notification_outbox.id from identity columns to the pooled sequences that
+-- schema.sql now creates, for an Oracle database created from an earlier schema. Run once, with the
+-- application stopped. INCREMENT BY must equal notification.persistence.id-allocation-size.
+-- (The embedded H2 database is recreated from schema.sql at every start and needs none of this.)
+
+ALTER TABLE notifications MODIFY (id DROP IDENTITY);
+ALTER TABLE notification_outbox MODIFY (id DROP IDENTITY);
+
+-- Start each sequence past the ids already in use
+DECLARE
+    next_id NUMBER;
+BEGIN
+    SELECT NVL(MAX(id), 0) + 1 INTO next_id FROM notifications;
+    EXECUTE IMMEDIATE 'CREATE SEQUENCE notifications_seq START WITH ' || next_id || ' INCREMENT BY 50';
+    SELECT NVL(MAX(id), 0) + 1 INTO next_id FROM notification_outbox;
+    EXECUTE IMMEDIATE 'CREATE SEQUENCE notification_outbox_seq START WITH ' || next_id || ' INCREMENT BY 50';
+END;
+/
+
+-- Defaults for rows inserted by hand; each spends a whole block. The application claims ids through PooledIdAllocator
+ALTER TABLE notifications MODIFY (id DEFAULT notifications_seq.NEXTVAL);
+ALTER TABLE notification_outbox MODIFY (id DEFAULT notification_outbox_seq.NEXTVAL);
@@ -0,0 +1,14 @@
+-- Adds users.created_at, which decides the shared broadcasts a user sees, for an Oracle database created
+-- from an earlier schema. Users that already exist are dated back so they keep every broadcast they see today.
+-- (The embedded H2 database is recreated from schema.sql at every start and needs none of this.)
+
+ALTER TABLE users ADD (created_at TIMESTAMP);
+UPDATE users SET created_at = TIMESTAMP '1970-01-01 00:00:00';
+ALTER TABLE users MODIFY (created_at DEFAULT SYSTIMESTAMP NOT NULL);
+
+-- "Mark all as read" now writes receipts; the read marks it used to advance are turned into receipts first
+INSERT INTO broadcast_receipts (broadcast_id, user_id, read_at)
+SELECT b.id, m.user_id, SYSTIMESTAMP
+FROM broadcast_read_marks m JOIN broadcast_notifications b ON b.id <= m.read_through_id
+WHERE NOT EXISTS (SELECT 1 FROM broadcast_receipts r WHERE r.broadcast_id = b.id AND r.user_id = m.user_id);
+DROP TABLE broadcast_read_marks;
@@ -1,17 +1,25 @@
 -- Drop table if exists to avoid conflicts
 DROP TABLE IF EXISTS authorities;
+DROP TABLE IF EXISTS audience_segment_members;
 DROP TABLE IF EXISTS muted_notification_types; -- Drop before user_preferences due to FK
 DROP TABLE IF EXISTS user_preferences;
+DROP TABLE IF EXISTS notification_outbox;
+DROP TABLE IF EXISTS broadcast_checkpoints;
+DROP TABLE IF EXISTS broadcast_receipts;
+DROP TABLE IF EXISTS broadcast_notifications;
 DROP TABLE IF EXISTS notifications;
 DROP TABLE IF EXISTS notification_types;
 DROP TABLE IF EXISTS users;
+DROP SEQUENCE IF EXISTS notification_outbox_seq;
+DROP SEQUENCE IF EXISTS notifications_seq;
 
 -- Create users table first (referenced by authorities and user_preferences)
 CREATE TABLE users (
     username VARCHAR(50) NOT NULL PRIMARY KEY,
     email VARCHAR(255),
     password VARCHAR(100) NOT NULL,
-    enabled BOOLEAN NOT NULL
+    enabled BOOLEAN NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL -- Shared broadcasts created before this do not reach the user
 );
 
 -- Create notification_types table (referenced by notifications)
@@ -23,9 +31,14 @@ CREATE TABLE notification_types (
     active BOOLEAN DEFAULT true
 );
 
+-- Notification and outbox ids. Hibernate reserves INCREMENT BY ids per call so it can batch inserts;
+-- keep INCREMENT BY equal to notification.persistence.id-allocation-size (see db/upgrade for existing databases)
+CREATE SEQUENCE notifications_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE notification_outbox_seq START WITH 1 INCREMENT BY 50;
+
 -- Create notifications table (references notification_types)
 CREATE TABLE notifications (
-    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    id BIGINT DEFAULT NEXT VALUE FOR notifications_seq PRIMARY KEY, -- Default for seed data; it spends a block per row
     user_id VARCHAR(255) NOT NULL,
     event_id VARCHAR(36) NULL, -- New column for event ID
     notification_type_id BIGINT NOT NULL,
@@ -42,6 +55,55 @@ CREATE TABLE notifications (
     CONSTRAINT uc_event_user UNIQUE (event_id, user_id) -- New unique constraint
 );
 
+-- Pending SSE and email deliveries, written in the same transaction as their notifications
+CREATE TABLE notification_outbox (
+    id BIGINT DEFAULT NEXT VALUE FOR notification_outbox_seq PRIMARY KEY,
+    notification_id BIGINT NOT NULL,
+    user_id VARCHAR(255) NOT NULL,
+    channel VARCHAR(10) NOT NULL, -- SSE or EMAIL
+    priority_rank INT NOT NULL, -- NotificationPriority ordinal; higher is drained first
+    attempts INT DEFAULT 0 NOT NULL,
+    next_attempt_at TIMESTAMP NOT NULL, -- Due time, or lease expiry while claimed
+    claimed_by VARCHAR(255),
+    created_at TIMESTAMP
+);
+
+-- Progress of "ALL" broadcasts, advanced in the transaction that persists each chunk of recipients
+CREATE TABLE broadcast_checkpoints (
+    event_id VARCHAR(36) NOT NULL PRIMARY KEY,
+    last_user_id VARCHAR(255), -- Keyset cursor: every user up to and including this one is done
+    persisted_count BIGINT DEFAULT 0 NOT NULL,
+    created_at TIMESTAMP NOT NULL, -- Shared by all of the broadcast's notifications
+    updated_at TIMESTAMP,
+    completed_at TIMESTAMP,
+    version BIGINT
+);
+
+-- "ALL" notifications stored once instead of one notifications row per user (notification.broadcast.storage=shared)
+CREATE TABLE broadcast_notifications (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    event_id VARCHAR(36) NOT NULL,
+    notification_type_id BIGINT NOT NULL,
+    source_service VARCHAR(255),
+    title VARCHAR(255),
+    priority VARCHAR(50),
+    content VARCHAR(1000),
+    created_at TIMESTAMP NOT NULL,
+    metadata VARCHAR(4000),
+    tags VARCHAR(4000),
+    CONSTRAINT fk_broadcast_type FOREIGN KEY (notification_type_id) REFERENCES notification_types(id),
+    CONSTRAINT uc_broadcast_event UNIQUE (event_id)
+);
+
+-- Broadcasts the user has read, one at a time or through "mark all as read"
+CREATE TABLE broadcast_receipts (
+    broadcast_id BIGINT NOT NULL,
+    user_id VARCHAR(255) NOT NULL,
+    read_at TIMESTAMP,
+    PRIMARY KEY (broadcast_id, user_id),
+    CONSTRAINT fk_receipt_broadcast FOREIGN KEY (broadcast_id) REFERENCES broadcast_notifications(id) ON DELETE CASCADE
+);
+
 -- Create authorities table (references users)
 CREATE TABLE authorities (
     username VARCHAR(50) NOT NULL,
@@ -49,6 +111,14 @@ CREATE TABLE authorities (
     CONSTRAINT fk_authorities_users FOREIGN KEY(username) REFERENCES users(username)
 );
 
+-- Members of custom audience lists, targeted as "list:<segment_name>" by NotificationEvent.segment
+CREATE TABLE audience_segment_members (
+    segment_name VARCHAR(100) NOT NULL,
+    user_id VARCHAR(50) NOT NULL,
+    PRIMARY KEY (segment_name, user_id),
+    CONSTRAINT fk_segment_member_user FOREIGN KEY (user_id) REFERENCES users(username) ON DELETE CASCADE
+);
+
 -- Create user_preferences table (references users)
 CREATE TABLE user_preferences (
     user_id VARCHAR(255) PRIMARY KEY,
@@ -75,3 +145,5 @@ CREATE INDEX idx_created_at ON notifications(created_at);
 CREATE INDEX idx_notification_type_code ON notification_types(type_code);
 CREATE INDEX idx_read_status ON notifications(read_status);
 CREATE INDEX idx_event_id ON notifications(event_id); -- New index
+CREATE INDEX idx_outbox_due ON notification_outbox(channel, next_attempt_at);
+CREATE INDEX idx_broadcast_created_at ON broadcast_notifications(created_at);
@@ -0,0 +1,57 @@
+package com.example.notification.config;
+
+import com.example.notification.service.UserKeyedExecutor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class LaneRoutingDataSourceTest {
+
+    private final DataSource standard = mock(DataSource.class);
+    private final DataSource critical = mock(DataSource.class);
+    private final Connection standardConnection = mock(Connection.class);
+    private final Connection criticalConnection = mock(Connection.class);
+    private LaneRoutingDataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        when(standard.getConnection()).thenReturn(standardConnection);
+        when(critical.getConnection()).thenReturn(criticalConnection);
+        dataSource = new LaneRoutingDataSource(standard, critical);
+        dataSource.afterPropertiesSet();
+    }
+
+    @Test
+    void criticalWork_takesItsConnectionsFromTheCriticalPool() throws SQLException {
+        assertSame(standardConnection, dataSource.getConnection());
+        assertSame(criticalConnection, LaneRoutingDataSource.critical(this::connect));
+        assertSame(criticalConnection, LaneRoutingDataSource.critical(() -> LaneRoutingDataSource.critical(this::connect)));
+        assertSame(standardConnection, dataSource.getConnection());
+    }
+
+    @Test
+    void criticalLaneExecutor_runsItsTasksOnTheCriticalPool() throws Exception {
+        UserKeyedExecutor lane = new UserKeyedExecutor(2, task -> () -> LaneRoutingDataSource.critical(task));
+        AtomicReference<Connection> used = new AtomicReference<>();
+
+        lane.submit("user1", () -> used.set(connect())).get();
+
+        assertSame(criticalConnection, used.get());
+        lane.shutdown();
+    }
+
+    private Connection connect() {
+        try {
+            return dataSource.getConnection();
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.notification.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NotificationRetryTopicsTest {
+
+    private final NotificationRetryTopics topics = new NotificationRetryTopics(
+            "notifications", "critical-notifications", "notifications-dlq", List.of(1000L, 10000L));
+
+    @Test
+    void nextTopic_walksTheTiersThenDeadLetters() {
+        assertEquals("notifications-retry-0", topics.nextTopic("notifications"));
+        assertEquals("notifications-retry-1", topics.nextTopic("notifications-retry-0"));
+        assertEquals("notifications-dlq", topics.nextTopic("notifications-retry-1"));
+        assertEquals("critical-notifications-retry-0", topics.nextTopic("critical-notifications"));
+    }
+
+    @Test
+    void tierLookups_resolveMainTopicBackoffAndAttempts() {
+        assertEquals(List.of("notifications-retry-0", "notifications-retry-1",
+                "critical-notifications-retry-0", "critical-notifications-retry-1"), topics.getRetryTopics());
+        assertEquals("critical-notifications", topics.mainTopicOf("critical-notifications-retry-1"));
+        assertTrue(topics.isCritical("critical-notifications-retry-0"));
+        assertFalse(topics.isCritical("notifications-retry-0"));
+        assertEquals(10000L, topics.backoffMs("notifications-retry-1"));
+        assertEquals(0, topics.attemptsBefore("notifications"));
+        assertEquals(2, topics.attemptsBefore("notifications-retry-1"));
+        assertTrue(topics.isNotificationTopic("notifications-retry-1"));
+        assertFalse(topics.isNotificationTopic("sse-presence"));
+    }
+}
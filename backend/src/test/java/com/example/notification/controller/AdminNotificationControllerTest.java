@@ -1,6 +1,8 @@
 package com.example.notification.controller;
 
+import com.example.notification.dto.DeadLetterRedriveResult;
 import com.example.notification.dto.NotificationEvent;
+import com.example.notification.kafka.DeadLetterRedriver;
 import com.example.notification.model.NotificationPriority;
 import com.example.notification.service.NotificationService;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -20,9 +22,13 @@ import static org.hamcrest.Matchers.containsString;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf; // Re-import csrf
 import org.springframework.security.test.context.support.WithMockUser; // Import WithMockUser
@@ -42,6 +48,32 @@ public class AdminNotificationControllerTest {
     @MockBean
     private com.example.notification.security.JwtTokenProvider jwtTokenProvider; // Added mock for JwtTokenProvider
 
+    @MockBean
+    private DeadLetterRedriver deadLetterRedriver;
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void redriveDeadLetters_passesLimitsAndReturnsCounts() throws Exception {
+        when(deadLetterRedriver.redrive(100, 10)).thenReturn(DeadLetterRedriveResult.builder().redriven(7).skipped(1).build());
+
+        mockMvc.perform(post("/api/admin/notifications/dlq/redrive")
+                .param("maxRecords", "100")
+                .param("ratePerSecond", "10")
+                .with(csrf()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.redriven").value(7))
+                .andExpect(jsonPath("$.skipped").value(1));
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void redriveDeadLetters_whenAlreadyRunning_returnsConflict() throws Exception {
+        when(deadLetterRedriver.redrive(anyInt(), anyInt())).thenThrow(new IllegalStateException("running"));
+
+        mockMvc.perform(post("/api/admin/notifications/dlq/redrive").with(csrf()))
+                .andExpect(status().isConflict());
+    }
+
     @Test
     @WithMockUser(roles = "ADMIN")
     void sendNotification_whenPriorityCritical_invokesOrchestratorAsCritical() throws Exception {
@@ -64,7 +96,7 @@ public class AdminNotificationControllerTest {
                 .andExpect(content().string(containsString("Notification request processed for " + targetUserIds.size() + " user(s). Priority: CRITICAL")));
 
         ArgumentCaptor<NotificationEvent> eventCaptor = ArgumentCaptor.forClass(NotificationEvent.class);
-        verify(notificationService).sendNotification(eventCaptor.capture());
+        verify(notificationService).sendNotification(eventCaptor.capture(), eq(false));
         NotificationEvent capturedEvent = eventCaptor.getValue();
 
         assertEquals(NotificationPriority.CRITICAL, capturedEvent.getPriority());
@@ -94,7 +126,7 @@ public class AdminNotificationControllerTest {
                 .andExpect(content().string(containsString("Notification request processed for " + targetUserIds.size() + " user(s). Priority: MEDIUM")));
 
         ArgumentCaptor<NotificationEvent> eventCaptor = ArgumentCaptor.forClass(NotificationEvent.class);
-        verify(notificationService).sendNotification(eventCaptor.capture());
+        verify(notificationService).sendNotification(eventCaptor.capture(), eq(false));
         NotificationEvent capturedEvent = eventCaptor.getValue();
 
         assertEquals(NotificationPriority.MEDIUM, capturedEvent.getPriority());
@@ -125,7 +157,7 @@ public class AdminNotificationControllerTest {
                 .andExpect(content().string(containsString("Notification request processed for " + targetUserIds.size() + " user(s). Priority: null")));
 
         ArgumentCaptor<NotificationEvent> eventCaptor = ArgumentCaptor.forClass(NotificationEvent.class);
-        verify(notificationService).sendNotification(eventCaptor.capture());
+        verify(notificationService).sendNotification(eventCaptor.capture(), eq(false));
         NotificationEvent capturedEvent = eventCaptor.getValue();
 
         assertEquals(null, capturedEvent.getPriority(), "Priority should be null when absent in JSON");
@@ -1,8 +1,10 @@
 package com.example.notification.controller;
 
 import com.example.notification.dto.NotificationEvent;
+import com.example.notification.dto.NotificationIngestReceipt;
 import com.example.notification.model.NotificationPriority;
 import com.example.notification.security.JwtTokenProvider;
+import com.example.notification.service.NotificationIngestService;
 import com.example.notification.service.NotificationService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
@@ -16,12 +18,16 @@ import org.springframework.test.web.servlet.MockMvc;
 
 import java.util.Collections;
 
-import static org.junit.jupiter.api.Assertions.assertFalse;
-import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertEquals; // Added import
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(NotificationController.class)
@@ -36,17 +42,17 @@ public class NotificationControllerTest {
     @MockBean
     private NotificationService notificationService;
 
-    @MockBean // Added because NotificationController depends on it
-    private com.example.notification.service.NotificationProcessingOrchestrator notificationProcessingOrchestrator;
+    @MockBean
+    private NotificationIngestService notificationIngestService;
 
     // Required for security context to load for @WebMvcTest
     @MockBean
     private JwtTokenProvider jwtTokenProvider;
 
-    // Tests for sendNotification and sendCriticalNotification endpoints
+    // Tests for sendNotification and sendCriticalNotification endpoints; processing itself happens in the consumers
     @Test
     @WithMockUser(roles = "USER") // Assuming USER role for direct notifications
-    void sendNotification_whenPriorityCritical_callsOrchestratorAsCritical() throws Exception {
+    void sendNotification_whenPriorityCritical_publishesCriticalEvent() throws Exception {
         NotificationEvent event = NotificationEvent.builder()
                 .sourceService("direct-critical-service")
                 .notificationType("DIRECT_CRITICAL")
@@ -63,16 +69,14 @@ public class NotificationControllerTest {
                 .andExpect(status().isAccepted());
 
         ArgumentCaptor<NotificationEvent> eventCaptor = ArgumentCaptor.forClass(NotificationEvent.class);
-        ArgumentCaptor<Boolean> criticalFlagCaptor = ArgumentCaptor.forClass(Boolean.class);
-        verify(notificationProcessingOrchestrator).processNotification(eventCaptor.capture(), criticalFlagCaptor.capture());
+        verify(notificationIngestService).ingest(eventCaptor.capture(), eq(false));
 
         assertEquals(NotificationPriority.CRITICAL, eventCaptor.getValue().getPriority());
-        assertTrue(criticalFlagCaptor.getValue());
     }
 
     @Test
     @WithMockUser(roles = "USER")
-    void sendNotification_whenPriorityNotCritical_callsOrchestratorAsNotCritical() throws Exception {
+    void sendNotification_whenPriorityNotCritical_publishesEvent() throws Exception {
         NotificationEvent event = NotificationEvent.builder()
                 .sourceService("direct-normal-service")
                 .notificationType("DIRECT_NORMAL")
@@ -89,16 +93,14 @@ public class NotificationControllerTest {
                 .andExpect(status().isAccepted());
 
         ArgumentCaptor<NotificationEvent> eventCaptor = ArgumentCaptor.forClass(NotificationEvent.class);
-        ArgumentCaptor<Boolean> criticalFlagCaptor = ArgumentCaptor.forClass(Boolean.class);
-        verify(notificationProcessingOrchestrator).processNotification(eventCaptor.capture(), criticalFlagCaptor.capture());
+        verify(notificationIngestService).ingest(eventCaptor.capture(), eq(false));
 
         assertEquals(NotificationPriority.HIGH, eventCaptor.getValue().getPriority());
-        assertFalse(criticalFlagCaptor.getValue());
     }
 
     @Test
     @WithMockUser(roles = "USER") // Or ADMIN, depending on who calls /critical
-    void sendCriticalNotificationEndpoint_whenPriorityCritical_callsOrchestratorAsCritical() throws Exception {
+    void sendCriticalNotificationEndpoint_whenPriorityCritical_publishesCriticalEvent() throws Exception {
         NotificationEvent event = NotificationEvent.builder()
                 .sourceService("critical-endpoint-service")
                 .notificationType("CRITICAL_ENDPOINT_ALERT")
@@ -115,16 +117,14 @@ public class NotificationControllerTest {
                 .andExpect(status().isAccepted());
 
         ArgumentCaptor<NotificationEvent> eventCaptor = ArgumentCaptor.forClass(NotificationEvent.class);
-        ArgumentCaptor<Boolean> criticalFlagCaptor = ArgumentCaptor.forClass(Boolean.class);
-        verify(notificationProcessingOrchestrator).processNotification(eventCaptor.capture(), criticalFlagCaptor.capture());
+        verify(notificationIngestService).ingest(eventCaptor.capture(), eq(false));
 
         assertEquals(NotificationPriority.CRITICAL, eventCaptor.getValue().getPriority());
-        assertTrue(criticalFlagCaptor.getValue());
     }
 
     @Test
     @WithMockUser(roles = "USER") // Or ADMIN
-    void sendCriticalNotificationEndpoint_whenPriorityNotCritical_callsOrchestratorAsNotCritical() throws Exception {
+    void sendCriticalNotificationEndpoint_whenPriorityNotCritical_publishesEvent() throws Exception {
         NotificationEvent event = NotificationEvent.builder()
                 .sourceService("critical-endpoint-service-normal-prio")
                 .notificationType("CRITICAL_ENDPOINT_NORMAL")
@@ -141,10 +141,74 @@ public class NotificationControllerTest {
                 .andExpect(status().isAccepted());
 
         ArgumentCaptor<NotificationEvent> eventCaptor = ArgumentCaptor.forClass(NotificationEvent.class);
-        ArgumentCaptor<Boolean> criticalFlagCaptor = ArgumentCaptor.forClass(Boolean.class);
-        verify(notificationProcessingOrchestrator).processNotification(eventCaptor.capture(), criticalFlagCaptor.capture());
+        verify(notificationIngestService).ingest(eventCaptor.capture(), eq(false));
 
         assertEquals(NotificationPriority.MEDIUM, eventCaptor.getValue().getPriority());
-        assertFalse(criticalFlagCaptor.getValue());
+    }
+
+    @Test
+    @WithMockUser(roles = "USER")
+    void sendNotification_waitForPersisted_returnsReceipt() throws Exception {
+        when(notificationIngestService.ingest(any(), eq(true))).thenReturn(NotificationIngestReceipt.builder()
+                .eventId("e1").recipients(1).status(NotificationIngestReceipt.Status.PERSISTED).build());
+
+        mockMvc.perform(post("/api/notifications")
+                .param("waitFor", "persisted")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(event(NotificationPriority.LOW))))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.status").value("PERSISTED"))
+                .andExpect(jsonPath("$.eventId").value("e1"));
+    }
+
+    @Test
+    @WithMockUser(roles = "USER")
+    void sendNotification_unknownWaitFor_returnsBadRequest() throws Exception {
+        mockMvc.perform(post("/api/notifications")
+                .param("waitFor", "delivered")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(event(NotificationPriority.LOW))))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("waitFor must be 'accepted' or 'persisted'"));
+
+        verifyNoInteractions(notificationIngestService);
+    }
+
+    @Test
+    @WithMockUser(roles = "USER")
+    void sendNotification_badSegment_returnsTheReason() throws Exception {
+        when(notificationIngestService.ingest(any(), eq(false)))
+                .thenThrow(new IllegalArgumentException("Unknown audience segment 'cohort'"));
+
+        mockMvc.perform(post("/api/notifications")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(event(NotificationPriority.LOW).toBuilder().segment("cohort").build())))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Unknown audience segment 'cohort'"));
+    }
+
+    @Test
+    @WithMockUser(roles = "USER")
+    void sendNotification_whenProducerUnavailable_returnsServiceUnavailable() throws Exception {
+        when(notificationIngestService.ingest(any(), eq(false))).thenThrow(new IllegalStateException("buffer full"));
+
+        mockMvc.perform(post("/api/notifications")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(event(NotificationPriority.LOW))))
+                .andExpect(status().isServiceUnavailable());
+    }
+
+    private static NotificationEvent event(NotificationPriority priority) {
+        return NotificationEvent.builder()
+                .sourceService("test-service")
+                .notificationType("TEST")
+                .content("content")
+                .priority(priority)
+                .targetUserIds(Collections.singletonList("user1"))
+                .build();
     }
 }
@@ -1,9 +1,10 @@
 package com.example.notification.controller;
 
-import com.example.notification.model.UserPreferences;
-import com.example.notification.repository.UserPreferencesRepository;
 import com.example.notification.security.JwtTokenProvider;
+import com.example.notification.security.VerifiedToken;
+import com.example.notification.service.CachedUserPreferences;
 import com.example.notification.service.SseEmitterManager;
+import com.example.notification.service.UserPreferencesService;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
@@ -12,6 +13,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.codec.ServerSentEvent;
 import reactor.core.publisher.Flux;
 import reactor.test.StepVerifier;
+import java.util.List;
 import java.util.Optional;
 
 import static org.mockito.ArgumentMatchers.anyString;
@@ -27,7 +29,7 @@ public class SseControllerTest {
     private JwtTokenProvider jwtTokenProvider;
 
     @Mock
-    private UserPreferencesRepository userPreferencesRepository;
+    private UserPreferencesService userPreferencesService;
 
     @InjectMocks
     private SseController sseController;
@@ -37,15 +39,12 @@ public class SseControllerTest {
 
     @Test
     void whenSseEnabled_thenConnectionAllowed() {
-        when(jwtTokenProvider.validateToken(anyString())).thenReturn(true);
-        when(jwtTokenProvider.getUserIdFromJWT(anyString())).thenReturn(testUserId);
-        UserPreferences preferences = new UserPreferences();
-        preferences.setUserId(testUserId);
-        preferences.setSseEnabled(true);
-        when(userPreferencesRepository.findByUserId(testUserId)).thenReturn(Optional.of(preferences));
-        when(sseEmitterManager.addEmitter(testUserId)).thenReturn(Flux.just(ServerSentEvent.<String>builder().data("test").build()));
+        when(jwtTokenProvider.verify(anyString())).thenReturn(Optional.of(new VerifiedToken(testUserId, List.of("USER"), Long.MAX_VALUE)));
+        CachedUserPreferences preferences = new CachedUserPreferences(testUserId, true, true, "NORMAL", List.of());
+        when(userPreferencesService.find(testUserId)).thenReturn(Optional.of(preferences));
+        when(sseEmitterManager.addEmitter(testUserId, null)).thenReturn(Flux.just(ServerSentEvent.<String>builder().data("test").build()));
 
-        Flux<ServerSentEvent<String>> response = sseController.streamEvents("Bearer " + testToken);
+        Flux<ServerSentEvent<String>> response = sseController.streamEvents("Bearer " + testToken, null, null);
 
         StepVerifier.create(response)
             .expectNextCount(1)
@@ -54,12 +53,11 @@ public class SseControllerTest {
 
     @Test
     void whenNoPreferences_thenConnectionAllowedByDefault() {
-        when(jwtTokenProvider.validateToken(anyString())).thenReturn(true);
-        when(jwtTokenProvider.getUserIdFromJWT(anyString())).thenReturn(testUserId);
-        when(userPreferencesRepository.findByUserId(testUserId)).thenReturn(Optional.empty());
-        when(sseEmitterManager.addEmitter(testUserId)).thenReturn(Flux.just(ServerSentEvent.<String>builder().data("test").build()));
+        when(jwtTokenProvider.verify(anyString())).thenReturn(Optional.of(new VerifiedToken(testUserId, List.of("USER"), Long.MAX_VALUE)));
+        when(userPreferencesService.find(testUserId)).thenReturn(Optional.empty());
+        when(sseEmitterManager.addEmitter(testUserId, null)).thenReturn(Flux.just(ServerSentEvent.<String>builder().data("test").build()));
 
-        Flux<ServerSentEvent<String>> response = sseController.streamEvents("Bearer " + testToken);
+        Flux<ServerSentEvent<String>> response = sseController.streamEvents("Bearer " + testToken, null, null);
 
         StepVerifier.create(response)
             .expectNextCount(1)
@@ -68,14 +66,11 @@ public class SseControllerTest {
 
     @Test
     void whenSseDisabled_thenConnectionForbidden() {
-        when(jwtTokenProvider.validateToken(anyString())).thenReturn(true);
-        when(jwtTokenProvider.getUserIdFromJWT(anyString())).thenReturn(testUserId);
-        UserPreferences preferences = new UserPreferences();
-        preferences.setUserId(testUserId);
-        preferences.setSseEnabled(false);
-        when(userPreferencesRepository.findByUserId(testUserId)).thenReturn(Optional.of(preferences));
+        when(jwtTokenProvider.verify(anyString())).thenReturn(Optional.of(new VerifiedToken(testUserId, List.of("USER"), Long.MAX_VALUE)));
+        CachedUserPreferences preferences = new CachedUserPreferences(testUserId, true, false, "NORMAL", List.of());
+        when(userPreferencesService.find(testUserId)).thenReturn(Optional.of(preferences));
 
-        Flux<ServerSentEvent<String>> response = sseController.streamEvents("Bearer " + testToken);
+        Flux<ServerSentEvent<String>> response = sseController.streamEvents("Bearer " + testToken, null, null);
 
         StepVerifier.create(response)
             .verifyComplete();
@@ -83,11 +78,24 @@ public class SseControllerTest {
 
     @Test
     void whenInvalidToken_thenUnauthorized() {
-        when(jwtTokenProvider.validateToken(anyString())).thenReturn(false);
+        when(jwtTokenProvider.verify(anyString())).thenReturn(Optional.empty());
 
-        Flux<ServerSentEvent<String>> response = sseController.streamEvents("Bearer invalid-token");
+        Flux<ServerSentEvent<String>> response = sseController.streamEvents("Bearer invalid-token", null, null);
 
         StepVerifier.create(response)
             .verifyComplete();
     }
+
+    @Test
+    void whenLastEventIdHeaderPresent_thenStreamResumesFromIt() {
+        when(jwtTokenProvider.verify(anyString())).thenReturn(Optional.of(new VerifiedToken(testUserId, List.of("USER"), Long.MAX_VALUE)));
+        when(userPreferencesService.find(testUserId)).thenReturn(Optional.empty());
+        when(sseEmitterManager.addEmitter(testUserId, "abc-7")).thenReturn(Flux.just(ServerSentEvent.<String>builder().id("abc-8").data("test").build()));
+
+        Flux<ServerSentEvent<String>> response = sseController.streamEvents("Bearer " + testToken, "abc-7", "ignored-1");
+
+        StepVerifier.create(response)
+            .expectNextMatches(event -> "abc-8".equals(event.id()))
+            .verifyComplete();
+    }
 }
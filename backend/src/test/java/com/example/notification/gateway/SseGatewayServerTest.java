@@ -0,0 +1,106 @@
+package com.example.notification.gateway;
+
+import com.example.notification.config.ClusterNode;
+import com.example.notification.security.JwtTokenProvider;
+import com.example.notification.security.VerifiedToken;
+import com.example.notification.service.SseEmitterManager;
+import com.example.notification.service.UserPreferencesService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.publisher.Flux;
+import reactor.netty.http.client.HttpClient;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SseGatewayServerTest {
+
+    @Mock
+    private SseEmitterManager sseEmitterManager;
+
+    @Mock
+    private JwtTokenProvider jwtTokenProvider;
+
+    @Mock
+    private UserPreferencesService userPreferencesService;
+
+    private SseGatewayServer gateway;
+    private HttpClient client;
+
+    @BeforeEach
+    void setUp() {
+        gateway = new SseGatewayServer(sseEmitterManager, jwtTokenProvider, userPreferencesService,
+                new SimpleMeterRegistry(), new ClusterNode(false, "node-a", "sse-delivery"),
+                0, 128, new String[] {"http://localhost:3001"});
+        gateway.start();
+        client = HttpClient.create().port(gateway.getPort());
+    }
+
+    @AfterEach
+    void tearDown() {
+        gateway.stop();
+    }
+
+    @Test
+    void stream_withValidToken_writesEventStreamFrames() {
+        when(jwtTokenProvider.verify("good")).thenReturn(Optional.of(new VerifiedToken("user1", List.of("USER"), Long.MAX_VALUE)));
+        when(userPreferencesService.isSseEnabled("user1")).thenReturn(true);
+        when(sseEmitterManager.addEmitter("user1", "e-1")).thenReturn(Flux.just(
+                ServerSentEvent.<String>builder().id("e-2").event("notification").data("{\"id\":2}").build()));
+
+        String body = client.headers(headers -> headers.add("Last-Event-ID", "e-1").add("Origin", "http://localhost:3001"))
+                .get()
+                .uri(SseGatewayServer.EVENTS_PATH + "?token=good")
+                .responseSingle((response, content) -> {
+                    assertEquals(200, response.status().code());
+                    assertEquals("text/event-stream;charset=UTF-8", response.responseHeaders().get("Content-Type"));
+                    assertEquals("http://localhost:3001", response.responseHeaders().get("Access-Control-Allow-Origin"));
+                    return content.asString();
+                })
+                .block(Duration.ofSeconds(5));
+
+        assertEquals("id:e-2\nevent:notification\ndata:{\"id\":2}\n\n", body);
+    }
+
+    @Test
+    void stream_withInvalidToken_isRejected() {
+        when(jwtTokenProvider.verify("bad")).thenReturn(Optional.empty());
+
+        int status = client.get()
+                .uri(SseGatewayServer.EVENTS_PATH + "?token=bad")
+                .response()
+                .map(response -> response.status().code())
+                .block(Duration.ofSeconds(5));
+
+        assertEquals(401, status);
+        verify(sseEmitterManager, never()).addEmitter(any(), any());
+    }
+
+    @Test
+    void stream_whenSseDisabledInPreferences_isForbidden() {
+        when(jwtTokenProvider.verify("good")).thenReturn(Optional.of(new VerifiedToken("user1", List.of("USER"), Long.MAX_VALUE)));
+        when(userPreferencesService.isSseEnabled("user1")).thenReturn(false);
+
+        int status = client.get()
+                .uri(SseGatewayServer.EVENTS_PATH + "?token=good")
+                .response()
+                .map(response -> response.status().code())
+                .block(Duration.ofSeconds(5));
+
+        assertEquals(403, status);
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.notification.kafka;
+
+import com.example.notification.config.NotificationLatencyMetrics;
+import com.example.notification.dto.NotificationEvent;
+import com.example.notification.model.NotificationPriority;
+import com.example.notification.service.NotificationProcessingOrchestrator;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class NotificationBatchConsumerTest {
+
+    @Mock
+    private NotificationProcessingOrchestrator orchestrator;
+
+    @Mock
+    private NotificationFailureRouter failureRouter;
+
+    @Mock
+    private NotificationLatencyMetrics latencyMetrics;
+
+    private NotificationBatchConsumer consumer;
+
+    @BeforeEach
+    void setUp() {
+        consumer = new NotificationBatchConsumer(orchestrator, failureRouter, latencyMetrics);
+    }
+
+    @Test
+    void consume_persistsThePollAsOneBatch() {
+        ConsumerRecord<String, NotificationEvent> first = record(0, "e1");
+        ConsumerRecord<String, NotificationEvent> second = record(1, "e2");
+
+        consumer.consume(List.of(first, second));
+
+        verify(orchestrator).processBatch(List.of(first.value(), second.value()), false);
+        verify(orchestrator, never()).processNotificationKeyed(any(), anyBoolean());
+        verify(latencyMetrics, times(2)).recordEndToEnd(NotificationPriority.LOW, 1000L);
+        verifyNoInteractions(failureRouter);
+    }
+
+    @Test
+    void consumeCritical_deadLettersPoisonPillsAndPersistsTheRest() {
+        ConsumerRecord<String, NotificationEvent> poison = new ConsumerRecord<>("critical-notifications", 0, 0L, "k", null);
+        ConsumerRecord<String, NotificationEvent> readable = record(1, "e1");
+
+        consumer.consumeCritical(List.of(poison, readable));
+
+        verify(failureRouter).deadLetter(same(poison), any(IllegalArgumentException.class));
+        verify(orchestrator).processBatch(List.of(readable.value()), true);
+    }
+
+    @Test
+    void consume_whenTheBatchFails_fallsBackToOneRecordAtATime() {
+        ConsumerRecord<String, NotificationEvent> ok = record(0, "ok");
+        ConsumerRecord<String, NotificationEvent> invalid = record(1, "invalid");
+        ConsumerRecord<String, NotificationEvent> failing = record(2, "failing");
+        doThrow(new DataAccessResourceFailureException("rolled back")).when(orchestrator).processBatch(anyList(), eq(false));
+        when(orchestrator.processNotificationKeyed(ok.value(), false)).thenReturn(CompletableFuture.completedFuture(null));
+        when(orchestrator.processNotificationKeyed(invalid.value(), false))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalArgumentException("Unknown audience segment 'x'")));
+        when(orchestrator.processNotificationKeyed(failing.value(), false))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("db down")));
+
+        consumer.consume(List.of(ok, invalid, failing));
+
+        verify(latencyMetrics, times(1)).recordEndToEnd(NotificationPriority.LOW, 1000L);
+        verify(failureRouter).deadLetter(same(invalid), any());
+        verify(failureRouter).retry(same(failing), any());
+        verifyNoMoreInteractions(failureRouter);
+    }
+
+    private static ConsumerRecord<String, NotificationEvent> record(long offset, String eventId) {
+        NotificationEvent event = NotificationEvent.builder()
+                .eventId(eventId)
+                .sourceService("test")
+                .notificationType("ALERT")
+                .priority(NotificationPriority.LOW)
+                .content("content")
+                .targetUserIds(List.of("alice"))
+                .build();
+        return new ConsumerRecord<>("notifications", 0, offset, 1000L, TimestampType.CREATE_TIME, 0, 0, eventId, event,
+                new RecordHeaders(), Optional.empty());
+    }
+}
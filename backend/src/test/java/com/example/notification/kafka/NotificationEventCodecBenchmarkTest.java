@@ -0,0 +1,46 @@
+package com.example.notification.kafka;
+
+import com.example.notification.dto.NotificationEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+/**
+ * Encode/decode cost and wire size of the notification codecs. Run with {@code mvn test -Dbenchmarks=true
+ * -Dtest=NotificationEventCodecBenchmarkTest}; results are printed, nothing is asserted.
+ */
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class NotificationEventCodecBenchmarkTest {
+
+    private static final int WARMUP = 200_000;
+    private static final int ITERATIONS = 1_000_000;
+
+    private static volatile Object sink;
+
+    @Test
+    void compareCodecs() {
+        NotificationEvent event = NotificationEventCodecTest.sampleEvent();
+        for (NotificationEventCodec codec : new NotificationEventCodec[]{JsonNotificationEventCodec.INSTANCE, BinaryNotificationEventCodec.INSTANCE}) {
+            byte[] encoded = codec.encode(event);
+            run(codec, event, encoded, WARMUP);
+            long encodeNanos = time(() -> sink = codec.encode(event));
+            long decodeNanos = time(() -> sink = codec.decode(encoded));
+            System.out.printf("%-6s %5d bytes  encode %6.0f ns/op  decode %6.0f ns/op%n",
+                    codec.name(), encoded.length, (double) encodeNanos / ITERATIONS, (double) decodeNanos / ITERATIONS);
+        }
+    }
+
+    private static void run(NotificationEventCodec codec, NotificationEvent event, byte[] encoded, int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            sink = codec.encode(event);
+            sink = codec.decode(encoded);
+        }
+    }
+
+    private static long time(Runnable op) {
+        long started = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            op.run();
+        }
+        return System.nanoTime() - started;
+    }
+}
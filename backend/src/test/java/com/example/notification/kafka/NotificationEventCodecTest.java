@@ -0,0 +1,136 @@
+package com.example.notification.kafka;
+
+import com.example.notification.dto.NotificationEvent;
+import com.example.notification.model.NotificationPriority;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NotificationEventCodecTest {
+
+    @Test
+    void binary_roundTripsEveryFieldAndMetadataTypesAsJsonWould() {
+        NotificationEvent event = sampleEvent();
+
+        NotificationEvent viaBinary = BinaryNotificationEventCodec.INSTANCE.decode(BinaryNotificationEventCodec.INSTANCE.encode(event));
+        NotificationEvent viaJson = JsonNotificationEventCodec.INSTANCE.decode(JsonNotificationEventCodec.INSTANCE.encode(event));
+
+        assertEquals(viaJson, viaBinary);
+        assertEquals(event, viaBinary);
+    }
+
+    @Test
+    void binary_keepsUnsetFieldsNullAndIsSmallerThanJson() {
+        NotificationEvent sparse = NotificationEvent.builder().eventId("e1").content("hi").build();
+        assertEquals(sparse, BinaryNotificationEventCodec.INSTANCE.decode(BinaryNotificationEventCodec.INSTANCE.encode(sparse)));
+
+        NotificationEvent event = sampleEvent();
+        assertTrue(BinaryNotificationEventCodec.INSTANCE.encode(event).length
+                < JsonNotificationEventCodec.INSTANCE.encode(event).length);
+    }
+
+    @Test
+    void binary_rejectsTruncatedAndUnknownVersions() {
+        byte[] encoded = BinaryNotificationEventCodec.INSTANCE.encode(sampleEvent());
+
+        assertThrows(SerializationException.class,
+                () -> BinaryNotificationEventCodec.INSTANCE.decode(Arrays.copyOf(encoded, encoded.length / 2)));
+        encoded[0] = 99;
+        assertThrows(SerializationException.class, () -> BinaryNotificationEventCodec.INSTANCE.decode(encoded));
+    }
+
+    @Test
+    void binary_writesVersion2OnlyForEventsWithASegment() {
+        NotificationEvent plain = sampleEvent();
+        NotificationEvent segmented = plain.toBuilder().targetUserIds(null).segment("role:ADMIN & pref:email").build();
+
+        byte[] encoded = BinaryNotificationEventCodec.INSTANCE.encode(segmented);
+
+        assertEquals(BinaryNotificationEventCodec.VERSION_1, BinaryNotificationEventCodec.INSTANCE.encode(plain)[0]);
+        assertEquals(BinaryNotificationEventCodec.VERSION, encoded[0]);
+        assertEquals(segmented, BinaryNotificationEventCodec.INSTANCE.decode(encoded));
+    }
+
+    @Test
+    void serializer_binaryCodecTagsRecordAndDeserializerDecodesIt() {
+        NotificationEventSerializer serializer = new NotificationEventSerializer();
+        serializer.configure(Map.of(NotificationEventSerializer.CODEC_CONFIG, "binary"), false);
+        NotificationEventDeserializer deserializer = deserializer();
+        RecordHeaders headers = new RecordHeaders();
+        headers.add(NotificationEventCodec.HEADER, "json".getBytes(StandardCharsets.UTF_8)); // From an earlier hop
+
+        byte[] data = serializer.serialize("notifications", headers, sampleEvent());
+
+        assertEquals(1, headers.toArray().length);
+        assertEquals("binary", new String(headers.lastHeader(NotificationEventCodec.HEADER).value(), StandardCharsets.UTF_8));
+        assertEquals(sampleEvent(), deserializer.deserialize("notifications", headers, data));
+    }
+
+    @Test
+    void serializer_jsonCodecWritesPlainSpringJsonWithoutCodecHeader() {
+        NotificationEventSerializer serializer = new NotificationEventSerializer();
+        serializer.configure(Map.of(), false);
+        RecordHeaders headers = new RecordHeaders();
+
+        byte[] data = serializer.serialize("notifications", headers, sampleEvent());
+
+        assertNull(headers.lastHeader(NotificationEventCodec.HEADER));
+        assertEquals(sampleEvent(), deserializer().deserialize("notifications", headers, data));
+    }
+
+    @Test
+    void deserializer_jsonHeaderReadsJsonWithoutTypeHeaders() {
+        RecordHeaders headers = new RecordHeaders();
+        headers.add(NotificationEventCodec.HEADER, "json".getBytes(StandardCharsets.UTF_8));
+
+        Object decoded = deserializer().deserialize("notifications", headers, JsonNotificationEventCodec.INSTANCE.encode(sampleEvent()));
+
+        assertEquals(sampleEvent(), decoded);
+    }
+
+    private static NotificationEventDeserializer deserializer() {
+        NotificationEventDeserializer deserializer = new NotificationEventDeserializer();
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(JsonDeserializer.TRUSTED_PACKAGES, "com.example.notification.dto,com.example.notification.model");
+        deserializer.configure(configs, false);
+        return deserializer;
+    }
+
+    static NotificationEvent sampleEvent() {
+        Map<String, Object> nested = new LinkedHashMap<>();
+        nested.put("ticket", 4711);
+        nested.put("labels", List.of("billing", "urgent"));
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        metadata.put("count", 42);
+        metadata.put("bytes", 12_000_000_000L);
+        metadata.put("ratio", 0.75);
+        metadata.put("negative", -3);
+        metadata.put("enabled", true);
+        metadata.put("missing", null);
+        metadata.put("huge", new BigInteger("123456789012345678901234567890"));
+        metadata.put("link", "https://example.com/tickets/4711");
+        metadata.put("details", nested);
+        return NotificationEvent.builder()
+                .eventId("0f8fad5b-d9cb-469f-a165-70867728950e")
+                .targetUserIds(List.of("alice", "bob", "carol"))
+                .sourceService("ticket-service")
+                .notificationType("TICKET_CREATED")
+                .priority(NotificationPriority.HIGH)
+                .content("Ticket #4711 was assigned to your team — please review the attached logs.")
+                .metadata(metadata)
+                .tags(List.of("support", "tier-2"))
+                .title("New ticket")
+                .build();
+    }
+}
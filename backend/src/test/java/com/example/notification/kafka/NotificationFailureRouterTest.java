@@ -0,0 +1,90 @@
+package com.example.notification.kafka;
+
+import com.example.notification.config.ClusterNode;
+import com.example.notification.config.NotificationRetryTopics;
+import com.example.notification.dto.NotificationEvent;
+import com.example.notification.service.RecipientsFailedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class NotificationFailureRouterTest {
+
+    @Mock
+    private DeadLetterPublishingRecoverer retryRecoverer;
+
+    @Mock
+    private DeadLetterPublishingRecoverer deadLetterRecoverer;
+
+    @Mock
+    private Acknowledgment acknowledgment;
+
+    private NotificationFailureRouter router;
+
+    @BeforeEach
+    void setUp() {
+        NotificationRetryTopics topics = new NotificationRetryTopics(
+                "notifications", "critical-notifications", "notifications-dlq", List.of(1000L));
+        router = new NotificationFailureRouter(retryRecoverer, deadLetterRecoverer, topics,
+                new SimpleMeterRegistry(), new ClusterNode(false, "node-a", "sse-delivery"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void settle_whenSomeRecipientsFailed_retriesOnlyThoseAndAcknowledges() {
+        ConsumerRecord<String, NotificationEvent> record = record(List.of("alice", "bob", "carol"));
+        RecipientsFailedException failure = new RecipientsFailedException(List.of("bob"), new IllegalStateException("db down"));
+
+        router.settle(record, new CompletionException(failure), acknowledgment);
+
+        ArgumentCaptor<ConsumerRecord<?, ?>> captor = ArgumentCaptor.forClass(ConsumerRecord.class);
+        verify(retryRecoverer).accept(captor.capture(), same(failure));
+        NotificationEvent retried = (NotificationEvent) captor.getValue().value();
+        assertEquals(List.of("bob"), retried.getTargetUserIds());
+        assertEquals("e1", retried.getEventId());
+        assertEquals(record.offset(), captor.getValue().offset());
+        verify(acknowledgment).acknowledge();
+        verifyNoInteractions(deadLetterRecoverer);
+    }
+
+    @Test
+    void settle_whenEventInvalid_deadLettersWithoutRetry() {
+        ConsumerRecord<String, NotificationEvent> record = record(List.of("alice"));
+
+        router.settle(record, new IllegalArgumentException("Content cannot be empty"), acknowledgment);
+
+        verify(deadLetterRecoverer).accept(same(record), any(IllegalArgumentException.class));
+        verifyNoInteractions(retryRecoverer);
+        verify(acknowledgment).acknowledge();
+    }
+
+    @Test
+    void settle_whenPublishingFails_stillAcknowledges() {
+        ConsumerRecord<String, NotificationEvent> record = record(List.of("alice"));
+        doThrow(new IllegalStateException("broker unavailable")).when(retryRecoverer).accept(any(), any());
+
+        router.settle(record, new IllegalStateException("smtp down"), acknowledgment);
+
+        verify(acknowledgment).acknowledge();
+    }
+
+    private static ConsumerRecord<String, NotificationEvent> record(List<String> targets) {
+        NotificationEvent event = NotificationEvent.builder().eventId("e1").targetUserIds(targets).build();
+        return new ConsumerRecord<>("notifications", 0, 42L, "key", event);
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.notification.repository;
+
+import com.example.notification.model.BroadcastNotification;
+import com.example.notification.model.NotificationType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+class BroadcastNotificationRepositoryTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 5, 1, 12, 0);
+
+    @Autowired
+    private BroadcastNotificationRepository repository;
+
+    @Autowired
+    private NotificationTypeRepository notificationTypeRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private BroadcastNotification first;
+    private BroadcastNotification second;
+    private BroadcastNotification third;
+
+    @BeforeEach
+    void setUp() {
+        NotificationType type = new NotificationType();
+        type.setTypeCode("ANNOUNCEMENT");
+        notificationTypeRepository.save(type);
+        first = save("b1", type, NOW.minusMinutes(2));
+        second = save("b2", type, NOW.minusMinutes(1));
+        third = save("b3", type, NOW);
+    }
+
+    @Test
+    void receiptsDecideReadStatePerUser() {
+        assertThat(repository.insertReceipt(second.getId(), "alice", NOW)).isEqualTo(1);
+        assertThat(repository.insertReceipt(second.getId(), "alice", NOW)).isZero();
+
+        assertThat(repository.countUnreadByUserId("alice")).isEqualTo(2);
+        assertThat(repository.countUnreadByUserId("bob")).isEqualTo(3);
+        assertThat(repository.findReadIds("alice", List.of(first.getId(), second.getId(), third.getId())))
+                .containsExactly(second.getId());
+        assertThat(repository.findUnreadByUserId("alice", PageRequest.of(0, 10)).getContent())
+                .extracting(BroadcastNotification::getEventId)
+                .containsExactly("b3", "b1");
+
+        // Mark all as read: a receipt for each broadcast still unread
+        assertThat(repository.insertReceiptsForUnread("alice", NOW)).isEqualTo(2);
+        assertThat(repository.countUnreadByUserId("alice")).isZero();
+        assertThat(repository.insertReceipt(first.getId(), "alice", NOW)).isZero();
+        assertThat(repository.countUnreadByUserId("bob")).isEqualTo(3);
+    }
+
+    @Test
+    void markAllAsRead_leavesABroadcastCommittedAfterwardsUnread() {
+        repository.insertReceiptsForUnread("alice", NOW);
+
+        // Created before the others but committed only now, as a slow transaction would
+        BroadcastNotification late = save("late", first.getNotificationType(), NOW.minusMinutes(3));
+
+        assertThat(repository.findUnreadByUserId("alice", PageRequest.of(0, 10)).getContent())
+                .extracting(BroadcastNotification::getEventId)
+                .containsExactly("late");
+        assertThat(repository.findReadIds("alice", List.of(first.getId(), late.getId()))).containsExactly(first.getId());
+    }
+
+    @Test
+    void broadcastsCreatedBeforeAUserDoNotReachThem() {
+        jdbcTemplate.update("INSERT INTO users (username, password, enabled, created_at) VALUES (?, 'x', true, ?)",
+                "carol", NOW.minusSeconds(90));
+
+        assertThat(repository.findVisibleToUser("carol", PageRequest.of(0, 10)).getContent())
+                .extracting(BroadcastNotification::getEventId)
+                .containsExactly("b3", "b2");
+        assertThat(repository.findByTypeIdVisibleToUser(first.getNotificationType().getId(), "carol", PageRequest.of(0, 10))
+                .getTotalElements()).isEqualTo(2);
+        assertThat(repository.countUnreadByUserId("carol")).isEqualTo(2);
+        assertThat(repository.insertReceipt(first.getId(), "carol", NOW)).isZero();
+        assertThat(repository.insertReceiptsForUnread("carol", NOW)).isEqualTo(2);
+    }
+
+    private BroadcastNotification save(String eventId, NotificationType type, LocalDateTime createdAt) {
+        return repository.save(BroadcastNotification.builder()
+                .eventId(eventId)
+                .notificationType(type)
+                .title("Title " + eventId)
+                .content("Content " + eventId)
+                .createdAt(createdAt)
+                .build());
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.notification.repository;
+
+import com.example.notification.model.Notification;
+import com.example.notification.model.NotificationPriority;
+import com.example.notification.model.NotificationStatus;
+import com.example.notification.model.NotificationType;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Notification insert throughput before and after the switch from IDENTITY ids to a pooled sequence with JDBC
+ * batching. "identity" replays what Hibernate does for an IDENTITY id: one INSERT per row, reading the
+ * generated key back. "sequence" is {@code saveAll} on the current mapping. Run with {@code mvn test
+ * -Dbenchmarks=true -Dtest=NotificationInsertBenchmarkTest}; results are printed, nothing is asserted. The
+ * embedded H2 has no network round trip, so the gap against a remote database is larger than shown.
+ */
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+@DataJpaTest
+class NotificationInsertBenchmarkTest {
+
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int ROUNDS = 10;
+    private static final int ROWS = 2_000;
+
+    @Autowired
+    private NotificationRepository repository;
+
+    @Autowired
+    private NotificationTypeRepository notificationTypeRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    void compareIdentityAndSequenceInserts() {
+        NotificationType type = new NotificationType();
+        type.setTypeCode("BENCHMARK");
+        notificationTypeRepository.saveAndFlush(type);
+
+        for (String mode : new String[]{"identity", "sequence"}) {
+            for (int round = 0; round < WARMUP_ROUNDS; round++) {
+                insert(mode, type, "warmup-" + mode + "-" + round);
+            }
+            long nanos = 0;
+            for (int round = 0; round < ROUNDS; round++) {
+                nanos += insert(mode, type, mode + "-" + round);
+            }
+            System.out.printf("%-8s %,10.0f rows/s%n", mode, (double) ROWS * ROUNDS / (nanos / 1e9));
+        }
+    }
+
+    private long insert(String mode, NotificationType type, String eventId) {
+        List<Notification> rows = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            rows.add(Notification.builder()
+                    .userId("user" + i)
+                    .eventId(eventId)
+                    .notificationType(type)
+                    .sourceService("benchmark")
+                    .title("Benchmark")
+                    .priority(NotificationPriority.MEDIUM)
+                    .content("Notification " + i)
+                    .readStatus(NotificationStatus.UNREAD)
+                    .createdAt(LocalDateTime.now())
+                    .build());
+        }
+        long started = System.nanoTime();
+        if ("identity".equals(mode)) {
+            for (Notification row : rows) {
+                GeneratedKeyHolder key = new GeneratedKeyHolder();
+                jdbcTemplate.update(connection -> {
+                    PreparedStatement statement = connection.prepareStatement("INSERT INTO notifications "
+                            + "(user_id, event_id, notification_type_id, source_service, title, priority, content, created_at, read_status) "
+                            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)", new String[]{"id"});
+                    statement.setString(1, row.getUserId());
+                    statement.setString(2, row.getEventId());
+                    statement.setLong(3, type.getId());
+                    statement.setString(4, row.getSourceService());
+                    statement.setString(5, row.getTitle());
+                    statement.setString(6, row.getPriority().name());
+                    statement.setString(7, row.getContent());
+                    statement.setTimestamp(8, Timestamp.valueOf(row.getCreatedAt()));
+                    statement.setString(9, row.getReadStatus().name());
+                    return statement;
+                }, key);
+            }
+        } else {
+            repository.saveAll(rows);
+            repository.flush();
+        }
+        long elapsed = System.nanoTime() - started;
+        entityManager.clear();
+        return elapsed;
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.notification.repository;
+
+import com.example.notification.model.Notification;
+import com.example.notification.model.NotificationPriority;
+import com.example.notification.model.NotificationType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@Import(PooledIdAllocator.class)
+class NotificationRepositoryTest {
+
+    @Autowired
+    private NotificationRepository repository;
+
+    @Autowired
+    private NotificationTypeRepository notificationTypeRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PooledIdAllocator idAllocator;
+
+    private NotificationType type;
+
+    @BeforeEach
+    void setUp() {
+        type = new NotificationType();
+        type.setTypeCode("SEQUENCE_TEST");
+        notificationTypeRepository.save(type);
+    }
+
+    @Test
+    void saveAll_takesIdsFromSequenceBlocksThatPlainSqlInsertsNeverReuse() {
+        List<Notification> first = repository.saveAll(notifications("e1", 120));
+        repository.flush();
+        jdbcTemplate.update("INSERT INTO notifications (user_id, event_id, notification_type_id, priority, read_status) "
+                + "VALUES ('raw', 'e2', ?, 'LOW', 'UNREAD')", type.getId());
+        List<Notification> second = repository.saveAll(notifications("e3", 60));
+        repository.flush();
+
+        List<Long> ids = new ArrayList<>();
+        first.forEach(notification -> ids.add(notification.getId()));
+        second.forEach(notification -> ids.add(notification.getId()));
+        ids.addAll(jdbcTemplate.queryForList("SELECT id FROM notifications WHERE event_id = 'e2'", Long.class));
+        assertThat(ids).hasSize(181).doesNotHaveDuplicates();
+        assertThat(repository.countByEventId("e1")).isEqualTo(120);
+    }
+
+    @Test
+    void allocate_sharesTheEntitySequenceBlocks() {
+        long[] claimed = idAllocator.allocate(Notification.class, 120);
+        List<Notification> saved = repository.saveAll(notifications("e1", 60));
+        repository.flush();
+        jdbcTemplate.update("MERGE INTO notifications n USING (SELECT CAST(? AS VARCHAR(255)) AS user_id, CAST(? AS NUMBER(19)) AS id FROM dual) r "
+                + "ON (n.event_id = 'e2' AND n.user_id = r.user_id) WHEN NOT MATCHED THEN INSERT "
+                + "(id, user_id, event_id, notification_type_id, read_status) VALUES (r.id, r.user_id, 'e2', ?, 'UNREAD')",
+                "raw", claimed[0], type.getId());
+
+        List<Long> ids = new ArrayList<>(Arrays.stream(claimed).boxed().toList());
+        saved.forEach(notification -> ids.add(notification.getId()));
+        assertThat(ids).hasSize(180).doesNotHaveDuplicates();
+        // 120 ids are at most three blocks of 50, not 120 sequence calls
+        assertThat(claimed[119] - claimed[0]).isLessThan(150);
+        assertThat(jdbcTemplate.queryForObject("SELECT id FROM notifications WHERE event_id = 'e2'", Long.class)).isEqualTo(claimed[0]);
+    }
+
+    private List<Notification> notifications(String eventId, int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> Notification.builder()
+                        .userId("user" + i)
+                        .eventId(eventId)
+                        .notificationType(type)
+                        .priority(NotificationPriority.LOW)
+                        .content("content " + i)
+                        .build())
+                .toList();
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.notification.security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JwtTokenProviderTest {
+
+    private static final String SECRET = "testSecretKeyThatIsLongEnoughForHmacSha256Signing";
+
+    private JwtTokenProvider provider;
+
+    @BeforeEach
+    void setUp() {
+        provider = newProvider(SECRET, 60000, 100);
+    }
+
+    @Test
+    void verify_returnsClaimsOfGeneratedToken() {
+        String token = provider.generateToken("alice", List.of("ROLE_USER"));
+
+        Optional<VerifiedToken> verified = provider.verify(token);
+
+        assertTrue(verified.isPresent());
+        assertEquals("alice", verified.get().getUserId());
+        assertEquals(List.of("ROLE_USER"), verified.get().getRoles());
+        assertTrue(verified.get().getExpiresAtMillis() > System.currentTimeMillis());
+    }
+
+    @Test
+    void verify_repeatedToken_isServedFromCache() {
+        String token = provider.generateToken("alice", List.of("ROLE_USER"));
+
+        assertSame(provider.verify(token).get(), provider.verify(token).get());
+    }
+
+    @Test
+    void verify_rejectsTokenSignedWithAnotherKey() {
+        String forged = newProvider("anotherSecretKeyThatIsLongEnoughForHmacSha256", 60000, 100)
+                .generateToken("alice", List.of("ROLE_ADMIN"));
+
+        assertFalse(provider.verify(forged).isPresent());
+        assertFalse(provider.validateToken(forged));
+    }
+
+    @Test
+    void verify_rejectsExpiredAndMalformedTokens() {
+        String expired = newProvider(SECRET, -1000, 100).generateToken("alice", List.of("ROLE_USER"));
+
+        assertFalse(provider.verify(expired).isPresent());
+        assertFalse(provider.verify("not-a-jwt").isPresent());
+        assertFalse(provider.verify(null).isPresent());
+    }
+
+    @Test
+    void cache_staysBounded() {
+        JwtTokenProvider small = newProvider(SECRET, 60000, 10);
+        for (int i = 0; i < 50; i++) {
+            assertTrue(small.verify(small.generateToken("user" + i, List.of("ROLE_USER"))).isPresent());
+        }
+
+        @SuppressWarnings("unchecked")
+        Map<String, VerifiedToken> cache =
+                (Map<String, VerifiedToken>) ReflectionTestUtils.getField(small, "verifiedTokens");
+        assertTrue(cache.size() <= 10);
+    }
+
+    private static JwtTokenProvider newProvider(String secret, long expirationMs, int cacheMaxEntries) {
+        JwtTokenProvider provider = new JwtTokenProvider();
+        ReflectionTestUtils.setField(provider, "jwtSecret", secret);
+        ReflectionTestUtils.setField(provider, "jwtExpirationInMs", expirationMs);
+        ReflectionTestUtils.setField(provider, "cacheMaxEntries", cacheMaxEntries);
+        provider.init();
+        return provider;
+    }
+}
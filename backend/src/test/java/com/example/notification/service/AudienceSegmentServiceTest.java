@@ -0,0 +1,103 @@
+package com.example.notification.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Not rolled back per test, so saved lists commit and reload as they do in production
+@JdbcTest
+@Import(AudienceSegmentService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AudienceSegmentServiceTest {
+
+    @Autowired
+    private AudienceSegmentService service;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM audience_segment_members");
+        service.refresh();
+    }
+
+    @Test
+    void refresh_buildsSegmentsFromUsersRolesAndPreferences() {
+        // data.sql: user1-4 are USER and admin is ADMIN; user2 and user4 turned SSE off, user3 and user4 email
+        assertThat(service.resolve("all")).containsExactlyInAnyOrder("admin", "user1", "user2", "user3", "user4");
+        assertThat(service.resolve("role:admin")).containsExactly("admin");
+        assertThat(service.resolve("role:ROLE_USER")).containsExactlyInAnyOrder("user1", "user2", "user3", "user4");
+        assertThat(service.resolve("pref:sse")).containsExactlyInAnyOrder("admin", "user1", "user3");
+        assertThat(service.resolve("PREF:EMAIL")).containsExactlyInAnyOrder("admin", "user1", "user2");
+        assertThat(service.describe()).containsEntry("role:USER", 4).containsEntry("all", 5);
+    }
+
+    @Test
+    void resolve_intersectionBindsTighterThanUnionAndDifference() {
+        assertThat(service.resolve("role:USER & pref:email")).containsExactlyInAnyOrder("user1", "user2");
+        assertThat(service.resolve("all - role:USER")).containsExactly("admin");
+        assertThat(service.resolve("role:ADMIN | role:USER & pref:sse")).containsExactlyInAnyOrder("admin", "user1", "user3");
+        assertThat(service.resolve("(role:ADMIN | role:USER) & pref:sse - pref:email")).containsExactly("user3");
+        assertThat(service.count("  ( all )  ")).isEqualTo(5);
+    }
+
+    @Test
+    void resolve_rolesNobodyHoldsAndUnsavedListsAreEmpty() {
+        assertThat(service.resolve("role:AUDITOR")).isEmpty();
+        assertThat(service.resolve("list:nobody | role:AUDITOR")).isEmpty();
+    }
+
+    @Test
+    void resolve_rejectsMalformedExpressionsAndUnknownSegments() {
+        assertThatThrownBy(() -> service.resolve(" ")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.resolve("cohort"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Unknown audience segment 'cohort'");
+        assertThatThrownBy(() -> service.resolve("role:USER &"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Expected a segment name at position 11");
+        assertThatThrownBy(() -> service.resolve("(all"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Missing ')'");
+        assertThatThrownBy(() -> service.resolve("all !"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Unexpected '!'");
+    }
+
+    @Test
+    void saveList_appliesOnCommitAndIgnoresUnknownUsers() {
+        assertThat(service.saveList("oncall", List.of("user1", "user3", "ghost", "user1"))).isEqualTo(2);
+        assertThat(service.resolve("list:oncall")).containsExactlyInAnyOrder("user1", "user3");
+        assertThat(service.resolve("list:oncall & pref:email")).containsExactly("user1");
+
+        assertThat(service.saveList("oncall", List.of("admin"))).isEqualTo(1);
+        assertThat(service.resolve("list:oncall")).containsExactly("admin");
+
+        assertThat(service.deleteList("oncall")).isTrue();
+        assertThat(service.resolve("list:oncall")).isEmpty();
+        assertThat(service.describe()).doesNotContainKey("list:oncall");
+        assertThatThrownBy(() -> service.saveList("on call", List.of("user1"))).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void refresh_picksUpListsSavedOnAnotherNode() {
+        assertThat(service.resolve("list:escalation")).isEmpty();
+        jdbcTemplate.update("INSERT INTO audience_segment_members (segment_name, user_id) VALUES ('escalation', 'user4')");
+        assertThat(service.resolve("list:escalation")).isEmpty();
+
+        service.refresh();
+
+        assertThat(service.resolve("list:escalation")).containsExactly("user4");
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.notification.service;
+
+import com.example.notification.dto.NotificationEvent;
+import com.example.notification.dto.NotificationResponse;
+import com.example.notification.model.BroadcastCheckpoint;
+import com.example.notification.model.BroadcastNotification;
+import com.example.notification.model.NotificationStatus;
+import com.example.notification.repository.BroadcastCheckpointRepository;
+import com.example.notification.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BroadcastFanoutServiceTest {
+
+    private static final LocalDateTime STARTED = LocalDateTime.of(2024, 5, 1, 12, 0);
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private NotificationPersistenceService persistenceService;
+
+    @Mock
+    private BroadcastCheckpointRepository checkpointRepository;
+
+    @Mock
+    private BroadcastInboxService broadcastInboxService;
+
+    @Mock
+    private NotificationDispatchService dispatchService;
+
+    @Mock
+    private UnreadCounterService unreadCounterService;
+
+    private BroadcastFanoutService service;
+
+    private final NotificationEvent event = NotificationEvent.builder().eventId("e1").build();
+
+    @BeforeEach
+    void setUp() {
+        service = service("per-user");
+    }
+
+    private BroadcastFanoutService service(String storage) {
+        return new BroadcastFanoutService(userRepository, persistenceService, checkpointRepository, broadcastInboxService,
+                dispatchService, unreadCounterService, 2, storage);
+    }
+
+    @Test
+    void broadcast_pagesByKeysetAndCompletesCheckpoint() {
+        when(checkpointRepository.findById("e1")).thenReturn(Optional.empty());
+        when(checkpointRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(userRepository.findUsernames(PageRequest.of(0, 2))).thenReturn(List.of("alice", "bob"));
+        when(userRepository.findUsernamesAfter("bob", PageRequest.of(0, 2))).thenReturn(List.of("carol"));
+        when(persistenceService.persistBroadcastChunk(eq(event), any(), anyList(), eq(true))).thenAnswer(invocation -> {
+            BroadcastCheckpoint checkpoint = invocation.getArgument(1);
+            List<String> chunk = invocation.getArgument(2);
+            return checkpoint.toBuilder()
+                    .lastUserId(chunk.get(chunk.size() - 1))
+                    .persistedCount(checkpoint.getPersistedCount() + chunk.size())
+                    .build();
+        });
+
+        assertEquals(3, service.broadcast(event, true));
+
+        verify(persistenceService).persistBroadcastChunk(eq(event), any(), eq(List.of("alice", "bob")), eq(true));
+        verify(persistenceService).persistBroadcastChunk(eq(event), any(), eq(List.of("carol")), eq(true));
+        verify(checkpointRepository).save(argThat(checkpoint -> checkpoint.getCompletedAt() != null && checkpoint.getPersistedCount() == 3));
+    }
+
+    @Test
+    void broadcast_resumesAfterLastCheckpointedUser() {
+        BroadcastCheckpoint interrupted = BroadcastCheckpoint.builder()
+                .eventId("e1").lastUserId("bob").persistedCount(2).createdAt(STARTED).build();
+        when(checkpointRepository.findById("e1")).thenReturn(Optional.of(interrupted));
+        when(checkpointRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(userRepository.findUsernamesAfter("bob", PageRequest.of(0, 2))).thenReturn(List.of());
+
+        assertEquals(0, service.broadcast(event, false));
+
+        verify(userRepository, never()).findUsernames(any());
+        verify(persistenceService, never()).persistBroadcastChunk(any(), any(), anyList(), anyBoolean());
+        verify(checkpointRepository).save(argThat(checkpoint -> checkpoint.getCompletedAt() != null));
+    }
+
+    @Test
+    void broadcast_alreadyCompleted_readsNoUsers() {
+        when(checkpointRepository.findById("e1")).thenReturn(Optional.of(BroadcastCheckpoint.builder()
+                .eventId("e1").persistedCount(5).createdAt(STARTED).completedAt(STARTED.plusMinutes(1)).build()));
+
+        assertEquals(0, service.broadcast(event, false));
+
+        verifyNoInteractions(userRepository, persistenceService);
+    }
+
+    @Test
+    void broadcast_advancedByAnotherConsumer_stops() {
+        when(checkpointRepository.findById("e1")).thenReturn(Optional.of(BroadcastCheckpoint.builder()
+                .eventId("e1").createdAt(STARTED).build()));
+        when(userRepository.findUsernames(PageRequest.of(0, 2))).thenReturn(List.of("alice", "bob"));
+        when(persistenceService.persistBroadcastChunk(any(), any(), anyList(), anyBoolean()))
+                .thenThrow(new ObjectOptimisticLockingFailureException(BroadcastCheckpoint.class, "e1"));
+
+        assertEquals(0, service.broadcast(event, false));
+
+        verify(userRepository, never()).findUsernamesAfter(any(), any());
+        verify(checkpointRepository, never()).save(any());
+    }
+
+    @Test
+    void broadcast_sharedStorage_storesOnceAndPushesToReachableUsers() {
+        BroadcastNotification stored = BroadcastNotification.builder().id(7L).eventId("e1").createdAt(STARTED).build();
+        NotificationResponse response = NotificationResponse.builder().id(-7L).build();
+        when(persistenceService.persistSharedBroadcast(event)).thenReturn(stored);
+        when(broadcastInboxService.toResponse(stored, null, NotificationStatus.UNREAD)).thenReturn(response);
+
+        assertEquals(1, service("shared").broadcast(event, false));
+
+        verify(unreadCounterService).recordBroadcast();
+        verify(dispatchService).dispatchSharedBroadcast(response);
+        verifyNoInteractions(userRepository, checkpointRepository);
+    }
+
+    @Test
+    void broadcast_sharedStorage_criticalStillGetsRowPerUser() {
+        when(checkpointRepository.findById("e1")).thenReturn(Optional.of(BroadcastCheckpoint.builder()
+                .eventId("e1").createdAt(STARTED).completedAt(STARTED).build()));
+
+        service("shared").broadcast(event, true);
+
+        verify(persistenceService, never()).persistSharedBroadcast(any());
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.notification.service;
+
+import com.example.notification.dto.NotificationResponse;
+import com.example.notification.model.NotificationPriority;
+import com.example.notification.model.NotificationStatus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BroadcastFrameTemplateTest {
+
+    private final ObjectMapper objectMapper = JsonMapper.builder()
+            .findAndAddModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    @Test
+    void render_matchesPerRecipientSerialization() throws Exception {
+        NotificationResponse prototype = response(1L, "user1");
+        BroadcastFrameTemplate template = BroadcastFrameTemplate.encode(objectMapper, prototype);
+
+        for (Object[] recipient : new Object[][]{{42L, "user2"}, {7L, "quote\"and\\slash"}, {-3L, "ünïcode"}}) {
+            String expected = objectMapper.writeValueAsString(response((Long) recipient[0], (String) recipient[1]));
+            assertEquals(expected, template.render((Long) recipient[0], (String) recipient[1]));
+        }
+    }
+
+    @Test
+    void encode_leavesPrototypeUntouched() throws Exception {
+        NotificationResponse prototype = response(5L, "user5");
+
+        BroadcastFrameTemplate.encode(objectMapper, prototype);
+
+        assertEquals(5L, prototype.getId());
+        assertEquals("user5", prototype.getUserId());
+    }
+
+    private static NotificationResponse response(Long id, String userId) {
+        return NotificationResponse.builder()
+                .id(id)
+                .userId(userId)
+                .title("Maintenance")
+                .content("System maintenance tonight at 22:00 (user1 included)")
+                .notificationType("SYSTEM")
+                .sourceService("ops")
+                .priority(NotificationPriority.HIGH)
+                .readStatus(NotificationStatus.UNREAD)
+                .createdAt(LocalDateTime.of(2024, 5, 1, 12, 30))
+                .metadata(Map.of("window", "2h"))
+                .tags(List.of("maintenance"))
+                .build();
+    }
+}
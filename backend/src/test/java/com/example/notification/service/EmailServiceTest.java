@@ -1,8 +1,6 @@
 package com.example.notification.service;
 
 import com.example.notification.dto.NotificationResponse;
-import com.example.notification.model.UserPreferences;
-import com.example.notification.repository.UserPreferencesRepository;
 import jakarta.mail.internet.MimeMessage;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -12,9 +10,8 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.mail.javamail.JavaMailSender;
 
-import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
-import java.util.Set;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
@@ -29,7 +26,7 @@ class EmailServiceTest {
     private UserService userService;
 
     @Mock
-    private UserPreferencesRepository userPreferencesRepository;
+    private UserPreferencesService userPreferencesService;
 
     @Mock
     private MimeMessage mimeMessage;
@@ -38,7 +35,7 @@ class EmailServiceTest {
     private EmailService emailService;
 
     private NotificationResponse notificationResponse;
-    private UserPreferences userPreferences;
+    private CachedUserPreferences userPreferences;
 
     @BeforeEach
     void setUp() {
@@ -47,16 +44,13 @@ class EmailServiceTest {
         notificationResponse.setContent("Test content");
         notificationResponse.setSourceService("TestService");
 
-        userPreferences = new UserPreferences();
-        userPreferences.setUserId("testUser");
-        userPreferences.setEmailEnabled(true);
-        userPreferences.setMutedNotificationTypes(Collections.emptySet());
+        userPreferences = new CachedUserPreferences("testUser", true, true, "NORMAL", List.of());
     }
 
     @Test
     void testSendNotificationEmail_EmailDisabled() {
-        userPreferences.setEmailEnabled(false);
-        when(userPreferencesRepository.findByUserId("testUser")).thenReturn(Optional.of(userPreferences));
+        userPreferences = new CachedUserPreferences("testUser", false, true, "NORMAL", List.of());
+        when(userPreferencesService.find("testUser")).thenReturn(Optional.of(userPreferences));
 
         emailService.sendNotificationEmail("testUser", notificationResponse);
 
@@ -65,8 +59,8 @@ class EmailServiceTest {
 
     @Test
     void testSendNotificationEmail_NotificationTypeMuted() {
-        userPreferences.setMutedNotificationTypes(Set.of("TEST_NOTIFICATION"));
-        when(userPreferencesRepository.findByUserId("testUser")).thenReturn(Optional.of(userPreferences));
+        when(userPreferencesService.find("testUser")).thenReturn(Optional.of(userPreferences));
+        when(userPreferencesService.isMuted(userPreferences, "TEST_NOTIFICATION")).thenReturn(true);
 
         emailService.sendNotificationEmail("testUser", notificationResponse);
 
@@ -76,7 +70,7 @@ class EmailServiceTest {
     @Test
     void testSendNotificationEmail_EmailEnabledAndNotMuted() {
         when(mailSender.createMimeMessage()).thenReturn(mimeMessage);
-        when(userPreferencesRepository.findByUserId("testUser")).thenReturn(Optional.of(userPreferences));
+        when(userPreferencesService.find("testUser")).thenReturn(Optional.of(userPreferences));
         when(userService.getUserEmail("testUser")).thenReturn("test@example.com");
 
         emailService.sendNotificationEmail("testUser", notificationResponse);
@@ -86,7 +80,7 @@ class EmailServiceTest {
 
     @Test
     void testSendNotificationEmail_UserPreferencesNotFound() {
-        when(userPreferencesRepository.findByUserId("testUser")).thenReturn(Optional.empty());
+        when(userPreferencesService.find("testUser")).thenReturn(Optional.empty());
 
         emailService.sendNotificationEmail("testUser", notificationResponse);
 
@@ -95,7 +89,7 @@ class EmailServiceTest {
 
     @Test
     void testSendNotificationEmail_UserEmailNotFound() {
-        when(userPreferencesRepository.findByUserId("testUser")).thenReturn(Optional.of(userPreferences));
+        when(userPreferencesService.find("testUser")).thenReturn(Optional.of(userPreferences));
         when(userService.getUserEmail("testUser")).thenReturn(null);
 
         emailService.sendNotificationEmail("testUser", notificationResponse);
@@ -0,0 +1,43 @@
+package com.example.notification.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HeartbeatWheelTest {
+
+    @Test
+    void revolution_visitsEveryUserExactlyOnce() {
+        HeartbeatWheel wheel = new HeartbeatWheel(20);
+        for (int i = 0; i < 1000; i++) {
+            wheel.add("user" + i);
+        }
+
+        Map<String, Integer> visits = new HashMap<>();
+        int largestSlot = 0;
+        for (int tick = 0; tick < wheel.slotCount(); tick++) {
+            var slot = wheel.advance();
+            largestSlot = Math.max(largestSlot, slot.size());
+            slot.forEach(userId -> visits.merge(userId, 1, Integer::sum));
+        }
+
+        assertEquals(1000, visits.size());
+        assertTrue(visits.values().stream().allMatch(count -> count == 1));
+        assertTrue(largestSlot < 100, "users should be spread across slots, largest slot had " + largestSlot);
+    }
+
+    @Test
+    void removedUser_isNotVisited() {
+        HeartbeatWheel wheel = new HeartbeatWheel(4);
+        wheel.add("user1");
+        wheel.remove("user1");
+
+        for (int tick = 0; tick < wheel.slotCount(); tick++) {
+            assertTrue(wheel.advance().isEmpty());
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.notification.service;
+
+import com.example.notification.dto.NotificationEvent;
+import com.example.notification.dto.NotificationIngestReceipt;
+import com.example.notification.kafka.NotificationIngestProducer;
+import com.example.notification.model.NotificationPriority;
+import com.example.notification.model.BroadcastNotification;
+import com.example.notification.repository.BroadcastNotificationRepository;
+import com.example.notification.repository.NotificationRepository;
+import com.example.notification.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.KafkaException;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class NotificationIngestServiceTest {
+
+    @Mock
+    private NotificationIngestProducer producer;
+
+    @Mock
+    private NotificationProcessingOrchestrator orchestrator;
+
+    @Mock
+    private NotificationRepository notificationRepository;
+
+    @Mock
+    private BroadcastNotificationRepository broadcastRepository;
+
+    @Mock
+    private BroadcastFanoutService broadcastFanoutService;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private AudienceSegmentService segmentService;
+
+    private NotificationIngestService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new NotificationIngestService(producer, orchestrator, notificationRepository, broadcastRepository,
+                broadcastFanoutService, userRepository, segmentService,
+                "notifications", "critical-notifications", 2000);
+    }
+
+    @Test
+    void ingest_publishesOneRecordPerDistinctRecipientKeyedByUser() {
+        when(producer.send(anyString(), anyString(), any())).thenReturn(new CompletableFuture<>());
+
+        NotificationIngestReceipt receipt = service.ingest(event(NotificationPriority.HIGH, "alice", "bob", "alice", " "), false);
+
+        ArgumentCaptor<NotificationEvent> sent = ArgumentCaptor.forClass(NotificationEvent.class);
+        verify(producer).send(eq("notifications"), eq("alice"), sent.capture());
+        verify(producer).send(eq("notifications"), eq("bob"), sent.capture());
+        verifyNoMoreInteractions(producer);
+        assertEquals(List.of("alice"), sent.getAllValues().get(0).getTargetUserIds());
+        assertEquals(List.of("bob"), sent.getAllValues().get(1).getTargetUserIds());
+        assertNotNull(receipt.getEventId());
+        assertEquals(receipt.getEventId(), sent.getAllValues().get(1).getEventId());
+        assertEquals(2, receipt.getRecipients());
+        assertEquals(NotificationIngestReceipt.Status.ACCEPTED, receipt.getStatus());
+        verifyNoInteractions(notificationRepository);
+    }
+
+    @Test
+    void ingest_criticalBroadcastIsOneRecordOnCriticalTopic() {
+        when(userRepository.count()).thenReturn(42L);
+        when(producer.send(anyString(), anyString(), any())).thenReturn(new CompletableFuture<>());
+
+        NotificationIngestReceipt receipt = service.ingest(event(NotificationPriority.CRITICAL, "ALL"), false);
+
+        verify(producer).send(eq("critical-notifications"), eq(receipt.getEventId()), argThat(e -> e.getTargetUserIds().equals(List.of("ALL"))));
+        assertEquals(42, receipt.getRecipients());
+    }
+
+    @Test
+    void ingest_segmentIsOneRecordCountingItsMembersAndExplicitUsers() {
+        when(segmentService.resolve("role:ADMIN")).thenReturn(List.of("admin", "alice"));
+        when(producer.send(anyString(), anyString(), any())).thenReturn(new CompletableFuture<>());
+        NotificationEvent event = event(NotificationPriority.HIGH, "alice", "bob").toBuilder().segment("role:ADMIN").build();
+
+        NotificationIngestReceipt receipt = service.ingest(event, false);
+
+        verify(producer).send(eq("notifications"), eq(receipt.getEventId()), argThat(e -> "role:ADMIN".equals(e.getSegment())));
+        verifyNoMoreInteractions(producer);
+        assertEquals(3, receipt.getRecipients());
+    }
+
+    @Test
+    void ingest_unknownSegmentIsRejectedBeforePublishing() {
+        when(segmentService.resolve("cohort")).thenThrow(new IllegalArgumentException("Unknown audience segment 'cohort'"));
+        NotificationEvent event = event(NotificationPriority.HIGH).toBuilder().segment("cohort").build();
+
+        assertThrows(IllegalArgumentException.class, () -> service.ingest(event, false));
+        verifyNoInteractions(producer);
+    }
+
+    @Test
+    void ingest_waitForPersisted_pollsUntilEveryRowExists() {
+        when(producer.send(anyString(), anyString(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        when(notificationRepository.countByEventId("e1")).thenReturn(0L, 1L, 2L);
+        NotificationEvent event = event(NotificationPriority.LOW, "alice", "bob").toBuilder().eventId("e1").build();
+
+        NotificationIngestReceipt receipt = service.ingest(event, true);
+
+        assertEquals(NotificationIngestReceipt.Status.PERSISTED, receipt.getStatus());
+        verify(notificationRepository, times(3)).countByEventId("e1");
+    }
+
+    @Test
+    void ingest_waitForPersisted_sharedBroadcastWaitsForItsOneRow() {
+        when(userRepository.count()).thenReturn(1000L);
+        when(producer.send(anyString(), anyString(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        when(broadcastFanoutService.storesShared(false)).thenReturn(true);
+        when(broadcastRepository.findByEventId("e2")).thenReturn(Optional.empty(), Optional.of(new BroadcastNotification()));
+        NotificationEvent event = event(NotificationPriority.LOW, "ALL").toBuilder().eventId("e2").build();
+
+        NotificationIngestReceipt receipt = service.ingest(event, true);
+
+        assertEquals(NotificationIngestReceipt.Status.PERSISTED, receipt.getStatus());
+        assertEquals(1000, receipt.getRecipients());
+        verify(broadcastRepository, times(2)).findByEventId("e2");
+        verifyNoInteractions(notificationRepository);
+    }
+
+    @Test
+    void ingest_whenProducerRejects_throwsIllegalState() {
+        when(producer.send(anyString(), anyString(), any())).thenThrow(new KafkaException("buffer exhausted"));
+
+        assertThrows(IllegalStateException.class, () -> service.ingest(event(NotificationPriority.LOW, "alice"), false));
+    }
+
+    @Test
+    void ingest_whenSendFailsWhileWaiting_throwsIllegalState() {
+        when(producer.send(anyString(), anyString(), any())).thenReturn(CompletableFuture.failedFuture(new KafkaException("not leader")));
+
+        assertThrows(IllegalStateException.class, () -> service.ingest(event(NotificationPriority.LOW, "alice"), true));
+        verifyNoInteractions(notificationRepository);
+    }
+
+    private static NotificationEvent event(NotificationPriority priority, String... users) {
+        return NotificationEvent.builder()
+                .sourceService("test")
+                .notificationType("ALERT")
+                .priority(priority)
+                .content("content")
+                .targetUserIds(Arrays.asList(users))
+                .build();
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.notification.service;
+
+import com.example.notification.config.ClusterNode;
+import com.example.notification.dto.NotificationResponse;
+import com.example.notification.model.Notification;
+import com.example.notification.model.NotificationOutboxEntry;
+import com.example.notification.model.NotificationOutboxEntry.Channel;
+import com.example.notification.model.NotificationPriority;
+import com.example.notification.repository.NotificationOutboxRepository;
+import com.example.notification.repository.NotificationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class NotificationOutboxRelayTest {
+
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2024, 5, 1, 12, 0);
+
+    @Mock
+    private NotificationOutboxService outboxService;
+
+    @Mock
+    private NotificationDispatchService dispatchService;
+
+    @Mock
+    private NotificationPersistenceService persistenceService;
+
+    @Mock
+    private NotificationRepository notificationRepository;
+
+    private NotificationOutboxRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        relay = new NotificationOutboxRelay(outboxService, dispatchService, persistenceService, notificationRepository,
+                new ClusterNode(false, "node-a", "sse-delivery"), new SimpleMeterRegistry(), 100, 1000, 4000);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void relayBatch_sseEncodesRowsOfOneEventOnceAndCompletesDeliveredEntries() throws Exception {
+        List<NotificationOutboxEntry> entries = List.of(entry(1, 11, Channel.SSE), entry(2, 12, Channel.SSE), entry(3, 13, Channel.SSE));
+        when(outboxService.claim(Channel.SSE, 100)).thenReturn(entries);
+        when(notificationRepository.findAllById(anyIterable())).thenReturn(List.of(
+                row(11, "e1", "alice"), row(12, "e1", "bob"), row(13, "e2", "alice")));
+        when(persistenceService.convertToResponse(any())).thenAnswer(invocation -> response(invocation.getArgument(0)));
+        when(dispatchService.dispatchBroadcast(any(), anyList())).thenReturn(CompletableFuture.completedFuture(null));
+        when(dispatchService.dispatchNotification(anyString(), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        assertEquals(3, relay.relayBatch(Channel.SSE));
+
+        ArgumentCaptor<List<Notification>> broadcast = ArgumentCaptor.forClass(List.class);
+        verify(dispatchService).dispatchBroadcast(any(), broadcast.capture());
+        assertEquals(List.of(11L, 12L), broadcast.getValue().stream().map(Notification::getId).toList());
+        verify(dispatchService).dispatchNotification(eq("alice"), argThat(response -> response.getId() == 13L));
+        verify(outboxService).complete(argThat(ids -> ids.containsAll(List.of(1L, 2L, 3L)) && ids.size() == 3));
+        verify(outboxService, never()).fail(any());
+    }
+
+    @Test
+    void relayBatch_failedEmailIsRescheduledAndMissingRowCompleted() throws Exception {
+        NotificationOutboxEntry sent = entry(1, 11, Channel.EMAIL);
+        NotificationOutboxEntry failing = entry(2, 12, Channel.EMAIL);
+        NotificationOutboxEntry deleted = entry(3, 13, Channel.EMAIL);
+        when(outboxService.claim(Channel.EMAIL, 100)).thenReturn(List.of(sent, failing, deleted));
+        when(notificationRepository.findAllById(anyIterable())).thenReturn(List.of(row(11, "e1", "alice"), row(12, "e1", "bob")));
+        when(persistenceService.convertToResponse(any())).thenAnswer(invocation -> response(invocation.getArgument(0)));
+        when(dispatchService.dispatchToEmail(eq("alice"), any())).thenReturn(CompletableFuture.completedFuture(null));
+        when(dispatchService.dispatchToEmail(eq("bob"), any()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("SMTP down")));
+
+        relay.relayBatch(Channel.EMAIL);
+
+        verify(outboxService).complete(argThat((Collection<Long> ids) -> ids.size() == 2 && ids.containsAll(List.of(1L, 3L))));
+        verify(outboxService).fail(List.of(failing));
+    }
+
+    @Test
+    void relayBatch_withNothingDue_touchesNoRows() throws Exception {
+        when(outboxService.claim(Channel.SSE, 100)).thenReturn(List.of());
+
+        assertEquals(0, relay.relayBatch(Channel.SSE));
+
+        verifyNoInteractions(notificationRepository, dispatchService);
+        verify(outboxService, never()).complete(any());
+    }
+
+    @Test
+    void backoff_doublesWithEachAttempt() {
+        NotificationOutboxService service = new NotificationOutboxService(mock(NotificationOutboxRepository.class),
+                mock(SseClusterRouter.class), new ClusterNode(false, "node-a", "sse-delivery"), new SimpleMeterRegistry(),
+                30000, 500, 8);
+
+        assertEquals(500, service.backoff(0).toMillis());
+        assertEquals(4000, service.backoff(3).toMillis());
+    }
+
+    private static NotificationOutboxEntry entry(long id, long notificationId, Channel channel) {
+        return NotificationOutboxEntry.builder()
+                .id(id)
+                .notificationId(notificationId)
+                .channel(channel)
+                .priorityRank(NotificationPriority.HIGH.ordinal())
+                .build();
+    }
+
+    private static Notification row(long id, String eventId, String userId) {
+        return Notification.builder()
+                .id(id)
+                .eventId(eventId)
+                .userId(userId)
+                .priority(NotificationPriority.HIGH)
+                .content("content " + eventId)
+                .createdAt(CREATED_AT)
+                .build();
+    }
+
+    private static NotificationResponse response(Notification notification) {
+        return NotificationResponse.builder()
+                .id(notification.getId())
+                .userId(notification.getUserId())
+                .priority(notification.getPriority())
+                .content(notification.getContent())
+                .createdAt(notification.getCreatedAt())
+                .build();
+    }
+}
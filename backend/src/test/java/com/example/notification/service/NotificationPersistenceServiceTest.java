@@ -0,0 +1,247 @@
+package com.example.notification.service;
+
+import com.example.notification.config.ClusterNode;
+import com.example.notification.dto.NotificationEvent;
+import com.example.notification.model.BroadcastCheckpoint;
+import com.example.notification.model.Notification;
+import com.example.notification.model.NotificationPriority;
+import com.example.notification.model.NotificationType;
+import com.example.notification.repository.BroadcastCheckpointRepository;
+import com.example.notification.repository.BroadcastNotificationRepository;
+import com.example.notification.repository.NotificationRepository;
+import com.example.notification.repository.NotificationTypeRepository;
+import com.example.notification.repository.PooledIdAllocator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class NotificationPersistenceServiceTest {
+
+    @Mock
+    private NotificationRepository notificationRepository;
+
+    @Mock
+    private NotificationTypeRepository notificationTypeRepository;
+
+    @Mock
+    private NotificationTypeService notificationTypeService;
+
+    @Mock
+    private UnreadCounterService unreadCounterService;
+
+    @Mock
+    private NotificationOutboxService outboxService;
+
+    @Mock
+    private RecipientKeyFilter recipientKeyFilter;
+
+    @Mock
+    private BroadcastCheckpointRepository checkpointRepository;
+
+    @Mock
+    private BroadcastNotificationRepository broadcastRepository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PooledIdAllocator idAllocator;
+
+    private NotificationPersistenceService service;
+
+    @BeforeEach
+    void setUp() {
+        service = service(recipientKeyFilter);
+    }
+
+    private NotificationPersistenceService service(RecipientKeyFilter filter) {
+        return new NotificationPersistenceService(notificationRepository, notificationTypeRepository, notificationTypeService,
+                new ObjectMapper(), unreadCounterService, outboxService, filter, checkpointRepository, broadcastRepository, jdbcTemplate, idAllocator);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void persistBatch_skipsExistingAndRepeatedPairsAndResolvesEachTypeOnce() {
+        when(recipientKeyFilter.classify(anyString(), anyString())).thenReturn(RecipientKeyFilter.Verdict.CHECK_DATABASE);
+        NotificationType type = new NotificationType();
+        type.setTypeCode("ALERT");
+        when(notificationTypeService.resolveTypeId("ALERT")).thenReturn(1L);
+        when(notificationTypeRepository.getReferenceById(1L)).thenReturn(type);
+        when(notificationRepository.findRecipientKeysByEventIdIn(anyCollection()))
+                .thenReturn(List.<Object[]>of(new Object[]{"e1", "alice"}));
+        when(notificationRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Map<NotificationEvent, List<String>> batch = new LinkedHashMap<>();
+        batch.put(event("e1"), List.of("alice", "bob", "bob"));
+        batch.put(event("e2"), List.of("alice"));
+
+        List<Notification> saved = service.persistBatch(batch, true);
+
+        assertEquals(List.of("e1:bob", "e2:alice"), saved.stream().map(n -> n.getEventId() + ":" + n.getUserId()).toList());
+        verify(notificationTypeService, times(1)).resolveTypeId("ALERT");
+        verify(notificationRepository, times(1)).findRecipientKeysByEventIdIn(anyCollection());
+        verify(notificationRepository, never()).findByEventIdAndUserId(anyString(), anyString());
+        verify(unreadCounterService).recordChange("bob", 1);
+        verify(unreadCounterService).recordChange("alice", 1);
+
+        ArgumentCaptor<List<Notification>> captor = ArgumentCaptor.forClass(List.class);
+        verify(notificationRepository, times(1)).saveAll(captor.capture());
+        assertEquals(2, captor.getValue().size());
+        verify(outboxService).enqueue(saved, true);
+    }
+
+    @Test
+    void persistBatch_whenEverythingExists_savesNothing() {
+        when(recipientKeyFilter.classify(anyString(), anyString())).thenReturn(RecipientKeyFilter.Verdict.CHECK_DATABASE);
+        NotificationType type = new NotificationType();
+        type.setTypeCode("ALERT");
+        when(notificationTypeService.resolveTypeId("ALERT")).thenReturn(1L);
+        when(notificationTypeRepository.getReferenceById(1L)).thenReturn(type);
+        when(notificationRepository.findRecipientKeysByEventIdIn(anyCollection()))
+                .thenReturn(List.<Object[]>of(new Object[]{"e1", "alice"}));
+
+        Map<NotificationEvent, List<String>> batch = new LinkedHashMap<>();
+        batch.put(event("e1"), List.of("alice"));
+
+        assertTrue(service.persistBatch(batch, false).isEmpty());
+        verify(notificationRepository, never()).saveAll(anyList());
+        verifyNoInteractions(unreadCounterService, outboxService);
+    }
+
+    @Test
+    void persistBatch_withFilter_looksUpOnlyEventsItCannotRuleOut() {
+        NotificationPersistenceService filtered = service(realFilter());
+        NotificationType type = new NotificationType();
+        type.setTypeCode("ALERT");
+        when(notificationTypeService.resolveTypeId("ALERT")).thenReturn(1L);
+        when(notificationTypeRepository.getReferenceById(1L)).thenReturn(type);
+        when(notificationRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Map<NotificationEvent, List<String>> batch = new LinkedHashMap<>();
+        batch.put(event("e1"), List.of("alice", "bob"));
+        assertEquals(2, filtered.persistBatch(batch, false).size());
+        verify(notificationRepository, never()).findRecipientKeysByEventIdIn(anyCollection());
+
+        // Redelivery: recognised from the recent keys, still without a query
+        assertTrue(filtered.persistBatch(batch, false).isEmpty());
+        verify(notificationRepository, never()).findRecipientKeysByEventIdIn(anyCollection());
+        verify(notificationRepository, times(1)).saveAll(anyList());
+    }
+
+    @Test
+    void persistNotification_withFilter_skipsLookupForNewPairAndRetryLooksItUp() {
+        NotificationPersistenceService filtered = service(realFilter());
+        NotificationType type = new NotificationType();
+        type.setTypeCode("ALERT");
+        when(notificationTypeService.resolveTypeId("ALERT")).thenReturn(1L);
+        when(notificationTypeRepository.getReferenceById(1L)).thenReturn(type);
+        when(notificationRepository.save(any())).thenThrow(new DataIntegrityViolationException(
+                "Unique index or primary key violation: \"PUBLIC.UC_EVENT_USER_INDEX_1 ON PUBLIC.NOTIFICATIONS\""));
+
+        DataIntegrityViolationException e = assertThrows(DataIntegrityViolationException.class,
+                () -> filtered.persistNotification(event("e1"), "alice", false));
+        assertTrue(NotificationPersistenceService.isDuplicateRecipient(e));
+        verify(notificationRepository, never()).findByEventIdAndUserId(anyString(), anyString());
+
+        when(notificationRepository.findByEventIdAndUserId("e1", "alice")).thenReturn(Optional.of(new Notification()));
+        assertNull(filtered.persistNotification(event("e1"), "alice", false));
+        verify(notificationRepository).findByEventIdAndUserId("e1", "alice");
+    }
+
+    @Test
+    void persistForRecipients_writesEachChunkWithOneMergeAndReadsItsRowsBackByClaimedId() {
+        when(recipientKeyFilter.classify(anyString(), anyString())).thenReturn(RecipientKeyFilter.Verdict.NEW);
+        when(recipientKeyFilter.classify("e1", "user7")).thenReturn(RecipientKeyFilter.Verdict.DUPLICATE);
+        NotificationType type = new NotificationType();
+        type.setTypeCode("ALERT");
+        when(notificationTypeService.resolveTypeId("ALERT")).thenReturn(1L);
+        when(notificationTypeRepository.getReferenceById(1L)).thenReturn(type);
+        List<String> recipients = IntStream.range(0, 1_200).mapToObj(i -> "user" + i).toList();
+        Notification alice = Notification.builder().eventId("e1").userId("user0").build();
+        Notification bob = Notification.builder().eventId("e1").userId("user1").build();
+        when(notificationRepository.findAllById(anyIterable())).thenReturn(List.of(alice, bob), List.of(), List.of());
+        when(idAllocator.allocate(eq(Notification.class), anyInt()))
+                .thenAnswer(invocation -> LongStream.range(0, invocation.<Integer>getArgument(1)).toArray());
+
+        List<Notification> saved = service.persistForRecipients(event("e1"), recipients, true);
+
+        assertEquals(List.of(alice, bob), saved);
+        // 1199 recipients after the recent duplicate: chunks of 500, 500 and 199
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        verify(jdbcTemplate, times(3)).update(sql.capture(), any(Object[].class));
+        assertTrue(sql.getAllValues().get(0).startsWith("MERGE INTO notifications"));
+        verify(idAllocator, times(2)).allocate(Notification.class, 500);
+        verify(idAllocator).allocate(Notification.class, 199);
+        // Read back by the ids claimed for each chunk, never by event or time
+        verify(notificationRepository, times(2)).findAllById(LongStream.range(0, 500).boxed().toList());
+        verify(notificationRepository).findAllById(LongStream.range(0, 199).boxed().toList());
+        verify(notificationTypeService, times(1)).resolveTypeId("ALERT");
+        verify(notificationRepository, never()).findByEventIdAndUserId(anyString(), anyString());
+        verify(unreadCounterService).recordChange("user0", 1);
+        verify(unreadCounterService).recordChange("user1", 1);
+        verify(recipientKeyFilter).recordExisting("e1", "user2");
+        verify(recipientKeyFilter, never()).recordExisting("e1", "user7");
+        verify(outboxService).enqueue(saved, true);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void persistBroadcastChunk_insertsUnderPooledIdsAndQueuesDeliveriesForThem() {
+        when(recipientKeyFilter.classify(anyString(), anyString())).thenReturn(RecipientKeyFilter.Verdict.NEW);
+        NotificationType type = new NotificationType();
+        type.setId(1L);
+        when(notificationTypeService.resolveTypeId("ALERT")).thenReturn(1L);
+        when(notificationTypeRepository.getReferenceById(1L)).thenReturn(type);
+        when(idAllocator.allocate(Notification.class, 2)).thenReturn(new long[]{101L, 102L});
+        when(checkpointRepository.save(any(BroadcastCheckpoint.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        BroadcastCheckpoint checkpoint = BroadcastCheckpoint.builder().eventId("e1").createdAt(LocalDateTime.now()).build();
+
+        BroadcastCheckpoint advanced = service.persistBroadcastChunk(event("e1"), checkpoint, List.of("alice", "bob"), true);
+
+        assertEquals("bob", advanced.getLastUserId());
+        assertEquals(2, advanced.getPersistedCount());
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO notifications (id,"), rows.capture());
+        assertEquals(101L, rows.getValue().get(0)[0]);
+        assertEquals("bob", rows.getValue().get(1)[1]);
+        ArgumentCaptor<List<Notification>> queued = ArgumentCaptor.forClass(List.class);
+        verify(outboxService).enqueue(queued.capture(), eq(true));
+        assertEquals(List.of(101L, 102L), queued.getValue().stream().map(Notification::getId).toList());
+        assertEquals(List.of("alice", "bob"), queued.getValue().stream().map(Notification::getUserId).toList());
+    }
+
+    private static RecipientKeyFilter realFilter() {
+        return new RecipientKeyFilter(new SimpleMeterRegistry(), new ClusterNode(false, "node-a", "sse-delivery"),
+                true, 1024, 0.01, 4, 60000, 1000);
+    }
+
+    private static NotificationEvent event(String eventId) {
+        return NotificationEvent.builder()
+                .eventId(eventId)
+                .sourceService("test")
+                .notificationType("ALERT")
+                .priority(NotificationPriority.MEDIUM)
+                .content("content " + eventId)
+                .build();
+    }
+}
@@ -1,20 +1,29 @@
 package com.example.notification.service;
 
+import com.example.notification.config.ClusterNode;
+import com.example.notification.dto.NotificationTypeChangedEvent;
 import com.example.notification.model.NotificationType;
 import com.example.notification.repository.NotificationTypeRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -23,7 +32,12 @@ class NotificationTypeServiceTest {
     @Mock
     private NotificationTypeRepository notificationTypeRepository;
 
-    @InjectMocks
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private KafkaTemplate<String, Object> kafkaTemplate;
+
     private NotificationTypeService notificationTypeService;
 
     private NotificationType accountType;
@@ -31,6 +45,9 @@ class NotificationTypeServiceTest {
 
     @BeforeEach
     void setUp() {
+        notificationTypeService = new NotificationTypeService(notificationTypeRepository, transactionManager,
+                new ClusterNode(true, "node-a", "sse-delivery"), kafkaTemplate, "notification-type-changes");
+
         accountType = new NotificationType();
         accountType.setId(1L);
         accountType.setTypeCode("ACCOUNT");
@@ -153,4 +170,103 @@ class NotificationTypeServiceTest {
         verify(notificationTypeRepository, times(1)).findByTypeCode("ACCOUNT");
         verify(notificationTypeRepository, times(1)).delete(accountType);
     }
+
+    @Test
+    void resolveTypeId_loadsTypesOnceAndCreatesAnUnknownTypeOnce() {
+        when(notificationTypeRepository.findAll()).thenReturn(List.of(accountType));
+        when(notificationTypeRepository.findByTypeCode("NEW_TYPE")).thenReturn(Optional.empty());
+        when(notificationTypeRepository.saveAndFlush(any(NotificationType.class))).thenAnswer(invocation -> {
+            NotificationType type = invocation.getArgument(0);
+            type.setId(3L);
+            return type;
+        });
+
+        assertEquals(1L, notificationTypeService.resolveTypeId("ACCOUNT"));
+        assertEquals(1L, notificationTypeService.resolveTypeId("ACCOUNT"));
+        assertEquals(3L, notificationTypeService.resolveTypeId("NEW_TYPE"));
+        assertEquals(3L, notificationTypeService.resolveTypeId("NEW_TYPE"));
+
+        assertEquals("NEW_TYPE", notificationTypeService.typeCodeOf(3L));
+        assertEquals("ACCOUNT", notificationTypeService.typeCodeOf(accountType));
+        verify(notificationTypeRepository, times(1)).findAll();
+        verify(notificationTypeRepository, times(1)).findByTypeCode("NEW_TYPE");
+        verify(notificationTypeRepository, times(1)).saveAndFlush(any(NotificationType.class));
+        verify(notificationTypeRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    void resolveTypeId_whenAnotherNodeCreatesTheTypeFirst_usesItsRow() {
+        NotificationType theirs = new NotificationType();
+        theirs.setId(5L);
+        theirs.setTypeCode("NEW_TYPE");
+        when(notificationTypeRepository.findAll()).thenReturn(List.of());
+        when(notificationTypeRepository.findByTypeCode("NEW_TYPE")).thenReturn(Optional.empty(), Optional.of(theirs));
+        when(notificationTypeRepository.saveAndFlush(any(NotificationType.class)))
+                .thenThrow(new DataIntegrityViolationException("Unique index or primary key violation"));
+
+        assertEquals(5L, notificationTypeService.resolveTypeId("NEW_TYPE"));
+        assertEquals(5L, notificationTypeService.findTypeId("NEW_TYPE"));
+        verify(notificationTypeRepository, times(2)).findByTypeCode("NEW_TYPE");
+    }
+
+    @Test
+    void resolveTypeId_doesNotBlockOtherLookupsWhileCreating() {
+        NotificationType other = new NotificationType();
+        other.setId(7L);
+        other.setTypeCode("OTHER");
+        when(notificationTypeRepository.findAll()).thenReturn(List.of());
+        when(notificationTypeRepository.findByTypeCode("NEW_TYPE")).thenReturn(Optional.empty());
+        when(notificationTypeRepository.findByTypeCode("OTHER")).thenReturn(Optional.of(other));
+        when(notificationTypeRepository.saveAndFlush(any(NotificationType.class))).thenAnswer(invocation -> {
+            CompletableFuture<Long> lookup = CompletableFuture.supplyAsync(() -> notificationTypeService.findTypeId("OTHER"));
+            assertEquals(7L, lookup.get(5, TimeUnit.SECONDS));
+            NotificationType type = invocation.getArgument(0);
+            type.setId(3L);
+            return type;
+        });
+
+        assertEquals(3L, notificationTypeService.resolveTypeId("NEW_TYPE"));
+        assertEquals("OTHER", notificationTypeService.typeCodeOf(7L));
+        assertEquals("NEW_TYPE", notificationTypeService.typeCodeOf(3L));
+    }
+
+    @Test
+    void updateNotificationType_replacesTheRegistry() {
+        when(notificationTypeRepository.findAll()).thenReturn(List.of(accountType, paymentType));
+        when(notificationTypeRepository.findByTypeCode("ACCOUNT")).thenReturn(Optional.of(accountType));
+        when(notificationTypeRepository.save(accountType)).thenReturn(accountType);
+        assertEquals(List.of("ACCOUNT", "PAYMENT"), notificationTypeService.getActiveTypeCodes());
+
+        notificationTypeService.updateNotificationType("ACCOUNT", null, false);
+
+        assertEquals(List.of("PAYMENT"), notificationTypeService.getActiveTypeCodes());
+        assertEquals("ACCOUNT", notificationTypeService.typeCodeOf(1L));
+        verify(notificationTypeRepository, times(2)).findAll();
+        verify(notificationTypeRepository, never()).findByActiveTrue();
+    }
+
+    @Test
+    void createNotificationType_announcesTheChangeToOtherNodes() {
+        when(notificationTypeRepository.findByTypeCode("NEW_TYPE")).thenReturn(Optional.empty());
+        when(notificationTypeRepository.save(any(NotificationType.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        notificationTypeService.createNotificationType("NEW_TYPE", "New Type Description");
+
+        verify(notificationTypeRepository).findAll();
+        verify(kafkaTemplate).send(eq("notification-type-changes"), eq("NEW_TYPE"),
+                argThat(e -> e instanceof NotificationTypeChangedEvent changed
+                        && "NEW_TYPE".equals(changed.getTypeCode()) && "node-a".equals(changed.getNodeId())));
+    }
+
+    @Test
+    void applyRemoteChange_reloadsOnlyForOtherNodes() {
+        notificationTypeService.applyRemoteChange(NotificationTypeChangedEvent.builder().typeCode("ACCOUNT").nodeId("node-a").build());
+        verify(notificationTypeRepository, never()).findAll();
+
+        when(notificationTypeRepository.findAll()).thenReturn(List.of(accountType));
+        notificationTypeService.applyRemoteChange(NotificationTypeChangedEvent.builder().typeCode("ACCOUNT").nodeId("node-b").build());
+
+        assertEquals(1L, notificationTypeService.findTypeId("ACCOUNT"));
+        verifyNoInteractions(kafkaTemplate);
+    }
 }
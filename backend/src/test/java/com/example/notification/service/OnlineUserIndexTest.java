@@ -0,0 +1,49 @@
+package com.example.notification.service;
+
+import com.example.notification.config.ClusterNode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OnlineUserIndexTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final OnlineUserIndex index = new OnlineUserIndex(meterRegistry, new ClusterNode(false, "node-a", "sse-delivery"));
+
+    @Test
+    void markOnlineAndOffline_tracksMembershipAndCount() {
+        index.markOnline("user1");
+        index.markOnline("user1"); // Reconnect replacing the connection
+        index.markOnline("user2");
+
+        assertTrue(index.isOnline("user1"));
+        assertEquals(2, index.getOnlineCount());
+        assertEquals(2.0, meterRegistry.get("sse_online_users").tag("node", "node-a").gauge().value());
+
+        index.markOffline("user1");
+        index.markOffline("user1");
+        index.markOffline("never-seen");
+
+        assertFalse(index.isOnline("user1"));
+        assertFalse(index.isOnline("never-seen"));
+        assertFalse(index.isOnline(null));
+        assertEquals(1, index.getOnlineCount());
+    }
+
+    @Test
+    void bitset_growsBeyondInitialCapacity() {
+        for (int i = 0; i < 5000; i++) {
+            index.markOnline("user" + i);
+        }
+        for (int i = 0; i < 5000; i += 2) {
+            index.markOffline("user" + i);
+        }
+
+        assertEquals(2500, index.getOnlineCount());
+        assertFalse(index.isOnline("user4998"));
+        assertTrue(index.isOnline("user4999"));
+    }
+}
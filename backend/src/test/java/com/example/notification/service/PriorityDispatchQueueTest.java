@@ -0,0 +1,89 @@
+package com.example.notification.service;
+
+import com.example.notification.model.NotificationPriority;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PriorityDispatchQueueTest {
+
+    private final AtomicInteger completed = new AtomicInteger();
+    private PriorityDispatchQueue queue;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        queue.shutdown(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void submit_runsHigherPriorityFirstAndKeepsOrderWithinPriority() throws Exception {
+        queue = new PriorityDispatchQueue("test-dispatch", 1, 100, (priority, nanos) -> completed.incrementAndGet());
+        CountDownLatch release = new CountDownLatch(1);
+        blockWorker(release);
+
+        List<String> seen = new CopyOnWriteArrayList<>();
+        queue.submit(NotificationPriority.LOW, () -> seen.add("low-1"));
+        queue.submit(NotificationPriority.NORMAL, () -> seen.add("normal"));
+        queue.submit(NotificationPriority.CRITICAL, () -> seen.add("critical"));
+        queue.submit(NotificationPriority.LOW, () -> seen.add("low-2"));
+        release.countDown();
+
+        awaitCompleted(5);
+        assertEquals(List.of("critical", "normal", "low-1", "low-2"), seen);
+    }
+
+    @Test
+    void submit_whenFull_runsNonCriticalOnCallerButQueuesCritical() throws Exception {
+        queue = new PriorityDispatchQueue("test-dispatch", 1, 1, (priority, nanos) -> completed.incrementAndGet());
+        CountDownLatch release = new CountDownLatch(1);
+        blockWorker(release);
+        queue.submit(NotificationPriority.LOW, () -> { });
+
+        Thread caller = Thread.currentThread();
+        AtomicInteger ranOnCaller = new AtomicInteger();
+        queue.submit(NotificationPriority.NORMAL, () -> {
+            if (Thread.currentThread() == caller) {
+                ranOnCaller.incrementAndGet();
+            }
+        });
+        queue.submit(NotificationPriority.CRITICAL, () -> {
+            if (Thread.currentThread() == caller) {
+                ranOnCaller.incrementAndGet();
+            }
+        });
+
+        assertEquals(1, ranOnCaller.get());
+        assertEquals(2, queue.size());
+        release.countDown();
+        awaitCompleted(4);
+    }
+
+    private void blockWorker(CountDownLatch release) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        queue.submit(NotificationPriority.CRITICAL, () -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+    }
+
+    private void awaitCompleted(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (completed.get() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(expected, completed.get());
+    }
+}
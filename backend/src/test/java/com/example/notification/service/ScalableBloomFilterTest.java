@@ -0,0 +1,57 @@
+package com.example.notification.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScalableBloomFilterTest {
+
+    @Test
+    void put_neverForgetsAKeyAndGrowsPastItsCapacity() {
+        ScalableBloomFilter filter = new ScalableBloomFilter(1000, 0.01, 8);
+
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("event-" + i + "\u0000user");
+        }
+
+        assertTrue(filter.stageCount() > 1);
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("event-" + i + "\u0000user"), "lost key " + i);
+        }
+    }
+
+    @Test
+    void mightContain_falsePositiveRateStaysNearTarget() {
+        ScalableBloomFilter filter = new ScalableBloomFilter(1000, 0.01, 8);
+        for (int i = 0; i < 20_000; i++) {
+            filter.put("present-" + i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("absent-" + i)) {
+                falsePositives++;
+            }
+        }
+        // Bounded by twice the first stage's rate
+        assertTrue(falsePositives < 2_000, falsePositives + " false positives");
+    }
+
+    @Test
+    void put_dropsOldestStageOnceMaxStagesReached() {
+        ScalableBloomFilter filter = new ScalableBloomFilter(64, 0.01, 2);
+        for (int i = 0; i < 1_000; i++) {
+            filter.put("key-" + i);
+        }
+
+        assertEquals(2, filter.stageCount());
+        assertTrue(filter.mightContain("key-999"));
+        int remembered = 0;
+        for (int i = 0; i < 100; i++) {
+            if (filter.mightContain("key-" + i)) {
+                remembered++;
+            }
+        }
+        assertTrue(remembered < 10, "the first stage's keys should be gone, " + remembered + " still match");
+    }
+}
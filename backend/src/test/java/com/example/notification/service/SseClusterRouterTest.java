@@ -0,0 +1,180 @@
+package com.example.notification.service;
+
+import com.example.notification.config.ClusterNode;
+import com.example.notification.dto.SseDeliveryMessage;
+import com.example.notification.dto.SseNodeHeartbeat;
+import com.example.notification.dto.SsePresenceEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SseClusterRouterTest {
+
+    @Mock
+    private SseEmitterManager sseEmitterManager;
+
+    @Mock
+    private KafkaTemplate<String, Object> kafkaTemplate;
+
+    private SsePresenceRegistry presenceRegistry;
+    private OnlineUserIndex onlineUsers;
+    private SseClusterRouter router;
+
+    @BeforeEach
+    void setUp() {
+        ClusterNode clusterNode = new ClusterNode(true, "node-a", "sse-delivery");
+        onlineUsers = new OnlineUserIndex(new SimpleMeterRegistry(), clusterNode);
+        presenceRegistry = new SsePresenceRegistry(clusterNode, onlineUsers, kafkaTemplate, "sse-presence", "sse-heartbeats", 30000);
+        router = new SseClusterRouter(sseEmitterManager, onlineUsers, presenceRegistry, clusterNode, kafkaTemplate);
+    }
+
+    @Test
+    void deliver_whenUserConnectedLocally_emitsToLocalSink() {
+        onlineUsers.markOnline("user1");
+
+        assertTrue(router.deliver("user1", "notification", "{}"));
+
+        verify(sseEmitterManager).sendEncodedToUser("user1", "notification", "{}");
+        verify(kafkaTemplate, never()).send(anyString(), anyString(), any());
+    }
+
+    @Test
+    void deliver_whenUserConnectedToOtherNode_forwardsOnceToThatNodesTopic() {
+        presenceRegistry.apply(new SsePresenceEvent("user1", "node-b", true, 1L));
+
+        assertTrue(router.deliver("user1", "notification", "{\"id\":1}"));
+
+        ArgumentCaptor<Object> message = ArgumentCaptor.forClass(Object.class);
+        verify(kafkaTemplate, times(1)).send(eq("sse-delivery.node-b"), eq("user1"), message.capture());
+        SseDeliveryMessage forwarded = (SseDeliveryMessage) message.getValue();
+        assertEquals("{\"id\":1}", forwarded.getData());
+        assertEquals("node-a", forwarded.getOriginNodeId());
+        verify(sseEmitterManager, never()).sendEncodedToUser(anyString(), anyString(), anyString());
+    }
+
+    @Test
+    void deliver_whenUserOffline_dropsWithoutForwarding() {
+        assertFalse(router.deliver("user1", "notification", "{}"));
+
+        verify(kafkaTemplate, never()).send(anyString(), anyString(), any());
+    }
+
+    @Test
+    void lateOfflineFromOldNode_doesNotHideNewerConnection() {
+        presenceRegistry.apply(new SsePresenceEvent("user1", "node-b", true, 1L));
+        presenceRegistry.apply(new SsePresenceEvent("user1", "node-c", true, 2L));
+        presenceRegistry.apply(new SsePresenceEvent("user1", "node-b", false, 3L));
+
+        assertEquals("node-c", presenceRegistry.locateRemote("user1"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void announceOffline_publishesATombstoneNamingThisNode() {
+        presenceRegistry.announceOffline("user1");
+
+        ArgumentCaptor<ProducerRecord<String, Object>> record = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaTemplate).send(record.capture());
+        assertEquals("sse-presence", record.getValue().topic());
+        assertEquals("user1", record.getValue().key());
+        assertNull(record.getValue().value());
+        assertArrayEquals("node-a".getBytes(StandardCharsets.UTF_8),
+                record.getValue().headers().lastHeader(SsePresenceRegistry.NODE_HEADER).value());
+    }
+
+    @Test
+    void departure_clearsOnlyTheDepartingNodesEntry() {
+        presenceRegistry.apply(new SsePresenceEvent("user1", "node-b", true, 1L));
+        presenceRegistry.apply(new SsePresenceEvent("user1", "node-c", true, 2L));
+
+        presenceRegistry.applyDeparture("user1", "node-b");
+        assertEquals("node-c", presenceRegistry.locateRemote("user1"));
+
+        presenceRegistry.applyDeparture("user1", "node-c");
+        assertNull(presenceRegistry.locateRemote("user1"));
+        verify(kafkaTemplate, never()).send(any(ProducerRecord.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void departureFromAnotherNode_ofAUserConnectedHere_announcesTheUserAgain() {
+        onlineUsers.markOnline("user1");
+
+        presenceRegistry.applyDeparture("user1", "node-b");
+
+        ArgumentCaptor<ProducerRecord<String, Object>> record = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaTemplate).send(record.capture());
+        SsePresenceEvent event = (SsePresenceEvent) record.getValue().value();
+        assertEquals("node-a", event.getNodeId());
+        assertTrue(event.isOnline());
+    }
+
+    @Test
+    void ownPresenceEvents_areIgnored() {
+        presenceRegistry.apply(new SsePresenceEvent("user1", "node-a", true, 1L));
+
+        assertNull(presenceRegistry.locateRemote("user1"));
+    }
+
+    @Test
+    void presence_ofANodeThatStopsBeating_expires() {
+        long now = System.currentTimeMillis();
+        presenceRegistry.apply(new SsePresenceEvent("user1", "node-b", true, now));
+        presenceRegistry.applyHeartbeat(new SseNodeHeartbeat("node-b", now - 1000, now));
+        assertEquals("node-b", presenceRegistry.locateRemote("user1"));
+
+        presenceRegistry.expire(now + 30001);
+
+        assertNull(presenceRegistry.locateRemote("user1"));
+        assertTrue(presenceRegistry.remoteUserIds().isEmpty());
+        assertFalse(router.deliver("user1", "notification", "{}"));
+        verify(kafkaTemplate, never()).send(anyString(), anyString(), any());
+    }
+
+    @Test
+    void presence_ofANodeNeverHeardFrom_expiresAfterTheGracePeriod() {
+        presenceRegistry.apply(new SsePresenceEvent("user1", "node-b", true, 1L));
+        assertEquals("node-b", presenceRegistry.locateRemote("user1"));
+
+        presenceRegistry.expire(System.currentTimeMillis() + 30001);
+
+        assertNull(presenceRegistry.locateRemote("user1"));
+    }
+
+    @Test
+    void presence_announcedBeforeANodeRestarted_isDropped() {
+        long now = System.currentTimeMillis();
+        presenceRegistry.applyHeartbeat(new SseNodeHeartbeat("node-b", now - 10000, now));
+        presenceRegistry.apply(new SsePresenceEvent("user1", "node-b", true, now - 5000));
+        presenceRegistry.apply(new SsePresenceEvent("user2", "node-b", true, now - 1000));
+
+        presenceRegistry.applyHeartbeat(new SseNodeHeartbeat("node-b", now - 2000, now));
+
+        assertNull(presenceRegistry.locateRemote("user1"));
+        assertEquals("node-b", presenceRegistry.locateRemote("user2"));
+    }
+
+    @Test
+    void heartbeat_announcesThisNode() {
+        presenceRegistry.heartbeat();
+
+        ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+        verify(kafkaTemplate).send(eq("sse-heartbeats"), eq("node-a"), captor.capture());
+        SseNodeHeartbeat heartbeat = (SseNodeHeartbeat) captor.getValue();
+        assertEquals("node-a", heartbeat.getNodeId());
+        assertTrue(heartbeat.getStartedAt() <= heartbeat.getTimestamp());
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.notification.service;
+
+import com.example.notification.config.SseMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SseConnectionTest {
+
+    private final SseMetrics metrics = new SseMetrics(new SimpleMeterRegistry(), "test");
+
+    @Test
+    void dropOldest_keepsNewestFramesAndAsksForResync() {
+        SseConnection connection = new SseConnection(2, SseOverflowPolicy.DROP_OLDEST, metrics);
+
+        assertEquals(SseConnection.Offer.QUEUED, connection.offer(frame("1", "notification")));
+        assertEquals(SseConnection.Offer.QUEUED, connection.offer(frame("2", "notification")));
+        assertEquals(SseConnection.Offer.DROPPED, connection.offer(frame("3", "notification")));
+        assertEquals(2, metrics.getBufferedFrames());
+
+        StepVerifier.create(connection.asFlux())
+            .expectNextMatches(event -> "resync".equals(event.event()))
+            .expectNextMatches(event -> "2".equals(event.id()))
+            .expectNextMatches(event -> "3".equals(event.id()))
+            .thenCancel()
+            .verify(Duration.ofSeconds(5));
+        assertEquals(0, metrics.getBufferedFrames());
+    }
+
+    @Test
+    void coalesce_replacesQueuedFrameOfSameType() {
+        SseConnection connection = new SseConnection(2, SseOverflowPolicy.COALESCE, metrics);
+
+        connection.offer(frame("1", "notification"));
+        connection.offer(frame(null, "unread"));
+        assertEquals(SseConnection.Offer.COALESCED, connection.offer(frame(null, "unread")));
+
+        StepVerifier.create(connection.asFlux())
+            .expectNextMatches(event -> "1".equals(event.id()))
+            .expectNextMatches(event -> "unread".equals(event.event()))
+            .expectNoEvent(Duration.ofMillis(100))
+            .thenCancel()
+            .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void frames_areOnlyEmittedOnDemand() {
+        SseConnection connection = new SseConnection(8, SseOverflowPolicy.DISCONNECT, metrics);
+
+        StepVerifier.create(connection.asFlux(), 0)
+            .then(() -> {
+                connection.offer(frame("1", "notification"));
+                connection.offer(frame("2", "notification"));
+            })
+            .expectNoEvent(Duration.ofMillis(100))
+            .thenRequest(1)
+            .expectNextMatches(event -> "1".equals(event.id()))
+            .then(() -> assertEquals(1, connection.depth()))
+            .thenRequest(1)
+            .expectNextMatches(event -> "2".equals(event.id()))
+            .thenCancel()
+            .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void disconnect_reportsOverflowWithoutQueueing() {
+        SseConnection connection = new SseConnection(1, SseOverflowPolicy.DISCONNECT, metrics);
+
+        connection.offer(frame("1", "notification"));
+
+        assertEquals(SseConnection.Offer.OVERFLOW, connection.offer(frame("2", "notification")));
+        assertEquals(1, connection.depth());
+    }
+
+    private static ServerSentEvent<String> frame(String id, String event) {
+        return ServerSentEvent.<String>builder().id(id).event(event).data("{}").build();
+    }
+}
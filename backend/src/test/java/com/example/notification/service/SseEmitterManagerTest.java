@@ -0,0 +1,218 @@
+package com.example.notification.service;
+
+import com.example.notification.config.ClusterNode;
+import com.example.notification.config.SseMetrics;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(MockitoExtension.class)
+class SseEmitterManagerTest {
+
+    @Mock
+    private SsePresenceRegistry presenceRegistry;
+
+    private final OnlineUserIndex onlineUsers = new OnlineUserIndex(new SimpleMeterRegistry(), new ClusterNode(false, "node-a", "sse-delivery"));
+
+    private SseEmitterManager manager;
+
+    @BeforeEach
+    void setUp() {
+        manager = new SseEmitterManager(new ObjectMapper(), presenceRegistry, connectionFactory(SseOverflowPolicy.DROP_OLDEST), onlineUsers, 4, 60000, 20000, 1000, false, 50);
+    }
+
+    @Test
+    void eventIds_areMonotonicPerUser() {
+        Flux<ServerSentEvent<String>> stream = manager.addEmitter("user1");
+
+        StepVerifier.create(stream)
+            .then(() -> {
+                manager.sendEncodedToUser("user1", "notification", "{\"id\":1}");
+                manager.sendEncodedToUser("user1", "notification", "{\"id\":2}");
+            })
+            .expectNextMatches(event -> event.id().endsWith("-1"))
+            .expectNextMatches(event -> event.id().endsWith("-2"))
+            .thenCancel()
+            .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void reconnectWithLastEventId_replaysOnlyTheGap() {
+        String[] lastSeen = new String[1];
+        StepVerifier.create(manager.addEmitter("user1"))
+            .then(() -> manager.sendEncodedToUser("user1", "notification", "{\"id\":1}"))
+            .consumeNextWith(event -> lastSeen[0] = event.id())
+            .thenCancel()
+            .verify(Duration.ofSeconds(5));
+
+        // Sent while the client is reconnecting
+        manager.sendEncodedToUser("user1", "notification", "{\"id\":2}");
+        manager.sendEncodedToUser("user1", "notification", "{\"id\":3}");
+
+        StepVerifier.create(manager.addEmitter("user1", lastSeen[0]))
+            .expectNextMatches(event -> "{\"id\":2}".equals(event.data()))
+            .expectNextMatches(event -> "{\"id\":3}".equals(event.data()))
+            .thenCancel()
+            .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void reconnectBeyondReplayCapacity_requestsResync() {
+        String[] lastSeen = new String[1];
+        StepVerifier.create(manager.addEmitter("user1"))
+            .then(() -> manager.sendEncodedToUser("user1", "notification", "{\"id\":1}"))
+            .consumeNextWith(event -> lastSeen[0] = event.id())
+            .thenCancel()
+            .verify(Duration.ofSeconds(5));
+
+        for (int i = 2; i <= 10; i++) {
+            manager.sendEncodedToUser("user1", "notification", "{\"id\":" + i + "}");
+        }
+
+        StepVerifier.create(manager.addEmitter("user1", lastSeen[0]))
+            .consumeNextWith(event -> {
+                assertEquals("resync", event.event());
+                assertEquals(null, event.id());
+            })
+            .thenCancel()
+            .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void gapLargerThanTheConnectionBuffer_requestsResyncUnderDisconnectPolicy() {
+        SseEmitterManager disconnecting = new SseEmitterManager(new ObjectMapper(), presenceRegistry,
+                connectionFactory(SseOverflowPolicy.DISCONNECT), onlineUsers, 4, 60000, 20000, 1000, false, 50);
+        String[] lastSeen = new String[1];
+        StepVerifier.create(disconnecting.addEmitter("user1"))
+            .then(() -> disconnecting.sendEncodedToUser("user1", "notification", "{\"id\":1}"))
+            .consumeNextWith(event -> lastSeen[0] = event.id())
+            .thenCancel()
+            .verify(Duration.ofSeconds(5));
+
+        // Within the replay capacity of 4, beyond the connection buffer of 2
+        for (int i = 2; i <= 4; i++) {
+            disconnecting.sendEncodedToUser("user1", "notification", "{\"id\":" + i + "}");
+        }
+
+        StepVerifier.create(disconnecting.addEmitter("user1", lastSeen[0]))
+            .consumeNextWith(event -> assertEquals("resync", event.event()))
+            .thenCancel()
+            .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void lastEventIdFromAnotherStream_requestsResync() {
+        manager.addEmitter("user1").subscribe().dispose();
+        manager.sendEncodedToUser("user1", "notification", "{\"id\":1}");
+
+        StepVerifier.create(manager.addEmitter("user1", "deadbeef-1"))
+            .consumeNextWith(event -> assertNotEquals("notification", event.event()))
+            .thenCancel()
+            .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void heartbeat_isSkippedWhileStreamCarriesTraffic() {
+        StepVerifier.create(manager.addEmitter("user1"))
+            .then(() -> {
+                manager.sendEncodedToUser("user1", "notification", "{\"id\":1}");
+                for (int i = 0; i < 20; i++) {
+                    manager.heartbeatTick(); // One full revolution of the wheel
+                }
+            })
+            .expectNextMatches(event -> "notification".equals(event.event()))
+            .expectNoEvent(Duration.ofMillis(100))
+            .thenCancel()
+            .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void heartbeat_isSentToIdleStreamWithoutId() {
+        SseEmitterManager idleManager = new SseEmitterManager(new ObjectMapper(), presenceRegistry, connectionFactory(SseOverflowPolicy.DROP_OLDEST), onlineUsers, 4, 60000, 0, 1000, false, 50);
+
+        StepVerifier.create(idleManager.addEmitter("user1"))
+            .then(idleManager::heartbeatTick)
+            .consumeNextWith(event -> {
+                assertEquals("KEEPALIVE", event.event());
+                assertEquals(null, event.id());
+            })
+            .thenCancel()
+            .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void overflowWithDisconnectPolicy_evictsWithReconnectHint() {
+        SseEmitterManager strictManager = new SseEmitterManager(new ObjectMapper(), presenceRegistry,
+                connectionFactory(SseOverflowPolicy.DISCONNECT), onlineUsers, 4, 60000, 20000, 1000, false, 50);
+
+        StepVerifier.create(strictManager.addEmitter("user1"), 0)
+            .then(() -> {
+                for (int i = 1; i <= 3; i++) {
+                    strictManager.sendEncodedToUser("user1", "notification", "{\"id\":" + i + "}");
+                }
+            })
+            .thenRequest(1)
+            .consumeNextWith(event -> {
+                assertEquals("reconnect", event.event());
+                assertEquals(Duration.ofMillis(5000), event.retry());
+            })
+            .verifyComplete();
+
+        assertFalse(strictManager.hasSink("user1"));
+        assertFalse(onlineUsers.isOnline("user1"));
+        assertTrue(strictManager.hasStream("user1")); // Retained so the client can resume
+    }
+
+    @Test
+    void batching_coalescesBurstIntoOneArrayFrame() {
+        SseEmitterManager batchingManager = new SseEmitterManager(new ObjectMapper(), presenceRegistry,
+                connectionFactory(SseOverflowPolicy.DROP_OLDEST), onlineUsers, 4, 60000, 20000, 1000, true, 50);
+
+        StepVerifier.create(batchingManager.addEmitter("user1"))
+            .then(() -> {
+                batchingManager.sendBatchableToUser("user1", "notification", "{\"id\":1}");
+                batchingManager.sendBatchableToUser("user1", "notification", "{\"id\":2}");
+            })
+            .consumeNextWith(event -> {
+                assertEquals("notifications", event.event());
+                assertEquals("[{\"id\":1},{\"id\":2}]", event.data());
+                assertTrue(event.id().endsWith("-2"));
+            })
+            .thenCancel()
+            .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void immediateFrame_flushesPendingBatchFirst() {
+        SseEmitterManager batchingManager = new SseEmitterManager(new ObjectMapper(), presenceRegistry,
+                connectionFactory(SseOverflowPolicy.DROP_OLDEST), onlineUsers, 4, 60000, 20000, 1000, true, 60000);
+
+        StepVerifier.create(batchingManager.addEmitter("user1"))
+            .then(() -> {
+                batchingManager.sendBatchableToUser("user1", "notification", "{\"id\":1}");
+                batchingManager.sendEncodedToUser("user1", "notification", "{\"id\":2}");
+            })
+            .expectNextMatches(event -> event.id().endsWith("-1") && "{\"id\":1}".equals(event.data()))
+            .expectNextMatches(event -> event.id().endsWith("-2"))
+            .thenCancel()
+            .verify(Duration.ofSeconds(5));
+    }
+
+    private static SseConnectionFactory connectionFactory(SseOverflowPolicy policy) {
+        return new SseConnectionFactory(2, policy, 30000, 5000, new SseMetrics(new SimpleMeterRegistry(), "test"));
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.notification.service;
+
+import com.example.notification.model.NotificationStatus;
+import com.example.notification.repository.BroadcastNotificationRepository;
+import com.example.notification.repository.NotificationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UnreadCounterServiceTest {
+
+    @Mock
+    private NotificationRepository notificationRepository;
+
+    @Mock
+    private BroadcastNotificationRepository broadcastRepository;
+
+    @Mock
+    private SseClusterRouter sseClusterRouter;
+
+    private UnreadCounterService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new UnreadCounterService(notificationRepository, broadcastRepository, sseClusterRouter, 60_000);
+    }
+
+    @Test
+    void getUnreadCount_loadsOnceThenServesFromMemory() {
+        when(notificationRepository.countByUserIdAndReadStatus("user1", NotificationStatus.UNREAD)).thenReturn(3L);
+
+        assertEquals(3, service.getUnreadCount("user1"));
+        assertEquals(3, service.getUnreadCount("user1"));
+
+        verify(notificationRepository, times(1)).countByUserIdAndReadStatus("user1", NotificationStatus.UNREAD);
+    }
+
+    @Test
+    void recordChange_adjustsCachedCountAndPushesToReachableUser() {
+        when(notificationRepository.countByUserIdAndReadStatus("user1", NotificationStatus.UNREAD)).thenReturn(3L);
+        when(sseClusterRouter.isReachable("user1")).thenReturn(true);
+        service.getUnreadCount("user1");
+
+        service.recordChange("user1", 1);
+        service.recordChange("user1", -5);
+
+        verify(sseClusterRouter).deliver("user1", "unread", "{\"count\":4}");
+        verify(sseClusterRouter).deliver("user1", "unread", "{\"count\":0}");
+        assertEquals(0, service.getUnreadCount("user1"));
+    }
+
+    @Test
+    void recordChange_forUnreachableUserWithoutCounter_touchesNeitherDatabaseNorStream() {
+        service.recordChange("user1", 1);
+
+        verifyNoInteractions(notificationRepository);
+        verify(sseClusterRouter, never()).deliver(anyString(), anyString(), anyString());
+        assertEquals(0, service.cachedUsers());
+    }
+
+    @Test
+    void recordChange_insideTransaction_waitsForCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            service.recordChange("user1", 1);
+            verifyNoInteractions(sseClusterRouter);
+
+            when(sseClusterRouter.isReachable("user1")).thenReturn(true);
+            when(notificationRepository.countByUserIdAndReadStatus("user1", NotificationStatus.UNREAD)).thenReturn(1L);
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        verify(sseClusterRouter).deliver("user1", "unread", "{\"count\":1}");
+    }
+
+    @Test
+    void recordBroadcast_pushesOnlyToReachableUsersWithACachedCount() {
+        when(notificationRepository.countByUserIdAndReadStatus("user1", NotificationStatus.UNREAD)).thenReturn(3L);
+        when(broadcastRepository.countUnreadByUserId("user1")).thenReturn(2L);
+        when(notificationRepository.countByUserIdAndReadStatus("user3", NotificationStatus.UNREAD)).thenReturn(0L);
+        when(sseClusterRouter.isReachable("user1")).thenReturn(true);
+        assertEquals(5, service.getUnreadCount("user1"));
+        assertEquals(0, service.getUnreadCount("user3"));
+
+        service.recordBroadcast();
+
+        verify(sseClusterRouter).deliver("user1", "unread", "{\"count\":6}");
+        verify(sseClusterRouter, never()).deliver(eq("user3"), anyString(), anyString());
+        verify(broadcastRepository, times(1)).countUnreadByUserId("user1");
+        verify(sseClusterRouter, never()).reachableUserIds();
+        assertEquals(1, service.getUnreadCount("user3"));
+    }
+}
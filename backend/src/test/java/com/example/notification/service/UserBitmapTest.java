@@ -0,0 +1,88 @@
+package com.example.notification.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserBitmapTest {
+
+    @Test
+    void add_keepsValuesAcrossSparseAndDenseContainersInOrder() {
+        UserBitmap bitmap = new UserBitmap();
+        for (int i = 0; i < 10_000; i++) {
+            bitmap.add(i * 2); // Dense enough in the first 65536 to become a bitset
+        }
+        bitmap.add(1_000_000);
+        bitmap.add(70_000);
+        bitmap.add(70_000);
+
+        assertEquals(10_002, bitmap.cardinality());
+        assertTrue(bitmap.contains(19_998));
+        assertFalse(bitmap.contains(19_999));
+        assertTrue(bitmap.contains(1_000_000));
+        assertFalse(bitmap.contains(-1));
+        List<Integer> values = new ArrayList<>();
+        bitmap.forEach(values::add);
+        assertEquals(0, values.get(0));
+        assertEquals(List.of(70_000, 1_000_000), values.subList(10_000, 10_002));
+        // Well under a plain bitset over the same range
+        assertTrue(bitmap.sizeInBytes() < 1_000_000 / 8, bitmap.sizeInBytes() + " bytes");
+    }
+
+    @Test
+    void setOperations_matchBitSetAndLeaveOperandsUnchanged() {
+        Random random = new Random(42);
+        UserBitmap left = new UserBitmap();
+        UserBitmap right = new UserBitmap();
+        BitSet expectedLeft = new BitSet();
+        BitSet expectedRight = new BitSet();
+        for (int i = 0; i < 20_000; i++) {
+            int a = random.nextInt(200_000);
+            int b = random.nextInt(i % 2 == 0 ? 200_000 : 70_000);
+            left.add(a);
+            expectedLeft.set(a);
+            right.add(b);
+            expectedRight.set(b);
+        }
+
+        BitSet or = (BitSet) expectedLeft.clone();
+        or.or(expectedRight);
+        BitSet and = (BitSet) expectedLeft.clone();
+        and.and(expectedRight);
+        BitSet andNot = (BitSet) expectedLeft.clone();
+        andNot.andNot(expectedRight);
+
+        assertEquals(or, toBitSet(left.or(right)));
+        assertEquals(and, toBitSet(left.and(right)));
+        assertEquals(andNot, toBitSet(left.andNot(right)));
+        assertEquals(expectedLeft, toBitSet(left));
+        assertEquals(expectedRight, toBitSet(right));
+        assertEquals(and.cardinality(), left.and(right).cardinality());
+    }
+
+    @Test
+    void andNot_ofEverythingIsEmpty() {
+        UserBitmap bitmap = new UserBitmap();
+        for (int i = 0; i < 5_000; i++) {
+            bitmap.add(i);
+        }
+
+        UserBitmap empty = bitmap.andNot(bitmap);
+
+        assertTrue(empty.isEmpty());
+        assertEquals(0, empty.cardinality());
+        empty.add(7);
+        assertTrue(empty.contains(7));
+    }
+
+    private static BitSet toBitSet(UserBitmap bitmap) {
+        BitSet bits = new BitSet();
+        bitmap.forEach(bits::set);
+        return bits;
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.notification.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserKeyedExecutorTest {
+
+    private final UserKeyedExecutor executor = new UserKeyedExecutor(16);
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        executor.shutdown();
+    }
+
+    @Test
+    void submit_sameKey_runsInSubmissionOrderEvenAfterFailure() throws Exception {
+        List<Integer> seen = new CopyOnWriteArrayList<>();
+        CompletableFuture<?>[] futures = IntStream.range(0, 50)
+                .mapToObj(i -> executor.submit("user1", () -> {
+                    seen.add(i);
+                    if (i == 10) {
+                        throw new IllegalStateException("boom");
+                    }
+                }))
+                .toArray(CompletableFuture[]::new);
+
+        CompletableFuture.allOf(futures).handle((ignored, error) -> null).get(5, TimeUnit.SECONDS);
+
+        assertEquals(IntStream.range(0, 50).boxed().toList(), seen);
+        assertTrue(futures[10].isCompletedExceptionally());
+        assertFalse(futures[11].isCompletedExceptionally());
+    }
+
+    @Test
+    void submit_differentKeys_runConcurrently() throws Exception {
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        AtomicInteger overlapped = new AtomicInteger();
+        Runnable task = () -> {
+            bothStarted.countDown();
+            try {
+                if (bothStarted.await(5, TimeUnit.SECONDS)) {
+                    overlapped.incrementAndGet();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        CompletableFuture.allOf(executor.submit("user1", task), executor.submit("user2", task)).get(10, TimeUnit.SECONDS);
+
+        assertEquals(2, overlapped.get());
+    }
+
+    @Test
+    void submitAfterAll_runsAfterEarlierWorkAndBeforeLaterWorkWithoutBlocking() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> seen = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            String user = "user" + i;
+            executor.submit(user, () -> {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                seen.add(user);
+            });
+        }
+
+        CompletableFuture<Void> all = executor.submitAfterAll(() -> seen.add("ALL"));
+        CompletableFuture<Void> later = executor.submit("user9", () -> seen.add("user9"));
+        assertFalse(all.isDone());
+
+        release.countDown();
+        CompletableFuture.allOf(all, later).get(5, TimeUnit.SECONDS);
+
+        assertEquals(6, seen.size());
+        assertEquals(List.of("ALL", "user9"), seen.subList(4, 6));
+    }
+
+    @Test
+    void submitAfterAll_failureDoesNotStopLaterWork() throws Exception {
+        CompletableFuture<Void> all = executor.submitAfterAll(() -> {
+            throw new IllegalStateException("boom");
+        });
+        AtomicInteger done = new AtomicInteger();
+
+        executor.submit("user1", done::incrementAndGet).get(5, TimeUnit.SECONDS);
+
+        assertTrue(all.isCompletedExceptionally());
+        assertEquals(1, done.get());
+    }
+}
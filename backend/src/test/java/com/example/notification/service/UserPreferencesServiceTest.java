@@ -0,0 +1,175 @@
+package com.example.notification.service;
+
+import com.example.notification.config.ClusterNode;
+import com.example.notification.dto.UserPreferencesChangedEvent;
+import com.example.notification.dto.UserPreferencesDTO;
+import com.example.notification.model.UserPreferences;
+import com.example.notification.repository.UserPreferencesRepository;
+import com.example.notification.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserPreferencesServiceTest {
+
+    @Mock
+    private UserPreferencesRepository preferencesRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private NotificationTypeService notificationTypeService;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private KafkaTemplate<String, Object> kafkaTemplate;
+
+    private SimpleMeterRegistry meterRegistry;
+    private UserPreferencesService service;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        service = service(100);
+    }
+
+    private UserPreferencesService service(int maxEntries) {
+        return new UserPreferencesService(preferencesRepository, userRepository, notificationTypeService, jdbcTemplate,
+                new ClusterNode(true, "node-a", "sse-delivery"), kafkaTemplate, meterRegistry,
+                "user-preferences-changes", maxEntries, 60000);
+    }
+
+    @Test
+    void find_loadsEachUserOnceAndHoldsMutedTypesAsTypeIds() {
+        stubRows("alice", new Object[]{true, false, "HIGH", "ALERT"}, new Object[]{true, false, "HIGH", "PROMO"});
+        when(notificationTypeService.findTypeId("ALERT")).thenReturn(3L);
+        when(notificationTypeService.findTypeId("PROMO")).thenReturn(70L);
+        when(notificationTypeService.typeCodeOf(3L)).thenReturn("ALERT");
+        when(notificationTypeService.typeCodeOf(70L)).thenReturn("PROMO");
+
+        CachedUserPreferences alice = service.find("alice").orElseThrow();
+
+        assertTrue(alice.isMuted(3));
+        assertTrue(alice.isMuted(70));
+        assertFalse(alice.isMuted(4));
+        assertFalse(alice.isMuted(7000));
+        assertFalse(service.isSseEnabled("alice"));
+        assertFalse(service.acceptsEmail("alice", "ALERT"));
+        UserPreferencesDTO dto = service.getPreferences("alice");
+        assertEquals("HIGH", dto.getMinimumEmailPriority());
+        assertEquals(Set.of("ALERT", "PROMO"), dto.getMutedNotificationTypes());
+        verify(jdbcTemplate, times(1)).query(anyString(), any(ResultSetExtractor.class), eq("alice"));
+        assertEquals(3.0, meterRegistry.get("notification_preferences_lookups_total").tag("result", "hit").counter().count());
+    }
+
+    @Test
+    void find_cachesUsersWithoutPreferencesAsAbsent() {
+        stubRows("bob");
+
+        assertTrue(service.find("bob").isEmpty());
+        assertTrue(service.isSseEnabled("bob"));
+        assertFalse(service.acceptsEmail("bob", "ALERT"));
+        assertTrue(service.getPreferences("bob").isEmailEnabled());
+        verify(jdbcTemplate, times(1)).query(anyString(), any(ResultSetExtractor.class), eq("bob"));
+    }
+
+    @Test
+    void updatePreferences_writesThroughAndAnnouncesTheChange() {
+        when(userRepository.existsById("carol")).thenReturn(true);
+        when(preferencesRepository.findById("carol")).thenReturn(Optional.empty());
+        when(preferencesRepository.save(any(UserPreferences.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(notificationTypeService.findTypeId("ALERT")).thenReturn(3L);
+        when(notificationTypeService.typeCodeOf(3L)).thenReturn("ALERT");
+
+        UserPreferencesDTO saved = service.updatePreferences("carol", UserPreferencesDTO.builder()
+                .emailEnabled(true).sseEnabled(true).mutedNotificationTypes(Set.of("ALERT")).build());
+
+        assertEquals(Set.of("ALERT"), saved.getMutedNotificationTypes());
+        assertEquals("NORMAL", saved.getMinimumEmailPriority());
+        assertTrue(service.find("carol").orElseThrow().isMuted(3));
+        verifyNoInteractions(jdbcTemplate);
+        verify(kafkaTemplate).send(eq("user-preferences-changes"), eq("carol"), any(UserPreferencesChangedEvent.class));
+    }
+
+    @Test
+    void updatePreferences_rejectsUnknownMutedTypes() {
+        when(userRepository.existsById("carol")).thenReturn(true);
+        when(preferencesRepository.findById("carol")).thenReturn(Optional.empty());
+        when(notificationTypeService.findTypeId("NOPE")).thenReturn(null);
+
+        assertThrows(IllegalArgumentException.class, () -> service.updatePreferences("carol",
+                UserPreferencesDTO.builder().emailEnabled(true).mutedNotificationTypes(Set.of("NOPE")).build()));
+        verify(preferencesRepository, never()).save(any());
+        verifyNoInteractions(kafkaTemplate);
+    }
+
+    @Test
+    void applyRemoteChange_dropsOnlyChangesMadeOnOtherNodes() {
+        stubRows("alice", new Object[]{true, true, "HIGH", null});
+        service.find("alice");
+
+        service.applyRemoteChange(new UserPreferencesChangedEvent("alice", "node-a", 1L));
+        service.find("alice");
+        verify(jdbcTemplate, times(1)).query(anyString(), any(ResultSetExtractor.class), eq("alice"));
+
+        service.applyRemoteChange(new UserPreferencesChangedEvent("alice", "node-b", 2L));
+        service.find("alice");
+        verify(jdbcTemplate, times(2)).query(anyString(), any(ResultSetExtractor.class), eq("alice"));
+    }
+
+    @Test
+    void find_keepsTheCacheWithinMaxEntries() {
+        service = service(10);
+        for (int i = 0; i < 25; i++) {
+            service.find("user" + i);
+        }
+
+        assertTrue(meterRegistry.get("notification_preferences_cache_size").gauge().value() <= 10);
+    }
+
+    @Test
+    void mutedTypes_areKeptAsBitsOverTypeIds() {
+        CachedUserPreferences preferences = new CachedUserPreferences("dave", true, true, "NORMAL", List.of(130L, 1L, 64L));
+        List<Long> muted = new ArrayList<>();
+        preferences.forEachMutedType(muted::add);
+
+        assertEquals(List.of(1L, 64L, 130L), muted);
+        assertFalse(preferences.isMuted(0));
+        assertFalse(preferences.isMuted(-1));
+        assertThrows(IllegalArgumentException.class,
+                () -> new CachedUserPreferences("dave", true, true, "NORMAL", List.of(-5L)));
+    }
+
+    // Each row is {email_enabled, sse_enabled, minimum_email_priority, muted type code}
+    @SuppressWarnings("unchecked")
+    private void stubRows(String userId, Object[]... rows) {
+        when(jdbcTemplate.query(anyString(), any(ResultSetExtractor.class), eq(userId))).thenAnswer(invocation -> {
+            ResultSet rs = mock(ResultSet.class);
+            int[] row = {-1};
+            when(rs.next()).thenAnswer(next -> ++row[0] < rows.length);
+            lenient().when(rs.getBoolean(anyInt())).thenAnswer(get -> rows[row[0]][(int) get.getArgument(0) - 1]);
+            lenient().when(rs.getString(anyInt())).thenAnswer(get -> rows[row[0]][(int) get.getArgument(0) - 1]);
+            return ((ResultSetExtractor<Object>) invocation.getArgument(1)).extractData(rs);
+        });
+    }
+}
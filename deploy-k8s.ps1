@@ -25,7 +25,7 @@ docker build -t user-ui:latest ./frontend/user-ui
 kubectl apply -k k8s/app
 
 # You can check the status of the rollout with the following command:
-kubectl rollout status deployment/backend
+kubectl rollout status statefulset/backend
 kubectl rollout status deployment/admin-ui
 kubectl rollout status deployment/user-ui
 
@@ -83,11 +83,16 @@ const Layout = ({ children, user, onLogout }) => {
     if (user?.id) {
       fetchAndUpdateUnreadCount(controller.signal); // Initial fetch
 
-      const handleNewNotification = (event) => { // For SSE
-        fetchAndUpdateUnreadCount(controller.signal);
+      // The server pushes the count whenever it changes; only refetch when the stream (re)connects
+      const handleSseMessage = (message) => {
+        if (message?.type === 'UNREAD_COUNT') {
+          setUnreadCount(message.payload.count);
+        } else if (message?.type === 'SSE_CONNECTION_ESTABLISHED') {
+          fetchAndUpdateUnreadCount(controller.signal);
+        }
       };
 
-      const unsubscribeWs = subscribeToRealtimeNotifications(handleNewNotification);
+      const unsubscribeWs = subscribeToRealtimeNotifications(handleSseMessage);
       eventBus.on('notificationsUpdated', eventBusHandler);
 
       return () => {
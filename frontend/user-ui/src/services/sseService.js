@@ -1,4 +1,6 @@
 // sseService.js
+import eventBus from '../utils/eventBus';
+
 class SseService {
     constructor() {
         this.eventSource = null;
@@ -7,6 +9,13 @@ class SseService {
         this.maxReconnectionAttempts = 5; // Example: Max 5 reconnection attempts
         this.reconnectionDelay = 5000; // Example: 5 seconds delay
         this.currentUserId = null; // Added currentUserId property
+        this.lastEventId = null; // Id of the last sequenced event, sent back on reconnect to replay only the gap
+    }
+
+    trackEventId(event) {
+        if (event.lastEventId) {
+            this.lastEventId = event.lastEventId;
+        }
     }
 
     connect(userId) {
@@ -40,10 +49,16 @@ class SseService {
         }
 
         const BACKEND_URL = process.env.REACT_APP_BACKEND_URL || 'http://localhost:8080';
-        const url = `${BACKEND_URL}/api/notifications/events?token=${encodeURIComponent(token)}`;
+        // The SSE gateway, when deployed, serves the event stream on its own port
+        const SSE_URL = process.env.REACT_APP_SSE_URL || BACKEND_URL;
+        let url = `${SSE_URL}/api/notifications/events?token=${encodeURIComponent(token)}`;
+        if (this.lastEventId && this.lastEventUserId === userId) {
+            url += `&lastEventId=${encodeURIComponent(this.lastEventId)}`;
+        }
         console.log(`SSE Service: Creating new EventSource. Connecting to ${url} for user ${userId}`);
         this.eventSource = new EventSource(url);
         this.currentUserId = userId; 
+        this.lastEventUserId = userId;
 
         this.eventSource.onopen = () => {
             console.log(`SSE Service: onopen event fired. Connection ESTABLISHED with server for user ID: ${this.currentUserId}. readyState: ${this.eventSource?.readyState}`);
@@ -53,6 +68,7 @@ class SseService {
 
         this.eventSource.addEventListener('notification', (event) => {
             console.log('SSE Service: notification event received.', event.data);
+            this.trackEventId(event);
             try {
                 const notification = JSON.parse(event.data);
                 this.notifySubscribers({ type: 'NOTIFICATION_RECEIVED', payload: notification });
@@ -61,6 +77,54 @@ class SseService {
             }
         });
 
+        this.eventSource.addEventListener('notifications', (event) => {
+            // Micro-batched burst: a JSON array of notifications sharing one frame
+            console.log('SSE Service: notifications batch received.');
+            this.trackEventId(event);
+            try {
+                const notifications = JSON.parse(event.data);
+                notifications.forEach(notification => {
+                    this.notifySubscribers({ type: 'NOTIFICATION_RECEIVED', payload: notification });
+                });
+            } catch (error) {
+                console.error('SSE Service: Error parsing JSON from notifications batch:', error);
+            }
+        });
+
+        this.eventSource.addEventListener('unread', (event) => {
+            // Server-maintained unread count, pushed whenever it changes
+            this.trackEventId(event);
+            try {
+                const { count } = JSON.parse(event.data);
+                this.notifySubscribers({ type: 'UNREAD_COUNT', payload: { count } });
+            } catch (error) {
+                console.error('SSE Service: Error parsing JSON from unread event:', error);
+            }
+        });
+
+        this.eventSource.addEventListener('resync', () => {
+            // The server could not replay everything we missed; refetch from the REST API
+            console.log('SSE Service: resync event received. Refetching notifications.');
+            this.notifySubscribers({ type: 'SSE_RESYNC', userId: this.currentUserId });
+            eventBus.emit('notificationsUpdated');
+        });
+
+        this.eventSource.addEventListener('reconnect', (event) => {
+            // The server evicted this connection because we fell behind; come back after the suggested delay
+            let retryMs = this.reconnectionDelay;
+            try {
+                retryMs = JSON.parse(event.data).retryMs || retryMs;
+            } catch (error) {
+                console.error('SSE Service: Error parsing reconnect event data:', error);
+            }
+            const retryUserId = this.currentUserId || userId;
+            console.log(`SSE Service: reconnect event received. Reconnecting in ${retryMs}ms for userId: ${retryUserId}`);
+            this.eventSource.close();
+            this.eventSource = null;
+            this.currentUserId = null;
+            setTimeout(() => this.connect(retryUserId), retryMs);
+        });
+
         this.eventSource.onmessage = (event) => {
             console.log(`SSE Service: onmessage event received. Type: ${event.type}, Origin: ${event.origin}, LastEventID: ${event.lastEventId}, Data: ${event.data.substring(0, 100)}...`);
             if (event.type === "KEEPALIVE" || (event.data && event.data.includes("KEEPALIVE_HEARTBEAT"))) { // Adjusted for common KEEPALIVE patterns